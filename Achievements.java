@@ -0,0 +1,528 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Badges students earn as they work: pluggable Badge definitions folded over the stream of grade
+ * changes (the GradeEvents the dashboard publishes, and the same events from API sessions).
+ *
+ * Each badge keeps a small state per user (a run length, the last few scores, a flag per class) and
+ * looks only at the change in hand and the class it touched, so a change costs the same however much
+ * data the user has. Earned badges are permanent. They and the per-badge states are kept in
+ * data/achievements.json, written at most every few seconds.
+ *
+ * A user with no state yet (existing data, or a badge added in a newer version) is backfilled by
+ * replaying their data as events: every class, then its assignments in id order. backfill() does
+ * that for many users at once on a fork/join pool.
+ */
+public class Achievements {
+    private static final Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+    private static final int PARALLEL_THRESHOLD = 32; // users per backfill leaf
+
+    /** A kind of badge. S is its per-user state, which must survive a round trip through Gson. */
+    interface Badge<S> {
+        String id();
+        String title();
+        String description();
+        Class<S> stateType();
+        S start();
+
+        /**
+         * Folds one change in; terms are the user's data just after it. Calls earn(scope) for what the
+         * change earned: "" for the user, "semester" or "semester\tclass" (see scope()).
+         */
+        void apply(S state, GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Consumer<String> earn);
+    }
+
+    /** An earned badge; scope as passed to earn. */
+    record Earned(String badge, String title, String scope, long at) {
+        int semester() {
+            return scope.isEmpty() ? 0 : Integer.parseInt(scope.split("\t", 2)[0]);
+        }
+
+        String className() {
+            int tab = scope.indexOf('\t');
+            return tab < 0 ? null : scope.substring(tab + 1);
+        }
+    }
+
+    // one user's badge states and what they earned
+    private static final class UserBadges {
+        final Map<String, Object> states = new HashMap<>();       // badge id -> state
+        final Map<String, Earned> earned = new LinkedHashMap<>(); // "badge id|scope" -> earned, oldest first
+    }
+
+    private final String file; // null = not persisted
+    private final List<Badge<?>> badges;
+    private final BiConsumer<String, Earned> onEarned;
+    private final Map<String, UserBadges> users = new ConcurrentHashMap<>();
+    private final Set<String> touched = ConcurrentHashMap.newKeySet(); // users changed here since the last save
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService saver;
+
+    Achievements(String file, List<Badge<?>> badges, BiConsumer<String, Earned> onEarned) {
+        this.file = file;
+        this.badges = List.copyOf(badges);
+        this.onEarned = onEarned;
+        this.saver = file == null ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "achievements-save");
+            t.setDaemon(true);
+            return t;
+        });
+        load();
+    }
+
+    static String scope(int semester, String className) {
+        return className == null ? String.valueOf(semester) : semester + "\t" + className;
+    }
+
+    /**
+     * The user's changes, in order (call under the user's lock, with their data as of after the last
+     * one). A user seen for the first time is backfilled from that data instead.
+     */
+    void apply(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, List<GradeEvents.Event> changes) {
+        List<Earned> fresh = new ArrayList<>();
+        UserBadges u = users.get(user);
+        if (u == null) {
+            replay(user, terms);
+            return;
+        }
+        touched.add(user); // before the fold, so a save picking up another instance's edits leaves it be
+        synchronized (u) {
+            List<Badge<?>> missing = new ArrayList<>();
+            for (Badge<?> b : badges) if (!u.states.containsKey(b.id())) missing.add(b);
+            if (missing.isEmpty()) {
+                for (GradeEvents.Event e : changes) fold(u, badges, e, terms, fresh);
+            } else {
+                replay(u, missing, terms, fresh); // badges this user's state predates start from their data
+            }
+        }
+        finish(user, fresh);
+    }
+
+    /** Earned badges, oldest first. */
+    List<Earned> earned(String user) {
+        UserBadges u = users.get(user);
+        if (u == null) return List.of();
+        synchronized (u) {
+            return List.copyOf(u.earned.values());
+        }
+    }
+
+    /** What to show next to one class: its own badges, its semester's, and the user's overall ones. */
+    List<Earned> earnedFor(String user, int semester, String className) {
+        List<Earned> out = new ArrayList<>();
+        for (Earned e : earned(user)) {
+            if (e.scope().isEmpty() || e.semester() == semester && (e.className() == null || e.className().equals(className))) out.add(e);
+        }
+        return out;
+    }
+
+    void rename(String from, String to) {
+        UserBadges u = users.remove(from);
+        if (u != null && to != null) users.put(to, u);
+        touched.add(from);
+        if (to != null) touched.add(to);
+        scheduleSave();
+    }
+
+    /**
+     * Backfills every user in the collection that has no state yet, in parallel on pool; reader reads a
+     * user's data under their lock. Returns how many users were backfilled.
+     */
+    int backfill(Collection<String> names, GradeStore.Reader reader, ForkJoinPool pool) {
+        List<String> todo = new ArrayList<>();
+        for (String n : names) if (!users.containsKey(n)) todo.add(n);
+        int done = pool.invoke(new Backfill(todo, 0, todo.size(), reader));
+        scheduleSave();
+        return done;
+    }
+
+    private final class Backfill extends java.util.concurrent.RecursiveTask<Integer> {
+        private final List<String> names;
+        private final int from, to;
+        private final GradeStore.Reader reader;
+
+        Backfill(List<String> names, int from, int to, GradeStore.Reader reader) {
+            this.names = names;
+            this.from = from;
+            this.to = to;
+            this.reader = reader;
+        }
+
+        @Override protected Integer compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                int n = 0;
+                for (int i = from; i < to; i++) {
+                    String user = names.get(i);
+                    Boolean ok = reader.read(user, terms -> {
+                        if (users.containsKey(user)) return false; // a change got there first
+                        replay(user, terms);
+                        return true;
+                    });
+                    if (Boolean.TRUE.equals(ok)) n++;
+                }
+                return n;
+            }
+            int mid = (from + to) >>> 1;
+            Backfill left = new Backfill(names, from, mid, reader);
+            left.fork();
+            return new Backfill(names, mid, to, reader).compute() + left.join();
+        }
+    }
+
+    // a fresh state for every badge, built by replaying the user's data as the changes that made it
+    private void replay(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        UserBadges u = new UserBadges();
+        List<Earned> fresh = new ArrayList<>();
+        synchronized (u) {
+            replay(u, badges, terms, fresh);
+        }
+        UserBadges raced = users.putIfAbsent(user, u);
+        if (raced != null) return; // callers hold the user's lock, so only a rename could get here
+        touched.add(user);
+        finish(user, fresh);
+    }
+
+    private static void replay(UserBadges u, List<Badge<?>> some, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, List<Earned> fresh) {
+        for (Badge<?> b : some) u.states.put(b.id(), b.start());
+        for (GradeEvents.Event e : history(terms)) fold(u, some, e, terms, fresh);
+    }
+
+    // the user's data as a change stream: classes by semester and name, then their assignments by id
+    static List<GradeEvents.Event> history(Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        List<GradeEvents.Event> out = new ArrayList<>();
+        for (int sem = 1; sem <= 4; sem++) {
+            Map<String, CollegeGPATracker.ClassData> classes = terms.get(sem);
+            if (classes == null) continue;
+            for (Map.Entry<String, CollegeGPATracker.ClassData> c : new TreeMap<>(classes).entrySet()) {
+                out.add(new GradeEvents.ClassAdded(sem, c.getKey()));
+                List<CollegeGPATracker.Assignment> items = new ArrayList<>();
+                for (CollegeGPATracker.Category cat : c.getValue().categories) items.addAll(cat.items);
+                items.sort(Comparator.comparingInt(a -> a.id));
+                for (CollegeGPATracker.Assignment a : items) out.add(new GradeEvents.AssignmentAdded(sem, c.getKey(), a.id));
+            }
+        }
+        return out;
+    }
+
+    private static void fold(UserBadges u, List<Badge<?>> some, GradeEvents.Event e,
+                             Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, List<Earned> fresh) {
+        for (Badge<?> b : some) foldOne(u, b, e, terms, fresh);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> void foldOne(UserBadges u, Badge<S> b, GradeEvents.Event e,
+                                    Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, List<Earned> fresh) {
+        S state = (S) u.states.get(b.id());
+        b.apply(state, e, terms, scope -> {
+            String key = b.id() + "|" + scope;
+            if (u.earned.containsKey(key)) return;
+            Earned earned = new Earned(b.id(), b.title(), scope, System.currentTimeMillis());
+            u.earned.put(key, earned);
+            fresh.add(earned);
+        });
+    }
+
+    private void finish(String user, List<Earned> fresh) {
+        for (Earned e : fresh) onEarned.accept(user, e);
+        scheduleSave();
+    }
+
+    private void scheduleSave() {
+        if (saver != null && saveScheduled.compareAndSet(false, true)) saver.schedule(this::save, 5, TimeUnit.SECONDS);
+    }
+
+    private void load() {
+        if (file == null) return;
+        try {
+            merge(read(), Set.of());
+        } catch (Exception e) { e.printStackTrace(); }
+    }
+
+    // under the file's lock (instances sharing data/ each save): the file as it is now, with the users
+    // changed here written over theirs; everyone else is taken from the file
+    synchronized void save() {
+        saveScheduled.set(false);
+        if (file == null) return;
+        try {
+            AtomicFiles.locked(file, () -> {
+                JsonObject root = read();
+                Set<String> mine = new HashSet<>(touched);
+                touched.removeAll(mine);
+                merge(root, mine);
+                for (String user : mine) {
+                    UserBadges u = users.get(user);
+                    if (u == null) root.remove(user);
+                    else root.add(user, toJson(u));
+                }
+                AtomicFiles.write(file, gson.toJson(root));
+                return null;
+            });
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    private JsonObject read() throws IOException {
+        String json = AtomicFiles.readIfExists(file);
+        JsonElement root = json == null ? null : JsonParser.parseString(json);
+        return root != null && root.isJsonObject() ? root.getAsJsonObject() : new JsonObject();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void merge(JsonObject root, Set<String> mine) {
+        Map<String, Badge<?>> byId = new HashMap<>();
+        for (Badge<?> b : badges) byId.put(b.id(), b);
+        for (Map.Entry<String, JsonElement> e : root.entrySet()) {
+            if (mine.contains(e.getKey()) || touched.contains(e.getKey())) continue;
+            JsonObject o = e.getValue().getAsJsonObject();
+            UserBadges disk = new UserBadges();
+            for (JsonElement x : o.getAsJsonArray("earned")) {
+                Earned earned = gson.fromJson(x, Earned.class);
+                disk.earned.put(earned.badge() + "|" + earned.scope(), earned);
+            }
+            for (Map.Entry<String, JsonElement> st : o.getAsJsonObject("states").entrySet()) {
+                Badge b = byId.get(st.getKey());
+                if (b != null) disk.states.put(b.id(), gson.fromJson(st.getValue(), b.stateType())); // unknown badges are dropped
+            }
+            UserBadges u = users.putIfAbsent(e.getKey(), disk);
+            if (u == null) continue;
+            synchronized (u) { // another instance's changes
+                if (touched.contains(e.getKey())) continue; // changed here meanwhile
+                u.states.clear();
+                u.states.putAll(disk.states);
+                u.earned.clear();
+                u.earned.putAll(disk.earned);
+            }
+        }
+        users.keySet().removeIf(user -> !root.has(user) && !mine.contains(user) && !touched.contains(user)); // renamed or deleted elsewhere
+    }
+
+    private static JsonObject toJson(UserBadges u) {
+        JsonObject o = new JsonObject();
+        synchronized (u) {
+            o.add("earned", gson.toJsonTree(new ArrayList<>(u.earned.values())));
+            JsonObject states = new JsonObject();
+            u.states.forEach((id, s) -> states.add(id, gson.toJsonTree(s)));
+            o.add("states", states);
+        }
+        return o;
+    }
+
+    // ===== the built-in badges =====
+
+    /** The badges the app ships with. */
+    static List<Badge<?>> standard() {
+        return List.of(new Perfect(), new Comeback(), new Streak(), new MostImproved(), new AllASemester(), new Consistency());
+    }
+
+    // the class a change is about, or null (removed, or a change to every class)
+    private static CollegeGPATracker.ClassData classOf(GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        if (e.semester() == 0 || e.className() == null || e instanceof GradeEvents.ClassRemoved) return null;
+        Map<String, CollegeGPATracker.ClassData> classes = terms.get(e.semester());
+        return classes == null ? null : classes.get(e.className());
+    }
+
+    // every class a change may have moved: the one it names, or all of them for a change to every class
+    private static void eachClass(GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms,
+                                  ClassVisitor v) {
+        if (e instanceof GradeEvents.ClassRemoved) return;
+        if (e.semester() != 0 && e.className() != null) {
+            CollegeGPATracker.ClassData cd = classOf(e, terms);
+            if (cd != null) v.visit(e.semester(), e.className(), cd);
+            return;
+        }
+        for (Map.Entry<Integer, Map<String, CollegeGPATracker.ClassData>> t : terms.entrySet()) {
+            if (e.semester() != 0 && e.semester() != t.getKey()) continue;
+            for (Map.Entry<String, CollegeGPATracker.ClassData> c : t.getValue().entrySet()) v.visit(t.getKey(), c.getKey(), c.getValue());
+        }
+    }
+
+    private interface ClassVisitor {
+        void visit(int semester, String className, CollegeGPATracker.ClassData cd);
+    }
+
+    private static boolean graded(CollegeGPATracker.ClassData cd) {
+        for (CollegeGPATracker.Category c : cd.categories) if (c.size() > 0) return true;
+        return false;
+    }
+
+    // score of the assignment an AssignmentAdded names, or NaN
+    private static double addedScore(GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        if (!(e instanceof GradeEvents.AssignmentAdded added)) return Double.NaN;
+        CollegeGPATracker.ClassData cd = classOf(e, terms);
+        CollegeGPATracker.Assignment a = cd == null ? null : cd.find(added.assignmentId());
+        return a == null ? Double.NaN : a.score;
+    }
+
+    /** For badges that need nothing beyond the class they look at. */
+    static final class None {}
+
+    // class GPA of 3.8 or more (what the badge panel used to show while it held)
+    static final class Perfect implements Badge<None> {
+        public String id() { return "perfect"; }
+        public String title() { return "Perfect Score"; }
+        public String description() { return "A class GPA of 3.8 or higher"; }
+        public Class<None> stateType() { return None.class; }
+        public None start() { return new None(); }
+
+        public void apply(None s, GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Consumer<String> earn) {
+            eachClass(e, terms, (sem, name, cd) -> {
+                if (!cd.passFail && graded(cd) && cd.gpa() >= 3.8) earn.accept(scope(sem, name));
+            });
+        }
+    }
+
+    // below 70% three history points ago, 80% or more now and rising
+    static final class Comeback implements Badge<None> {
+        public String id() { return "comeback"; }
+        public String title() { return "Comeback Kid"; }
+        public String description() { return "From under 70% to 80% or more in a class"; }
+        public Class<None> stateType() { return None.class; }
+        public None start() { return new None(); }
+
+        public void apply(None s, GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Consumer<String> earn) {
+            eachClass(e, terms, (sem, name, cd) -> {
+                List<Double> h = cd.historyPercent;
+                int n = h.size();
+                if (n >= 3 && h.get(n - 3) < 70 && h.get(n - 1) >= 80 && h.get(n - 1) > h.get(n - 2)) earn.accept(scope(sem, name));
+            });
+        }
+    }
+
+    // RUN new assignments in a row at 90% or more, across all classes
+    static final class Streak implements Badge<Streak.State> {
+        static final int RUN = 5;
+        static final class State { int run; }
+        public String id() { return "streak"; }
+        public String title() { return "On a Roll"; }
+        public String description() { return RUN + " assignments in a row at 90% or more"; }
+        public Class<State> stateType() { return State.class; }
+        public State start() { return new State(); }
+
+        public void apply(State s, GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Consumer<String> earn) {
+            double score = addedScore(e, terms);
+            if (Double.isNaN(score)) return;
+            s.run = score >= 90 ? s.run + 1 : 0;
+            if (s.run >= RUN) earn.accept("");
+        }
+    }
+
+    // a class percent GAIN points above where it started (its first graded percent)
+    static final class MostImproved implements Badge<MostImproved.State> {
+        static final double GAIN = 15;
+        static final class State { Map<String, Double> first = new HashMap<>(); } // scope -> first graded percent
+        public String id() { return "improved"; }
+        public String title() { return "Most Improved"; }
+        public String description() { return "A class up " + (int) GAIN + " points from where it started"; }
+        public Class<State> stateType() { return State.class; }
+        public State start() { return new State(); }
+
+        public void apply(State s, GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Consumer<String> earn) {
+            if (e instanceof GradeEvents.ClassRemoved) {
+                s.first.remove(scope(e.semester(), e.className()));
+                return;
+            }
+            eachClass(e, terms, (sem, name, cd) -> {
+                if (!graded(cd)) return;
+                double p = cd.percent();
+                if (Double.isNaN(p)) return;
+                String key = scope(sem, name);
+                double first = s.first.computeIfAbsent(key, _ -> p);
+                if (p - first >= GAIN) earn.accept(key);
+            });
+        }
+    }
+
+    // every graded class of a semester at A, with at least MIN_CLASSES of them
+    static final class AllASemester implements Badge<AllASemester.State> {
+        static final int MIN_CLASSES = 3;
+        static final class State {
+            Map<String, Boolean> isA = new HashMap<>(); // scope of each graded, GPA-bearing class -> at A
+            int[] graded = new int[5], as = new int[5];  // per semester
+        }
+        public String id() { return "allA"; }
+        public String title() { return "All-A Semester"; }
+        public String description() { return "Every class of a semester at A (" + MIN_CLASSES + " or more)"; }
+        public Class<State> stateType() { return State.class; }
+        public State start() { return new State(); }
+
+        public void apply(State s, GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Consumer<String> earn) {
+            if (e instanceof GradeEvents.ClassRemoved) {
+                set(s, e.semester(), e.className(), null);
+            } else {
+                eachClass(e, terms, (sem, name, cd) -> {
+                    Boolean a = null;
+                    if (!cd.passFail && graded(cd)) {
+                        double aPoints = cd.scale().pointsFor("A");
+                        a = cd.gpa() >= (Double.isNaN(aPoints) ? cd.scale().maxPoints : aPoints) - 1e-9;
+                    }
+                    set(s, sem, name, a);
+                });
+            }
+            int sem = e.semester();
+            for (int t = sem == 0 ? 1 : sem; t <= (sem == 0 ? 4 : sem); t++) {
+                if (t >= 1 && t <= 4 && s.graded[t] >= MIN_CLASSES && s.as[t] == s.graded[t]) earn.accept(String.valueOf(t));
+            }
+        }
+
+        private static void set(State s, int sem, String name, Boolean a) {
+            if (sem < 1 || sem > 4) return;
+            Boolean old = a == null ? s.isA.remove(scope(sem, name)) : s.isA.put(scope(sem, name), a);
+            if (old != null) {
+                s.graded[sem]--;
+                if (old) s.as[sem]--;
+            }
+            if (a != null) {
+                s.graded[sem]++;
+                if (a) s.as[sem]++;
+            }
+        }
+    }
+
+    // the last WINDOW new scores within SPREAD points of each other
+    static final class Consistency implements Badge<Consistency.State> {
+        static final int WINDOW = 8;
+        static final double SPREAD = 10;
+        static final class State { double[] last = new double[WINDOW]; int count; }
+        public String id() { return "steady"; }
+        public String title() { return "Steady Hand"; }
+        public String description() { return WINDOW + " assignments in a row within " + (int) SPREAD + " points of each other"; }
+        public Class<State> stateType() { return State.class; }
+        public State start() { return new State(); }
+
+        public void apply(State s, GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Consumer<String> earn) {
+            double score = addedScore(e, terms);
+            if (Double.isNaN(score)) return;
+            s.last[s.count++ % WINDOW] = score;
+            if (s.count < WINDOW) return;
+            double lo = Double.MAX_VALUE, hi = -Double.MAX_VALUE;
+            for (double v : s.last) {
+                lo = Math.min(lo, v);
+                hi = Math.max(hi, v);
+            }
+            if (hi - lo <= SPREAD) earn.accept("");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Backfilling badges for many existing accounts, on one thread and on the common pool; then the cost
+// of one change for a user with a lot of data, and a check that users built up change by change end
+// with the same badges as a backfill of their final data.
+// usage: java AchievementsBench [users] [changes]
+public class AchievementsBench {
+    public static void main(String[] args) {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> data = SnapshotBench.synthetic(userCount, new Random(3));
+        GradeStore.Reader reader = new GradeStore.Reader() {
+            @Override public <R> R read(String user, Function<Map<Integer, Map<String, CollegeGPATracker.ClassData>>, R> f) {
+                Map<Integer, Map<String, CollegeGPATracker.ClassData>> t = data.get(user);
+                if (t == null) return null;
+                synchronized (t) {
+                    return f.apply(t);
+                }
+            }
+        };
+
+        new Achievements(null, Achievements.standard(), (_, _) -> {})
+                .backfill(new ArrayList<>(data.keySet()).subList(0, Math.min(userCount, 2_000)), reader, ForkJoinPool.commonPool()); // warm-up
+        for (int threads : new int[]{1, ForkJoinPool.getCommonPoolParallelism()}) {
+            AtomicInteger earned = new AtomicInteger();
+            Achievements a = new Achievements(null, Achievements.standard(), (_, _) -> earned.incrementAndGet());
+            ForkJoinPool pool = threads == 1 ? new ForkJoinPool(1) : ForkJoinPool.commonPool();
+            long t0 = System.nanoTime();
+            int done = a.backfill(data.keySet(), reader, pool);
+            double ms = (System.nanoTime() - t0) / 1e6;
+            System.out.printf("backfill on %d thread(s): %,d users in %,.0f ms (%,.0f users/s), %,d badges%n",
+                    threads, done, ms, done / (ms / 1000), earned.get());
+            if (threads == 1) pool.shutdown();
+        }
+
+        // one busy user: 40 classes, then a stream of new scores
+        Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = new TreeMap<>();
+        Random rnd = new Random(7);
+        for (int sem = 1; sem <= 4; sem++) {
+            terms.put(sem, new TreeMap<>());
+            for (int c = 0; c < 10; c++) {
+                CollegeGPATracker.ClassData cd = new CollegeGPATracker.ClassData();
+                for (int i = 0; i < 20; i++) cd.add(i % 3, new CollegeGPATracker.Assignment("A" + i, 60 + rnd.nextInt(41), null));
+                terms.get(sem).put("CLASS " + c, cd);
+            }
+        }
+        Achievements live = new Achievements(null, Achievements.standard(), (_, _) -> {});
+        live.apply("busy", terms, List.of()); // first sight: backfilled
+        long total = 0;
+        for (int i = 0; i < changes; i++) {
+            int sem = 1 + rnd.nextInt(4);
+            String name = "CLASS " + rnd.nextInt(10);
+            CollegeGPATracker.ClassData cd = terms.get(sem).get(name);
+            CollegeGPATracker.Assignment added = new CollegeGPATracker.Assignment("Q" + i, 70 + rnd.nextInt(31), null);
+            cd.add(rnd.nextInt(3), added);
+            cd.historyPercent.add(cd.percent());
+            long t0 = System.nanoTime();
+            live.apply("busy", terms, List.of(new GradeEvents.AssignmentAdded(sem, name, added.id)));
+            total += System.nanoTime() - t0;
+        }
+        System.out.printf("one change for a user with %d classes: %,d ns (%,d changes)%n", 40, total / changes, changes);
+
+        // built change by change (in the order a replay would see them) vs backfilled from the result
+        int checked = Math.min(userCount, 2_000), mismatched = 0;
+        Achievements incremental = new Achievements(null, Achievements.standard(), (_, _) -> {});
+        Achievements backfilled = new Achievements(null, Achievements.standard(), (_, _) -> {});
+        for (String user : new ArrayList<>(data.keySet()).subList(0, checked)) {
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> full = data.get(user);
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> grown = new TreeMap<>();
+            incremental.apply(user, grown, List.of()); // starts empty
+            for (GradeEvents.Event e : Achievements.history(full)) {
+                grown.computeIfAbsent(e.semester(), _ -> new TreeMap<>());
+                if (e instanceof GradeEvents.ClassAdded) {
+                    grown.get(e.semester()).put(e.className(), full.get(e.semester()).get(e.className()));
+                }
+                incremental.apply(user, grown, List.of(e));
+            }
+            backfilled.apply(user, full, List.of());
+            if (!badges(incremental.earned(user)).equals(badges(backfilled.earned(user)))) mismatched++;
+        }
+        System.out.printf("change by change vs backfill: %,d users, %d mismatched%n", checked, mismatched);
+    }
+
+    private static List<String> badges(List<Achievements.Earned> earned) {
+        List<String> out = new ArrayList<>();
+        for (Achievements.Earned e : earned) out.add(e.badge() + "|" + e.scope());
+        out.sort(null);
+        return out;
+    }
+}
@@ -0,0 +1,402 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import jakarta.mail.MessagingException;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Grade alerts users set up for themselves: "a class drops below B", "semester 2 GPA under 3.0",
+ * checked as grades are saved.
+ *
+ * Evaluation is incremental. A save names the classes it changed, and only the rules that can see
+ * those classes run: each user's rules are indexed by the class name they watch, next to the rules
+ * for every class and the term and overall GPA rules. Each class's share of its term GPA (grade
+ * points x credits, credits) is kept, so the term and overall GPA after a change cost a subtraction
+ * and an addition, not a pass over the user's classes. Users without rules cost nothing.
+ *
+ * A rule fires when its condition starts to hold for a class or term, and again only after it has
+ * stopped holding in between. Alerts go to the app (inApp) and, for users who asked, out by email
+ * over one reused connection per burst. Rules, what is firing and the last few alerts are kept in
+ * data/alerts.json, which instances sharing data/ write under its lock: a save re-reads the file,
+ * writes back only the users changed here and picks up everyone else as the file has them.
+ */
+public class Alerts {
+    private static final int RECENT = 20; // alerts kept per user for the alerts window
+    private static final Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+
+    enum Kind { CLASS_BELOW_LETTER, CLASS_BELOW_PERCENT, TERM_GPA_BELOW, GPA_BELOW }
+
+    /** One rule. semester 0 = any semester, className null = any class; letter is for CLASS_BELOW_LETTER. */
+    record Rule(int id, Kind kind, double threshold, String letter, int semester, String className) {
+        boolean classRule() {
+            return kind == Kind.CLASS_BELOW_LETTER || kind == Kind.CLASS_BELOW_PERCENT;
+        }
+
+        String describe() {
+            String where = (className == null ? "any class" : className)
+                    + (semester == 0 ? "" : " in semester " + semester);
+            return switch (kind) {
+                case CLASS_BELOW_LETTER -> where.substring(0, 1).toUpperCase() + where.substring(1) + " drops below " + letter;
+                case CLASS_BELOW_PERCENT -> where.substring(0, 1).toUpperCase() + where.substring(1) + " drops below " + fmt(threshold, "%.1f") + "%";
+                case TERM_GPA_BELOW -> (semester == 0 ? "Any semester's" : "Semester " + semester) + " GPA drops below " + fmt(threshold, "%.2f");
+                case GPA_BELOW -> "Overall GPA drops below " + fmt(threshold, "%.2f");
+            };
+        }
+    }
+
+    /** A rule that just started to hold; semester / className say where (0 / null for the overall GPA). */
+    record Alert(String user, Rule rule, int semester, String className, double value, long at) {
+        String message() {
+            String now = switch (rule.kind) {
+                case CLASS_BELOW_LETTER, CLASS_BELOW_PERCENT -> className + " (semester " + semester + ") is at " + fmt(value, "%.1f") + "%";
+                case TERM_GPA_BELOW -> "Semester " + semester + " GPA is " + fmt(value, "%.2f");
+                case GPA_BELOW -> "Overall GPA is " + fmt(value, "%.2f");
+            };
+            String rule = rule().describe();
+            return now + " (alert: " + Character.toLowerCase(rule.charAt(0)) + rule.substring(1) + ")";
+        }
+    }
+
+    // one user's rules and what is firing; the index and GPA shares are rebuilt on first use
+    private static final class UserRules {
+        List<Rule> rules = new ArrayList<>();
+        Set<String> firing = new HashSet<>(); // "rule id:semester:class" (class "" for term / overall rules)
+        List<Alert> recent = new ArrayList<>();
+        int nextId = 1;
+
+        transient Map<String, List<Rule>> byClass;    // class rules watching one class name
+        transient List<Rule> anyClass, termRules, gpaRules;
+        transient Map<String, double[]> share;        // "semester\0class" -> {grade points x credits, credits}
+        transient double[] termPoints, termCredits;   // per semester 1..4, sums of the shares
+        transient boolean primed;
+
+        void reindex() {
+            byClass = new HashMap<>();
+            anyClass = new ArrayList<>();
+            termRules = new ArrayList<>();
+            gpaRules = new ArrayList<>();
+            for (Rule r : rules) {
+                if (r.classRule() && r.className != null) byClass.computeIfAbsent(r.className, _ -> new ArrayList<>()).add(r);
+                else if (r.classRule()) anyClass.add(r);
+                else if (r.kind == Kind.TERM_GPA_BELOW) termRules.add(r);
+                else gpaRules.add(r);
+            }
+            primed = false; // a new rule is checked against everything once
+        }
+    }
+
+    private final String file; // null = not persisted
+    private final Function<String, String> emailOf;
+    private final Predicate<String> wantsMail;
+    private final Consumer<Alert> inApp;
+    private final Map<String, UserRules> users = new ConcurrentHashMap<>();
+    private final Set<String> touched = ConcurrentHashMap.newKeySet(); // users changed here since the last save
+    private final LinkedBlockingQueue<Alert> outbox = new LinkedBlockingQueue<>();
+    private final ExecutorService mailer;
+
+    Alerts(String file, Function<String, String> emailOf, Predicate<String> wantsMail, Consumer<Alert> inApp) {
+        this.file = file;
+        this.emailOf = emailOf;
+        this.wantsMail = wantsMail;
+        this.inApp = inApp;
+        this.mailer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "alert-mail");
+            t.setDaemon(true);
+            return t;
+        });
+        load();
+    }
+
+    List<Rule> rules(String user) {
+        UserRules u = users.get(user);
+        if (u == null) return List.of();
+        synchronized (u) {
+            return List.copyOf(u.rules);
+        }
+    }
+
+    /** Newest first. */
+    List<Alert> recent(String user) {
+        UserRules u = users.get(user);
+        if (u == null) return List.of();
+        synchronized (u) {
+            return List.copyOf(u.recent.reversed());
+        }
+    }
+
+    /** Adds a rule and checks it against the user's grades right away (call under the user's lock). */
+    Rule addRule(String user, Kind kind, double threshold, String letter, int semester, String className,
+                 Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        UserRules u = users.computeIfAbsent(user, _ -> new UserRules());
+        Rule r;
+        synchronized (u) {
+            r = new Rule(u.nextId++, kind, threshold, letter, semester, className == null || className.isBlank() ? null : className.trim());
+            u.rules.add(r);
+            u.reindex();
+        }
+        touched.add(user);
+        changed(user, terms, null);
+        save();
+        return r;
+    }
+
+    void removeRule(String user, int id) {
+        UserRules u = users.get(user);
+        if (u == null) return;
+        synchronized (u) {
+            u.rules.removeIf(r -> r.id == id);
+            u.firing.removeIf(k -> k.startsWith(id + ":"));
+            u.reindex();
+        }
+        touched.add(user);
+        save();
+    }
+
+    /** The user is gone, or renamed: their rules move with them. */
+    void rename(String from, String to) {
+        UserRules u = users.remove(from);
+        if (u != null && to != null) users.put(to, u);
+        touched.add(from);
+        if (to != null) touched.add(to);
+        save();
+    }
+
+    // for AlertsBench: what is firing now
+    Set<String> firing(String user) {
+        UserRules u = users.get(user);
+        if (u == null) return Set.of();
+        synchronized (u) {
+            return Set.copyOf(u.firing);
+        }
+    }
+
+    /**
+     * The user's grades were saved (call under the user's lock); dirty = "semester\0class" keys that
+     * changed, null = any of them. Returns the alerts that fired, which have also been delivered.
+     */
+    List<Alert> changed(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Set<String> dirty) {
+        UserRules u = users.get(user);
+        if (u == null || terms == null) return List.of();
+        List<Alert> fired = new ArrayList<>();
+        synchronized (u) {
+            if (u.rules.isEmpty()) return List.of();
+            if (u.byClass == null) u.reindex();
+            touched.add(user); // what is firing may change
+            long now = System.currentTimeMillis();
+            boolean[] terms4 = new boolean[5];
+            if (!u.primed || dirty == null) {
+                // once per user (or per new rule): every class, and class alerts for classes that are gone are dropped
+                u.share = new HashMap<>();
+                u.termPoints = new double[5];
+                u.termCredits = new double[5];
+                Set<String> seen = new HashSet<>();
+                for (Map.Entry<Integer, Map<String, CollegeGPATracker.ClassData>> t : terms.entrySet()) {
+                    int sem = t.getKey();
+                    if (sem < 1 || sem > 4) continue;
+                    for (Map.Entry<String, CollegeGPATracker.ClassData> c : t.getValue().entrySet()) {
+                        seen.add(sem + ":" + c.getKey());
+                        updateShare(u, sem, c.getKey(), c.getValue());
+                        checkClass(user, u, sem, c.getKey(), c.getValue(), now, fired);
+                    }
+                }
+                u.firing.removeIf(k -> {
+                    String[] parts = k.split(":", 3);
+                    return !parts[2].isEmpty() && !seen.contains(parts[1] + ":" + parts[2]);
+                });
+                for (int sem = 1; sem <= 4; sem++) terms4[sem] = true;
+                u.primed = true;
+            } else {
+                for (String key : dirty) {
+                    int cut = key.indexOf('\u0000');
+                    int sem = Integer.parseInt(key.substring(0, cut));
+                    if (sem < 1 || sem > 4) continue;
+                    String name = key.substring(cut + 1);
+                    Map<String, CollegeGPATracker.ClassData> classes = terms.get(sem);
+                    CollegeGPATracker.ClassData cd = classes == null ? null : classes.get(name);
+                    updateShare(u, sem, name, cd);
+                    checkClass(user, u, sem, name, cd, now, fired);
+                    terms4[sem] = true;
+                }
+            }
+            double points = 0, credits = 0;
+            for (int sem = 1; sem <= 4; sem++) {
+                points += u.termPoints[sem];
+                credits += u.termCredits[sem];
+                if (!terms4[sem]) continue;
+                double gpa = u.termCredits[sem] > 0 ? u.termPoints[sem] / u.termCredits[sem] : Double.NaN;
+                for (Rule r : u.termRules) {
+                    if (r.semester == 0 || r.semester == sem) transition(user, u, r, sem, "", !Double.isNaN(gpa) && gpa < r.threshold, gpa, now, fired);
+                }
+            }
+            double gpa = credits > 0 ? points / credits : Double.NaN;
+            for (Rule r : u.gpaRules) transition(user, u, r, 0, "", !Double.isNaN(gpa) && gpa < r.threshold, gpa, now, fired);
+
+            for (Alert a : fired) {
+                u.recent.add(a);
+                if (u.recent.size() > RECENT) u.recent.remove(0);
+            }
+        }
+        if (!fired.isEmpty()) deliver(fired);
+        return fired;
+    }
+
+    // the class's part of its term GPA: graded, GPA-bearing classes only (as Cohort counts them)
+    private static void updateShare(UserRules u, int sem, String name, CollegeGPATracker.ClassData cd) {
+        String key = sem + "\u0000" + name;
+        double[] old = u.share.remove(key);
+        if (old != null) {
+            u.termPoints[sem] -= old[0];
+            u.termCredits[sem] -= old[1];
+        }
+        if (cd == null || cd.passFail || cd.credits <= 0 || !graded(cd)) return;
+        double[] now = {cd.gpa() * cd.credits, cd.credits};
+        u.share.put(key, now);
+        u.termPoints[sem] += now[0];
+        u.termCredits[sem] += now[1];
+    }
+
+    // only the rules that watch this class name, and the rules for every class
+    private void checkClass(String user, UserRules u, int sem, String name, CollegeGPATracker.ClassData cd, long now, List<Alert> fired) {
+        List<Rule> named = u.byClass.get(name);
+        if (named != null) for (Rule r : named) checkClass(user, u, r, sem, name, cd, now, fired);
+        for (Rule r : u.anyClass) checkClass(user, u, r, sem, name, cd, now, fired);
+    }
+
+    private void checkClass(String user, UserRules u, Rule r, int sem, String name, CollegeGPATracker.ClassData cd, long now, List<Alert> fired) {
+        if (r.semester != 0 && r.semester != sem) return;
+        boolean holds = false;
+        double percent = Double.NaN;
+        if (cd != null && !cd.passFail && graded(cd)) {
+            percent = cd.percent();
+            holds = r.kind == Kind.CLASS_BELOW_PERCENT ? percent < r.threshold : cd.gpa() < cd.scale().pointsFor(r.letter);
+        }
+        transition(user, u, r, sem, name, holds, percent, now, fired);
+    }
+
+    private static void transition(String user, UserRules u, Rule r, int sem, String name, boolean holds, double value,
+                                   long now, List<Alert> fired) {
+        String key = r.id + ":" + sem + ":" + name;
+        if (holds) {
+            if (u.firing.add(key)) fired.add(new Alert(user, r, sem, name.isEmpty() ? null : name, value, now));
+        } else {
+            u.firing.remove(key);
+        }
+    }
+
+    private static boolean graded(CollegeGPATracker.ClassData cd) {
+        for (CollegeGPATracker.Category c : cd.categories) if (c.size() > 0) return true;
+        return false;
+    }
+
+    private void deliver(List<Alert> fired) {
+        for (Alert a : fired) {
+            inApp.accept(a);
+            if (wantsMail.test(a.user)) outbox.add(a);
+        }
+        if (!outbox.isEmpty()) mailer.execute(this::sendMail);
+        save();
+    }
+
+    // whatever is queued, over one connection; an alert that cannot be sent is reported and dropped
+    private void sendMail() {
+        if (outbox.isEmpty()) return;
+        try (MailSender.Batch batch = new MailSender.Batch(100)) {
+            for (Alert a; (a = outbox.poll()) != null; ) {
+                String to = emailOf.apply(a.user);
+                if (to == null || to.isBlank()) continue;
+                try {
+                    batch.send(to, "GPA Tracker alert: " + a.rule.describe(), "Hi " + a.user + ",\n\n" + a.message() + "\n\n"
+                            + "Sent " + new SimpleDateFormat("yyyy-MM-dd HH:mm").format(new Date(a.at)) + ". "
+                            + "Change your alerts under User > Alerts.\n");
+                } catch (MessagingException e) {
+                    System.err.println("Alert email to " + to + " failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static String fmt(double v, String format) {
+        return String.format(Locale.ROOT, format, v);
+    }
+
+    private void load() {
+        if (file == null) return;
+        try {
+            merge(read(), Set.of());
+        } catch (Exception e) { e.printStackTrace(); }
+    }
+
+    // under the file's lock: the file as it is now, with the users changed here written over theirs
+    private synchronized void save() {
+        if (file == null) return;
+        try {
+            AtomicFiles.locked(file, () -> {
+                JsonObject root = read();
+                Set<String> mine = new HashSet<>(touched);
+                touched.removeAll(mine);
+                merge(root, mine);
+                for (String user : mine) {
+                    UserRules u = users.get(user);
+                    if (u == null) {
+                        root.remove(user);
+                        continue;
+                    }
+                    synchronized (u) {
+                        if (u.rules.isEmpty() && u.recent.isEmpty()) root.remove(user);
+                        else root.add(user, gson.toJsonTree(u));
+                    }
+                }
+                AtomicFiles.write(file, gson.toJson(root));
+                return null;
+            });
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    private JsonObject read() throws IOException {
+        String json = AtomicFiles.readIfExists(file);
+        JsonElement root = json == null ? null : JsonParser.parseString(json);
+        return root != null && root.isJsonObject() ? root.getAsJsonObject() : new JsonObject();
+    }
+
+    // users not changed here since the last save take the file's version (another instance's edits)
+    private void merge(JsonObject root, Set<String> mine) {
+        for (Map.Entry<String, JsonElement> e : root.entrySet()) {
+            if (mine.contains(e.getKey()) || touched.contains(e.getKey())) continue;
+            UserRules disk = gson.fromJson(e.getValue(), UserRules.class);
+            UserRules u = users.putIfAbsent(e.getKey(), disk);
+            if (u == null) continue;
+            synchronized (u) {
+                if (touched.contains(e.getKey())) continue; // changed here meanwhile
+                if (gson.toJsonTree(u).equals(e.getValue())) continue; // unchanged: keep the index and shares
+                u.rules = disk.rules;
+                u.firing = disk.firing;
+                u.recent = disk.recent;
+                u.nextId = disk.nextId;
+                u.reindex();
+            }
+        }
+        users.entrySet().removeIf(e -> !root.has(e.getKey()) && !mine.contains(e.getKey()) && !touched.contains(e.getKey())
+                && (!e.getValue().rules.isEmpty() || !e.getValue().recent.isEmpty())); // removed elsewhere
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Cost of checking alert rules after one class changes, as the number of classes grows, against
+// re-checking every class; then random edits with the alerts that fired compared to a fresh engine
+// that checks everything from scratch (they must agree on what is firing).
+// usage: java AlertsBench [edits]
+public class AlertsBench {
+    public static void main(String[] args) {
+        int edits = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        System.out.printf("%10s %16s %16s %8s%n", "classes", "incremental ns", "full check ns", "alerts");
+        for (int classes : new int[]{10, 100, 1_000, 10_000}) {
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = terms(classes, new Random(1));
+            AtomicInteger fired = new AtomicInteger();
+            Alerts alerts = new Alerts(null, _ -> null, _ -> false, _ -> fired.incrementAndGet());
+            rules(alerts, terms);
+            Random rnd = new Random(2);
+            long incremental = 0, full = 0;
+            int fullRuns = Math.max(10, edits / Math.max(1, classes / 10));
+            for (int i = 0; i < edits; i++) {
+                String key = edit(terms, rnd);
+                long t0 = System.nanoTime();
+                alerts.changed("alice", terms, Set.of(key));
+                incremental += System.nanoTime() - t0;
+                if (i < fullRuns) {
+                    t0 = System.nanoTime();
+                    alerts.changed("alice", terms, null);
+                    full += System.nanoTime() - t0;
+                }
+            }
+            // a fresh engine that sees everything once must agree with the incremental one
+            Alerts fresh = new Alerts(null, _ -> null, _ -> false, _ -> {});
+            rules(fresh, terms);
+            boolean agree = fresh.firing("alice").equals(alerts.firing("alice"));
+            System.out.printf("%,10d %,16d %,16d %8d%s%n", classes, incremental / edits, full / fullRuns, fired.get(),
+                    agree ? "" : "  MISMATCH with a full check");
+        }
+    }
+
+    // rules of every kind, including two that watch one class by name
+    private static void rules(Alerts alerts, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        alerts.addRule("alice", Alerts.Kind.CLASS_BELOW_LETTER, 0, "B", 0, null, terms);
+        alerts.addRule("alice", Alerts.Kind.CLASS_BELOW_PERCENT, 75, null, 0, null, terms);
+        alerts.addRule("alice", Alerts.Kind.CLASS_BELOW_PERCENT, 90, null, 0, "CLASS 3", terms);
+        alerts.addRule("alice", Alerts.Kind.CLASS_BELOW_LETTER, 0, "C", 2, "CLASS 7", terms);
+        alerts.addRule("alice", Alerts.Kind.TERM_GPA_BELOW, 3.0, null, 0, null, terms);
+        alerts.addRule("alice", Alerts.Kind.GPA_BELOW, 2.9, null, 0, null, terms);
+    }
+
+    private static Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms(int classes, Random rnd) {
+        Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = new HashMap<>();
+        for (int sem = 1; sem <= 4; sem++) terms.put(sem, new HashMap<>());
+        for (int c = 0; c < classes; c++) {
+            CollegeGPATracker.ClassData cd = new CollegeGPATracker.ClassData();
+            for (int a = 0; a < 6; a++) cd.add(a % 3, new CollegeGPATracker.Assignment("A" + a, 70 + rnd.nextInt(31), null));
+            terms.get(1 + c % 4).put("CLASS " + c, cd);
+        }
+        return terms;
+    }
+
+    // rescore one assignment of a random class; returns its "semester\0class" key
+    private static String edit(Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Random rnd) {
+        int sem = 1 + rnd.nextInt(4);
+        Map<String, CollegeGPATracker.ClassData> classes = terms.get(sem);
+        String name = "CLASS " + (sem - 1 + 4 * rnd.nextInt(classes.size())); // see terms(): class c is in semester 1 + c % 4
+        CollegeGPATracker.ClassData cd = classes.get(name);
+        CollegeGPATracker.Category cat = cd.categories.get(rnd.nextInt(3));
+        cd.update(cat.items.get(0).id, cat.items.get(0).name, 50 + rnd.nextInt(51));
+        return sem + "\u0000" + name;
+    }
+}
@@ -0,0 +1,102 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Load test for ApiServer: starts it in-process on an in-memory store, signs in a set of users and
+// has many concurrent clients (one virtual thread each) mix reads and writes for a fixed time.
+// Reports requests/s and p50/p90/p99/max latency.
+// usage: java ApiLoadTest [clients] [seconds] [users]
+public class ApiLoadTest {
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int userCount = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+        ApiServer server = new ApiServer(new GradeStore(), (u, p) -> "pw".equals(p) ? u : null, (_, _) -> {}).start(0);
+        String base = "http://localhost:" + server.port() + "/api/";
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        String[] tokens = new String[userCount];
+        for (int u = 0; u < userCount; u++) {
+            String body = call(http, "POST", base + "login", null, "{\"username\":\"student" + u + "\",\"password\":\"pw\"}");
+            tokens[u] = body.replaceAll(".*\"token\":\"([^\"]+)\".*", "$1");
+            call(http, "POST", base + "semesters/1/classes", tokens[u], "{\"name\":\"CS 101\",\"credits\":3}");
+            call(http, "POST", base + "semesters/1/classes", tokens[u], "{\"name\":\"MATH 210\",\"credits\":4}");
+        }
+
+        // warm up the server and the client, then measure
+        run(http, base, tokens, clients, 2);
+        long[] lat = run(http, base, tokens, clients, seconds);
+        Arrays.sort(lat);
+        System.out.printf("%d clients, %d users, %d s: %,d requests, %,.0f req/s%n",
+                clients, userCount, seconds, lat.length, lat.length / (double) seconds);
+        System.out.printf("latency p50 %.2f ms  p90 %.2f ms  p99 %.2f ms  max %.2f ms%n",
+                pct(lat, 0.50), pct(lat, 0.90), pct(lat, 0.99), lat[lat.length - 1] / 1e6);
+        server.stop();
+        System.exit(0);
+    }
+
+    // each client: 60% class reads, 20% GPA reads, 20% assignment adds; returns every latency in ns
+    private static long[] run(HttpClient http, String base, String[] tokens, int clients, int seconds) throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            results.add(pool.submit(() -> {
+                SplittableRandom rnd = new SplittableRandom(seed);
+                long[] out = new long[1024];
+                int n = 0;
+                while (System.nanoTime() < deadline) {
+                    String token = tokens[rnd.nextInt(tokens.length)];
+                    int roll = rnd.nextInt(10);
+                    long t0 = System.nanoTime();
+                    if (roll < 6) {
+                        call(http, "GET", base + "semesters/1/classes/CS%20101", token, null);
+                    } else if (roll < 8) {
+                        call(http, "GET", base + "gpa", token, null);
+                    } else {
+                        call(http, "POST", base + "semesters/1/classes/CS%20101/assignments", token,
+                                "{\"category\":\"Homework\",\"name\":\"HW\",\"score\":" + (60 + rnd.nextInt(41)) + "}");
+                    }
+                    if (n == out.length) out = Arrays.copyOf(out, n * 2);
+                    out[n++] = System.nanoTime() - t0;
+                }
+                return Arrays.copyOf(out, n);
+            }));
+        }
+        List<long[]> parts = new ArrayList<>();
+        int total = 0;
+        for (Future<long[]> f : results) { parts.add(f.get()); total += parts.get(parts.size() - 1).length; }
+        pool.shutdown();
+        long[] all = new long[total];
+        int k = 0;
+        for (long[] p : parts) { System.arraycopy(p, 0, all, k, p.length); k += p.length; }
+        return all;
+    }
+
+    private static String call(HttpClient http, String method, String url, String token, String json) throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(url))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json));
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        HttpResponse<String> r = http.send(b.build(), HttpResponse.BodyHandlers.ofString());
+        if (r.statusCode() >= 300) throw new IllegalStateException(method + " " + url + " -> " + r.statusCode() + " " + r.body());
+        return r.body();
+    }
+
+    private static double pct(long[] sorted, double q) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(q * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,374 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Headless JSON API over a GradeStore, for kiosks and web front ends. Every request runs on its own
+ * virtual thread; the store's per-user locks make concurrent requests safe.
+ *
+ *   POST   /api/login                                  {"username","password"} -> {"token","user"}
+ *   POST   /api/logout
+ *   GET    /api/gpa                                    -> {"gpa"}
+ *   GET    /api/cohort                                 -> {"gpaPercentile","classes":[{"name","percent","percentile","of"}]}
+ *   GET    /api/stats                                  -> {"resident","hits","misses","evictions","writeBacks","hitRate"}
+ *   GET    /api/semesters/{n}/classes                  -> [{"name","credits","percent","gpa"}]
+ *   POST   /api/semesters/{n}/classes                  {"name","credits"}
+ *   GET    /api/semesters/{n}/classes/{class}          -> class with categories and assignments
+ *   DELETE /api/semesters/{n}/classes/{class}
+ *   POST   /api/semesters/{n}/classes/{class}/assignments        {"category","name","score"} -> {"id"}
+ *   PUT    /api/semesters/{n}/classes/{class}/assignments/{id}   {"name","score"}
+ *   DELETE /api/semesters/{n}/classes/{class}/assignments/{id}
+ *
+ * Everything but login needs "Authorization: Bearer <token>".
+ * Too many logins from one address or for one account answer 429 with a Retry-After header.
+ */
+public class ApiServer {
+    private static final long TOKEN_TTL_MILLIS = 12L * 60 * 60 * 1000;
+
+    private final GradeStore store;
+    private final BiFunction<String, String, String> login; // (username or email, password) -> user or null
+    private final BiConsumer<String, Set<String>> persist;  // called after a user's data changed, with the "sem\0class" keys touched
+    private final Cohort cohort;                            // null = no /api/cohort
+    private final Map<String, Token> tokens = new ConcurrentHashMap<>();
+    // sign-ins per source address; the per-account limit is in the login function itself
+    private final RateLimiter loginsBySource = new RateLimiter(Integer.getInteger("gpa.loginsPerMinute", 120), 60_000, 50_000);
+    private final SecureRandom random = new SecureRandom();
+    private final Gson gson = new Gson();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private record Token(GradeStore.Session session, long expiresAt) {}
+
+    // maps to an HTTP status in handle()
+    private static final class ApiException extends RuntimeException {
+        final int status;
+        ApiException(int status, String message) { super(message); this.status = status; }
+    }
+
+    ApiServer(GradeStore store, BiFunction<String, String, String> login, BiConsumer<String, Set<String>> persist) {
+        this(store, login, persist, null);
+    }
+
+    ApiServer(GradeStore store, BiFunction<String, String, String> login, BiConsumer<String, Set<String>> persist, Cohort cohort) {
+        this.store = store;
+        this.login = login;
+        this.persist = persist;
+        this.cohort = cohort;
+    }
+
+    ApiServer start(int port) throws IOException {
+        // headers and body go out as separate small writes; without TCP_NODELAY each response waits
+        // ~40 ms on Nagle + the client's delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        server.start();
+        return this;
+    }
+
+    int port() { return server.getAddress().getPort(); }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            Object body = route(ex.getRequestMethod(), segments(ex), ex);
+            send(ex, body == null ? 204 : 200, body);
+        } catch (ApiException e) {
+            send(ex, e.status, Map.of("error", e.getMessage()));
+        } catch (RateLimiter.Limited e) {
+            ex.getResponseHeaders().set("Retry-After", String.valueOf(Math.max(1, (e.retryAfterMillis + 999) / 1000)));
+            send(ex, 429, Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) { // requests are checked as they are read (ApiException): anything else is ours
+            e.printStackTrace();
+            send(ex, 500, Map.of("error", "Internal error"));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private Object route(String method, List<String> p, HttpExchange ex) throws IOException {
+        if (p.size() == 1 && p.get(0).equals("login") && method.equals("POST")) return login(json(ex), ex);
+        GradeStore.Session s = session(ex);
+        if (p.size() == 1 && p.get(0).equals("logout") && method.equals("POST")) {
+            tokens.remove(bearer(ex));
+            return null;
+        }
+        if (p.size() == 1 && p.get(0).equals("gpa") && method.equals("GET")) return Map.of("gpa", s.overallGpa());
+        if (p.size() == 1 && p.get(0).equals("cohort") && method.equals("GET")) return cohortView(s.user);
+        if (p.size() == 1 && p.get(0).equals("stats") && method.equals("GET")) return statsView();
+        if (p.size() < 3 || !p.get(0).equals("semesters") || !p.get(2).equals("classes")) throw notFound();
+        int sem = semester(p.get(1));
+
+        if (p.size() == 3) {
+            if (method.equals("GET")) return s.read(t -> classList(t.get(sem)));
+            if (method.equals("POST")) {
+                JsonObject b = json(ex);
+                String name = string(b, "name").trim();
+                if (name.isEmpty()) throw new ApiException(400, "Class name is required");
+                double credits = b.has("credits") ? number(b, "credits") : 3;
+                if (credits < 0 || credits != Math.rint(credits)) throw new ApiException(400, "Credits must be a whole number >= 0");
+                if (!s.addClass(sem, name, (int) credits)) throw new ApiException(409, "Class already exists");
+                persist.accept(s.user, touched(sem, name));
+                return Map.of("name", name);
+            }
+            throw notAllowed();
+        }
+        String cls = p.get(3);
+        if (p.size() == 4) {
+            if (method.equals("GET")) return inClass(s, sem, cls, cd -> classDetail(cls, cd));
+            if (method.equals("DELETE")) {
+                if (!s.removeClass(sem, cls)) throw notFound();
+                persist.accept(s.user, touched(sem, cls));
+                return null;
+            }
+            throw notAllowed();
+        }
+        if (!p.get(4).equals("assignments")) throw notFound();
+        if (p.size() == 5 && method.equals("POST")) {
+            JsonObject b = json(ex);
+            String category = string(b, "category"), name = string(b, "name");
+            double score = score(b);
+            int id = inClass(s, sem, cls, cd -> {
+                if (cd.indexOf(category) < 0) throw new ApiException(400, "No category " + category + " in " + cls);
+                return s.addAssignment(sem, cls, category, name, score);
+            });
+            persist.accept(s.user, touched(sem, cls));
+            return Map.of("id", id);
+        }
+        if (p.size() != 6) throw notAllowed();
+        int id;
+        try { id = Integer.parseInt(p.get(5)); } catch (NumberFormatException e) { throw notFound(); }
+        boolean ok;
+        if (method.equals("PUT")) {
+            JsonObject b = json(ex);
+            String name = string(b, "name");
+            double score = score(b);
+            ok = inClass(s, sem, cls, _ -> s.updateAssignment(sem, cls, id, name, score));
+        } else if (method.equals("DELETE")) {
+            ok = inClass(s, sem, cls, _ -> s.removeAssignment(sem, cls, id));
+        } else {
+            throw notAllowed();
+        }
+        if (!ok) throw notFound();
+        persist.accept(s.user, touched(sem, cls));
+        return null;
+    }
+
+    private Object login(JsonObject b, HttpExchange ex) {
+        String user;
+        try {
+            loginsBySource.acquire(ex.getRemoteAddress().getAddress().getHostAddress());
+            user = login.apply(string(b, "username").trim(), string(b, "password"));
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            throw new ApiException(503, "Too many sign-ins at once, try again"); // password hashing pool is full
+        }
+        if (user == null) throw new ApiException(401, "Invalid credentials");
+        long now = System.currentTimeMillis();
+        tokens.values().removeIf(t -> t.expiresAt < now);
+        byte[] raw = new byte[24];
+        random.nextBytes(raw);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+        tokens.put(token, new Token(store.open(user), now + TOKEN_TTL_MILLIS));
+        return Map.of("token", token, "user", user);
+    }
+
+    private GradeStore.Session session(HttpExchange ex) {
+        String t = bearer(ex);
+        Token tok = t == null ? null : tokens.get(t);
+        if (tok == null) throw new ApiException(401, "Not signed in");
+        if (tok.expiresAt < System.currentTimeMillis()) {
+            tokens.remove(t);
+            throw new ApiException(401, "Session expired");
+        }
+        return tok.session;
+    }
+
+    private static String bearer(HttpExchange ex) {
+        String h = ex.getRequestHeaders().getFirst("Authorization");
+        return h != null && h.startsWith("Bearer ") ? h.substring(7).trim() : null;
+    }
+
+    // ===== JSON shapes =====
+    // resident-data cache counters of the store (see GradeStore.Stats)
+    private Map<String, Object> statsView() {
+        GradeStore.Stats st = store.stats();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("resident", st.resident());
+        m.put("hits", st.hits());
+        m.put("misses", st.misses());
+        m.put("evictions", st.evictions());
+        m.put("writeBacks", st.writeBacks());
+        m.put("hitRate", orNull(st.hitRate()));
+        return m;
+    }
+
+    // percentiles are left out where the cohort is too small to rank in (see Cohort.MIN_SIZE)
+    private Map<String, Object> cohortView(String user) {
+        if (cohort == null) throw notFound();
+        Map<String, Object> m = new LinkedHashMap<>();
+        Cohort.Entry mine = cohort.entry(user);
+        if (mine != null && !Double.isNaN(mine.gpa())) m.put("gpaPercentile", orNull(cohort.gpaRank(mine.gpa())));
+        List<Map<String, Object>> classes = new ArrayList<>();
+        for (Map.Entry<String, double[]> e : cohort.classRanks(user).entrySet()) {
+            Map<String, Object> c = new LinkedHashMap<>();
+            c.put("name", e.getKey());
+            c.put("percent", e.getValue()[0]);
+            c.put("percentile", orNull(e.getValue()[1]));
+            c.put("of", (long) e.getValue()[2]);
+            classes.add(c);
+        }
+        m.put("classes", classes);
+        return m;
+    }
+
+    private static Double orNull(double v) {
+        return Double.isNaN(v) ? null : v;
+    }
+
+    private static List<Map<String, Object>> classList(Map<String, CollegeGPATracker.ClassData> classes) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Map.Entry<String, CollegeGPATracker.ClassData> e : classes.entrySet()) {
+            CollegeGPATracker.ClassData cd = e.getValue();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("name", e.getKey());
+            m.put("credits", cd.credits);
+            m.put("percent", cd.percent());
+            m.put("gpa", cd.gpa());
+            m.put("passFail", cd.passFail);
+            out.add(m);
+        }
+        return out;
+    }
+
+    private static Map<String, Object> classDetail(String name, CollegeGPATracker.ClassData cd) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("name", name);
+        m.put("credits", cd.credits);
+        m.put("percent", cd.percent());
+        m.put("gpa", cd.gpa());
+        m.put("letter", cd.scale().toLetter(cd.percent()));
+        List<Map<String, Object>> cats = new ArrayList<>();
+        for (CollegeGPATracker.Category c : cd.categories) {
+            Map<String, Object> cm = new LinkedHashMap<>();
+            cm.put("name", c.name);
+            cm.put("weight", c.weight);
+            cm.put("average", c.average());
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (CollegeGPATracker.Assignment a : c.items) {
+                items.add(Map.of("id", a.id, "name", a.name, "score", a.score));
+            }
+            cm.put("assignments", items);
+            cats.add(cm);
+        }
+        m.put("categories", cats);
+        return m;
+    }
+
+    // ===== plumbing =====
+    private static List<String> segments(HttpExchange ex) {
+        String path = ex.getRequestURI().getRawPath().substring("/api/".length());
+        List<String> out = new ArrayList<>();
+        for (String seg : path.split("/")) {
+            if (!seg.isEmpty()) out.add(URLDecoder.decode(seg, StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    // the class a request changed, as the save's dirty set: only it is written over another instance's copy
+    private static Set<String> touched(int semester, String className) {
+        return Set.of(semester + "\u0000" + className);
+    }
+
+    private static int semester(String s) {
+        try {
+            int n = Integer.parseInt(s);
+            if (n >= 1 && n <= 4) return n;
+        } catch (NumberFormatException ignored) {}
+        throw new ApiException(404, "No semester " + s);
+    }
+
+    /*
+     * f on the class under the user's lock, 404 if the semester has no such class. Session calls made
+     * inside f take the same (reentrant) lock, so the class can't go away between the check and them.
+     */
+    private static <T> T inClass(GradeStore.Session s, int sem, String cls, Function<CollegeGPATracker.ClassData, T> f) {
+        return s.read(t -> {
+            CollegeGPATracker.ClassData cd = t.get(sem).get(cls);
+            if (cd == null) throw new ApiException(404, "No class " + cls + " in semester " + sem);
+            return f.apply(cd);
+        });
+    }
+
+    private static double score(JsonObject b) {
+        double score = number(b, "score");
+        if (score < 0 || Double.isNaN(score) || Double.isInfinite(score)) throw new ApiException(400, "Score must be a number >= 0");
+        return score;
+    }
+
+    private static String string(JsonObject b, String field) {
+        JsonElement e = b.get(field);
+        if (e == null || !e.isJsonPrimitive()) throw new ApiException(400, "\"" + field + "\" is required");
+        return e.getAsString();
+    }
+
+    private static double number(JsonObject b, String field) {
+        JsonElement e = b.get(field);
+        if (e == null || !e.isJsonPrimitive() || !e.getAsJsonPrimitive().isNumber()) {
+            throw new ApiException(400, "\"" + field + "\" must be a number");
+        }
+        return e.getAsDouble();
+    }
+
+    private static JsonObject json(HttpExchange ex) throws IOException {
+        String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            JsonElement e = JsonParser.parseString(body);
+            if (e.isJsonObject()) return e.getAsJsonObject();
+        } catch (JsonParseException ignored) {}
+        throw new ApiException(400, "Bad request body");
+    }
+
+    private void send(HttpExchange ex, int status, Object body) throws IOException {
+        if (body == null) {
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) { out.write(bytes); }
+    }
+
+    private static ApiException notFound() { return new ApiException(404, "Not found"); }
+
+    private static ApiException notAllowed() { return new ApiException(405, "Method not allowed"); }
+}
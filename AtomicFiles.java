@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Crash-safe file replacement. The new content goes to a temp file in the same directory, is
+ * fsynced, and is then renamed over the target, so a crash leaves either the old file or the new
+ * one, never a truncated one (which is what FileWriter gives you: it truncates before writing).
+ */
+public class AtomicFiles {
+    private static final ConcurrentMap<Path, Object> monitors = new ConcurrentHashMap<>();
+
+    interface IOAction<T> {
+        T run() throws IOException;
+    }
+
+    static void write(Path target, byte[] data) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        // dot-prefixed so directory watchers matching *.json never see it
+        Path tmp = Files.createTempFile(dir, "." + target.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.wrap(data);
+                while (buf.hasRemaining()) ch.write(buf);
+                ch.force(true);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        syncDirectory(dir);
+    }
+
+    static void write(String path, String text) throws IOException {
+        write(Paths.get(path), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Runs action holding an exclusive lock on "<path>.lock", for a read-modify-write of a file that
+     * other instances sharing data/ rewrite too (write() replaces the file, so the lock can't live on
+     * it). A FileLock belongs to the whole JVM, so threads of this one take turns on a monitor first.
+     */
+    static <T> T locked(String path, IOAction<T> action) throws IOException {
+        Path lockFile = Paths.get(path + ".lock").toAbsolutePath();
+        synchronized (monitors.computeIfAbsent(lockFile, _ -> new Object())) {
+            Files.createDirectories(lockFile.getParent());
+            try (FileChannel ch = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = ch.lock();
+                try {
+                    return action.run();
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    /** The file's text, or null if it doesn't exist. */
+    static String readIfExists(String path) throws IOException {
+        Path p = Paths.get(path);
+        return Files.exists(p) ? Files.readString(p) : null;
+    }
+
+    // make the rename itself durable; not supported on every platform (e.g. Windows), where it's skipped
+    private static void syncDirectory(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {}
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rolling backups of the data directory, taken on a low-priority background thread.
+ *
+ * One backup is a single gzip stream: a header, then every file as (relative path, length, bytes,
+ * CRC32), an end marker, and a SHA-256 of everything before it. Files are read through a throttle,
+ * so a large store never saturates the disk, and a run is skipped when nothing changed since the
+ * last one. Each archive is written to a temp name, fsynced, renamed into place, and then read back
+ * and fully verified before the oldest archives beyond `keep` are deleted.
+ *
+ * usage: java Backups verify <archive> | restore <archive> <dir> | now [dataDir] [backupDir]
+ */
+public class Backups {
+    private static final int MAGIC = 0x47504142; // "GPAB"
+    private static final int VERSION = 1;
+    private static final String PREFIX = "data-";
+    private static final String SUFFIX = ".gpab.gz";
+
+    private final Path dataDir;
+    private final Path backupDir;
+    private final int keep;
+    private final long bytesPerSecond;
+    private ScheduledExecutorService timer;
+    private String lastFingerprint;
+
+    /** Summary of a verified archive. */
+    static final class Manifest {
+        final long createdAt;
+        final List<String> files = new ArrayList<>();
+        long bytes;
+        Manifest(long createdAt) { this.createdAt = createdAt; }
+    }
+
+    Backups(Path dataDir, Path backupDir, int keep, long bytesPerSecond) {
+        this.dataDir = dataDir;
+        this.backupDir = backupDir;
+        this.keep = keep;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    Backups start(long periodMinutes) {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "backups");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                backupNow();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Backup failed: " + e.getMessage());
+            }
+        }, 1, periodMinutes, TimeUnit.MINUTES);
+        return this;
+    }
+
+    void stop() {
+        if (timer != null) timer.shutdown();
+    }
+
+    /** Takes a backup unless nothing changed since the last one; returns the archive or null. */
+    synchronized Path backupNow() throws IOException {
+        List<Path> files = listFiles(dataDir);
+        String fingerprint = fingerprint(files);
+        if (fingerprint.equals(lastFingerprint)) return null;
+
+        Files.createDirectories(backupDir);
+        long now = System.currentTimeMillis();
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(now));
+        Path target = backupDir.resolve(PREFIX + stamp + SUFFIX);
+        Path tmp = backupDir.resolve("." + target.getFileName() + ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                MessageDigest sha = sha256();
+                OutputStream file = Channels.newOutputStream(ch); // not closed here: closing would close ch before force()
+                GZIPOutputStream gz = new GZIPOutputStream(new BufferedOutputStream(file, 1 << 16), 1 << 16);
+                DataOutputStream out = new DataOutputStream(new DigestOutputStream(gz, sha));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(now);
+                byte[] buf = new byte[1 << 16];
+                Pacer pacer = new Pacer(bytesPerSecond);
+                for (Path p : files) {
+                    byte[] data;
+                    try (InputStream in = pacer.wrap(Files.newInputStream(p))) {
+                        data = in.readAllBytes(); // one file at a time; files are replaced atomically, so this is a consistent copy
+                    } catch (NoSuchFileException gone) {
+                        continue;
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    out.writeByte(1);
+                    out.writeUTF(dataDir.relativize(p).toString().replace('\\', '/'));
+                    out.writeLong(data.length);
+                    for (int off = 0; off < data.length; off += buf.length) {
+                        out.write(data, off, Math.min(buf.length, data.length - off));
+                    }
+                    out.writeLong(crc.getValue());
+                }
+                out.writeByte(0);
+                out.flush();
+                gz.write(sha.digest()); // trailer, outside the digest
+                gz.finish();
+                gz.flush();
+                ch.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        try {
+            verify(target);
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw new IOException("Backup did not verify, removed: " + e.getMessage(), e);
+        }
+        lastFingerprint = fingerprint;
+        rotate();
+        return target;
+    }
+
+    /** Reads the whole archive and checks every file's CRC32 and the overall SHA-256. */
+    static Manifest verify(Path archive) throws IOException {
+        return read(archive, null);
+    }
+
+    /** Verifies the archive, then writes its files under `into` (atomically, file by file). */
+    static Manifest restore(Path archive, Path into) throws IOException {
+        verify(archive); // never restore half of a damaged archive
+        return read(archive, into);
+    }
+
+    private static Manifest read(Path archive, Path into) throws IOException {
+        MessageDigest sha = sha256();
+        try (InputStream raw = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(archive), 1 << 16), 1 << 16)) {
+            DataInputStream in = new DataInputStream(new DigestInputStream(raw, sha));
+            if (in.readInt() != MAGIC) throw new IOException("Not a backup archive");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported backup version " + version);
+            Manifest m = new Manifest(in.readLong());
+            while (in.readByte() == 1) {
+                String name = in.readUTF();
+                long len = in.readLong();
+                if (len < 0 || len > Integer.MAX_VALUE) throw new IOException("Bad length for " + name);
+                byte[] data = in.readNBytes((int) len);
+                if (data.length != len) throw new IOException("Truncated at " + name);
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                if (crc.getValue() != in.readLong()) throw new IOException("Checksum mismatch in " + name);
+                m.files.add(name);
+                m.bytes += len;
+                if (into != null) {
+                    Path out = into.resolve(name).normalize();
+                    if (!out.startsWith(into.normalize())) throw new IOException("Refusing path outside target: " + name);
+                    AtomicFiles.write(out, data);
+                }
+            }
+            byte[] expected = sha.digest();
+            byte[] actual = raw.readNBytes(expected.length);
+            if (!Arrays.equals(expected, actual)) throw new IOException("Archive digest mismatch");
+            return m;
+        }
+    }
+
+    // newest `keep` archives survive
+    private void rotate() throws IOException {
+        List<Path> archives = new ArrayList<>();
+        try (Stream<Path> s = Files.list(backupDir)) {
+            s.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.startsWith(PREFIX) && n.endsWith(SUFFIX);
+            }).sorted().forEach(archives::add);
+        }
+        for (int i = 0; i < archives.size() - keep; i++) Files.deleteIfExists(archives.get(i));
+    }
+
+    // regular files under dir, sorted, minus lock files and in-flight temp files
+    private static List<Path> listFiles(Path dir) throws IOException {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.filter(Files::isRegularFile).filter(p -> {
+                String n = p.getFileName().toString();
+                return !n.endsWith(".lock") && !n.startsWith(".");
+            }).sorted().forEach(out::add);
+        }
+        return out;
+    }
+
+    private static String fingerprint(List<Path> files) {
+        StringBuilder sb = new StringBuilder();
+        for (Path p : files) {
+            try {
+                BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+                sb.append(p).append('|').append(a.size()).append('|').append(a.lastModifiedTime().toMillis()).append('\n');
+            } catch (IOException ignored) {}
+        }
+        return sb.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // caps read bandwidth for a whole run: sleeps whenever the bytes read so far are ahead of the allowed rate
+    private static final class Pacer {
+        private static final long BURST = 256 * 1024; // the first bytes of a run never wait
+        private final long rate;
+        private final long start = System.nanoTime();
+        private long total;
+
+        Pacer(long bytesPerSecond) {
+            this.rate = bytesPerSecond;
+        }
+
+        InputStream wrap(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) pace(1);
+                    return b;
+                }
+
+                @Override public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, rate > 0 ? (int) Math.min(len, Math.max(4096, rate / 10)) : len);
+                    if (n > 0) pace(n);
+                    return n;
+                }
+            };
+        }
+
+        private void pace(int n) throws IOException {
+            total += n;
+            if (rate <= 0 || total <= BURST) return;
+            long dueNanos = (long) ((total - BURST) * 1e9 / rate);
+            long ahead = dueNanos - (System.nanoTime() - start);
+            if (ahead > 1_000_000) {
+                try {
+                    Thread.sleep(ahead / 1_000_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Backup interrupted");
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String mode = args.length > 0 ? args[0] : "now";
+        switch (mode) {
+            case "verify" -> {
+                Manifest m = verify(Paths.get(args[1]));
+                System.out.printf("OK: %d files, %,d bytes, taken %tF %<tT%n", m.files.size(), m.bytes, m.createdAt);
+            }
+            case "restore" -> {
+                Manifest m = restore(Paths.get(args[1]), Paths.get(args[2]));
+                System.out.printf("Restored %d files (%,d bytes) into %s%n", m.files.size(), m.bytes, args[2]);
+            }
+            default -> {
+                Path data = Paths.get(args.length > 1 ? args[1] : "data");
+                Path dir = Paths.get(args.length > 2 ? args[2] : "backups");
+                long start = System.nanoTime();
+                Path p = new Backups(data, dir, 10, 0).backupNow();
+                System.out.printf("Wrote %s (%,d bytes) in %.0f ms, verified%n", p, Files.size(p), (System.nanoTime() - start) / 1e6);
+            }
+        }
+    }
+}
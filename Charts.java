@@ -0,0 +1,409 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * The dashboard's charts (category breakdown pie, percent trend, GPA by semester) drawn once, onto
+ * either a Swing component, an off-screen PNG or an SVG document. The drawing code only talks to a
+ * Pen, so the panels and the exported images cannot drift apart.
+ *
+ * PNGs are drawn into pooled off-screen images, one per size per rendering thread at most, each with
+ * its own encoder state: nothing is allocated per chart but the encoded bytes, and nothing is shared
+ * between threads, so export() over many students runs on every core of its pool. Works with
+ * -Djava.awt.headless=true (no display needed).
+ */
+public final class Charts {
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+
+    private Charts() {}
+
+    /** What the charts draw with; x, y in pixels from the top left, angles in degrees as Arc2D. */
+    interface Pen {
+        void color(Color c);
+        void fillPie(double x, double y, double w, double h, double start, double extent);
+        void fillOval(double x, double y, double w, double h);
+        void fillRect(double x, double y, double w, double h);
+        void line(double x1, double y1, double x2, double y2, float width);
+        void text(String s, double x, double y, boolean bold);
+    }
+
+    // ===== the charts =====
+
+    /** Category breakdown: a pie of values (percent averages) with a legend to its right. */
+    static void pie(Pen p, int w, int h, String[] labels, double[] values, Theme.Palette pal) {
+        int size = Math.min(w, h) - 40;
+        int x = 20, y = 20;
+        double total = 0;
+        for (double v : values) total += v;
+        double sum = Math.max(1, total);
+
+        double start = 0;
+        Color[] sliceColors = pal.series();
+        int lx = x + size + 12;
+        int ly = y;
+        for (int i = 0; i < values.length; i++) {
+            Color c = sliceColors[i % sliceColors.length];
+            double angle = 360 * (values[i] / sum);
+            p.color(c);
+            p.fillPie(x, y, size, size, start, angle);
+            start += angle;
+
+            // legend
+            p.fillOval(lx, ly, 12, 12);
+            p.color(pal.text());
+            p.text(labels[i] + "  " + (int) Math.round(values[i]) + " %", lx + 18, ly + 11, false);
+            ly += 20;
+        }
+    }
+
+    /** Class percent over time, 0 to 100. */
+    static void trend(Pen p, int width, int height, List<Double> data, Theme.Palette pal) {
+        int w = width - 30, h = height - 30;
+        int ox = 15, oy = 10;
+
+        // axes
+        p.color(pal.grid());
+        p.line(ox, oy + h, ox + w, oy + h, 1f);
+        p.line(ox, oy, ox, oy + h, 1f);
+
+        if (data == null || data.size() < 2) return;
+        p.color(pal.accent());
+        int n = data.size();
+        for (int i = 1; i < n; i++) {
+            int x1 = ox + (i - 1) * w / (n - 1);
+            int x2 = ox + i * w / (n - 1);
+            int y1 = oy + h - (int) Math.round((data.get(i - 1) / 100.0) * h);
+            int y2 = oy + h - (int) Math.round((data.get(i) / 100.0) * h);
+            p.line(x1, y1, x2, y2, 2f);
+        }
+    }
+
+    /** GPA of each semester (index 1-4; NaN = no graded classes) as bars from 0 to max. */
+    static void semesterBars(Pen p, int width, int height, double[] gpa, double max, Theme.Palette pal) {
+        int w = width - 40, h = height - 50;
+        int ox = 25, oy = 20;
+
+        p.color(pal.grid());
+        p.line(ox, oy + h, ox + w, oy + h, 1f);
+        p.line(ox, oy, ox, oy + h, 1f);
+
+        int slot = w / 4, bar = slot * 3 / 5;
+        for (int sem = 1; sem <= 4; sem++) {
+            int bx = ox + (sem - 1) * slot + (slot - bar) / 2;
+            p.color(pal.muted());
+            p.text("Sem " + sem, bx, oy + h + 18, false);
+            if (Double.isNaN(gpa[sem])) continue;
+            int bh = (int) Math.round(Math.min(1, gpa[sem] / max) * h);
+            p.color(pal.series()[(sem - 1) % pal.series().length]);
+            p.fillRect(bx, oy + h - bh, bar, bh);
+            p.color(pal.text());
+            p.text(String.format(Locale.ROOT, "%.2f", gpa[sem]), bx, oy + h - bh - 4, true);
+        }
+    }
+
+    // ===== pens =====
+
+    /** Draws on a Graphics2D: a component's, or an off-screen image's. */
+    static final class G2Pen implements Pen {
+        private final Graphics2D g;
+        private final Font plain, bold;
+
+        G2Pen(Graphics2D g) {
+            this.g = g;
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            this.plain = g.getFont() != null ? g.getFont() : FONT;
+            this.bold = plain.deriveFont(Font.BOLD);
+        }
+
+        public void color(Color c) { g.setColor(c); }
+        public void fillPie(double x, double y, double w, double h, double start, double extent) {
+            g.fill(new Arc2D.Double(x, y, w, h, start, extent, Arc2D.PIE));
+        }
+        public void fillOval(double x, double y, double w, double h) { g.fill(new Ellipse2D.Double(x, y, w, h)); }
+        public void fillRect(double x, double y, double w, double h) { g.fill(new Rectangle2D.Double(x, y, w, h)); }
+        public void line(double x1, double y1, double x2, double y2, float width) {
+            g.setStroke(new BasicStroke(width));
+            g.draw(new Line2D.Double(x1, y1, x2, y2));
+        }
+        public void text(String s, double x, double y, boolean strong) {
+            g.setFont(strong ? bold : plain);
+            g.drawString(s, (float) x, (float) y);
+        }
+    }
+
+    /** Writes SVG elements; svg() wraps them in a document. */
+    static final class SvgPen implements Pen {
+        private final StringBuilder out;
+        private String fill = "#000000";
+
+        SvgPen(StringBuilder out) {
+            this.out = out;
+        }
+
+        public void color(Color c) {
+            fill = String.format("#%06x", c.getRGB() & 0xffffff);
+        }
+
+        public void fillPie(double x, double y, double w, double h, double start, double extent) {
+            double rx = w / 2, ry = h / 2, cx = x + rx, cy = y + ry;
+            if (Math.abs(extent) >= 359.99) {
+                out.append("<ellipse cx=\"").append(n(cx)).append("\" cy=\"").append(n(cy)).append("\" rx=\"").append(n(rx))
+                        .append("\" ry=\"").append(n(ry)).append("\" fill=\"").append(fill).append("\"/>\n");
+                return;
+            }
+            if (extent == 0) return;
+            // Arc2D angles run counter-clockwise from 3 o'clock with y up; SVG's y runs down
+            double a0 = Math.toRadians(start), a1 = Math.toRadians(start + extent);
+            out.append("<path d=\"M").append(n(cx)).append(',').append(n(cy))
+                    .append(" L").append(n(cx + rx * Math.cos(a0))).append(',').append(n(cy - ry * Math.sin(a0)))
+                    .append(" A").append(n(rx)).append(',').append(n(ry)).append(" 0 ")
+                    .append(Math.abs(extent) > 180 ? 1 : 0).append(' ').append(extent > 0 ? 0 : 1).append(' ')
+                    .append(n(cx + rx * Math.cos(a1))).append(',').append(n(cy - ry * Math.sin(a1)))
+                    .append(" Z\" fill=\"").append(fill).append("\"/>\n");
+        }
+
+        public void fillOval(double x, double y, double w, double h) {
+            out.append("<ellipse cx=\"").append(n(x + w / 2)).append("\" cy=\"").append(n(y + h / 2)).append("\" rx=\"").append(n(w / 2))
+                    .append("\" ry=\"").append(n(h / 2)).append("\" fill=\"").append(fill).append("\"/>\n");
+        }
+
+        public void fillRect(double x, double y, double w, double h) {
+            out.append("<rect x=\"").append(n(x)).append("\" y=\"").append(n(y)).append("\" width=\"").append(n(w))
+                    .append("\" height=\"").append(n(h)).append("\" fill=\"").append(fill).append("\"/>\n");
+        }
+
+        public void line(double x1, double y1, double x2, double y2, float width) {
+            out.append("<line x1=\"").append(n(x1)).append("\" y1=\"").append(n(y1)).append("\" x2=\"").append(n(x2))
+                    .append("\" y2=\"").append(n(y2)).append("\" stroke=\"").append(fill).append("\" stroke-width=\"")
+                    .append(n(width)).append("\"/>\n");
+        }
+
+        public void text(String s, double x, double y, boolean strong) {
+            out.append("<text x=\"").append(n(x)).append("\" y=\"").append(n(y)).append("\" fill=\"").append(fill)
+                    .append(strong ? "\" font-weight=\"bold" : "").append("\">").append(escape(s)).append("</text>\n");
+        }
+
+        private static String n(double v) {
+            return v == Math.rint(v) ? String.valueOf((long) v) : String.format(Locale.ROOT, "%.2f", v);
+        }
+
+        private static String escape(String s) {
+            return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+        }
+    }
+
+    // ===== rendering =====
+
+    /*
+     * An off-screen image with what it takes to encode it, reused by one thread at a time. The PNG is
+     * written here rather than by ImageIO: its writer goes through the Raster a sample at a time and
+     * tries every row filter, which cost several times the drawing itself. Charts are mostly flat
+     * color, so the Sub filter on every row and a fast deflate level give files about as small.
+     */
+    private static final class Canvas {
+        private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+        final BufferedImage image;
+        private final int[] pixels;
+        private final byte[] row, buf = new byte[16 << 10];
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final CRC32 crc = new CRC32();
+        private final ByteArrayOutputStream idat = new ByteArrayOutputStream(16 << 10);
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(16 << 10);
+
+        Canvas(int w, int h) {
+            image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            row = new byte[1 + 3 * w];
+            deflater.setStrategy(Deflater.FILTERED);
+        }
+
+        byte[] png() {
+            int w = image.getWidth(), h = image.getHeight();
+            deflater.reset();
+            idat.reset();
+            row[0] = 1; // Sub: each byte minus the same channel of the pixel to its left
+            for (int y = 0; y < h; y++) {
+                int left = 0;
+                for (int x = 0, i = y * w, o = 1; x < w; x++, i++, o += 3) {
+                    int p = pixels[i];
+                    row[o] = (byte) ((p >> 16) - (left >> 16));
+                    row[o + 1] = (byte) ((p >> 8) - (left >> 8));
+                    row[o + 2] = (byte) (p - left);
+                    left = p;
+                }
+                deflater.setInput(row);
+                while (!deflater.needsInput()) idat.write(buf, 0, deflater.deflate(buf));
+            }
+            deflater.finish();
+            while (!deflater.finished()) idat.write(buf, 0, deflater.deflate(buf));
+
+            out.reset();
+            out.writeBytes(SIGNATURE);
+            byte[] header = {0, 0, 0, 0, 0, 0, 0, 0, 8, 2, 0, 0, 0}; // 8-bit RGB, no interlace
+            putInt(header, 0, w);
+            putInt(header, 4, h);
+            chunk("IHDR", header, header.length);
+            chunk("IDAT", idat.toByteArray(), idat.size());
+            chunk("IEND", header, 0);
+            return out.toByteArray();
+        }
+
+        private void chunk(String type, byte[] data, int len) {
+            byte[] head = new byte[8];
+            putInt(head, 0, len);
+            for (int i = 0; i < 4; i++) head[4 + i] = (byte) type.charAt(i);
+            crc.reset();
+            crc.update(head, 4, 4);
+            crc.update(data, 0, len);
+            out.writeBytes(head);
+            out.write(data, 0, len);
+            byte[] sum = new byte[4];
+            putInt(sum, 0, (int) crc.getValue());
+            out.writeBytes(sum);
+        }
+
+        private static void putInt(byte[] b, int at, int v) {
+            b[at] = (byte) (v >>> 24);
+            b[at + 1] = (byte) (v >>> 16);
+            b[at + 2] = (byte) (v >>> 8);
+            b[at + 3] = (byte) v;
+        }
+    }
+
+    // idle canvases by size (w << 32 | h); at most one per size per thread that renders at once
+    private static final Map<Long, ConcurrentLinkedQueue<Canvas>> canvases = new ConcurrentHashMap<>();
+
+    /** Draws a w x h chart on the palette's background and returns it as a PNG. */
+    static byte[] png(int w, int h, Theme.Palette pal, Consumer<Pen> draw) {
+        ConcurrentLinkedQueue<Canvas> idle = canvases.computeIfAbsent((long) w << 32 | h, _ -> new ConcurrentLinkedQueue<>());
+        Canvas c = idle.poll();
+        if (c == null) c = new Canvas(w, h);
+        try {
+            Graphics2D g = c.image.createGraphics();
+            try {
+                g.setFont(FONT);
+                g.setColor(pal.background());
+                g.fillRect(0, 0, w, h);
+                draw.accept(new G2Pen(g));
+            } finally {
+                g.dispose();
+            }
+            return c.png();
+        } finally {
+            idle.offer(c);
+        }
+    }
+
+    /** Draws a w x h chart on the palette's background as a standalone SVG document. */
+    static String svg(int w, int h, Theme.Palette pal, Consumer<Pen> draw) {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(w).append("\" height=\"").append(h)
+                .append("\" font-family=\"sans-serif\" font-size=\"12\">\n");
+        SvgPen pen = new SvgPen(sb);
+        pen.color(pal.background());
+        pen.fillRect(0, 0, w, h);
+        draw.accept(pen);
+        return sb.append("</svg>\n").toString();
+    }
+
+    // ===== bulk export =====
+
+    /** What one student's charts need, copied out of their data so rendering holds no lock. */
+    record Student(String user, List<ClassChart> classes, double[] termGpa, double maxPoints) {}
+
+    record ClassChart(int semester, String name, String[] labels, double[] values, List<Double> history) {}
+
+    /** Totals of one export. */
+    record Result(int students, int charts, long bytes, long millis) {}
+
+    static Student snapshot(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        List<ClassChart> classes = new ArrayList<>();
+        double[] termGpa = new double[5];
+        java.util.Arrays.fill(termGpa, Double.NaN);
+        for (int sem = 1; sem <= 4; sem++) {
+            Map<String, CollegeGPATracker.ClassData> cs = terms.get(sem);
+            if (cs == null || cs.isEmpty()) continue;
+            if (cs.values().stream().anyMatch(cd -> !cd.passFail)) termGpa[sem] = CollegeGPATracker.overallGpa(Map.of(sem, cs));
+            for (Map.Entry<String, CollegeGPATracker.ClassData> c : new TreeMap<>(cs).entrySet()) {
+                CollegeGPATracker.ClassData cd = c.getValue();
+                classes.add(new ClassChart(sem, c.getKey(), cd.categoryNames(), CollegeGPATracker.categoryAverages(cd),
+                        List.copyOf(cd.historyPercent)));
+            }
+        }
+        return new Student(user, classes, termGpa, GradingScale.defaultScale().maxPoints);
+    }
+
+    /**
+     * Writes every user's charts under dir/user/ as png or svg: semesters, then per class
+     * "s{semester}_{class}_pie" and "..._trend", user and class names as fileName() makes them. Data is read under each user's lock (reader); the
+     * drawing and encoding run outside it, on pool. Returns counts for the whole run.
+     */
+    static Result export(Collection<String> users, GradeStore.Reader reader, Path dir, String format,
+                         Theme.Palette pal, ForkJoinPool pool) {
+        boolean svg = format.equals("svg");
+        long t0 = System.nanoTime();
+        long[] totals = pool.submit(() -> users.parallelStream().map(user -> {
+            Student s = reader.read(user, terms -> snapshot(user, terms));
+            if (s == null) return new long[3];
+            Path out = dir.resolve(fileName(user));
+            long charts = 0, bytes = 0;
+            try {
+                Files.createDirectories(out);
+                bytes += write(out, "semesters", svg, 360, 200, pal, p -> semesterBars(p, 360, 200, s.termGpa(), s.maxPoints(), pal));
+                charts++;
+                for (ClassChart c : s.classes()) {
+                    String base = "s" + c.semester() + "_" + fileName(c.name());
+                    bytes += write(out, base + "_pie", svg, 320, 200, pal, p -> pie(p, 320, 200, c.labels(), c.values(), pal));
+                    bytes += write(out, base + "_trend", svg, 320, 120, pal, p -> trend(p, 320, 120, c.history(), pal));
+                    charts += 2;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new long[]{1, charts, bytes};
+        }).reduce(new long[3], (a, b) -> new long[]{a[0] + b[0], a[1] + b[1], a[2] + b[2]})).join();
+        return new Result((int) totals[0], (int) totals[1], totals[2], (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    private static long write(Path dir, String name, boolean svg, int w, int h, Theme.Palette pal, Consumer<Pen> draw) throws IOException {
+        byte[] data = svg ? svg(w, h, pal, draw).getBytes(StandardCharsets.UTF_8) : png(w, h, pal, draw);
+        Files.write(dir.resolve(name + (svg ? ".svg" : ".png")), data);
+        return data.length;
+    }
+
+    // user and class names as file names: anything but letters, digits, '.', '-' and '_' becomes '_',
+    // and a hash of the name itself keeps apart names that map the same ("a b", "a_b") or differ
+    // only in case (on case-insensitive file systems)
+    private static String fileName(String s) {
+        String f = s.replaceAll("[^A-Za-z0-9._-]", "_");
+        CRC32 crc = new CRC32();
+        crc.update(s.getBytes(StandardCharsets.UTF_8));
+        return (f.startsWith(".") ? "_" + f.substring(1) : f) + "-" + String.format("%08x", crc.getValue());
+    }
+}
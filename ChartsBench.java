@@ -0,0 +1,85 @@
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Headless chart export for many students: PNG on one thread and on the common pool, SVG, and the
+// pooled-canvas PNG path against a new image and ImageIO.write per chart. Output goes to a temp
+// directory that is deleted afterwards; one exported PNG is decoded back as a check.
+// usage: java ChartsBench [students]
+public class ChartsBench {
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> data = SnapshotBench.synthetic(userCount, new Random(3));
+        GradeStore.Reader reader = new GradeStore.Reader() {
+            @Override public <R> R read(String user, Function<Map<Integer, Map<String, CollegeGPATracker.ClassData>>, R> f) {
+                Map<Integer, Map<String, CollegeGPATracker.ClassData>> t = data.get(user);
+                if (t == null) return null;
+                synchronized (t) {
+                    return f.apply(t);
+                }
+            }
+        };
+        Path dir = Files.createTempDirectory("charts");
+        try {
+            List<String> warm = data.keySet().stream().limit(Math.min(userCount, 200)).toList();
+            Charts.export(warm, reader, dir, "png", Theme.LIGHT, ForkJoinPool.commonPool());
+            Charts.export(warm, reader, dir, "svg", Theme.LIGHT, ForkJoinPool.commonPool());
+
+            ForkJoinPool one = new ForkJoinPool(1);
+            report("png, 1 thread", Charts.export(data.keySet(), reader, dir, "png", Theme.LIGHT, one));
+            one.shutdown();
+            int threads = ForkJoinPool.getCommonPoolParallelism();
+            report("png, " + threads + " thread(s)", Charts.export(data.keySet(), reader, dir, "png", Theme.LIGHT, ForkJoinPool.commonPool()));
+            report("svg, " + threads + " thread(s)", Charts.export(data.keySet(), reader, dir, "svg", Theme.LIGHT, ForkJoinPool.commonPool()));
+
+            try (Stream<Path> files = Files.walk(dir)) {
+                Path png = files.filter(p -> p.toString().endsWith("_pie.png")).findFirst().orElseThrow();
+                BufferedImage back = ImageIO.read(png.toFile());
+                System.out.printf("decoded %s: %dx%d%n", dir.relativize(png), back.getWidth(), back.getHeight());
+            }
+
+            // the same pie charts, pooled canvas vs a fresh image and ImageIO.write each time
+            Charts.Student s = Charts.snapshot("bench", data.values().iterator().next());
+            Charts.ClassChart c = s.classes().get(0);
+            int n = 5_000;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) Charts.png(320, 200, Theme.LIGHT, p -> Charts.pie(p, 320, 200, c.labels(), c.values(), Theme.LIGHT));
+            long pooled = System.nanoTime() - t0;
+            t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                BufferedImage img = new BufferedImage(320, 200, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = img.createGraphics();
+                g.setColor(Theme.LIGHT.background());
+                g.fillRect(0, 0, 320, 200);
+                Charts.pie(new Charts.G2Pen(g), 320, 200, c.labels(), c.values(), Theme.LIGHT);
+                g.dispose();
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(img, "png", out);
+            }
+            long fresh = System.nanoTime() - t0;
+            System.out.printf("pie png: pooled canvas %,d us, new image + ImageIO.write %,d us (%d charts each)%n",
+                    pooled / n / 1000, fresh / n / 1000, n);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void report(String label, Charts.Result r) {
+        System.out.printf("%-20s %,6d students  %,7d charts in %,6d ms (%,.0f charts/s)  %,d KB%n",
+                label, r.students(), r.charts(), r.millis(), r.charts() / Math.max(0.001, r.millis() / 1000.0), r.bytes() >> 10);
+    }
+}
@@ -0,0 +1,303 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Where a student sits among everyone on this install: the percentile rank of a class percent among
+ * all students with a class of that name, of a term GPA among all GPAs for that semester, and of a
+ * cumulative GPA among all users.
+ *
+ * Each distribution is a fixed-resolution histogram kept in a Fenwick tree rather than a t-digest or
+ * KLL sketch: grades are edited, so a student's old value has to be taken out when the new one goes
+ * in, and those sketches can't delete. At 0.1 percentage points / 0.001 grade points the bucketing
+ * error is below what the app displays, an update or rank query is O(log buckets) whatever the
+ * cohort size, and two histograms merge by adding their trees, which the parallel rebuild relies on.
+ */
+public class Cohort {
+    static final int MIN_SIZE = 5; // no rank below this many values: it would give away individual grades
+    private static final int PARALLEL_THRESHOLD = 64; // users per rebuild leaf
+
+    /** Counts of values in [lo, hi] at a fixed step, with prefix sums in a Fenwick tree. */
+    static final class Histogram {
+        private final double lo, step;
+        private final int[] tree; // 1-based Fenwick tree over the buckets
+        private long total;
+
+        Histogram(double lo, double hi, double step) {
+            this.lo = lo;
+            this.step = step;
+            this.tree = new int[(int) Math.round((hi - lo) / step) + 2];
+        }
+
+        private int bucket(double v) {
+            int b = (int) Math.floor((v - lo) / step + 1e-9);
+            return Math.max(0, Math.min(tree.length - 2, b));
+        }
+
+        synchronized void add(double v, int delta) {
+            total += delta;
+            for (int i = bucket(v) + 1; i < tree.length; i += i & -i) tree[i] += delta;
+        }
+
+        // values in buckets [0, b)
+        private long below(int b) {
+            long n = 0;
+            for (int i = b; i > 0; i -= i & -i) n += tree[i];
+            return n;
+        }
+
+        synchronized long count() {
+            return total;
+        }
+
+        /** Percent of values below v, counting values in v's own bucket as half (NaN if empty). */
+        synchronized double percentileRank(double v) {
+            if (total == 0) return Double.NaN;
+            int b = bucket(v);
+            long under = below(b), same = below(b + 1) - under;
+            return 100.0 * (under + same / 2.0) / total;
+        }
+
+        /** The value at quantile q (0..1), to bucket resolution (NaN if empty). */
+        synchronized double quantile(double q) {
+            if (total == 0) return Double.NaN;
+            long target = Math.max(1, (long) Math.ceil(q * total));
+            int pos = 0;
+            for (int pw = Integer.highestOneBit(tree.length - 1); pw > 0; pw >>= 1) {
+                if (pos + pw < tree.length && tree[pos + pw] < target) {
+                    pos += pw;
+                    target -= tree[pos];
+                }
+            }
+            return lo + pos * step; // pos = 0-based bucket holding the target
+        }
+
+        // Fenwick trees are linear, so the tree of a merged histogram is the sum of the trees
+        synchronized void mergeFrom(Histogram other) {
+            for (int i = 1; i < tree.length; i++) tree[i] += other.tree[i];
+            total += other.total;
+        }
+    }
+
+    /** One user's contribution: every graded class percent by name, term GPAs (NaN = none) and cumulative GPA. */
+    record Entry(List<String> classNames, double[] classPercents, double[] termGpa, double gpa) {}
+
+    private static Histogram percentHistogram() { return new Histogram(0, 150, 0.1); }
+    private static Histogram gpaHistogram() { return new Histogram(0, 5, 0.001); }
+
+    // everything the ranks are computed from; replaced wholesale by a rebuild
+    private static final class Tallies {
+        final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        final Map<String, Histogram> byClass = new ConcurrentHashMap<>();
+        final Histogram[] byTerm = new Histogram[5]; // semesters 1..4
+        final Histogram overall = gpaHistogram();
+
+        Tallies() {
+            for (int i = 1; i <= 4; i++) byTerm[i] = gpaHistogram();
+        }
+
+        void apply(Entry e, int sign) {
+            if (e == null) return;
+            for (int i = 0; i < e.classNames.size(); i++) {
+                byClass.computeIfAbsent(e.classNames.get(i), _ -> percentHistogram()).add(e.classPercents[i], sign);
+            }
+            for (int sem = 1; sem <= 4; sem++) {
+                if (!Double.isNaN(e.termGpa[sem])) byTerm[sem].add(e.termGpa[sem], sign);
+            }
+            if (!Double.isNaN(e.gpa)) overall.add(e.gpa, sign);
+        }
+
+        void mergeFrom(Tallies o) {
+            entries.putAll(o.entries);
+            o.byClass.forEach((name, h) -> byClass.computeIfAbsent(name, _ -> percentHistogram()).mergeFrom(h));
+            for (int i = 1; i <= 4; i++) byTerm[i].mergeFrom(o.byTerm[i]);
+            overall.mergeFrom(o.overall);
+        }
+    }
+
+    private volatile Tallies state = new Tallies();
+    private final ReentrantReadWriteLock swap = new ReentrantReadWriteLock(); // updates share it; a rebuild's swap takes it alone
+    private volatile Set<String> touchedDuringRebuild; // users updated while a rebuild was reading
+
+    /**
+     * What a user contributes. Only classes with at least one score count (an empty class's 0% is
+     * not a grade); term and cumulative GPAs are credit-weighted over those, pass/fail excluded.
+     * Callers hold the user's lock.
+     */
+    static Entry entryOf(Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        List<String> names = new ArrayList<>();
+        List<Double> percents = new ArrayList<>();
+        double[] termGpa = new double[5];
+        double points = 0;
+        int credits = 0;
+        for (int sem = 1; sem <= 4; sem++) {
+            double tp = 0;
+            int tc = 0;
+            Map<String, CollegeGPATracker.ClassData> classes = terms.get(sem);
+            if (classes != null) {
+                for (Map.Entry<String, CollegeGPATracker.ClassData> c : classes.entrySet()) {
+                    CollegeGPATracker.ClassData cd = c.getValue();
+                    boolean graded = false;
+                    for (CollegeGPATracker.Category cat : cd.categories) if (cat.size() > 0) { graded = true; break; }
+                    if (!graded) continue;
+                    names.add(c.getKey());
+                    percents.add(cd.percent());
+                    if (cd.passFail || cd.credits <= 0) continue;
+                    tp += cd.gpa() * cd.credits;
+                    tc += cd.credits;
+                }
+            }
+            termGpa[sem] = tc > 0 ? tp / tc : Double.NaN;
+            points += tp;
+            credits += tc;
+        }
+        double[] p = new double[percents.size()];
+        for (int i = 0; i < p.length; i++) p[i] = percents.get(i);
+        return new Entry(List.copyOf(names), p, termGpa, credits > 0 ? points / credits : Double.NaN);
+    }
+
+    /** Replaces the user's contribution after a change (called under the user's lock); cost is the user's own classes. */
+    void update(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        put(user, entryOf(terms));
+    }
+
+    void remove(String user) {
+        put(user, null);
+    }
+
+    private void put(String user, Entry e) {
+        swap.readLock().lock();
+        try {
+            Tallies s = state;
+            Entry old = e == null ? s.entries.remove(user) : s.entries.put(user, e);
+            s.apply(old, -1);
+            s.apply(e, +1);
+            Set<String> touched = touchedDuringRebuild;
+            if (touched != null) touched.add(user);
+        } finally {
+            swap.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recomputes everything from scratch: users are split across the pool, each leaf builds its own
+     * histograms and the halves are merged on the way up. Users updated while this ran keep their
+     * newer entry. read returns a user's entry, or null if they have no grades.
+     */
+    synchronized void rebuild(Collection<String> users, Function<String, Entry> read, ForkJoinPool pool) {
+        touchedDuringRebuild = ConcurrentHashMap.newKeySet();
+        Tallies fresh = pool.invoke(new Build(new ArrayList<>(users), 0, users.size(), read));
+        swap.writeLock().lock();
+        try {
+            Tallies live = state;
+            for (String u : touchedDuringRebuild) {
+                Entry mine = live.entries.get(u);
+                fresh.apply(mine == null ? fresh.entries.remove(u) : fresh.entries.put(u, mine), -1);
+                fresh.apply(mine, +1);
+            }
+            touchedDuringRebuild = null;
+            state = fresh;
+        } finally {
+            swap.writeLock().unlock();
+        }
+    }
+
+    private static final class Build extends RecursiveTask<Tallies> {
+        private final List<String> users;
+        private final int from, to;
+        private final Function<String, Entry> read;
+
+        Build(List<String> users, int from, int to, Function<String, Entry> read) {
+            this.users = users; this.from = from; this.to = to; this.read = read;
+        }
+
+        @Override protected Tallies compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                Tallies s = new Tallies();
+                for (int i = from; i < to; i++) {
+                    Entry e = read.apply(users.get(i));
+                    if (e == null) continue;
+                    s.entries.put(users.get(i), e);
+                    s.apply(e, +1);
+                }
+                return s;
+            }
+            int mid = (from + to) >>> 1;
+            Build left = new Build(users, from, mid, read);
+            left.fork();
+            Tallies right = new Build(users, mid, to, read).compute();
+            Tallies s = left.join();
+            s.mergeFrom(right);
+            return s;
+        }
+    }
+
+    // ===== queries (constant time in the number of users; NaN below MIN_SIZE) =====
+
+    private static double rank(Histogram h, double v) {
+        return h == null || h.count() < MIN_SIZE ? Double.NaN : h.percentileRank(v);
+    }
+
+    double classRank(String className, double percent) {
+        return rank(state.byClass.get(className), percent);
+    }
+
+    long classCount(String className) {
+        Histogram h = state.byClass.get(className);
+        return h == null ? 0 : h.count();
+    }
+
+    double classMedian(String className) {
+        Histogram h = state.byClass.get(className);
+        return h == null || h.count() < MIN_SIZE ? Double.NaN : h.quantile(0.5);
+    }
+
+    double termRank(int semester, double gpa) {
+        return rank(state.byTerm[semester], gpa);
+    }
+
+    double gpaRank(double gpa) {
+        return rank(state.overall, gpa);
+    }
+
+    long users() {
+        return state.overall.count();
+    }
+
+    /** The user's own entry as last recorded (null if none), so callers rank exactly what the cohort holds. */
+    Entry entry(String user) {
+        return state.entries.get(user);
+    }
+
+    /** e.g. "72nd" */
+    static String ordinal(double rank) {
+        int n = (int) Math.round(rank);
+        String suffix = (n % 100 >= 11 && n % 100 <= 13) ? "th" : switch (n % 10) {
+            case 1 -> "st";
+            case 2 -> "nd";
+            case 3 -> "rd";
+            default -> "th";
+        };
+        return n + suffix;
+    }
+
+    // per-class view for one user: name -> {percent, rank, cohort size}
+    Map<String, double[]> classRanks(String user) {
+        Map<String, double[]> out = new HashMap<>();
+        Entry e = entry(user);
+        if (e == null) return out;
+        for (int i = 0; i < e.classNames.size(); i++) {
+            String name = e.classNames.get(i);
+            out.put(name, new double[]{e.classPercents[i], classRank(name, e.classPercents[i]), classCount(name)});
+        }
+        return out;
+    }
+}
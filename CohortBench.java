@@ -0,0 +1,84 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Cohort percentiles on synthetic cohorts of increasing size: full rebuild (1 thread vs the common
+// pool), cost of one incremental update and of one rank query, and the worst rank error against an
+// exact sort of the same values.
+// usage: java CohortBench [users...]   (default 1000 10000 50000)
+public class CohortBench {
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[]{1000, 10000, 50000};
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %12s %12s %12s %12s %12s%n", "users", "rebuild 1t", "rebuild pool", "update us", "query ns", "max err pp");
+        ForkJoinPool single = new ForkJoinPool(1);
+        for (int n : sizes) {
+            List<String> users = new ArrayList<>();
+            for (int u = 0; u < n; u++) users.add("student" + u);
+            // users are generated on demand so the largest cohorts don't have to fit in memory as ClassData
+            java.util.function.Function<String, Cohort.Entry> read = u -> Cohort.entryOf(terms(u));
+
+            Cohort cohort = new Cohort();
+            cohort.rebuild(users, read, single); // warm up
+            long t0 = System.nanoTime();
+            cohort.rebuild(users, read, single);
+            double oneMs = (System.nanoTime() - t0) / 1e6;
+            t0 = System.nanoTime();
+            cohort.rebuild(users, read, ForkJoinPool.commonPool());
+            double poolMs = (System.nanoTime() - t0) / 1e6;
+
+            // one student's edit: their whole entry is recomputed and swapped in
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> mine = terms("student0");
+            CollegeGPATracker.ClassData cd = mine.get(1).values().iterator().next();
+            CollegeGPATracker.Assignment a = cd.categories.get(0).items.get(0);
+            int updates = 20000;
+            t0 = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                cd.update(a.id, a.name, 50 + (i % 50));
+                cohort.update("student0", mine);
+            }
+            double updateUs = (System.nanoTime() - t0) / 1e3 / updates;
+
+            String cls = "CS 150";
+            int queries = 1_000_000;
+            double sink = 0;
+            t0 = System.nanoTime();
+            for (int i = 0; i < queries; i++) sink += cohort.classRank(cls, 60 + (i % 40)) + cohort.gpaRank((i % 400) / 100.0);
+            double queryNs = (System.nanoTime() - t0) / (2.0 * queries);
+
+            System.out.printf("%8d %10.0f ms %10.0f ms %12.2f %12.1f %12.3f%s%n", n, oneMs, poolMs, updateUs, queryNs,
+                    maxError(cohort, users, read), sink == 42 ? " " : "");
+        }
+        single.shutdown();
+    }
+
+    // largest gap, in percentile points, between the histogram rank and the exact mid-rank of the overall GPAs
+    private static double maxError(Cohort cohort, List<String> users, java.util.function.Function<String, Cohort.Entry> read) {
+        double[] gpas = users.stream().map(cohort::entry).filter(e -> e != null && !Double.isNaN(e.gpa()))
+                .mapToDouble(Cohort.Entry::gpa).sorted().toArray();
+        double worst = 0;
+        for (double q = 0.01; q < 1; q += 0.01) {
+            double v = gpas[(int) (q * gpas.length)];
+            int lo = lowerBound(gpas, v), hi = lowerBound(gpas, Math.nextUp(v));
+            double exact = 100.0 * (lo + (hi - lo) / 2.0) / gpas.length;
+            worst = Math.max(worst, Math.abs(cohort.gpaRank(v) - exact));
+        }
+        return worst;
+    }
+
+    private static int lowerBound(double[] a, double v) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < v) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms(String user) {
+        return SnapshotBench.synthetic(1, new Random(user.hashCode())).values().iterator().next();
+    }
+}
@@ -7,14 +7,11 @@ import javax.swing.Box; // only Box
 
 import java.awt.*; // entire awt library
 import java.awt.event.*; // entire awt event library
-import java.awt.geom.Arc2D; // only Arc2D
-import java.awt.geom.Ellipse2D; // only Ellipse2D
 import java.util.List; // only List
 import java.util.*; // entire util library
 
 import java.io.File; // only File
 import java.io.FileReader; // only FileReader
-import java.io.FileWriter; // only FileWriter
 import java.io.IOException; // only IOException
 
 import com.google.gson.Gson; // only Gson
@@ -22,19 +19,38 @@ import com.google.gson.reflect.TypeToken; // only TypeToken
 
 public class CollegeGPATracker { // main application class
     // username -> [password, email]
-    private static Map<String, String[]> users = new HashMap<>(); // username -> [password, email]
-    private static Map<String, Long> lastUsernameChange = new HashMap<>(); // username -> timestamp
+    private static Map<String, String[]> users = new java.util.concurrent.ConcurrentHashMap<>(); // username -> [password, email]
+    private static Map<String, Long> lastUsernameChange = new java.util.concurrent.ConcurrentHashMap<>(); // username -> timestamp
     private static String currentUser; // currently logged-in user
 
     // user -> semester(int) -> className -> ClassData
-    private static Map<String, Map<Integer, Map<String, ClassData>>> userData = new HashMap<>(); // user -> semester(int) -> className -> ClassData
+    private static final java.util.concurrent.ConcurrentMap<String, Map<Integer, Map<String, ClassData>>> userData =
+            new java.util.concurrent.ConcurrentHashMap<>(); // user -> semester(int) -> className -> ClassData
+    // accounts, grades and reset codes: JSON files under data/ unless -Dgpa.storage=<jdbc url> (see openStorage)
+    static Storage storage;
+    // at most this many users' grades stay in memory (-Dgpa.residentUsers); the rest are reloaded on their next access
+    private static final int RESIDENT_USERS = Integer.getInteger("gpa.residentUsers", 256);
+    // thread-safe, per-user locked view of userData for sessions off the EDT; evicted users' unsaved edits are written back
+    static final GradeStore store = new GradeStore(userData, u -> storage.grades().load(u), RESIDENT_USERS,
+            CollegeGPATracker::writeBack);
     private static boolean darkMode = false; // dark mode flag
 
     private static final String DATA_DIR = "data"; // data directory
     private static final String USERS_FILE = DATA_DIR + File.separator + "users.json"; // users file
-    private static final String USERDATA_FILE = DATA_DIR + File.separator + "user_data.json"; // user data file
+    private static final String USERDATA_FILE = DATA_DIR + File.separator + "user_data.json"; // legacy all-users data file
+    private static final String USERDATA_SNAPSHOT = DATA_DIR + File.separator + "user_data.snap"; // binary form of the same, see Snapshot
+    private static final String BACKUP_DIR = "backups"; // rolling data/ archives, see Backups
+    private static final String USERDATA_DIR = DATA_DIR + File.separator + "user_data"; // one data shard per user
+    private static final String SESSION_FILE = DATA_DIR + File.separator + "session.json"; // remembered login
+    private static final String SESSION_KEY_FILE = DATA_DIR + File.separator + "session.key"; // local signing key
+    private static final String PREFS_FILE = DATA_DIR + File.separator + "user_prefs.json"; // per-user preferences
+    private static final String GOOGLE_LINKS_FILE = DATA_DIR + File.separator + "google_links.json"; // Google subject -> username
     private static final String USERNAME_CHANGES_FILE = DATA_DIR + File.separator + "username_changes.json";// username changes file
     private static final String RESET_CODES_FILE = DATA_DIR + File.separator + "reset_tokens.json"; // reset tokens file
+    private static final String SCALES_FILE = DATA_DIR + File.separator + "grading_scales.json"; // grading scale config
+    private static final String DIGESTS_FILE = DATA_DIR + File.separator + "digests.json"; // weekly digest baselines
+    private static final String ALERTS_FILE = DATA_DIR + File.separator + "alerts.json"; // grade alert rules and state
+    private static final String ACHIEVEMENTS_FILE = DATA_DIR + File.separator + "achievements.json"; // earned badges and badge state
     private static final Gson gson = new Gson(); // Gson instance
 
     // Design tokens (hex values)
@@ -50,25 +66,292 @@ public class CollegeGPATracker { // main application class
     private static final Color PRIMARY_DARK = new Color(0x2F80ED);
 
     private static JLabel overallGpaLabel;
+    private static final String HISTORY_DIR = DATA_DIR + File.separator + "history"; // per-user edit logs
+    private static final Map<String, GradeHistory> histories = new HashMap<>(); // user -> versioned history
+    private static final Map<String, SearchIndex> searchIndexes = new HashMap<>(); // user -> class/assignment index
+    static final GradeEvents events = new GradeEvents(); // grade-data change notifications for the dashboard
+    static final Cohort cohort = new Cohort(); // percentile ranks across every account, kept current by saves
+    static final Credentials credentials = new Credentials(); // salted password hashing on its own small pool
+    static Digests digests; // weekly progress emails for users who opted in; null until main starts it
+    static Alerts alerts;   // user-defined grade alerts, checked on save; null until main creates it
+    static Achievements achievements; // badges earned from the change stream; null until main creates it
+    // brakes on guessing: sign-ins per account and reset-code entries per account, in sliding 15-minute windows
+    static final RateLimiter loginAttempts = new RateLimiter(10, 15 * 60_000L, 100_000);
+    static final RateLimiter resetAttempts = new RateLimiter(5, 15 * 60_000L, 100_000);
+    private static final long LAUNCH_NANOS = System.nanoTime(); // for the time-to-interactive line (-Dgpa.timing=true)
+    private static boolean interactiveLogged = !Boolean.getBoolean("gpa.timing");
 
     // ===== CLASS DATA =====
     static class ClassData {
-        Map<String, List<Assignment>> assignments = new HashMap<>();
-        Map<String, Integer> weights = new HashMap<>();
+        List<Category> categories = new ArrayList<>(); // small indexed array of category descriptors
         List<Double> historyPercent = new ArrayList<>();
         int credits = 3; // default credit hours per class
+        String scale;     // grading scale id override (null = default scale)
+        boolean passFail; // pass/fail classes are excluded from GPA
+        int nextId = 1;   // next assignment id handed out in this class
+        // legacy layout (category name -> list / weight); migrated by normalize() and never written back
+        Map<String, List<Assignment>> assignments;
+        Map<String, Integer> weights;
+        private transient double percent; // cached weighted class percent
+        private transient boolean stale = true;
+        private transient double gpa;            // cached grade points for the cached percent
+        private transient double gpaPercent = Double.NaN;
+        private transient int gpaVersion = -1;   // GradingScale.version() the cached GPA was computed under
+        private transient String gpaScale;       // and this class's scale id and pass/fail setting
+        private transient boolean gpaPassFail;
+        private transient int[] catOf = new int[0]; // assignment id -> category index (-1 = none)
+        private transient int[] posOf = new int[0]; // assignment id -> position in that category
 // default categories and weights
         public ClassData() {
-            assignments.put("Homework", new ArrayList<>());
-            assignments.put("Exam", new ArrayList<>());
-            assignments.put("Project", new ArrayList<>());
-            weights.put("Homework", 40);
-            weights.put("Exam", 40);
-            weights.put("Project", 20);
+            categories.add(new Category("Homework", 40));
+            categories.add(new Category("Exam", 40));
+            categories.add(new Category("Project", 20));
+        }
+
+        // index of a category by name (linear scan over a handful of entries, no hashing)
+        int indexOf(String name) {
+            for (int i = 0; i < categories.size(); i++) {
+                if (categories.get(i).name.equals(name)) return i;
+            }
+            return -1;
+        }
+
+        Category category(int idx) { return categories.get(idx); }
+
+        String[] categoryNames() {
+            String[] out = new String[categories.size()];
+            for (int i = 0; i < out.length; i++) out[i] = categories.get(i).name;
+            return out;
+        }
+
+        // adds the assignment to category `idx`, giving it a stable id if it has none
+        void add(int idx, Assignment a) {
+            Category c = categories.get(idx);
+            a.category = c.name;
+            if (a.id <= 0) a.id = nextId++;
+            else nextId = Math.max(nextId, a.id + 1);
+            c.add(a);
+            index(a.id, idx, c.items.size() - 1);
+            stale = true;
+        }
+
+        Assignment find(int id) {
+            if (id <= 0 || id >= catOf.length || catOf[id] < 0) return null;
+            return categories.get(catOf[id]).items.get(posOf[id]);
+        }
+
+        // delete in place, keeping the user's order; the assignments after it move up one position
+        Assignment removeById(int id) {
+            if (find(id) == null) return null;
+            Category c = categories.get(catOf[id]);
+            int pos = posOf[id];
+            Assignment removed = c.removeAt(pos);
+            for (int j = pos; j < c.items.size(); j++) posOf[c.items.get(j).id] = j;
+            catOf[id] = -1;
+            stale = true;
+            return removed;
+        }
+
+        // O(1) in-place edit of name and score
+        boolean update(int id, String name, double score) {
+            Assignment a = find(id);
+            if (a == null) return false;
+            a.name = name;
+            if (a.score != score) {
+                categories.get(catOf[id]).rescore(a, score);
+                stale = true;
+            }
+            return true;
+        }
+
+        // move an assignment to another category, keeping its id
+        boolean move(int id, int toIdx) {
+            if (find(id) == null || toIdx < 0 || toIdx >= categories.size()) return false;
+            if (catOf[id] == toIdx) return true;
+            add(toIdx, removeById(id));
+            return true;
+        }
+
+        private void index(int id, int cat, int pos) {
+            if (id >= catOf.length) {
+                int n = Math.max(id + 1, catOf.length * 2);
+                int old = catOf.length;
+                catOf = Arrays.copyOf(catOf, n);
+                posOf = Arrays.copyOf(posOf, n);
+                Arrays.fill(catOf, old, n, -1);
+            }
+            catOf[id] = cat;
+            posOf[id] = pos;
+        }
+
+        // rebuild the id index (after load or when categories were reordered)
+        private void reindex() {
+            Arrays.fill(catOf, -1);
+            for (int i = 0; i < categories.size(); i++) {
+                List<Assignment> items = categories.get(i).items;
+                for (int j = 0; j < items.size(); j++) {
+                    Assignment a = items.get(j);
+                    if (a.id <= 0 || (a.id < catOf.length && catOf[a.id] >= 0)) a.id = nextId++; // legacy or duplicate
+                    nextId = Math.max(nextId, a.id + 1);
+                    index(a.id, i, j);
+                }
+            }
+        }
+
+        // weighted percent across all categories; only categories whose aggregates changed are recomputed
+        double percent() {
+            if (!stale) return percent;
+            double weightedTotal = 0;
+            int weightSum = 0;
+            for (int i = 0; i < categories.size(); i++) {
+                Category c = categories.get(i);
+                weightedTotal += c.average() * (c.weight / 100.0);
+                weightSum += c.weight;
+            }
+            percent = (weightSum > 0) ? weightedTotal : 0.0;
+            stale = false;
+            return percent;
+        }
+
+        GradingScale scale() { return GradingScale.get(scale); }
+
+        // grade points under this class's scale; recomputed only when the percent, any scale, or the
+        // class's own scale choice changed (scale and passFail are plain fields, set from many places)
+        double gpa() {
+            double p = percent();
+            int v = GradingScale.version();
+            if (v != gpaVersion || p != gpaPercent || !Objects.equals(scale, gpaScale) || passFail != gpaPassFail) {
+                gpa = scale().toPoints(p);
+                gpaPercent = p;
+                gpaVersion = v;
+                gpaScale = scale;
+                gpaPassFail = passFail;
+            }
+            return gpa;
+        }
+
+        boolean passed() { return percent() >= scale().passingPercent(); }
+
+        // drop all cached aggregates (after load or a bulk edit of category rules)
+        void invalidate() {
+            for (Category c : categories) c.invalidate();
+            reindex();
+            stale = true;
+        }
+
+        // migrate the legacy map layout and rebuild transient state after Gson has populated the fields
+        void normalize() {
+            if (assignments != null || weights != null) {
+                List<Category> migrated = new ArrayList<>();
+                Set<String> names = new LinkedHashSet<>(Arrays.asList("Homework", "Exam", "Project"));
+                if (weights != null) names.addAll(weights.keySet());
+                if (assignments != null) names.addAll(assignments.keySet());
+                for (String n : names) {
+                    int w = (weights != null) ? weights.getOrDefault(n, 0) : 0;
+                    Category c = new Category(n, w);
+                    List<Assignment> list = (assignments != null) ? assignments.get(n) : null;
+                    if (list != null) {
+                        for (Assignment a : list) { a.category = n; c.items.add(a); }
+                    }
+                    migrated.add(c);
+                }
+                categories = migrated;
+                assignments = null;
+                weights = null;
+            }
+            if (categories == null) categories = new ArrayList<>();
+            if (historyPercent == null) historyPercent = new ArrayList<>();
+            for (Category c : categories) {
+                if (c.items == null) c.items = new ArrayList<>();
+            }
+            invalidate();
+        }
+    }
+
+    // ===== CATEGORY DATA =====
+    // one grading category of a class with its rule and cached aggregates
+    static class Category {
+        String name;
+        int weight;      // percent of the class grade
+        int dropLowest;  // drop the N lowest scores before averaging
+        int expected;    // planned number of assignments for the term (0 = not planned)
+        List<Assignment> items = new ArrayList<>();
+        private transient double sum;  // running sum of scores (used when no drop rule applies)
+        private transient double avg;  // cached average after drop rule
+        private transient boolean stale = true;
+
+        Category() {} // for Gson
+        Category(String name, int weight) { this.name = name; this.weight = weight; }
+
+        void add(Assignment a) {
+            items.add(a);
+            if (!stale && dropLowest == 0) {
+                sum += a.score;
+                avg = sum / items.size();
+            } else {
+                stale = true;
+            }
+        }
+
+        Assignment removeAt(int pos) {
+            Assignment a = items.remove(pos);
+            if (!stale && dropLowest == 0) {
+                sum -= a.score;
+                avg = items.isEmpty() ? 0 : sum / items.size();
+            } else {
+                stale = true;
+            }
+            return a;
+        }
+
+        void rescore(Assignment a, double score) {
+            if (!stale && dropLowest == 0) {
+                sum += score - a.score;
+                avg = sum / items.size();
+            } else {
+                stale = true;
+            }
+            a.score = score;
+        }
+
+        void invalidate() { stale = true; }
+
+        int size() { return items.size(); }
+
+        // assignments still to come according to the plan
+        int remaining() { return Math.max(0, expected - items.size()); }
+
+        double sum() {
+            if (stale) recompute();
+            return sum;
+        }
+
+        double average() {
+            if (stale) recompute();
+            return avg;
+        }
+
+        private void recompute() {
+            int n = items.size();
+            sum = 0;
+            for (int i = 0; i < n; i++) sum += items.get(i).score;
+            int drop = Math.min(dropLowest, Math.max(0, n - 1)); // always keep at least one score
+            if (drop > 0) {
+                double[] scores = new double[n];
+                for (int i = 0; i < n; i++) scores[i] = items.get(i).score;
+                Arrays.sort(scores);
+                double kept = 0;
+                for (int i = drop; i < n; i++) kept += scores[i];
+                avg = kept / (n - drop);
+            } else {
+                avg = (n > 0) ? sum / n : 0;
+            }
+            stale = false;
         }
     }
 // ===== ASSIGNMENT DATA =====
     static class Assignment {
+        int id; // stable per-class id (0 = not yet assigned)
         String name; double score; String category;
         Assignment(String name, double score, String category) {
             this.name = name; this.score = score; this.category = category;
@@ -76,11 +359,85 @@ public class CollegeGPATracker { // main application class
     }
 // ===== MAIN METHOD =====
     public static void main(String[] args) {
+        boolean chartsOnly = args.length > 0 && args[0].equals("--charts");
+        if (chartsOnly) System.setProperty("java.awt.headless", "true"); // before anything touches AWT
         ensureDataDir();
+        storage = openStorage();
         loadUsers();
-        loadAllUserData();
-        PasswordResetStore.init(RESET_CODES_FILE);
-        SwingUtilities.invokeLater(CollegeGPATracker::showLoginUI);
+        migrateLegacyUserData();
+        PasswordResetStore.init(storage.tokens());
+        credentials.prepare();
+        GradingScale.init(SCALES_FILE);
+        // chart images for every account, no display needed: java CollegeGPATracker --charts [dir] [png|svg]
+        if (chartsOnly) {
+            java.nio.file.Path dir = java.nio.file.Path.of(args.length > 1 ? args[1] : "charts");
+            String format = args.length > 2 ? args[2] : "png";
+            Charts.Result r = Charts.export(new ArrayList<>(users.keySet()), CollegeGPATracker::readGrades, dir, format,
+                    Theme.LIGHT, java.util.concurrent.ForkJoinPool.commonPool());
+            System.out.printf("%,d charts for %,d students in %s (%,d KB, %,d ms)%n",
+                    r.charts(), r.students(), dir, r.bytes() >> 10, r.millis());
+            return;
+        }
+        // cohort ranks need every account's grades: read them in parallel in the background; saves here and
+        // shard changes from other instances keep it current
+        Thread cohortBuild = new Thread(() -> cohort.rebuild(users.keySet(), CollegeGPATracker::cohortEntry,
+                java.util.concurrent.ForkJoinPool.commonPool()), "cohort-rebuild");
+        cohortBuild.setDaemon(true);
+        cohortBuild.start();
+        // compressed, verified snapshots of data/ every 30 minutes, read at no more than 2 MB/s
+        new Backups(new File(DATA_DIR).toPath(), new File(BACKUP_DIR).toPath(), 10, 2L << 20).start(30);
+        Prefs.init(PREFS_FILE);
+        // weekly digests to users who turned them on; saves mark who has something new
+        digests = new Digests(DIGESTS_FILE, CollegeGPATracker::readGrades, CollegeGPATracker::emailOf, Prefs::wantsDigest).start();
+        alerts = new Alerts(ALERTS_FILE, CollegeGPATracker::emailOf, Prefs::wantsAlertMail,
+                a -> SwingUtilities.invokeLater(() -> showAlertNotice(a)));
+        // badges: API edits reach them through the store, dashboard edits through the event batches below;
+        // accounts without badge state yet are backfilled from their data in the background
+        achievements = new Achievements(ACHIEVEMENTS_FILE, Achievements.standard(),
+                (user, e) -> SwingUtilities.invokeLater(() -> showBadgeNotice(user, e)));
+        store.listen((user, e, t) -> achievements.apply(user, t, List.of(e)));
+        Thread badgeBackfill = new Thread(() -> achievements.backfill(new ArrayList<>(users.keySet()),
+                CollegeGPATracker::readGrades, java.util.concurrent.ForkJoinPool.commonPool()), "badge-backfill");
+        badgeBackfill.setDaemon(true);
+        badgeBackfill.start();
+        // pick up shard edits made by other instances sharing data/ (a SQL database is shared row by row instead);
+        // a server needs them as much as a window does, or its next save would write stale classes back
+        if (storage instanceof JsonStorage json) {
+            json.shardDir().mkdirs();
+            new DataWatcher(json.shardDir().toPath(), CollegeGPATracker::onShardChanged).start();
+        }
+        // headless JSON API over the same data/ store: java CollegeGPATracker --server [port]
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            try {
+                new ApiServer(store, CollegeGPATracker::checkLogin, CollegeGPATracker::saveUserData, cohort).start(port);
+                System.out.println("GPA API listening on http://localhost:" + port + "/api/");
+            } catch (IOException e) {
+                System.err.println("Could not start API server: " + e.getMessage());
+            }
+            return;
+        }
+        GoogleLinks.init(GOOGLE_LINKS_FILE);
+        // a valid remembered session skips the login screen and loads only that user's shard
+        String resumed = SessionStore.resume(SESSION_FILE, SESSION_KEY_FILE, users);
+        if (resumed != null) {
+            currentUser = resumed;
+            store.pin(currentUser);
+            ensureUserStructures(currentUser);
+            darkMode = Prefs.of(currentUser).darkMode;
+            SwingUtilities.invokeLater(CollegeGPATracker::showDashboard);
+        } else {
+            SwingUtilities.invokeLater(CollegeGPATracker::showLoginUI);
+        }
+    }
+
+    // common tail of every successful login: remember the session and restore preferences
+    private static void startSession(String user) {
+        currentUser = user;
+        store.pin(currentUser); // the dashboard keeps references into userData, so it must stay resident
+        ensureUserStructures(currentUser);
+        darkMode = Prefs.of(currentUser).darkMode;
+        SessionStore.issue(SESSION_FILE, SESSION_KEY_FILE, currentUser, users.get(currentUser));
     }
 
     // ===== LOGIN PAGE =====
@@ -290,18 +647,22 @@ public class CollegeGPATracker { // main application class
         loginBtn.addActionListener(_ -> {
             String id = usernameOrEmail.getText().trim();
             String pass = new String(password.getPassword());
-            String user = id;
-
-            if (!users.containsKey(user)) user = findUserByEmail(id);
-
-            if (user != null && users.containsKey(user) && Objects.equals(users.get(user)[0], pass)) {
-                currentUser = user;
-                ensureUserStructures(currentUser);
-                frame.dispose();
-                showDashboard();
-            } else {
-                JOptionPane.showMessageDialog(frame, "Invalid credentials.");
-            }
+            loginBtn.setEnabled(false); // the password is checked on the KDF pool; the window stays responsive
+            checkLoginAsync(id, pass).whenComplete((user, err) -> SwingUtilities.invokeLater(() -> {
+                loginBtn.setEnabled(true);
+                Throwable cause = err instanceof java.util.concurrent.CompletionException ? err.getCause() : err;
+                if (cause instanceof RateLimiter.Limited limited) {
+                    JOptionPane.showMessageDialog(frame, limited.getMessage());
+                } else if (err != null) {
+                    JOptionPane.showMessageDialog(frame, "Too many sign-ins at once. Please try again.");
+                } else if (user != null) {
+                    startSession(user);
+                    frame.dispose();
+                    showDashboard();
+                } else {
+                    JOptionPane.showMessageDialog(frame, "Invalid credentials.");
+                }
+            }));
         });
 
         // SIGNUP
@@ -329,13 +690,22 @@ public class CollegeGPATracker { // main application class
                 return;
             }
 
-            users.put(newUser, new String[]{newPass, email});
-            lastUsernameChange.put(newUser, System.currentTimeMillis());
-            ensureUserStructures(newUser);
-            saveUsers();
-            saveAllUserData();
+            credentials.hash(newPass).whenComplete((hash, err) -> SwingUtilities.invokeLater(() -> {
+                if (err != null) {
+                    JOptionPane.showMessageDialog(frame, "Could not create the account. Please try again.");
+                    return;
+                }
+                if (users.putIfAbsent(newUser, new String[]{hash, email}) != null) {
+                    JOptionPane.showMessageDialog(frame, "Username already exists!");
+                    return;
+                }
+                lastUsernameChange.put(newUser, System.currentTimeMillis());
+                ensureUserStructures(newUser);
+                saveAccount(newUser);
+                saveUserData(newUser);
 
-            JOptionPane.showMessageDialog(frame, "Account created! Please log in.");
+                JOptionPane.showMessageDialog(frame, "Account created! Please log in.");
+            }));
         });
 
         // FORGOT PASSWORD: prompt for email, generate a transient token, attempt to send it by email.
@@ -381,8 +751,14 @@ public class CollegeGPATracker { // main application class
                         JOptionPane.showMessageDialog(frame, "No code entered. You can enter the code later using 'Enter reset code'.");
                         return;
                     }
-                    String matched = PasswordResetStore.consume(provided.trim());
-                    if (matched == null || !matched.equals(user)) {
+                    String matched;
+                    try {
+                        matched = PasswordResetStore.consumeFor(user, provided.trim());
+                    } catch (RateLimiter.Limited limited) {
+                        JOptionPane.showMessageDialog(frame, limited.getMessage());
+                        return;
+                    }
+                    if (matched == null) {
                         JOptionPane.showMessageDialog(frame, "Invalid or expired reset code. Please check your email and try again.");
                         return;
                     }
@@ -397,9 +773,8 @@ public class CollegeGPATracker { // main application class
                         JOptionPane.showMessageDialog(frame, "Passwords do not match or are empty.");
                         return;
                     }
-                    users.get(user)[0] = np;
-                    saveUsers();
-                    JOptionPane.showMessageDialog(frame, "Password updated — you can now log in.");
+                    setPassword(frame, user, np, () ->
+                            JOptionPane.showMessageDialog(frame, "Password updated — you can now log in."));
                 } else {
                     JOptionPane.showMessageDialog(frame, "Failed to send reset email. Please check the application's SMTP settings and try again later. If the problem persists, contact support.");
                 }
@@ -411,21 +786,26 @@ public class CollegeGPATracker { // main application class
         // GOOGLE SIGN-IN (OAuth; requires GoogleSignIn.java and client_secret.json)
         googleBtn.addActionListener(_ -> {
            try {
-               String[] result = GoogleSignIn.authenticate(); // [email, suggestedUsername]
+               String[] result = GoogleSignIn.authenticate(); // [email, suggestedUsername, subject]
                String email = result[0];
              String suggested = result[1];
 
-               String existing = findUserByEmail(email);
+               // linked account first (O(1)); the email scan only runs until the account is linked
+               String existing = GoogleLinks.userFor(result[2]);
+               if (existing == null) existing = findUserByEmail(email);
                 boolean isNew = (existing == null);
+               if (isNew) {
+                   String base = suggested;
+                   for (int n = 2; users.containsKey(suggested); n++) suggested = base + n;
+               }
              String useUsername = isNew ? suggested : existing;
+               GoogleLinks.link(result[2], useUsername);
 
             users.putIfAbsent(useUsername, new String[]{"", email}); // empty pass = Google login
                if (isNew) lastUsernameChange.put(useUsername, System.currentTimeMillis());
-               currentUser = useUsername;
-
-               ensureUserStructures(currentUser);
-               saveUsers();
-               saveAllUserData();
+               saveAccount(useUsername);
+               startSession(useUsername);
+               saveUserData(currentUser);
 
                 frame.dispose();
                 showDashboard();
@@ -451,18 +831,56 @@ public class CollegeGPATracker { // main application class
         JMenuBar menuBar = new JMenuBar();
         JMenu userMenu = new JMenu("User");
         JMenuItem profile = new JMenuItem("Profile");
+        JMenuItem alertsItem = new JMenuItem("Alerts");
         JMenuItem signOut = new JMenuItem("Sign Out");
     JMenuItem signOutGoogle = new JMenuItem("Sign Out (Google)");
         userMenu.add(profile);
+        userMenu.add(alertsItem);
         userMenu.add(signOut);
     userMenu.add(signOutGoogle);
 
+        JMenu editMenu = new JMenu("Edit");
+        JMenuItem undoItem = new JMenuItem("Undo");
+        JMenuItem redoItem = new JMenuItem("Redo");
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        editMenu.add(undoItem);
+        editMenu.add(redoItem);
+
+        JMenu toolsMenu = new JMenu("Tools");
+        JMenuItem gpaPlanner = new JMenuItem("GPA Target Planner");
+        JMenuItem projection = new JMenuItem("Project Final GPA");
+        toolsMenu.add(gpaPlanner);
+        toolsMenu.add(projection);
+        JMenuItem asOf = new JMenuItem("GPA as of Date");
+        toolsMenu.add(asOf);
+
         JMenu viewMenu = new JMenu("View");
         JMenuItem toggleDark = new JMenuItem("Toggle Dark Mode");
         viewMenu.add(toggleDark);
+        JMenu scaleMenu = new JMenu("Default Grading Scale");
+        ButtonGroup scaleGroup = new ButtonGroup();
+        for (GradingScale gs : GradingScale.all()) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(gs.name, gs == GradingScale.defaultScale());
+            item.addActionListener(_ -> {
+                GradingScale.setDefault(gs.id); // bumps the scale version so every cached class GPA refreshes lazily
+                GradingScale.save(SCALES_FILE);
+                events.publish(new GradeEvents.ScaleChanged(0, null));
+            });
+            scaleGroup.add(item);
+            scaleMenu.add(item);
+        }
+        viewMenu.add(scaleMenu);
 
         menuBar.add(userMenu);
+        menuBar.add(editMenu);
         menuBar.add(viewMenu);
+        menuBar.add(toolsMenu);
+        menuBar.add(Box.createHorizontalGlue());
+        JTextField searchField = new PlaceholderTextField("Search classes & assignments");
+        searchField.setMaximumSize(new Dimension(280, 26));
+        searchField.setPreferredSize(new Dimension(280, 26));
+        menuBar.add(searchField);
         frame.setJMenuBar(menuBar);
 
         // Top title
@@ -472,14 +890,89 @@ public class CollegeGPATracker { // main application class
         frame.add(overallGpaLabel, BorderLayout.NORTH);
 
         // Center: semesters
+        // the last-viewed semester is built before the first paint, the others right after it
         JTabbedPane semesters = new JTabbedPane();
+        int last = Math.max(1, Math.min(4, Prefs.of(currentUser).lastSemester));
+        for (int i = 1; i <= 4; i++) {
+            semesters.add("Semester " + i, i == last ? createSemesterPanel(i) : new JPanel());
+        }
+        semesters.setSelectedIndex(last - 1);
         for (int i = 1; i <= 4; i++) {
-            semesters.add("Semester " + i, createSemesterPanel(i));
+            if (i == last) continue;
+            int sem = i;
+            SwingUtilities.invokeLater(() -> semesters.setComponentAt(sem - 1, createSemesterPanel(sem)));
         }
+        semesters.addChangeListener(_ -> {
+            Prefs p = Prefs.of(currentUser);
+            if (currentUser == null || p.lastSemester == semesters.getSelectedIndex() + 1) return;
+            p.lastSemester = semesters.getSelectedIndex() + 1;
+            Prefs.save();
+        });
         frame.add(semesters, BorderLayout.CENTER);
 
+        // undo / redo: restore the class snapshot, then rebuild the affected semester tab
+        history();
+        java.util.function.Consumer<GradeHistory.Version> afterRestore = v -> {
+            if (v == null) return;
+            store.withUser(currentUser, t -> {
+                searchIndex().update(v.semester, v.className, t.get(v.semester).get(v.className));
+                return null;
+            });
+            int tab = semesters.getSelectedIndex();
+            semesters.setComponentAt(v.semester - 1, createSemesterPanel(v.semester));
+            semesters.setSelectedIndex(tab);
+            events.publish(new GradeEvents.Restored(v.semester, v.className));
+        };
+        // once per batch of changes: persist the user's shard and refresh the overall GPA
+        events.subscribe(frame.getRootPane(), batch -> {
+            Set<String> dirty = new HashSet<>();
+            Set<Integer> reloaded = new TreeSet<>();
+            boolean regraded = false;
+            for (GradeEvents.Event e : batch) {
+                if (e instanceof GradeEvents.Reloaded r) {
+                    // changed by another instance: keep undo history and search in step, rebuild the tab
+                    recordEdit(r.semester(), r.className(), "Change from another window");
+                    reloaded.add(r.semester());
+                } else if (e instanceof GradeEvents.ScaleChanged && e.className() == null) {
+                    regraded = true; // the default scale: no stored class changed, only what grades map to
+                } else if (e.semester() == 0 || e.className() == null) {
+                    dirty = null; // touched every class
+                } else if (dirty != null) {
+                    dirty.add(e.semester() + "\u0000" + e.className());
+                }
+            }
+            if (dirty == null || !dirty.isEmpty()) saveUserData(currentUser, dirty);
+            else if (regraded) regraded(currentUser);
+            String user = currentUser;
+            if (achievements != null && user != null) store.withUser(user, t -> {
+                achievements.apply(user, t, batch);
+                return null;
+            });
+            for (int sem : reloaded) {
+                int tab = semesters.getSelectedIndex();
+                semesters.setComponentAt(sem - 1, createSemesterPanel(sem));
+                semesters.setSelectedIndex(tab);
+            }
+            updateOverallGpaLabel();
+        });
+        editMenu.addMenuListener(new javax.swing.event.MenuListener() {
+            @Override public void menuSelected(javax.swing.event.MenuEvent e) {
+                undoItem.setEnabled(history().canUndo());
+                undoItem.setText(history().canUndo() ? "Undo " + history().undoLabel() : "Undo");
+                redoItem.setEnabled(history().canRedo());
+                redoItem.setText(history().canRedo() ? "Redo " + history().redoLabel() : "Redo");
+            }
+            @Override public void menuDeselected(javax.swing.event.MenuEvent e) {}
+            @Override public void menuCanceled(javax.swing.event.MenuEvent e) {}
+        });
+        installSearch(searchField, semesters);
+        undoItem.addActionListener(_ -> afterRestore.accept(store.withUser(currentUser, t -> history().undo(t))));
+        redoItem.addActionListener(_ -> afterRestore.accept(store.withUser(currentUser, t -> history().redo(t))));
+
         // handlers
         signOut.addActionListener(_ -> {
+            SessionStore.clear(SESSION_FILE);
+            store.unpin(currentUser);
             currentUser = null;
             frame.dispose();
             showLoginUI();
@@ -489,22 +982,37 @@ public class CollegeGPATracker { // main application class
             try {
                 GoogleSignIn.clearStoredCredentials();
             } catch (Exception ignored) {}
+            SessionStore.clear(SESSION_FILE);
+            store.unpin(currentUser);
             currentUser = null;
             frame.dispose();
             showLoginUI();
         });
 
         profile.addActionListener(_ -> showUserPanel(frame));
+        alertsItem.addActionListener(_ -> showAlerts(frame));
+        gpaPlanner.addActionListener(_ -> showGpaPlanner(frame));
+        projection.addActionListener(_ -> showProjection(frame));
+        asOf.addActionListener(_ -> showGpaAsOf(frame));
 
         toggleDark.addActionListener(_ -> {
             darkMode = !darkMode;
-            applyTheme(frame.getContentPane());
-            SwingUtilities.updateComponentTreeUI(frame);
+            Prefs.of(currentUser).darkMode = darkMode;
+            Prefs.save();
+            Theme.use(Theme.of(darkMode)); // every themed color reads the palette when painted
+            frame.repaint();
         });
 
-        applyTheme(frame.getContentPane());
+        Theme.use(Theme.of(darkMode));
+        Theme.install(frame.getJMenuBar());
+        Theme.install(frame.getContentPane());
+        frame.getContentPane().setBackground(Theme.BACKGROUND);
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
+        if (!interactiveLogged) {
+            interactiveLogged = true;
+            System.out.printf("Dashboard interactive %.0f ms after launch%n", (System.nanoTime() - LAUNCH_NANOS) / 1e6);
+        }
     }
 
     // ===== SEMESTER PANEL =====
@@ -532,11 +1040,13 @@ public class CollegeGPATracker { // main application class
         left.add(classScroll, BorderLayout.CENTER);
 
         // Center: table + pie + trend + badges
-        String[] cols = {"Assignment", "Category", "Score (%)"};
+        String[] cols = {"Assignment", "Category", "Score (%)", "ID"};
         DefaultTableModel model = new DefaultTableModel(cols, 0){
-            @Override public boolean isCellEditable(int r, int c){ return false; }
+            @Override public boolean isCellEditable(int r, int c){ return c < 3; } // inline edit; ID is hidden
+            @Override public Class<?> getColumnClass(int c){ return c == 2 ? Double.class : (c == 3 ? Integer.class : String.class); }
         };
         JTable table = new JTable(model);
+        table.removeColumn(table.getColumnModel().getColumn(3)); // keep the id in the model only
         table.setRowHeight(26);
         table.setFont(new Font("SansSerif", Font.PLAIN, 14));
         table.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 14));
@@ -547,14 +1057,17 @@ public class CollegeGPATracker { // main application class
 
         JButton addAssignmentBtn = pillButton("+ Add Assignment");
         JButton deleteAssignmentBtn = pillButton("Delete Assignment");
-        JButton weightsBtn = pillButton("\uD83D\uDD11 Weights");
+        JButton needBtn = pillButton("\uD83C\uDFAF What do I need?");
+        JButton weightsBtn = pillButton("\uD83D\uDD11 Categories");
         JButton creditsBtn = pillButton("\uD83D\uDCB0 Credits");
+        JButton scaleBtn = pillButton("\uD83C\uDF93 Scale");
 
         JLabel classGpaLabel = new JLabel("Class GPA: —", SwingConstants.LEFT);
         classGpaLabel.setFont(new Font("SansSerif", Font.BOLD, 18));
 
         JPanel centerTop = new JPanel(new BorderLayout());
         JPanel rightControls = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 2));
+        rightControls.add(scaleBtn);
         rightControls.add(creditsBtn);
         rightControls.add(weightsBtn);
         centerTop.add(classTitle, BorderLayout.CENTER);
@@ -564,6 +1077,7 @@ public class CollegeGPATracker { // main application class
         JPanel bottomLeft = new JPanel(new FlowLayout(FlowLayout.LEFT));
         bottomLeft.add(classGpaLabel);
         JPanel bottomRight = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        bottomRight.add(needBtn);
         bottomRight.add(deleteAssignmentBtn);
         bottomRight.add(addAssignmentBtn);
         centerBottom.add(bottomLeft, BorderLayout.WEST);
@@ -616,19 +1130,65 @@ public class CollegeGPATracker { // main application class
 
         root.add(split, BorderLayout.CENTER);
 
+        // lets the search box jump to a class (and optionally an assignment row by id)
+        java.util.function.BiConsumer<String, Integer> reveal = (cls, assignmentId) -> {
+            classList.setSelectedValue(cls, true);
+            if (assignmentId == null || assignmentId == 0) return;
+            for (int r = 0; r < model.getRowCount(); r++) {
+                if (assignmentId.equals(model.getValueAt(r, 3))) {
+                    int v = table.convertRowIndexToView(r);
+                    table.setRowSelectionInterval(v, v);
+                    table.scrollRectToVisible(table.getCellRect(v, 0, true));
+                    break;
+                }
+            }
+        };
+        root.putClientProperty("reveal", reveal);
+
         // ensure storage
         ensureUserStructures(currentUser);
-        userData.get(currentUser).putIfAbsent(semesterNum, new HashMap<>());
-        // fill list
-        for (String cls : userData.get(currentUser).get(semesterNum).keySet()) {
-            classListModel.addElement(cls);
-        }
+        /*
+         * The signed-in user's classes are changed here on the EDT while the cohort, digest and badge
+         * threads read them under the user's lock, and percent() / gpa() fill caches as they read. So
+         * every change below, and every read that computes a grade, runs under store.withUser, as the
+         * API's sessions do. Dialogs are shown outside it.
+         */
+        store.withUser(currentUser, t -> {
+            t.putIfAbsent(semesterNum, new HashMap<>());
+            for (String cls : t.get(semesterNum).keySet()) classListModel.addElement(cls); // fill list
+            return null;
+        });
+
+        // title, class GPA, charts and badges for the selected class (cleared when none is selected)
+        record Shown(String gpa, String[] categories, double[] averages, List<Double> trend) {}
+        Runnable refreshSelected = () -> {
+            String selectedClass = classList.getSelectedValue();
+            Shown shown = selectedClass == null ? null : store.withUser(currentUser, t -> {
+                ClassData cd = t.get(semesterNum).get(selectedClass);
+                if (cd == null) return null;
+                return new Shown(classGpaText(cd) + cohortText(selectedClass, cd), cd.categoryNames(),
+                        categoryAverages(cd), new ArrayList<>(cd.historyPercent));
+            });
+            if (shown == null) {
+                classTitle.setText("Select a class");
+                classGpaLabel.setText("Class GPA: —");
+                piePanel.clear();
+                trendPanel.setData(new ArrayList<>());
+                badgePanel.show(0, null);
+                return;
+            }
+            classTitle.setText(selectedClass + " — Assignments");
+            classGpaLabel.setText(shown.gpa());
+            piePanel.setData(shown.categories(), shown.averages());
+            trendPanel.setData(shown.trend());
+            badgePanel.show(semesterNum, selectedClass);
+        };
 
         // interactions
         addClassBtn.addActionListener(_ -> {
             String className = JOptionPane.showInputDialog(root, "Enter class name:");
             if (className == null || className.trim().isEmpty()) return;
-            if (userData.get(currentUser).get(semesterNum).containsKey(className)) {
+            if (store.withUser(currentUser, t -> t.get(semesterNum).containsKey(className))) {
                 JOptionPane.showMessageDialog(root, "Class already exists.");
                 return;
             }
@@ -641,67 +1201,118 @@ public class CollegeGPATracker { // main application class
             } catch (Exception ignored) {}
             ClassData cd = new ClassData();
             cd.credits = credits;
-            userData.get(currentUser).get(semesterNum).put(className, cd);
+            if (store.withUser(currentUser, t -> t.get(semesterNum).putIfAbsent(className, cd)) != null) return;
             classListModel.addElement(className);
-            saveAllUserData();
-            updateOverallGpaLabel();
-            classList.repaint();
+            recordEdit(semesterNum, className, "Add class " + className);
+            events.publish(new GradeEvents.ClassAdded(semesterNum, className));
         });
 
         deleteClassBtn.addActionListener(_ -> {
             String selectedClass = classList.getSelectedValue();
             if (selectedClass == null) return;
-            userData.get(currentUser).get(semesterNum).remove(selectedClass);
+            store.withUser(currentUser, t -> t.get(semesterNum).remove(selectedClass));
             classListModel.removeElement(selectedClass);
             model.setRowCount(0);
-            classTitle.setText("Select a class");
-            classGpaLabel.setText("Class GPA: —");
-            piePanel.setData(0,0,0);
-            trendPanel.setData(new ArrayList<>());
-            badgePanel.setBadges(false, false);
-            saveAllUserData();
-            updateOverallGpaLabel();
-            classList.repaint();
+            recordEdit(semesterNum, selectedClass, "Delete class " + selectedClass);
+            events.publish(new GradeEvents.ClassRemoved(semesterNum, selectedClass));
         });
 
         classList.addListSelectionListener(e -> {
             if (e.getValueIsAdjusting()) return;
             String selectedClass = classList.getSelectedValue();
             if (selectedClass == null) return;
-            classTitle.setText(selectedClass + " — Assignments");
 
             model.setRowCount(0);
-            ClassData cd = userData.get(currentUser).get(semesterNum).get(selectedClass);
-            for (String cat : cd.assignments.keySet()) {
-                for (Assignment a : cd.assignments.get(cat)) {
-                    model.addRow(new Object[]{a.name, a.category, a.score});
+            List<Object[]> rows = new ArrayList<>();
+            String[] categories = store.withUser(currentUser, t -> {
+                ClassData cd = t.get(semesterNum).get(selectedClass);
+                if (cd == null) return null;
+                for (Category cat : cd.categories) {
+                    for (Assignment a : cat.items) {
+                        rows.add(new Object[]{a.name, a.category, a.score, a.id});
+                    }
                 }
+                return cd.categoryNames();
+            });
+            if (categories == null) return;
+            for (Object[] row : rows) model.addRow(row);
+            table.getColumnModel().getColumn(1).setCellEditor(new DefaultCellEditor(new JComboBox<>(categories)));
+            refreshSelected.run();
+        });
+
+        // one redraw per batch of changes to this semester, however many handlers published
+        events.subscribe(root, batch -> {
+            boolean mine = false, selected = false;
+            String sel = classList.getSelectedValue();
+            for (GradeEvents.Event e : batch) {
+                if (e.semester() != 0 && e.semester() != semesterNum) continue;
+                mine = true;
+                if (e instanceof GradeEvents.ClassRemoved || (sel != null && e.affects(semesterNum, sel))) selected = true;
             }
-            double classPercent = calculateClassPercent(cd);
-            double classGPA = percentToGPA(classPercent);
-            classGpaLabel.setText("Class GPA: " + String.format("%.2f", classGPA));
-
-            // update charts
-            double hwAvg = avgFor(cd, "Homework");
-            double exAvg = avgFor(cd, "Exam");
-            double prAvg = avgFor(cd, "Project");
-            piePanel.setData(hwAvg, exAvg, prAvg);
-            trendPanel.setData(cd.historyPercent);
-            badgePanel.setBadges(classGPA >= 3.8, isComeback(cd));
+            if (!mine) return;
+            classList.repaint();
+            if (selected) refreshSelected.run();
+        });
+
+        // inline cell edits go straight to the assignment through its id
+        model.addTableModelListener(e -> {
+            if (e.getType() != javax.swing.event.TableModelEvent.UPDATE || e.getFirstRow() < 0 || e.getColumn() < 0) return;
+            String selectedClass = classList.getSelectedValue();
+            if (selectedClass == null) return;
+            int row = e.getFirstRow();
+            int id = (Integer) model.getValueAt(row, 3);
+            Object nameVal = model.getValueAt(row, 0);
+            Object scoreVal = model.getValueAt(row, 2);
+            Object catVal = model.getValueAt(row, 1);
+            String newName = nameVal == null ? "" : nameVal.toString().trim();
+            // null: no such assignment, or nothing changed
+            Boolean applied = store.withUser(currentUser, t -> {
+                ClassData cd = t.get(semesterNum).get(selectedClass);
+                Assignment a = cd == null ? null : cd.find(id);
+                if (a == null) return null;
+                if (newName.isEmpty() || !(scoreVal instanceof Double)) {
+                    // reject: put the stored values back
+                    String name = a.name;
+                    double score = a.score;
+                    SwingUtilities.invokeLater(() -> {
+                        model.setValueAt(name, row, 0);
+                        model.setValueAt(score, row, 2);
+                    });
+                    return false;
+                }
+                double newScore = (Double) scoreVal;
+                boolean moved = catVal != null && !catVal.equals(a.category);
+                if (newName.equals(a.name) && newScore == a.score && !moved) return null;
+                cd.update(id, newName, newScore);
+                if (moved) cd.move(id, cd.indexOf(catVal.toString()));
+                pushHistory(cd);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(applied)) return;
+
+            recordEdit(semesterNum, selectedClass, "Edit " + newName);
+            events.publish(new GradeEvents.AssignmentEdited(semesterNum, selectedClass, id));
         });
 
         addAssignmentBtn.addActionListener(_ -> {
             String selectedClass = classList.getSelectedValue();
             if (selectedClass == null) return;
-            ClassData cd = userData.get(currentUser).get(semesterNum).get(selectedClass);
+            String[] categories = store.withUser(currentUser, t -> {
+                ClassData cd = t.get(semesterNum).get(selectedClass);
+                return cd == null ? null : cd.categoryNames();
+            });
+            if (categories == null) return;
 
             String aName = JOptionPane.showInputDialog(root, "Assignment name:");
             if (aName == null || aName.trim().isEmpty()) return;
 
-            String[] categories = {"Homework", "Exam", "Project"};
+            if (categories.length == 0) {
+                JOptionPane.showMessageDialog(root, "Add a category first (Categories button).");
+                return;
+            }
             String category = (String) JOptionPane.showInputDialog(
                     root, "Select category:", "Assignment Type",
-                    JOptionPane.PLAIN_MESSAGE, null, categories, "Homework");
+                    JOptionPane.PLAIN_MESSAGE, null, categories, categories[0]);
             if (category == null) return;
 
             String sText = JOptionPane.showInputDialog(root, "Score (%):");
@@ -710,20 +1321,17 @@ public class CollegeGPATracker { // main application class
             try {
                 double score = Double.parseDouble(sText);
                 Assignment a = new Assignment(aName, score, category);
-                cd.assignments.get(category).add(a);
-                ((DefaultTableModel)table.getModel()).addRow(new Object[]{aName, category, score});
-                pushHistory(cd);
-                saveAllUserData();
-
-                double classPercent = calculateClassPercent(cd);
-                classGpaLabel.setText("Class GPA: " + String.format("%.2f", percentToGPA(classPercent)));
-                updateOverallGpaLabel();
-
-                // refresh visuals
-                classList.repaint();
-                piePanel.setData(avgFor(cd,"Homework"), avgFor(cd,"Exam"), avgFor(cd,"Project"));
-                trendPanel.setData(cd.historyPercent);
-                badgePanel.setBadges(percentToGPA(classPercent) >= 3.8, isComeback(cd));
+                boolean added = store.withUser(currentUser, t -> {
+                    ClassData cd = t.get(semesterNum).get(selectedClass);
+                    if (cd == null || cd.indexOf(category) < 0) return false; // changed while the dialogs were open
+                    cd.add(cd.indexOf(category), a);
+                    pushHistory(cd);
+                    return true;
+                });
+                if (!added) return;
+                ((DefaultTableModel)table.getModel()).addRow(new Object[]{aName, category, score, a.id});
+                recordEdit(semesterNum, selectedClass, "Add " + aName);
+                events.publish(new GradeEvents.AssignmentAdded(semesterNum, selectedClass, a.id));
             } catch (Exception ignored) {}
         });
 
@@ -733,83 +1341,526 @@ public class CollegeGPATracker { // main application class
             int row = table.getSelectedRow();
             if (row < 0) return;
 
-            ClassData cd = userData.get(currentUser).get(semesterNum).get(selectedClass);
-            String aName = (String) model.getValueAt(row, 0);
-            String category = (String) model.getValueAt(row, 1);
-
-            List<Assignment> list = cd.assignments.get(category);
-            list.removeIf(a -> a.name.equals(aName));
+            if (table.isEditing()) table.getCellEditor().cancelCellEditing();
+            row = table.convertRowIndexToModel(row);
+            int id = (Integer) model.getValueAt(row, 3);
+            Assignment removed = store.withUser(currentUser, t -> {
+                ClassData cd = t.get(semesterNum).get(selectedClass);
+                Assignment a = cd == null ? null : cd.removeById(id);
+                if (a != null) pushHistory(cd);
+                return a;
+            });
+            if (removed == null) return;
+            String aName = removed.name;
             model.removeRow(row);
 
-            pushHistory(cd);
-            saveAllUserData();
-
-            double classPercent = calculateClassPercent(cd);
-            classGpaLabel.setText("Class GPA: " + String.format("%.2f", percentToGPA(classPercent)));
-            updateOverallGpaLabel();
-
-            classList.repaint();
-            piePanel.setData(avgFor(cd,"Homework"), avgFor(cd,"Exam"), avgFor(cd,"Project"));
-            trendPanel.setData(cd.historyPercent);
-            badgePanel.setBadges(percentToGPA(classPercent) >= 3.8, isComeback(cd));
+            recordEdit(semesterNum, selectedClass, "Delete " + aName);
+            events.publish(new GradeEvents.AssignmentRemoved(semesterNum, selectedClass, removed.id));
         });
 
         weightsBtn.addActionListener(_ -> {
             String selectedClass = classList.getSelectedValue();
             if (selectedClass == null) return;
-            ClassData cd = userData.get(currentUser).get(semesterNum).get(selectedClass);
+            ClassData cd = store.withUser(currentUser, t -> t.get(semesterNum).get(selectedClass));
+            if (cd == null) return;
 
             try {
-                int hw = Integer.parseInt(JOptionPane.showInputDialog(root, "Homework weight %:", cd.weights.get("Homework")));
-                int ex = Integer.parseInt(JOptionPane.showInputDialog(root, "Exam weight %:", cd.weights.get("Exam")));
-                int pr = Integer.parseInt(JOptionPane.showInputDialog(root, "Project weight %:", cd.weights.get("Project")));
-                if (hw + ex + pr != 100) {
-                    JOptionPane.showMessageDialog(root, "Weights must total 100%.");
-                    return;
-                }
-                cd.weights.put("Homework", hw);
-                cd.weights.put("Exam", ex);
-                cd.weights.put("Project", pr);
-
-                pushHistory(cd);
-                saveAllUserData();
+                if (!editCategories(root, cd)) return; // applies the change, and the history point, under the lock
 
-                double classPercent = calculateClassPercent(cd);
-                classGpaLabel.setText("Class GPA: " + String.format("%.2f", percentToGPA(classPercent)));
-                updateOverallGpaLabel();
-
-                classList.repaint();
-                piePanel.setData(avgFor(cd,"Homework"), avgFor(cd,"Exam"), avgFor(cd,"Project"));
-                trendPanel.setData(cd.historyPercent);
-                badgePanel.setBadges(percentToGPA(classPercent) >= 3.8, isComeback(cd));
+                recordEdit(semesterNum, selectedClass, "Edit categories");
+                events.publish(new GradeEvents.WeightsChanged(semesterNum, selectedClass));
             } catch (Exception ignored) {}
         });
 
         creditsBtn.addActionListener(_ -> {
             String selectedClass = classList.getSelectedValue();
             if (selectedClass == null) return;
-            ClassData cd = userData.get(currentUser).get(semesterNum).get(selectedClass);
+            ClassData cd = store.withUser(currentUser, t -> t.get(semesterNum).get(selectedClass));
+            if (cd == null) return;
             String newC = JOptionPane.showInputDialog(root, "Credit hours:", cd.credits);
             try {
                 if (newC != null && !newC.trim().isEmpty()) {
                     int val = Math.max(0, Integer.parseInt(newC.trim()));
-                    cd.credits = val;
-                    saveAllUserData();
-                    updateOverallGpaLabel();
+                    store.withUser(currentUser, _ -> cd.credits = val);
+                    recordEdit(semesterNum, selectedClass, "Change credits");
+                    events.publish(new GradeEvents.CreditsChanged(semesterNum, selectedClass));
                 }
             } catch (Exception ignored) {}
         });
 
+        needBtn.addActionListener(_ -> {
+            String selectedClass = classList.getSelectedValue();
+            if (selectedClass == null) return;
+            GradeSolver.ClassProbe probe = store.withUser(currentUser, t -> {
+                ClassData cd = t.get(semesterNum).get(selectedClass);
+                return cd == null || cd.categories.isEmpty() ? null : new GradeSolver.ClassProbe(cd);
+            });
+            if (probe != null) showTargetSolver(root, selectedClass, probe);
+        });
+
+        scaleBtn.addActionListener(_ -> {
+            String selectedClass = classList.getSelectedValue();
+            if (selectedClass == null) return;
+            ClassData cd = store.withUser(currentUser, t -> t.get(semesterNum).get(selectedClass));
+            if (cd == null) return;
+            List<String> options = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
+            options.add("Default (" + GradingScale.defaultScale().name + ")");
+            ids.add(null);
+            for (GradingScale gs : GradingScale.all()) {
+                options.add(gs.name);
+                ids.add(gs.id);
+            }
+            options.add("Pass/Fail (excluded from GPA)");
+            String current = cd.passFail ? options.get(options.size() - 1) : options.get(Math.max(0, ids.indexOf(cd.scale)));
+            String choice = (String) JOptionPane.showInputDialog(root, "Grading scale for " + selectedClass + ":",
+                    "Grading Scale", JOptionPane.PLAIN_MESSAGE, null, options.toArray(), current);
+            if (choice == null) return;
+            int idx = options.indexOf(choice);
+            store.withUser(currentUser, _ -> {
+                cd.passFail = (idx == options.size() - 1);
+                if (!cd.passFail) cd.scale = ids.get(idx);
+                return null;
+            });
+            recordEdit(semesterNum, selectedClass, "Change scale");
+            events.publish(new GradeEvents.ScaleChanged(semesterNum, selectedClass));
+        });
+
+        Theme.install(root);
         return root;
     }
 
+    // ===== Search =====
+    // search-as-you-type over the user's index; picking a result opens its semester tab and class
+    private static void installSearch(JTextField field, JTabbedPane semesters) {
+        DefaultListModel<SearchIndex.Hit> results = new DefaultListModel<>();
+        JList<SearchIndex.Hit> list = new JList<>(results);
+        list.setFocusable(false);
+        JPopupMenu popup = new JPopupMenu();
+        popup.setFocusable(false);
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setPreferredSize(new Dimension(460, 220));
+        popup.add(scroll);
+
+        Runnable open = () -> {
+            SearchIndex.Hit hit = list.getSelectedValue();
+            if (hit == null && !results.isEmpty()) hit = results.get(0);
+            if (hit == null) return;
+            popup.setVisible(false);
+            semesters.setSelectedIndex(hit.semester - 1);
+            Object reveal = ((JComponent) semesters.getComponentAt(hit.semester - 1)).getClientProperty("reveal");
+            if (reveal instanceof java.util.function.BiConsumer) {
+                @SuppressWarnings("unchecked")
+                java.util.function.BiConsumer<String, Integer> r = (java.util.function.BiConsumer<String, Integer>) reveal;
+                r.accept(hit.className, hit.assignmentId);
+            }
+        };
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void changed() {
+                results.clear();
+                for (SearchIndex.Hit h : searchIndex().search(field.getText(), 50)) results.addElement(h);
+                if (results.isEmpty()) { popup.setVisible(false); return; }
+                list.setSelectedIndex(0);
+                if (!popup.isVisible()) popup.show(field, 0, field.getHeight());
+                field.requestFocusInWindow();
+            }
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { changed(); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { changed(); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { changed(); }
+        });
+        field.addKeyListener(new KeyAdapter() {
+            @Override public void keyPressed(KeyEvent e) {
+                int i = list.getSelectedIndex();
+                if (e.getKeyCode() == KeyEvent.VK_DOWN && i < results.size() - 1) list.setSelectedIndex(i + 1);
+                else if (e.getKeyCode() == KeyEvent.VK_UP && i > 0) list.setSelectedIndex(i - 1);
+                else if (e.getKeyCode() == KeyEvent.VK_ENTER) open.run();
+                else if (e.getKeyCode() == KeyEvent.VK_ESCAPE) popup.setVisible(false);
+                else return;
+                list.ensureIndexIsVisible(list.getSelectedIndex());
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) { open.run(); }
+        });
+    }
+
+    // ===== Target Solvers =====
+    // slider-driven "what do I need on the rest of this class" dialog; never mutates the class
+    private static void showTargetSolver(Component parent, String className, GradeSolver.ClassProbe probe) {
+        JComboBox<String> catBox = new JComboBox<>(probe.names);
+        int firstPlanned = 0;
+        for (int i = 0; i < probe.names.length; i++) if (probe.planned(i) > 0) { firstPlanned = i; break; }
+        catBox.setSelectedIndex(firstPlanned);
+        JSpinner countSpin = new JSpinner(new SpinnerNumberModel(Math.max(1, probe.planned(firstPlanned)), 1, 50, 1));
+        JSlider target = new JSlider(50, 100, 90);
+        target.setMajorTickSpacing(10);
+        target.setPaintTicks(true);
+        target.setPaintLabels(true);
+        JLabel answer = new JLabel(" ", SwingConstants.CENTER);
+        answer.setFont(new Font("SansSerif", Font.BOLD, 16));
+        Runnable solve = () -> {
+            int cat = catBox.getSelectedIndex();
+            int count = (Integer) countSpin.getValue();
+            int t = target.getValue();
+            answer.setText(neededText(probe.requiredScore(cat, count, t), count, probe.names[cat], t + "%"));
+        };
+        catBox.addActionListener(_ -> {
+            int planned = probe.planned(catBox.getSelectedIndex());
+            if (planned > 0) countSpin.setValue(planned);
+            solve.run();
+        });
+        countSpin.addChangeListener(_ -> solve.run());
+        target.addChangeListener(_ -> solve.run());
+        solve.run();
+
+        JPanel panel = new JPanel(new GridLayout(0, 1, 6, 6));
+        panel.add(new JLabel("Current: " + String.format("%.1f", probe.currentPercent()) + "%"));
+        panel.add(new JLabel("Remaining work in:")); panel.add(catBox);
+        panel.add(new JLabel("Number of assignments:")); panel.add(countSpin);
+        panel.add(new JLabel("Target class grade (%):")); panel.add(target);
+        panel.add(answer);
+        JOptionPane.showMessageDialog(parent, panel, className + " — What do I need?", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    private static String neededText(double score, int count, String what, String target) {
+        String each = count == 1 ? "" : " each";
+        if (Double.isNaN(score)) return "Plan remaining work under Categories first.";
+        if (Double.isInfinite(score)) return target + " is out of reach on " + what + ".";
+        if (score <= 0) return target + " is already secured.";
+        return "You need " + String.format("%.1f", score) + "%" + each + " on " + what + ".";
+    }
+
+    // cumulative GPA target planner over one semester's classes with planned remaining work
+    private static void showGpaPlanner(Component parent) {
+        if (currentUser == null) return;
+        JComboBox<Integer> semBox = new JComboBox<>(new Integer[]{1, 2, 3, 4});
+        JSlider target = new JSlider(0, 430, (int) Math.round(Math.max(200, calculateOverallGPA(currentUser) * 100)));
+        target.setMajorTickSpacing(100);
+        target.setPaintTicks(true);
+        JLabel targetLabel = new JLabel();
+        DefaultTableModel model = new DefaultTableModel(new String[]{"Class", "Credits", "Need class %", "Need on remaining"}, 0) {
+            @Override public boolean isCellEditable(int r, int c) { return false; }
+        };
+        JLabel summary = new JLabel(" ");
+        GradeSolver.SemesterPlanner[] planner = new GradeSolver.SemesterPlanner[1];
+        Runnable solve = () -> {
+            double t = target.getValue() / 100.0;
+            targetLabel.setText("Target cumulative GPA: " + String.format("%.2f", t));
+            GradeSolver.SemesterPlan plan = planner[0].plan(t);
+            model.setRowCount(0);
+            if (planner[0].openClasses() == 0) {
+                summary.setText("No classes with planned remaining work this semester (set Planned # under Categories).");
+            } else if (!plan.reachable()) {
+                summary.setText("Not reachable this semester.");
+            } else {
+                summary.setText("Every open class needs ≥ " + String.format("%.2f", plan.gradePoints)
+                        + " points → GPA " + String.format("%.2f", plan.projectedGpa));
+                for (GradeSolver.ClassNeed need : plan.needs) {
+                    String onRest = need.requiredScore <= 0 ? "secured" : String.format("%.1f%%", need.requiredScore);
+                    model.addRow(new Object[]{need.className, need.credits, String.format("%.1f", need.requiredPercent), onRest});
+                }
+            }
+        };
+        semBox.addActionListener(_ -> {
+            int sem = (Integer) semBox.getSelectedItem();
+            planner[0] = store.withUser(currentUser, t -> new GradeSolver.SemesterPlanner(t, sem));
+            solve.run();
+        });
+        target.addChangeListener(_ -> solve.run());
+        planner[0] = store.withUser(currentUser, t -> new GradeSolver.SemesterPlanner(t, 1));
+        solve.run();
+
+        JPanel top = new JPanel(new GridLayout(0, 1, 4, 4));
+        top.add(new JLabel("Current GPA: " + String.format("%.2f", calculateOverallGPA(currentUser))));
+        top.add(semBox);
+        top.add(targetLabel);
+        top.add(target);
+        JPanel panel = new JPanel(new BorderLayout(6, 6));
+        panel.add(top, BorderLayout.NORTH);
+        JScrollPane scroll = new JScrollPane(new JTable(model));
+        scroll.setPreferredSize(new Dimension(460, 160));
+        panel.add(scroll, BorderLayout.CENTER);
+        panel.add(summary, BorderLayout.SOUTH);
+        JOptionPane.showMessageDialog(parent, panel, "GPA Target Planner", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    // Monte Carlo projection of the rest of the term; simulation runs off the EDT
+    private static void showProjection(JFrame parent) {
+        if (currentUser == null) return;
+        GpaProjection.Model model = store.withUser(currentUser, GpaProjection::build);
+        if (model.openClasses() == 0) {
+            JOptionPane.showMessageDialog(parent, "No classes with planned remaining work (set Planned # under Categories).");
+            return;
+        }
+        double current = calculateOverallGPA(currentUser);
+        parent.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<GpaProjection.Result, Void>() {
+            @Override protected GpaProjection.Result doInBackground() {
+                return GpaProjection.run(model, 10000, System.nanoTime());
+            }
+            @Override protected void done() {
+                parent.setCursor(Cursor.getDefaultCursor());
+                GpaProjection.Result r;
+                try { r = get(); } catch (Exception e) { e.printStackTrace(); return; }
+                DefaultTableModel table = new DefaultTableModel(new String[]{"Class", "Likely final %", "10th–90th pct"}, 0) {
+                    @Override public boolean isCellEditable(int row, int c) { return false; }
+                };
+                for (int i = 0; i < r.classNames.length; i++) {
+                    table.addRow(new Object[]{r.classNames[i], String.format("%.0f", r.classPercentile(i, 0.5)),
+                            String.format("%.0f – %.0f", r.classPercentile(i, 0.1), r.classPercentile(i, 0.9))});
+                }
+                JPanel panel = new JPanel(new BorderLayout(6, 6));
+                JLabel head = new JLabel("<html>Projected GPA: <b>" + String.format("%.2f", r.gpaPercentile(0.5)) + "</b>"
+                        + " (90% range " + String.format("%.2f – %.2f", r.gpaPercentile(0.05), r.gpaPercentile(0.95)) + ")<br>"
+                        + "Chance of staying at or above " + String.format("%.2f", current) + ": "
+                        + String.format("%.0f%%", 100 * r.probabilityAtLeast(current))
+                        + "<br><small>" + r.trials + " simulations in " + (r.elapsedNanos / 1_000_000) + " ms</small></html>");
+                panel.add(head, BorderLayout.NORTH);
+                JScrollPane scroll = new JScrollPane(new JTable(table));
+                scroll.setPreferredSize(new Dimension(420, 160));
+                panel.add(scroll, BorderLayout.CENTER);
+                JOptionPane.showMessageDialog(parent, panel, "GPA Projection", JOptionPane.PLAIN_MESSAGE);
+            }
+        }.execute();
+    }
+
+    // time travel: GPA and class percents as they stood at the end of a given day
+    private static void showGpaAsOf(JFrame parent) {
+        java.text.SimpleDateFormat fmt = new java.text.SimpleDateFormat("yyyy-MM-dd");
+        String day = JOptionPane.showInputDialog(parent, "Show GPA as of (yyyy-MM-dd):",
+                fmt.format(new Date(history().firstTime())));
+        if (day == null || day.trim().isEmpty()) return;
+        long endOfDay;
+        try {
+            endOfDay = fmt.parse(day.trim()).getTime() + 24L * 60 * 60 * 1000 - 1;
+        } catch (java.text.ParseException e) {
+            JOptionPane.showMessageDialog(parent, "Use the format yyyy-MM-dd.");
+            return;
+        }
+        GradeHistory.Version v = history().asOf(endOfDay);
+        if (v == null) {
+            JOptionPane.showMessageDialog(parent, "No history recorded before " + day.trim() + ".");
+            return;
+        }
+        StringBuilder sb = new StringBuilder("<html><b>GPA on " + day.trim() + ": " + String.format("%.2f", GradeHistory.gpa(v)) + "</b>");
+        for (int sem = 1; sem <= 4; sem++) {
+            Map<String, Double> classes = GradeHistory.percents(v, sem);
+            if (classes.isEmpty()) continue;
+            sb.append("<br><br>Semester ").append(sem);
+            for (Map.Entry<String, Double> e : classes.entrySet()) {
+                sb.append("<br>&nbsp;&nbsp;").append(e.getKey()).append(": ").append(String.format("%.1f%%", e.getValue()));
+            }
+        }
+        JOptionPane.showMessageDialog(parent, sb.append("</html>").toString(), "GPA as of " + day.trim(), JOptionPane.PLAIN_MESSAGE);
+    }
+
+    // ===== Grade Alerts =====
+    // the user's alert rules (add / remove), email opt-in, and what fired lately
+    private static void showAlerts(JFrame parent) {
+        String user = currentUser;
+        DefaultListModel<Alerts.Rule> model = new DefaultListModel<>();
+        alerts.rules(user).forEach(model::addElement);
+        JList<Alerts.Rule> list = new JList<>(model);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override public Component getListCellRendererComponent(JList<?> l, Object v, int i, boolean sel, boolean focus) {
+                return super.getListCellRendererComponent(l, ((Alerts.Rule) v).describe(), i, sel, focus);
+            }
+        });
+        list.setVisibleRowCount(6);
+        JTextArea recent = new JTextArea(8, 48);
+        recent.setEditable(false);
+        Runnable showRecent = () -> {
+            StringBuilder sb = new StringBuilder();
+            java.text.SimpleDateFormat fmt = new java.text.SimpleDateFormat("MMM d HH:mm");
+            for (Alerts.Alert a : alerts.recent(user)) sb.append(fmt.format(new Date(a.at()))).append("  ").append(a.message()).append('\n');
+            recent.setText(sb.length() == 0 ? "No alerts yet." : sb.toString());
+        };
+        showRecent.run();
+
+        JButton add = pillButton("Add rule");
+        JButton remove = pillButton("Remove");
+        JCheckBox mail = new JCheckBox("Email me alerts too", Prefs.wantsAlertMail(user));
+        add.addActionListener(_ -> {
+            String[] kinds = {"A class drops below a letter", "A class drops below a percent", "Semester GPA drops below", "Overall GPA drops below"};
+            JComboBox<String> kind = new JComboBox<>(kinds);
+            JComboBox<String> sem = new JComboBox<>(new String[]{"Any semester", "Semester 1", "Semester 2", "Semester 3", "Semester 4"});
+            JTextField cls = new JTextField();
+            JTextField value = new JTextField("B");
+            kind.addActionListener(_ -> value.setText(new String[]{"B", "75", "3.0", "3.0"}[kind.getSelectedIndex()]));
+            JPanel form = new JPanel(new GridLayout(4, 2, 8, 8));
+            form.add(new JLabel("Alert when:")); form.add(kind);
+            form.add(new JLabel("Semester:")); form.add(sem);
+            form.add(new JLabel("Class (blank = any):")); form.add(cls);
+            form.add(new JLabel("Letter / percent / GPA:")); form.add(value);
+            if (JOptionPane.showConfirmDialog(parent, form, "New alert", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) return;
+            Alerts.Kind k = Alerts.Kind.values()[kind.getSelectedIndex()];
+            String v = value.getText().trim();
+            double threshold = 0;
+            String letter = null;
+            if (k == Alerts.Kind.CLASS_BELOW_LETTER) {
+                if (Double.isNaN(GradingScale.defaultScale().pointsFor(v))) {
+                    JOptionPane.showMessageDialog(parent, "\"" + v + "\" is not a letter on the " + GradingScale.defaultScale().name + " scale.");
+                    return;
+                }
+                letter = v.toUpperCase();
+            } else {
+                try {
+                    threshold = Double.parseDouble(v);
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(parent, "Enter a number.");
+                    return;
+                }
+            }
+            Alerts.Kind fk = k;
+            double ft = threshold;
+            String fl = letter;
+            boolean classRule = k == Alerts.Kind.CLASS_BELOW_LETTER || k == Alerts.Kind.CLASS_BELOW_PERCENT;
+            Alerts.Rule r = store.withUser(user, t -> alerts.addRule(user, fk, ft, fl, sem.getSelectedIndex(),
+                    classRule ? cls.getText() : null, t));
+            model.addElement(r);
+            showRecent.run();
+        });
+        remove.addActionListener(_ -> {
+            Alerts.Rule r = list.getSelectedValue();
+            if (r == null) return;
+            alerts.removeRule(user, r.id());
+            model.removeElement(r);
+        });
+        mail.addActionListener(_ -> {
+            Prefs.of(user).alertMail = mail.isSelected();
+            Prefs.save();
+        });
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(add); buttons.add(remove); buttons.add(mail);
+        JPanel panel = new JPanel(new BorderLayout(8, 8));
+        panel.add(new JScrollPane(list), BorderLayout.NORTH);
+        panel.add(buttons, BorderLayout.CENTER);
+        JPanel bottom = new JPanel(new BorderLayout(4, 4));
+        bottom.add(new JLabel("Recent alerts:"), BorderLayout.NORTH);
+        bottom.add(new JScrollPane(recent), BorderLayout.CENTER);
+        panel.add(bottom, BorderLayout.SOUTH);
+        JOptionPane.showMessageDialog(parent, panel, "Grade Alerts", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    // a badge just earned by whoever is signed in here; the badge panels pick it up on repaint
+    private static void showBadgeNotice(String user, Achievements.Earned e) {
+        if (!user.equals(currentUser)) return;
+        for (Window w : Window.getWindows()) w.repaint();
+        Window owner = KeyboardFocusManager.getCurrentKeyboardFocusManager().getActiveWindow();
+        JDialog d = new JOptionPane("Badge earned: " + e.title() + badgeWhere(e), JOptionPane.INFORMATION_MESSAGE)
+                .createDialog(owner, "Achievement unlocked");
+        d.setModal(false);
+        d.setVisible(true);
+    }
+
+    private static String badgeWhere(Achievements.Earned e) {
+        if (e.className() != null) return " (" + e.className() + ")";
+        return e.semester() > 0 ? " (Semester " + e.semester() + ")" : "";
+    }
+
+    // an alert for whoever is signed in here, without blocking their editing
+    private static void showAlertNotice(Alerts.Alert a) {
+        if (!a.user().equals(currentUser)) return;
+        Window owner = KeyboardFocusManager.getCurrentKeyboardFocusManager().getActiveWindow();
+        JDialog d = new JOptionPane(a.message(), JOptionPane.WARNING_MESSAGE).createDialog(owner, "Grade alert");
+        d.setModal(false);
+        d.setVisible(true);
+    }
+
+    // ===== Category Editor =====
+    // edit name / weight / drop-lowest of each category; returns true if the class was changed
+    private static boolean editCategories(Component parent, ClassData cd) {
+        String[] cols = {"Category", "Weight (%)", "Drop lowest", "Planned #"};
+        DefaultTableModel model = new DefaultTableModel(cols, 0) {
+            @Override public Class<?> getColumnClass(int c) { return c == 0 ? String.class : Integer.class; }
+        };
+        List<Category> rows = new ArrayList<>(); // original category per row (null = newly added)
+        for (Category c : cd.categories) {
+            model.addRow(new Object[]{c.name, c.weight, c.dropLowest, c.expected});
+            rows.add(c);
+        }
+        JTable table = new JTable(model);
+        table.setRowHeight(24);
+        JButton addRow = pillButton("+ Category");
+        JButton removeRow = pillButton("Remove");
+        addRow.addActionListener(_ -> {
+            model.addRow(new Object[]{"New category", 0, 0, 0});
+            rows.add(null);
+        });
+        removeRow.addActionListener(_ -> {
+            int r = table.getSelectedRow();
+            if (r < 0) return;
+            Category orig = rows.get(r);
+            if (orig != null && !orig.items.isEmpty()) {
+                JOptionPane.showMessageDialog(parent, "Delete the assignments in \"" + orig.name + "\" first.");
+                return;
+            }
+            if (table.isEditing()) table.getCellEditor().cancelCellEditing();
+            model.removeRow(r);
+            rows.remove(r);
+        });
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(addRow);
+        buttons.add(removeRow);
+        JPanel panel = new JPanel(new BorderLayout(6, 6));
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setPreferredSize(new Dimension(440, 180));
+        panel.add(scroll, BorderLayout.CENTER);
+        panel.add(buttons, BorderLayout.SOUTH);
+
+        int ok = JOptionPane.showConfirmDialog(parent, panel, "Grading categories", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (table.isEditing()) table.getCellEditor().stopCellEditing();
+        if (ok != JOptionPane.OK_OPTION) return false;
+
+        int total = 0;
+        Set<String> seen = new HashSet<>();
+        for (int r = 0; r < model.getRowCount(); r++) {
+            String name = String.valueOf(model.getValueAt(r, 0)).trim();
+            Object w = model.getValueAt(r, 1);
+            Object d = model.getValueAt(r, 2);
+            Object e = model.getValueAt(r, 3);
+            if (name.isEmpty() || !seen.add(name)) {
+                JOptionPane.showMessageDialog(parent, "Category names must be unique and non-empty.");
+                return false;
+            }
+            if (!(w instanceof Integer) || !(d instanceof Integer) || !(e instanceof Integer)
+                    || (Integer) w < 0 || (Integer) d < 0 || (Integer) e < 0) {
+                JOptionPane.showMessageDialog(parent, "Weights, drop and planned counts must be whole numbers ≥ 0.");
+                return false;
+            }
+            total += (Integer) w;
+        }
+        if (total != 100) {
+            JOptionPane.showMessageDialog(parent, "Weights must total 100%.");
+            return false;
+        }
+
+        store.withUser(currentUser, _ -> {
+            List<Category> updated = new ArrayList<>();
+            for (int r = 0; r < model.getRowCount(); r++) {
+                Category c = rows.get(r) != null ? rows.get(r) : new Category();
+                c.name = String.valueOf(model.getValueAt(r, 0)).trim();
+                c.weight = (Integer) model.getValueAt(r, 1);
+                c.dropLowest = (Integer) model.getValueAt(r, 2);
+                c.expected = (Integer) model.getValueAt(r, 3);
+                for (Assignment a : c.items) a.category = c.name; // keep renamed categories consistent
+                updated.add(c);
+            }
+            cd.categories = updated;
+            cd.invalidate();
+            pushHistory(cd);
+            return null;
+        });
+        return true;
+    }
+
     // ===== User Profile =====
     private static void showUserPanel(JFrame parent) {
         String[] data = users.get(currentUser);
-        String password = data[0];
         String email = data[1];
 
-        JPanel panel = new JPanel(new GridLayout(6,2,10,10));
+        JPanel panel = new JPanel(new GridLayout(7,2,10,10));
         panel.setBorder(new EmptyBorder(10,10,10,10));
 
         JTextField emailField = new JTextField(email);
@@ -817,11 +1868,12 @@ public class CollegeGPATracker { // main application class
         JTextField userField = new JTextField(currentUser);
         userField.setEditable(false);
 
-        JPasswordField passField = new JPasswordField(password);
+        JPasswordField passField = new JPasswordField(); // only a hash is stored, so there is nothing to show
 
         JButton savePass = pillButton("Save Password");
         JButton changeUsernameBtn = pillButton("Change Username");
         JButton unlinkGoogleBtn = pillButton("Unlink Google");
+        JCheckBox digestBox = new JCheckBox("Email me a weekly digest", Prefs.wantsDigest(currentUser));
 
         long lastChange = lastUsernameChange.getOrDefault(currentUser, 0L);
         long daysSince = (System.currentTimeMillis() - lastChange) / (1000L*60*60*24);
@@ -829,16 +1881,28 @@ public class CollegeGPATracker { // main application class
 
         panel.add(new JLabel("Email:")); panel.add(emailField);
         panel.add(new JLabel("Username:")); panel.add(userField);
-        panel.add(new JLabel("Password:")); panel.add(passField);
+        panel.add(new JLabel("New password:")); panel.add(passField);
         panel.add(new JLabel()); panel.add(savePass);
         panel.add(new JLabel("Change Username (every 15 days):")); panel.add(changeUsernameBtn);
         panel.add(new JLabel("Google Link:")); panel.add(unlinkGoogleBtn);
+        panel.add(new JLabel("Progress digest:")); panel.add(digestBox);
+
+        // weekly digest opt-in; turning it on makes the user due, so the first one comes with the next run
+        digestBox.addActionListener(_ -> {
+            Prefs.of(currentUser).digest = digestBox.isSelected();
+            Prefs.save();
+            if (digestBox.isSelected() && digests != null) digests.changed(currentUser);
+        });
 
         // change password
         savePass.addActionListener(_ -> {
-            users.get(currentUser)[0] = new String(passField.getPassword());
-            saveUsers();
-            JOptionPane.showMessageDialog(parent, "Password updated.");
+            String np = new String(passField.getPassword());
+            if (np.isEmpty()) return;
+            String user = currentUser;
+            setPassword(parent, user, np, () -> {
+                SessionStore.issue(SESSION_FILE, SESSION_KEY_FILE, user, users.get(user));
+                JOptionPane.showMessageDialog(parent, "Password updated.");
+            });
         });
 
         // change username
@@ -849,12 +1913,38 @@ public class CollegeGPATracker { // main application class
                 JOptionPane.showMessageDialog(parent, "That username is taken.");
                 return;
             }
-            users.put(newUsername, users.remove(currentUser));
-            userData.put(newUsername, userData.remove(currentUser));
+            String old = currentUser;
+            // the grades are written under the new name first; nothing is deleted unless that worked
+            try {
+                store.rename(old, newUsername, (user, t) -> {
+                    storage.grades().save(user, t, null);
+                    cohort.remove(old);
+                    cohort.update(user, t);
+                });
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                JOptionPane.showMessageDialog(parent, "Could not change the username. Please try again.");
+                return;
+            }
+            searchIndexes.remove(old);
+            GradeHistory h = histories.remove(old);
+            if (h != null) h.renameTo(HISTORY_DIR, newUsername);
+            users.put(newUsername, users.remove(old));
+            lastUsernameChange.remove(old);
             lastUsernameChange.put(newUsername, System.currentTimeMillis());
+            if (digests != null) {
+                digests.remove(old);
+                digests.changed(newUsername);
+            }
+            if (alerts != null) alerts.rename(old, newUsername);
+            if (achievements != null) achievements.rename(old, newUsername);
+            Prefs.rename(old, newUsername);
+            GoogleLinks.rename(old, newUsername);
             currentUser = newUsername;
-            saveUsers();
-            saveAllUserData();
+            saveAccount(newUsername);
+            saveAccount(old); // gone from users, so this deletes it
+            storage.grades().delete(old); // last: the new shard and account are in place
+            SessionStore.issue(SESSION_FILE, SESSION_KEY_FILE, currentUser, users.get(currentUser));
             JOptionPane.showMessageDialog(parent, "Username changed. Locked for 15 days.");
         });
 
@@ -864,9 +1954,11 @@ public class CollegeGPATracker { // main application class
             if (info[0].isEmpty()) {
                 String newPass = JOptionPane.showInputDialog(parent, "Set a new password:");
                 if (newPass != null && !newPass.trim().isEmpty()) {
-                    info[0] = newPass;
-                    saveUsers();
-                    JOptionPane.showMessageDialog(parent, "Google account unlinked. You can now log in with email + password.");
+                    String user = currentUser;
+                    setPassword(parent, user, newPass, () -> {
+                        GoogleLinks.unlink(user);
+                        JOptionPane.showMessageDialog(parent, "Google account unlinked. You can now log in with email + password.");
+                    });
                 }
             } else {
                 JOptionPane.showMessageDialog(parent, "This account already has a password.");
@@ -905,8 +1997,8 @@ public class CollegeGPATracker { // main application class
     b.setContentAreaFilled(false);
     b.setFocusPainted(false);
         b.setFont(new Font("SansSerif", Font.BOLD, 14));
-        b.setBackground(new Color(240,240,240));
-        b.setForeground(Color.BLACK);
+        b.setBackground(Theme.BUTTON);
+        b.setForeground(Theme.TEXT);
         b.setOpaque(false);
         // Hover animation: smoothly blend background towards hover color
         final int animMs = 220;
@@ -920,7 +2012,7 @@ public class CollegeGPATracker { // main application class
                 // capture the true original base color once per hover cycle
                 originalBase[0] = b.getBackground();
                 final Color startColor = originalBase[0];
-                final Color hover = blend(startColor, new Color(220,235,255), 0.6f);
+                final Color hover = blend(startColor, Theme.BUTTON_HOVER, 0.6f);
                 long start = System.currentTimeMillis();
                 timer[0] = new javax.swing.Timer(15, new ActionListener() {
                     @Override public void actionPerformed(ActionEvent ev) {
@@ -934,7 +2026,7 @@ public class CollegeGPATracker { // main application class
             @Override public void mouseExited(MouseEvent e) {
                 if (timer[0] != null && timer[0].isRunning()) timer[0].stop();
                 final Color current = b.getBackground();
-                final Color target = originalBase[0] != null ? originalBase[0] : new Color(240,240,240);
+                final Color target = originalBase[0] != null ? originalBase[0] : Theme.BUTTON;
                 long start = System.currentTimeMillis();
                 timer[0] = new javax.swing.Timer(15, new ActionListener() {
                     @Override public void actionPerformed(ActionEvent ev) {
@@ -947,7 +2039,7 @@ public class CollegeGPATracker { // main application class
             }
             @Override public void mousePressed(MouseEvent e) {
                 Color base = b.getBackground();
-                Color hover = blend(base, new Color(220,235,255), 0.9f);
+                Color hover = blend(base, Theme.BUTTON_HOVER, 0.9f);
                 b.setBackground(hover);
             }
             @Override public void mouseReleased(MouseEvent e) {
@@ -999,22 +2091,84 @@ public class CollegeGPATracker { // main application class
         return new ImageIcon(out);
     }
 
-    private static void applyTheme(java.awt.Container root) {
-        if (darkMode) {
-            root.setBackground(new Color(35, 35, 35));
-            if (overallGpaLabel != null) overallGpaLabel.setForeground(Color.WHITE);
-        } else {
-            root.setBackground(Color.WHITE);
-            if (overallGpaLabel != null) overallGpaLabel.setForeground(Color.BLACK);
-        }
+    private static GradeHistory history() {
+        return histories.computeIfAbsent(currentUser, u -> store.withUser(u, t -> GradeHistory.open(HISTORY_DIR, u, t)));
+    }
+
+    private static SearchIndex searchIndex() {
+        return searchIndexes.computeIfAbsent(currentUser, u -> store.withUser(u, SearchIndex::build));
+    }
+
+    // snapshot the class after an edit (null if it was deleted) so it can be undone, and re-index it
+    private static void recordEdit(int semester, String className, String label) {
+        store.withUser(currentUser, t -> {
+            ClassData cd = t.get(semester).get(className);
+            history().record(semester, className, cd, label);
+            searchIndex().update(semester, className, cd);
+            return null;
+        });
     }
 
     private static void updateOverallGpaLabel() {
         if (overallGpaLabel != null && currentUser != null) {
-            overallGpaLabel.setText("Overall GPA: " + String.format("%.2f", calculateOverallGPA(currentUser)));
+            overallGpaLabel.setText("Overall GPA: " + String.format("%.2f", calculateOverallGPA(currentUser)) + cohortGpaText());
+        }
+    }
+
+    // username for a username-or-email and password, or null. Google-only accounts have an empty
+    // password and can't sign in this way. Blocks on the KDF pool: not for the EDT (see checkLoginAsync).
+    static String checkLogin(String id, String pass) {
+        try {
+            return checkLoginAsync(id, pass).join();
+        } catch (java.util.concurrent.CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re; // e.g. RejectedExecutionException: pool saturated
+            throw e;
         }
     }
 
+    /**
+     * checkLogin on the Credentials pool. Unknown users cost the same work as known ones; a correct
+     * password stored in plaintext (or at an outdated cost) is replaced with a fresh hash. Fails with
+     * RateLimiter.Limited once the account has used its attempts (a successful sign-in clears them).
+     */
+    static java.util.concurrent.CompletableFuture<String> checkLoginAsync(String id, String pass) {
+        if (id == null || pass == null || pass.isEmpty()) return java.util.concurrent.CompletableFuture.completedFuture(null);
+        String user = users.containsKey(id) ? id : findUserByEmail(id);
+        // one budget per account whether it is named by username or email; unknown names get their own
+        String key = user != null ? user : id.toLowerCase(java.util.Locale.ROOT);
+        try {
+            loginAttempts.acquire(key);
+        } catch (RateLimiter.Limited e) {
+            return java.util.concurrent.CompletableFuture.failedFuture(e);
+        }
+        String[] info = user == null ? null : users.get(user);
+        String stored = info == null || info[0].isEmpty() ? null : info[0];
+        return credentials.check(stored, pass).thenApply(r -> {
+            if (!r.ok()) return null;
+            loginAttempts.reset(key);
+            if (r.upgraded() != null) {
+                // unless the password changed meanwhile
+                String[] now = users.computeIfPresent(user, (_, a) -> a[0].equals(stored) ? new String[]{r.upgraded(), a[1]} : a);
+                if (now != null && now[0].equals(r.upgraded())) saveAccount(user);
+            }
+            return user;
+        });
+    }
+
+    // hashes off the EDT, then stores the hash and runs then (on the EDT)
+    private static void setPassword(Component parent, String user, String password, Runnable then) {
+        credentials.hash(password).whenComplete((hash, err) -> SwingUtilities.invokeLater(() -> {
+            String[] info = users.get(user);
+            if (err != null || info == null) {
+                JOptionPane.showMessageDialog(parent, "Could not update the password. Please try again.");
+                return;
+            }
+            info[0] = hash;
+            saveAccount(user);
+            then.run();
+        }));
+    }
+
     private static String findUserByEmail(String email) {
         if (email == null) return null;
         for (Map.Entry<String, String[]> e : users.entrySet()) {
@@ -1023,16 +2177,6 @@ public class CollegeGPATracker { // main application class
         return null;
     }
 
-    // trend check
-    private static boolean isComeback(ClassData cd) {
-        List<Double> h = cd.historyPercent;
-        if (h.size() < 3) return false;
-        double n = h.get(h.size()-1);
-        double prev = h.get(h.size()-2);
-        double back3 = h.get(h.size()-3);
-        return (back3 < 70 && n >= 80 && n > prev); // rough rule
-    }
-
     private static void pushHistory(ClassData cd) {
         double p = calculateClassPercent(cd);
         if (Double.isNaN(p)) p = 0;
@@ -1042,40 +2186,63 @@ public class CollegeGPATracker { // main application class
         }
     }
 
-    private static double avgFor(ClassData cd, String cat) {
-        return cd.assignments.get(cat).stream().mapToDouble(a -> a.score).average().orElse(0);
+    private static double avgFor(ClassData cd, int cat) {
+        return cd.category(cat).average();
+    }
+
+    static double[] categoryAverages(ClassData cd) {
+        double[] out = new double[cd.categories.size()];
+        for (int i = 0; i < out.length; i++) out[i] = avgFor(cd, i);
+        return out;
     }
 
     private static Color barColorFor(double percent) {
-        if (percent >= 85) return new Color(46, 204, 113);   // green
-        if (percent >= 75) return new Color(243, 156, 18);   // yellow/orange
-        return new Color(231, 76, 60);                       // red
+        if (percent >= 85) return Theme.palette().good();
+        if (percent >= 75) return Theme.palette().warn();
+        return Theme.palette().bad();
     }
 
     // ===== GPA/Percent CALCULATIONS =====
     private static double calculateClassPercent(ClassData cd) {
         if (cd == null) return 0.0;
-        double weightedTotal = 0;
-        double weightSum = 0;
-        for (String cat : cd.assignments.keySet()) {
-            double avg = avgFor(cd, cat);
-            int weight = cd.weights.getOrDefault(cat, 0);
-            weightedTotal += avg * (weight / 100.0);
-            weightSum += weight;
-        }
-        return (weightSum > 0) ? weightedTotal : 0.0;
+        return cd.percent();
     }
 
     private static double calculateClassGPA(ClassData cd) {
-        return percentToGPA(calculateClassPercent(cd));
+        return cd.gpa();
+    }
+
+    private static String classGpaText(ClassData cd) {
+        double p = calculateClassPercent(cd);
+        if (cd.passFail) return "Class: " + (cd.passed() ? "Pass" : "Fail") + " (pass/fail)";
+        return "Class GPA: " + String.format("%.2f", calculateClassGPA(cd)) + " (" + cd.scale().toLetter(p) + ")";
+    }
+
+    // " · 72nd percentile of 340" once enough students have this class (see Cohort.MIN_SIZE)
+    private static String cohortText(String className, ClassData cd) {
+        double rank = cohort.classRank(className, cd.percent());
+        if (Double.isNaN(rank)) return "";
+        return " · " + Cohort.ordinal(rank) + " percentile of " + cohort.classCount(className);
+    }
+
+    private static String cohortGpaText() {
+        Cohort.Entry mine = cohort.entry(currentUser);
+        double rank = mine == null || Double.isNaN(mine.gpa()) ? Double.NaN : cohort.gpaRank(mine.gpa());
+        return Double.isNaN(rank) ? "" : " (" + Cohort.ordinal(rank) + " percentile)";
     }
 
     private static double calculateOverallGPA(String user) {
         if (!userData.containsKey(user)) return 0.0;
+        return store.withUser(user, CollegeGPATracker::overallGpa);
+    }
+
+    // credit-weighted GPA over one user's semesters
+    static double overallGpa(Map<Integer, Map<String, ClassData>> terms) {
         double totalPoints = 0.0;
         int totalCredits = 0;
-        for (int sem : userData.get(user).keySet()) {
-            for (ClassData cd : userData.get(user).get(sem).values()) {
+        for (Map<String, ClassData> classes : terms.values()) {
+            for (ClassData cd : classes.values()) {
+                if (cd.passFail) continue; // pass/fail credits don't count toward GPA
                 double gpa = calculateClassGPA(cd);
                 totalPoints += gpa * cd.credits;
                 totalCredits += cd.credits;
@@ -1085,11 +2252,7 @@ public class CollegeGPATracker { // main application class
     }
 
     private static double percentToGPA(double percent) {
-        if (percent >= 90) return 4.0;
-        else if (percent >= 80) return 3.0;
-        else if (percent >= 70) return 2.0;
-        else if (percent >= 60) return 1.0;
-        else return 0.0;
+        return GradingScale.defaultScale().toPoints(percent);
     }
 
     // ===== SAVE/LOAD (JSON with Gson) =====
@@ -1099,54 +2262,165 @@ public class CollegeGPATracker { // main application class
     }
 
     private static void ensureUserStructures(String user) {
-        userData.putIfAbsent(user, new HashMap<>());
-        for (int i = 1; i <= 4; i++) {
-            userData.get(user).putIfAbsent(i, new HashMap<>());
-        }
+        store.withUser(user, _ -> null); // loads the user if needed and adds semesters 1-4, under the user's lock
     }
 
-    private static void saveUsers() {
-        try (FileWriter fw = new FileWriter(USERS_FILE)) {
-            gson.toJson(users, fw);
-        } catch (IOException e) { e.printStackTrace(); }
+    // JSON files under data/ by default; -Dgpa.storage=jdbc:h2:./data/gpa (or another embedded JDBC url, driver in libs/)
+    // selects SqlStorage, which is filled from the JSON files the first time it starts empty
+    private static Storage openStorage() {
+        JsonStorage json = new JsonStorage(USERS_FILE, USERNAME_CHANGES_FILE, RESET_CODES_FILE, USERDATA_DIR);
+        String url = System.getProperty("gpa.storage", "json");
+        if (!url.startsWith("jdbc:")) return json;
+        try {
+            SqlStorage sql = new SqlStorage(url);
+            if (sql.accounts().load().isEmpty() && !json.accounts().load().isEmpty()) Storage.copy(json, sql);
+            return sql;
+        } catch (java.sql.SQLException e) {
+            // don't silently fall back to the JSON files: the two would drift apart
+            throw new IllegalStateException("Could not open storage " + url + ": " + e.getMessage(), e);
+        }
+    }
 
-        try (FileWriter fw = new FileWriter(USERNAME_CHANGES_FILE)) {
-            gson.toJson(lastUsernameChange, fw);
-        } catch (IOException e) { e.printStackTrace(); }
+    // write one account (deletes it if the user is gone from `users`)
+    private static void saveAccount(String user) {
+        storage.accounts().save(user, users.get(user), lastUsernameChange.get(user));
     }
 
     private static void loadUsers() {
-        File f = new File(USERS_FILE);
-        if (f.exists()) {
-            try (FileReader fr = new FileReader(f)) {
-                Map<String, String[]> map = gson.fromJson(fr, new TypeToken<Map<String, String[]>>(){}.getType());
-                if (map != null) users = map;
-            } catch (IOException e) { e.printStackTrace(); }
+        users = new java.util.concurrent.ConcurrentHashMap<>(storage.accounts().load());
+        lastUsernameChange = new java.util.concurrent.ConcurrentHashMap<>(storage.accounts().usernameChanges());
+    }
+
+    // write one user's grades; other users' data is never touched
+    static void saveUserData(String user) {
+        saveUserData(user, null);
+    }
+
+    /**
+     * Writes the user's grades under the user's lock (dirty = "sem\0class" keys changed here; null
+     * means every class was). Classes another instance changed in the meantime come back merged and
+     * are published as Reloaded events.
+     */
+    private static void saveUserData(String user, Set<String> dirty) {
+        if (!userData.containsKey(user)) return;
+        store.withUser(user, t -> {
+            List<GradeEvents.Event> merged = storage.grades().save(user, t, dirty);
+            store.markClean(user);
+            cohort.update(user, t);
+            if (digests != null) digests.changed(user);
+            if (alerts != null) alerts.changed(user, t, dirty);
+            return merged;
+        }).forEach(events::publish);
+    }
+
+    // the default scale changed: ranks and alerts follow the new grade points; nothing needs writing
+    private static void regraded(String user) {
+        if (!userData.containsKey(user)) return;
+        store.withUser(user, t -> {
+            cohort.update(user, t);
+            if (alerts != null) alerts.changed(user, t, null);
+            return null;
+        });
+    }
+
+    /*
+     * GradeStore eviction (under the user's lock): save the classes the user's sessions changed,
+     * merging the rest from disk, then do what any save does (ranks, digests, alerts), and let badges
+     * see what the merge brought in.
+     * The merged events are not published: GradeEvents belong to the signed-in window, whose user is
+     * pinned and never evicted.
+     */
+    private static void writeBack(String user, Map<Integer, Map<String, ClassData>> t, Set<String> classes) {
+        List<GradeEvents.Event> merged = storage.grades().save(user, t, classes);
+        cohort.update(user, t);
+        if (digests != null) digests.changed(user);
+        if (alerts != null) alerts.changed(user, t, merged.isEmpty() ? classes : null);
+        if (achievements != null && !merged.isEmpty()) achievements.apply(user, t, merged);
+    }
+
+    // DataWatcher callback (EDT): another instance rewrote a shard; merge it into the live data
+    private static void onShardChanged(java.nio.file.Path path) {
+        String user = JsonStorage.userOf(path.toFile());
+        if (user != null && digests != null) digests.changed(user);
+        if (user == null) return;
+        if (!userData.containsKey(user)) {
+            // not loaded here, so read fresh on first use; its cohort entry is kept though, so re-read it off the EDT
+            java.util.concurrent.ForkJoinPool.commonPool().execute(() -> {
+                if (readGrades(user, t -> { cohort.update(user, t); return t; }) == null) cohort.remove(user);
+            });
+            return;
         }
+        store.withUser(user, t -> {
+            List<GradeEvents.Event> merged = storage.grades().refresh(user, t);
+            if (!merged.isEmpty()) {
+                cohort.update(user, t);
+                if (alerts != null) alerts.changed(user, t, null);
+            }
+            return merged;
+        }).forEach(events::publish);
+    }
 
-        File f2 = new File(USERNAME_CHANGES_FILE);
-        if (f2.exists()) {
-            try (FileReader fr = new FileReader(f2)) {
-                Map<String, Long> map = gson.fromJson(fr, new TypeToken<Map<String, Long>>(){}.getType());
-                if (map != null) lastUsernameChange = map;
-            } catch (IOException e) { e.printStackTrace(); }
+    // a user's cohort contribution from their live data if resident, else read from storage without keeping it
+    private static Cohort.Entry cohortEntry(String user) {
+        return readGrades(user, Cohort::entryOf);
+    }
+
+    private static String emailOf(String user) {
+        String[] info = users.get(user);
+        return info == null ? null : info[1];
+    }
+
+    // f over the user's live data if resident, else over a copy read from storage and not kept; null if none
+    private static <R> R readGrades(String user, java.util.function.Function<Map<Integer, Map<String, ClassData>>, R> f) {
+        java.util.concurrent.locks.ReentrantLock lock = store.lockFor(user);
+        lock.lock();
+        try {
+            Map<Integer, Map<String, ClassData>> terms = userData.get(user);
+            if (terms == null) terms = storage.grades().load(user);
+            return terms == null ? null : f.apply(terms);
+        } finally {
+            lock.unlock();
         }
     }
 
-    private static void saveAllUserData() {
-        try (FileWriter fw = new FileWriter(USERDATA_FILE)) {
-            gson.toJson(userData, fw);
-        } catch (IOException e) { e.printStackTrace(); }
+    // one-time split of the old all-users file (JSON, or its binary snapshot) into per-user shards; the old file is left in place
+    private static void migrateLegacyUserData() {
+        if (new File(USERDATA_DIR).exists()) return;
+        if (!new File(USERDATA_FILE).exists() && !new File(USERDATA_SNAPSHOT).exists()) return;
+        loadAllUserData();
+        for (String user : userData.keySet()) saveUserData(user);
+        userData.clear();
+        new File(USERDATA_DIR).mkdirs(); // marks the migration done whichever storage received it
     }
 
+    // prefers the binary snapshot when it is at least as new as the JSON file (see Snapshot)
     private static void loadAllUserData() {
-        File f = new File(USERDATA_FILE);
-        if (!f.exists()) return;
+        File json = new File(USERDATA_FILE), snap = new File(USERDATA_SNAPSHOT);
+        if (snap.exists() && snap.lastModified() >= json.lastModified()) {
+            try {
+                userData.putAll(Snapshot.read(snap.toPath()));
+                return;
+            } catch (IOException e) {
+                System.err.println(e.getMessage() + "; falling back to " + USERDATA_FILE);
+            }
+        }
+        userData.putAll(readAllUserData(json));
+    }
+
+    // the legacy all-users JSON layout, normalized; empty if the file is missing
+    static Map<String, Map<Integer, Map<String, ClassData>>> readAllUserData(File f) {
+        if (!f.exists()) return new HashMap<>();
+        Map<String, Map<Integer, Map<String, ClassData>>> map = null;
         try (FileReader fr = new FileReader(f)) {
-            Map<String, Map<Integer, Map<String, ClassData>>> map =
-                    gson.fromJson(fr, new TypeToken<Map<String, Map<Integer, Map<String, ClassData>>>>(){}.getType());
-            if (map != null) userData = map;
+            map = gson.fromJson(fr, new TypeToken<Map<String, Map<Integer, Map<String, ClassData>>>>(){}.getType());
         } catch (IOException e) { e.printStackTrace(); }
+        if (map == null) return new HashMap<>();
+        for (Map<Integer, Map<String, ClassData>> sems : map.values()) {
+            for (Map<String, ClassData> classes : sems.values()) {
+                for (ClassData cd : classes.values()) cd.normalize();
+            }
+        }
+        return map;
     }
 
     // ===== Custom Renderers & Panels =====
@@ -1159,6 +2433,7 @@ public class CollegeGPATracker { // main application class
             this.semester = semester;
             setBorder(new EmptyBorder(8,8,8,8));
             name.setFont(new Font("SansSerif", Font.BOLD, 16));
+            name.setForeground(Theme.TEXT);
             bar.setStringPainted(true);
             bar.setUI(new BasicProgressBarUI(){
                 @Override
@@ -1174,53 +2449,25 @@ public class CollegeGPATracker { // main application class
                                                       boolean isSelected, boolean cellHasFocus) {
             name.setText(value);
             try {
-                ClassData cd = userData.get(currentUser).get(semester).get(value);
-                double p = calculateClassPercent(cd);
+                double p = store.withUser(currentUser, t -> calculateClassPercent(t.get(semester).get(value)));
                 bar.setValue((int)Math.round(p));
                 bar.setForeground(barColorFor(p));
             } catch (Exception ignored) {}
-            setBackground(isSelected ? new Color(232, 244, 255) : Color.WHITE);
+            setBackground(isSelected ? Theme.SELECTION : Theme.FIELD);
             return this;
         }
     }
 
+    // the charts themselves are drawn by Charts, which also renders them to PNG / SVG for exports
     static class PiePanel extends JPanel {
-        double hw, ex, pr;
-        void setData(double hw, double ex, double pr) { this.hw=hw; this.ex=ex; this.pr=pr; repaint(); }
+        String[] labels = new String[0];
+        double[] values = new double[0];
+        void setData(String[] labels, double[] values) { this.labels = labels; this.values = values; repaint(); }
+        void clear() { setData(new String[0], new double[0]); }
         @Override public Dimension getPreferredSize(){ return new Dimension(320,200); }
         @Override protected void paintComponent(Graphics g) {
             super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g;
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-            int size = Math.min(getWidth(), getHeight()) - 40;
-            int x = 20, y = 20;
-            double sum = Math.max(1, hw + ex + pr);
-
-            Color c1 = new Color(52, 152, 219);
-            Color c2 = new Color(231, 76, 60);
-            Color c3 = new Color(241, 196, 15);
-
-            double start = 0;
-            double a1 = 360 * (hw / sum);
-            double a2 = 360 * (ex / sum);
-            double a3 = 360 * (pr / sum);
-
-            g2.setColor(c1); g2.fill(new Arc2D.Double(x, y, size, size, start, a1, Arc2D.PIE)); start += a1;
-            g2.setColor(c2); g2.fill(new Arc2D.Double(x, y, size, size, start, a2, Arc2D.PIE)); start += a2;
-            g2.setColor(c3); g2.fill(new Arc2D.Double(x, y, size, size, start, a3, Arc2D.PIE));
-
-            // legend
-            int lx = x + size + 12;
-            int ly = y;
-            g2.setColor(c1); g2.fill(new Ellipse2D.Double(lx, ly, 12, 12)); g2.setColor(getForeground());
-            g2.drawString("Homework  " + (int)Math.round(hw) + " %", lx+18, ly+11);
-            ly += 20;
-            g2.setColor(c2); g2.fill(new Ellipse2D.Double(lx, ly, 12, 12)); g2.setColor(getForeground());
-            g2.drawString("Exams     " + (int)Math.round(ex) + " %", lx+18, ly+11);
-            ly += 20;
-            g2.setColor(c3); g2.fill(new Ellipse2D.Double(lx, ly, 12, 12)); g2.setColor(getForeground());
-            g2.drawString("Projects  " + (int)Math.round(pr) + " %", lx+18, ly+11);
+            Charts.pie(new Charts.G2Pen((Graphics2D) g), getWidth(), getHeight(), labels, values, Theme.palette());
         }
     }
 
@@ -1230,33 +2477,14 @@ public class CollegeGPATracker { // main application class
         @Override public Dimension getPreferredSize(){ return new Dimension(320,120); }
         @Override protected void paintComponent(Graphics g){
             super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g;
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            int w = getWidth()-30, h = getHeight()-30;
-            int ox = 15, oy = 10;
-
-            // axes
-            g2.setColor(new Color(200,200,200));
-            g2.drawLine(ox, oy+h, ox+w, oy+h);
-            g2.drawLine(ox, oy, ox, oy+h);
-
-            if (data == null || data.size() < 2) return;
-            g2.setColor(new Color(52,152,219));
-            g2.setStroke(new BasicStroke(2f));
-            int n = data.size();
-            for (int i=1;i<n;i++){
-                int x1 = ox + (i-1)*w/(n-1);
-                int x2 = ox + i*w/(n-1);
-                int y1 = oy+h - (int)Math.round((data.get(i-1)/100.0)*h);
-                int y2 = oy+h - (int)Math.round((data.get(i)/100.0)*h);
-                g2.drawLine(x1,y1,x2,y2);
-            }
+            Charts.trend(new Charts.G2Pen((Graphics2D) g), getWidth(), getHeight(), data, Theme.palette());
         }
     }
 
+    // badges earned for the selected class, its semester and overall, read from achievements at paint time
     static class BadgePanel extends JPanel {
-        boolean perfect, comeback;
-        void setBadges(boolean p, boolean c){ perfect=p; comeback=c; repaint(); }
+        int semester; String className;
+        void show(int sem, String cls){ semester=sem; className=cls; repaint(); }
         @Override public Dimension getPreferredSize(){ return new Dimension(320,80); }
         @Override protected void paintComponent(Graphics g){
             super.paintComponent(g);
@@ -1264,21 +2492,21 @@ public class CollegeGPATracker { // main application class
             g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             int x = 16, y = 16;
 
-            if (perfect) {
-                g2.setColor(new Color(231,76,60));
+            Theme.Palette pal = Theme.palette();
+            List<Achievements.Earned> earned = className == null || achievements == null ? List.of()
+                    : achievements.earnedFor(currentUser, semester, className);
+            Color[] dots = {pal.bad(), pal.accent(), pal.good()};
+            int i = 0;
+            for (Achievements.Earned e : earned) {
+                if (x + 150 > Math.max(getWidth(), 320) && i > 0) { x = 16; y += 44; }
+                g2.setColor(dots[i++ % dots.length]);
                 g2.fillOval(x, y, 36, 36);
-                g2.setColor(Color.WHITE); g2.setFont(getFont().deriveFont(Font.BOLD, 12f));
-                g2.drawString("Perfect Score", x+46, y+22);
+                g2.setColor(pal.text()); g2.setFont(getFont().deriveFont(Font.BOLD, 12f));
+                g2.drawString(e.title(), x+46, y+22);
                 x += 160;
             }
-            if (comeback) {
-                g2.setColor(new Color(52,152,219));
-                g2.fillOval(x, y, 36, 36);
-                g2.setColor(Color.WHITE); g2.setFont(getFont().deriveFont(Font.BOLD, 12f));
-                g2.drawString("Comeback Kid", x+46, y+22);
-            }
-            if (!perfect && !comeback) {
-                g2.setColor(new Color(150,150,150));
+            if (earned.isEmpty()) {
+                g2.setColor(pal.faint());
                 g2.drawString("No badges yet — keep going!", x, y+22);
             }
         }
@@ -1430,23 +2658,15 @@ public class CollegeGPATracker { // main application class
 
     // ===== Reset Code Store =====
     static class PasswordResetStore {
-        private static Map<String,String> tokenToUser = new HashMap<>();
-        private static String file = "";
+        private static Storage.Tokens tokens;
 
-        static void init(String filePath) {
-            file = filePath;
-            File f = new File(file);
-            if (!f.exists()) { persist(); return; }
-            try (FileReader fr = new FileReader(f)) {
-                Map<String,String> map = gson.fromJson(fr, new TypeToken<Map<String,String>>(){}.getType());
-                tokenToUser = (map == null) ? new HashMap<>() : map;
-            } catch (IOException e) { tokenToUser = new HashMap<>(); }
+        static void init(Storage.Tokens store) {
+            tokens = store;
         }
 
         static String issueTokenFor(String username) {
             String token = generateCode();
-            tokenToUser.put(token, username);
-            persist();
+            tokens.put(token, username);
             return token;
         }
 
@@ -1457,26 +2677,208 @@ public class CollegeGPATracker { // main application class
 
         // Persist a previously generated token mapped to user (used after successful email send)
         static void persistToken(String token, String username) {
-            tokenToUser.put(token, username);
-            persist();
+            tokens.put(token, username);
         }
 
         static String consume(String token) {
-            String u = tokenToUser.remove(token);
-            persist();
-            return u;
+            return tokens.consume(token);
+        }
+
+        /**
+         * user if code is their reset code (which is used up), else null. Counts against the user's
+         * reset-code attempts and throws RateLimiter.Limited when they are used up. Someone else's
+         * code is put back rather than spent.
+         */
+        static String consumeFor(String user, String code) {
+            resetAttempts.acquire(user);
+            String matched = tokens.consume(code);
+            if (matched != null && !matched.equals(user)) {
+                tokens.put(code, matched);
+                return null;
+            }
+            if (matched != null) resetAttempts.reset(user);
+            return matched;
         }
 
+        private static final java.security.SecureRandom random = new java.security.SecureRandom();
+
         private static String generateCode() {
             // 6-digit numeric code
-            int n = 100000 + new java.util.Random().nextInt(900000);
+            int n = 100000 + random.nextInt(900000);
             return String.valueOf(n);
         }
-// 
-        private static void persist() {
-            try (FileWriter fw = new FileWriter(file)) {
-                gson.toJson(tokenToUser, fw);
+    }
+
+    // remembered login: {user, expiresAt, mac} signed with a random key kept next to the data.
+    // The mac also covers the account's stored password, so changing it ends old sessions.
+    static class SessionStore {
+        static final long TTL_MILLIS = 14L * 24 * 60 * 60 * 1000; // 14 days
+
+        static class Session {
+            String user;
+            long expiresAt;
+            String mac;
+        }
+
+        static void issue(String file, String keyFile, String user, String[] account) {
+            Session s = new Session();
+            s.user = user;
+            s.expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+            s.mac = sign(keyFile, s, account);
+            try {
+                AtomicFiles.write(file, gson.toJson(s));
+            } catch (IOException e) { e.printStackTrace(); }
+        }
+
+        // the signed-in user, or null if there is no session, it expired, or it doesn't verify
+        static String resume(String file, String keyFile, Map<String, String[]> accounts) {
+            File f = new File(file);
+            if (!f.exists()) return null;
+            Session s;
+            try (FileReader fr = new FileReader(f)) {
+                s = gson.fromJson(fr, Session.class);
+            } catch (Exception e) { return null; }
+            if (s == null || s.user == null || s.mac == null) return null;
+            if (s.expiresAt < System.currentTimeMillis() || !accounts.containsKey(s.user)) return null;
+            String expected = sign(keyFile, s, accounts.get(s.user));
+            if (expected == null || !java.security.MessageDigest.isEqual(
+                    expected.getBytes(java.nio.charset.StandardCharsets.UTF_8),
+                    s.mac.getBytes(java.nio.charset.StandardCharsets.UTF_8))) return null;
+            return s.user;
+        }
+
+        static void clear(String file) {
+            try {
+                AtomicFiles.write(file, "{}");
             } catch (IOException ignored) {}
         }
+
+        private static String sign(String keyFile, Session s, String[] account) {
+            try {
+                javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA256");
+                mac.init(new javax.crypto.spec.SecretKeySpec(key(keyFile), "HmacSHA256"));
+                String payload = s.user + "\n" + s.expiresAt + "\n" + (account == null ? "" : account[0]);
+                return Base64.getEncoder().encodeToString(mac.doFinal(payload.getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        // 32 random bytes, created on first use
+        private static byte[] key(String keyFile) throws IOException {
+            java.nio.file.Path path = java.nio.file.Paths.get(keyFile);
+            if (java.nio.file.Files.exists(path)) {
+                return Base64.getDecoder().decode(java.nio.file.Files.readString(path).trim());
+            }
+            byte[] k = new byte[32];
+            new java.security.SecureRandom().nextBytes(k);
+            AtomicFiles.write(keyFile, Base64.getEncoder().encodeToString(k));
+            return k;
+        }
+    }
+
+    // per-user preferences; older files stored just the dark-mode boolean per user
+    static class Prefs {
+        boolean darkMode;
+        int lastSemester = 1;
+        volatile boolean digest; // weekly progress email (see Digests)
+        volatile boolean alertMail; // grade alerts by email as well as in the app (see Alerts)
+
+        private static Map<String, Prefs> byUser = new java.util.concurrent.ConcurrentHashMap<>(); // also read by the digest thread
+        private static String file = "";
+
+        static void init(String filePath) {
+            file = filePath;
+            File f = new File(file);
+            if (!f.exists()) return;
+            try (FileReader fr = new FileReader(f)) {
+                Map<String, com.google.gson.JsonElement> map =
+                        gson.fromJson(fr, new TypeToken<Map<String, com.google.gson.JsonElement>>(){}.getType());
+                if (map == null) return;
+                for (Map.Entry<String, com.google.gson.JsonElement> e : map.entrySet()) {
+                    com.google.gson.JsonElement v = e.getValue();
+                    Prefs p;
+                    if (v.isJsonPrimitive()) {
+                        p = new Prefs();
+                        p.darkMode = v.getAsBoolean();
+                    } else {
+                        p = gson.fromJson(v, Prefs.class);
+                    }
+                    byUser.put(e.getKey(), p);
+                }
+            } catch (Exception e) { e.printStackTrace(); }
+        }
+
+        static Prefs of(String user) {
+            if (user == null) return new Prefs();
+            return byUser.computeIfAbsent(user, _ -> new Prefs());
+        }
+
+        static boolean wantsDigest(String user) {
+            Prefs p = user == null ? null : byUser.get(user);
+            return p != null && p.digest;
+        }
+
+        static boolean wantsAlertMail(String user) {
+            Prefs p = user == null ? null : byUser.get(user);
+            return p != null && p.alertMail;
+        }
+
+        static void rename(String from, String to) {
+            Prefs p = byUser.remove(from);
+            if (p != null) byUser.put(to, p);
+            save();
+        }
+
+        static void save() {
+            try {
+                AtomicFiles.write(file, gson.toJson(byUser));
+            } catch (IOException e) { e.printStackTrace(); }
+        }
+    }
+
+    // Google account subject (stable id) -> username, so Google sign-in maps back without an email scan
+    static class GoogleLinks {
+        private static Map<String, String> subjectToUser = new HashMap<>();
+        private static String file = "";
+
+        static void init(String filePath) {
+            file = filePath;
+            File f = new File(file);
+            if (!f.exists()) return;
+            try (FileReader fr = new FileReader(f)) {
+                Map<String, String> map = gson.fromJson(fr, new TypeToken<Map<String, String>>(){}.getType());
+                if (map != null) subjectToUser = map;
+            } catch (Exception e) { e.printStackTrace(); }
+        }
+
+        static String userFor(String subject) {
+            return subject == null ? null : subjectToUser.get(subject);
+        }
+
+        static void link(String subject, String user) {
+            if (subject == null || user.equals(subjectToUser.get(subject))) return;
+            subjectToUser.put(subject, user);
+            persist();
+        }
+
+        static void unlink(String user) {
+            if (subjectToUser.values().removeIf(user::equals)) persist();
+        }
+
+        static void rename(String from, String to) {
+            boolean changed = false;
+            for (Map.Entry<String, String> e : subjectToUser.entrySet()) {
+                if (e.getValue().equals(from)) { e.setValue(to); changed = true; }
+            }
+            if (changed) persist();
+        }
+
+        private static void persist() {
+            try {
+                AtomicFiles.write(file, gson.toJson(subjectToUser));
+            } catch (IOException e) { e.printStackTrace(); }
+        }
     }
 }
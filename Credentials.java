@@ -0,0 +1,170 @@
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Password hashing for users.json (and the SQL accounts table): PBKDF2-HMAC-SHA256 with a random
+ * 16-byte salt per password, stored as "pbkdf2$iterations$salt$hash" so every entry keeps the cost
+ * it was made with. Older entries are plaintext; they still verify, and needsRehash() tells the
+ * caller to replace them with a hash after the next successful login. An empty password is the
+ * marker for a Google-only account and is never hashed.
+ *
+ * Deriving a key is deliberately slow, so it never runs on the caller's thread: work goes to a small
+ * fixed pool (one thread per core, at most MAX_THREADS) behind a bounded queue, and a login burst
+ * beyond that is rejected rather than queued without limit. The iteration count is calibrated once
+ * on this machine so one derivation takes about the target time (-Dgpa.kdfMillis, default 150 ms),
+ * but never drops below MIN_ITERATIONS.
+ */
+public class Credentials {
+    static final String PREFIX = "pbkdf2$";
+    static final int MIN_ITERATIONS = 100_000;
+    private static final int MAX_THREADS = 4;
+    private static final int QUEUE = 64; // waiting derivations beyond the running ones
+    private static final int SALT_BYTES = 16, KEY_BITS = 256;
+
+    private final ThreadPoolExecutor pool;
+    private final long targetNanos;
+    private volatile int iterations; // 0 until calibrated
+    private final SecureRandom random = new SecureRandom();
+    private volatile String dummy; // hash verified for unknown users, so they take as long as real ones
+
+    /** Outcome of check: ok, and if ok and the entry is outdated, its replacement (else null). */
+    record Result(boolean ok, String upgraded) {}
+
+    Credentials(long targetMillis, int threads) {
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        AtomicInteger n = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE), r -> {
+            Thread t = new Thread(r, "kdf-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }); // default AbortPolicy: a full queue fails the future with RejectedExecutionException
+    }
+
+    Credentials() {
+        this(Long.getLong("gpa.kdfMillis", 150), Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /** Calibrates, and makes the unknown-user hash, in the background so the first login doesn't wait for it. */
+    void prepare() {
+        pool.execute(this::dummy);
+    }
+
+    static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /** A new salted hash of password at the calibrated cost. */
+    CompletableFuture<String> hash(String password) {
+        return CompletableFuture.supplyAsync(() -> encode(password, iterations()), pool);
+    }
+
+    /**
+     * Verifies password against a stored entry (hash or legacy plaintext; null = no such user). Every
+     * check does at least one derivation, so timing tells neither whether the user exists nor whether
+     * the entry is still plaintext. Outdated entries come back with a fresh hash to store.
+     */
+    CompletableFuture<Result> check(String stored, String password) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (stored == null) {
+                matches(dummy(), password);
+                return new Result(false, null);
+            }
+            boolean ok = matches(stored, password);
+            if (!isHashed(stored)) matches(dummy(), password); // or a plaintext entry would answer faster
+            return new Result(ok, ok && needsRehash(stored) ? encode(password, iterations()) : null);
+        }, pool);
+    }
+
+    /** Plaintext, or hashed at well under today's cost (hardware got faster since). */
+    boolean needsRehash(String stored) {
+        if (stored == null || stored.isEmpty()) return false;
+        if (!isHashed(stored)) return true;
+        return parseIterations(stored) < iterations() * 3L / 4;
+    }
+
+    /** The iteration count in use, calibrating on first call. */
+    int iterations() {
+        int it = iterations;
+        if (it == 0) {
+            synchronized (this) {
+                if (iterations == 0) iterations = calibrate();
+                it = iterations;
+            }
+        }
+        return it;
+    }
+
+    // times a few short derivations and scales to the target, rounded to 10k; the fastest run is
+    // used so a busy moment at startup doesn't make the cost permanently too low
+    private int calibrate() {
+        int probe = 20_000;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            long t0 = System.nanoTime();
+            derive("calibration", new byte[SALT_BYTES], probe);
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        long scaled = probe * targetNanos / Math.max(1, best);
+        return (int) Math.max(MIN_ITERATIONS, Math.min(10_000_000, scaled / 10_000 * 10_000));
+    }
+
+    private String dummy() {
+        String d = dummy;
+        if (d == null) dummy = d = encode("unknown user", iterations());
+        return d;
+    }
+
+    private String encode(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(derive(password, salt, iterations));
+    }
+
+    // constant-time in the contents either way; a malformed entry never matches
+    static boolean matches(String stored, String password) {
+        if (stored == null || password == null) return false;
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            Base64.Decoder b64 = Base64.getDecoder();
+            byte[] expected = b64.decode(parts[3]);
+            return MessageDigest.isEqual(expected, derive(password, b64.decode(parts[2]), Integer.parseInt(parts[1])));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static int parseIterations(String stored) {
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length == 4 ? Integer.parseInt(parts[1]) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 unavailable", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Password verification throughput at the calibrated PBKDF2 cost: verifications per second through
+// a Credentials pool of 1..N threads, and per core in use. Also checks the lazy plaintext migration
+// (a plaintext entry verifies, comes back hashed, and the hash verifies the same password) and that
+// an unknown user costs as much as a real one.
+// usage: java CredentialsBench [targetMillis] [verificationsPerRun]
+public class CredentialsBench {
+    public static void main(String[] args) {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : 150;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        Credentials probe = new Credentials(targetMillis, 1);
+        long t0 = System.nanoTime();
+        int iterations = probe.iterations();
+        System.out.printf("cores: %d, target %d ms -> %,d iterations (calibrated in %.0f ms)%n",
+                cores, targetMillis, iterations, (System.nanoTime() - t0) / 1e6);
+
+        Credentials.Result migrated = probe.check("hunter2", "hunter2").join();
+        String hash = migrated.upgraded();
+        System.out.printf("plaintext entry: ok=%b, rehashed=%b; hash verifies: %b, wrong password: %b, hash needs rehash: %b%n",
+                migrated.ok(), hash != null, probe.check(hash, "hunter2").join().ok(),
+                probe.check(hash, "hunter3").join().ok(), probe.needsRehash(hash));
+        probe.check(null, "wrong").join(); // makes the unknown-user hash
+        long[] known = new long[7], unknown = new long[7];
+        for (int i = 0; i < known.length; i++) { // interleaved, so JIT warm-up and noise hit both alike
+            known[i] = time(() -> probe.check(hash, "wrong").join());
+            unknown[i] = time(() -> probe.check(null, "wrong").join());
+        }
+        System.out.printf("failed login (median): known user %.0f ms, unknown user %.0f ms%n",
+                median(known) / 1e6, median(unknown) / 1e6);
+
+        System.out.printf("%8s %14s %14s %12s%n", "threads", "verify/s", "verify/s/core", "avg ms");
+        for (int threads = 1; threads <= Math.max(2, cores); threads *= 2) {
+            Credentials c = new Credentials(targetMillis, threads);
+            c.iterations(); // calibrate outside the timing
+            c.check(hash, "hunter2").join(); // warm up
+            List<CompletableFuture<Credentials.Result>> pending = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) pending.add(c.check(hash, "hunter2"));
+            for (CompletableFuture<Credentials.Result> f : pending) {
+                if (!f.join().ok()) throw new AssertionError("verification failed");
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double perSecond = runs / seconds;
+            System.out.printf("%8d %14.1f %14.1f %12.0f%n", threads, perSecond, perSecond / Math.min(threads, cores),
+                    1000.0 * seconds * Math.min(threads, cores) / runs);
+        }
+    }
+
+    private static long time(Runnable r) {
+        long t0 = System.nanoTime();
+        r.run();
+        return System.nanoTime() - t0;
+    }
+
+    private static long median(long[] t) {
+        long[] sorted = t.clone();
+        java.util.Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,108 @@
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reports *.json files in one directory that were created, changed or deleted, on the EDT.
+ * WatchService events only wake the thread early; what changed is decided by comparing each file's
+ * modification time and size with the last scan, and the directory is also rescanned every couple of
+ * seconds because network mounts often deliver no watch events at all. Bursts are debounced so a
+ * file being written is reported once, after it goes quiet.
+ */
+public class DataWatcher implements Runnable {
+    private static final long RESCAN_MILLIS = 2000;
+    private static final long QUIET_MILLIS = 150;
+
+    private final Path dir;
+    private final Consumer<Path> onChange;
+    private final Map<Path, long[]> seen = new HashMap<>(); // file -> {mtime, size}
+    private volatile boolean running = true;
+    private WatchService watch;
+
+    DataWatcher(Path dir, Consumer<Path> onChange) {
+        this.dir = dir;
+        this.onChange = onChange;
+    }
+
+    DataWatcher start() {
+        try {
+            watch = FileSystems.getDefault().newWatchService();
+            dir.register(watch, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            watch = null; // polling only
+        }
+        scan(); // baseline
+        Thread t = new Thread(this, "data-watcher");
+        t.setDaemon(true);
+        t.start();
+        return this;
+    }
+
+    void stop() {
+        running = false;
+        try { if (watch != null) watch.close(); } catch (IOException ignored) {}
+    }
+
+    @Override public void run() {
+        while (running) {
+            try {
+                if (watch != null) {
+                    WatchKey key = watch.poll(RESCAN_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        // debounce: drain until the directory has been quiet for a moment
+                        do {
+                            key.pollEvents();
+                            key.reset();
+                        } while ((key = watch.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                    }
+                } else {
+                    Thread.sleep(RESCAN_MILLIS);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (Path p : scan()) SwingUtilities.invokeLater(() -> onChange.accept(p));
+        }
+    }
+
+    // files whose (mtime, size) differ from the last scan, including deleted ones
+    private Set<Path> scan() {
+        Set<Path> changed = new HashSet<>();
+        Set<Path> present = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.json")) {
+            for (Path p : files) {
+                BasicFileAttributes a;
+                try {
+                    a = Files.readAttributes(p, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue; // deleted between listing and reading
+                }
+                present.add(p);
+                long[] now = {a.lastModifiedTime().toMillis(), a.size()};
+                long[] before = seen.put(p, now);
+                if (before == null || before[0] != now[0] || before[1] != now[1]) changed.add(p);
+            }
+        } catch (IOException e) {
+            return changed;
+        }
+        for (Path p : new HashSet<>(seen.keySet())) {
+            if (!present.contains(p)) { seen.remove(p); changed.add(p); }
+        }
+        return changed;
+    }
+}
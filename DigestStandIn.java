@@ -0,0 +1,156 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Runs weekly digests end to end against a local SMTP stand-in: a first run to every opted-in user,
+// a week in which a tenth of them change something (only they are rendered and mailed), a quiet
+// week (nothing sent), and a run with one bouncing address (that user stays due). Prints render and
+// send throughput, connections opened, and the same messages sent one connection each for comparison.
+// usage: java DigestStandIn [users] [connections] [perConnection]
+public class DigestStandIn {
+    static final AtomicInteger connections = new AtomicInteger(), messages = new AtomicInteger();
+    static final Map<String, String> lastBody = new ConcurrentHashMap<>(); // recipient -> last message received
+
+    public static void main(String[] args) throws Exception {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int conns = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int perConnection = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        ServerSocket server = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket s = server.accept();
+                    Thread.ofVirtual().start(() -> session(s));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "smtp-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.setProperty("gpa.smtp.host", "localhost");
+        System.setProperty("gpa.smtp.port", String.valueOf(server.getLocalPort()));
+        System.setProperty("gpa.smtp.starttls", "false");
+        System.setProperty("gpa.smtp.from", "digests@gpa.test");
+
+        Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> data = SnapshotBench.synthetic(userCount, new Random(3));
+        Map<String, String> email = new HashMap<>();
+        for (String u : data.keySet()) email.put(u, u + "@students.test");
+        GradeStore.Reader reader = new GradeStore.Reader() {
+            @Override public <R> R read(String user, Function<Map<Integer, Map<String, CollegeGPATracker.ClassData>>, R> f) {
+                Map<Integer, Map<String, CollegeGPATracker.ClassData>> t = data.get(user);
+                if (t == null) return null;
+                synchronized (t) {
+                    return f.apply(t);
+                }
+            }
+        };
+        Digests digests = new Digests(null, reader, email::get, _ -> true);
+        digests.connections = conns;
+        digests.perConnection = perConnection;
+        System.out.printf("%,d opted-in users, %d connections, %d messages per connection%n", userCount, conns, perConnection);
+
+        data.keySet().forEach(digests::changed); // everyone just opted in
+        report("first digests", digests.runNow());
+
+        Random rnd = new Random(5);
+        String sample = null;
+        for (String u : data.keySet()) {
+            if (rnd.nextInt(10) != 0) continue;
+            Map.Entry<String, CollegeGPATracker.ClassData> c = data.get(u).get(1).entrySet().iterator().next();
+            CollegeGPATracker.ClassData cd = c.getValue();
+            for (int i = 0; i < 3; i++) {
+                cd.add(0, new CollegeGPATracker.Assignment("Quiz " + (i + 1), 55 - 5 * i, null));
+                cd.historyPercent.add(80.0 - 4 * i);
+            }
+            digests.changed(u);
+            if (sample == null) sample = u;
+        }
+        report("week with 10% active", digests.runNow());
+        System.out.println("  sample digest:\n" + lastBody.get(email.get(sample)).replaceAll("(?m)^", "    "));
+        report("quiet week", digests.runNow());
+
+        String bouncer = data.keySet().iterator().next();
+        email.put(bouncer, "bounce@students.test");
+        for (String u : data.keySet().stream().limit(2).toList()) {
+            data.get(u).get(1).values().iterator().next().add(0, new CollegeGPATracker.Assignment("Lab", 90, null));
+            digests.changed(u);
+        }
+        Digests.Report r = digests.runNow();
+        report("one bounce", r);
+        System.out.printf("  still due after the bounce: %d%n", digests.pendingCount());
+
+        // the same volume with a connection per message, as MailSender.sendEmail does
+        int sample1 = Math.min(500, userCount);
+        int before = connections.get();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < sample1; i++) {
+            try (MailSender.Batch one = new MailSender.Batch(1)) {
+                one.send("user" + i + "@students.test", "GPA Tracker weekly digest", "body");
+            }
+        }
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("connection per message: %,d messages, %.0f msg/s, %d connections%n",
+                sample1, sample1 / seconds, connections.get() - before);
+        server.close();
+    }
+
+    private static void report(String label, Digests.Report r) {
+        double sendSeconds = Math.max(1, r.sendMillis()) / 1000.0;
+        System.out.printf("%-22s due %,6d  rendered %,6d in %5d ms  sent %,6d in %6d ms (%,.0f msg/s)  failed %d  connections %d%n",
+                label, r.pending(), r.rendered(), r.renderMillis(), r.sent(), r.sendMillis(), r.sent() / sendSeconds,
+                r.failed(), r.connections());
+    }
+
+    // just enough SMTP for jakarta.mail: greeting, EHLO/HELO, MAIL, RCPT (bounce@ is refused), DATA, RSET, NOOP, QUIT
+    private static void session(Socket s) {
+        connections.incrementAndGet();
+        try (s; BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = s.getOutputStream()) {
+            reply(out, "220 stand-in ESMTP");
+            String rcpt = null;
+            for (String line; (line = in.readLine()) != null; ) {
+                String cmd = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (cmd) {
+                    case "EHLO", "HELO" -> reply(out, "250 stand-in");
+                    case "MAIL", "RSET", "NOOP" -> reply(out, "250 OK");
+                    case "RCPT" -> {
+                        rcpt = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>'));
+                        reply(out, rcpt.startsWith("bounce@") ? "550 No such user" : "250 OK");
+                    }
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder body = new StringBuilder();
+                        for (String l; (l = in.readLine()) != null && !l.equals("."); ) body.append(l).append('\n');
+                        messages.incrementAndGet();
+                        if (rcpt != null) lastBody.put(rcpt, body.substring(Math.max(0, body.indexOf("\n\n") + 2)));
+                        reply(out, "250 queued");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 bye");
+                        return;
+                    }
+                    default -> reply(out, "502 not implemented");
+                }
+            }
+        } catch (IOException ignored) {
+            // client went away
+        }
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
@@ -0,0 +1,429 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import jakarta.mail.MessagingException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Opt-in weekly progress emails: GPA change, new assignments and classes trending down since the
+ * user's last digest.
+ *
+ * Nothing is rescanned. Every save marks its user pending (changed()), and a digest run looks only
+ * at pending users who opted in, diffing their grades against the baseline kept from their last
+ * digest: the cumulative GPA, and per class its percent and nextId (assignments at or above it are
+ * new). Users who changed nothing get no email and cost nothing. Digests are rendered in parallel
+ * and sent over a few reused SMTP connections (MailSender.Batch); a user whose message failed stays
+ * pending with the old baseline, so the next run reports the whole stretch.
+ *
+ * State (baselines, pending users, time of the last run) is kept in one JSON file, data/digests.json,
+ * shared by every instance on the same data/. Saves, and the start and end of a run, happen under
+ * that file's lock and begin by re-reading it, so a week's digests go out once whichever instances
+ * are running: the first to find a week passed since the last run claims the pending users and sets
+ * lastRun, and the others see it. Rendering and sending happen outside the lock, and the run takes it
+ * again briefly to record the new baselines. Users marked pending here are merged into the file's set
+ * rather than written over it. Users claimed by a run that never finished are taken up by the next.
+ */
+public class Digests {
+    static final long WEEK_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    private static final int NAMES_PER_CLASS = 4; // new assignments listed by name per class; the rest are counted
+    private static final Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create(); // ungraded classes are NaN
+
+    record Mail(String user, String to, String subject, String body) {}
+
+    /** One run: users looked at, emails rendered and sent, failures, and where the time went. */
+    record Report(int pending, int rendered, int sent, int failed, long renderMillis, long sendMillis, int connections) {}
+
+    // what the last digest showed one user; classes are keyed "semester\tclass" -> {percent, nextId}
+    private static final class Baseline {
+        long sentAt;
+        Double gpa;
+        Map<String, double[]> classes = new HashMap<>();
+    }
+
+    // the on-disk form
+    private static final class State {
+        long lastRun;
+        Map<String, Baseline> baselines;
+        List<String> pending;
+        List<String> claimed; // taken by a run that has not finished
+    }
+
+    private record Rendered(String user, Mail mail, Baseline next) {}
+
+    private final String file; // null = not persisted
+    private final GradeStore.Reader reader;
+    private final Function<String, String> emailOf;
+    private final Predicate<String> optedIn;
+    private final Map<String, Baseline> baselines = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();   // as of the file, plus marked
+    private final Set<String> marked = ConcurrentHashMap.newKeySet();    // changed() here, not yet in the file
+    private final Set<String> forgotten = ConcurrentHashMap.newKeySet(); // remove()d here, not yet in the file
+    private final Set<String> claimed = ConcurrentHashMap.newKeySet();   // as of the file
+    private final Object running = new Object(); // one run at a time in this instance
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private volatile long lastRun;
+    private ScheduledExecutorService timer;
+    int connections = 2, perConnection = 100; // parallel SMTP connections; messages on one before reconnecting
+
+    Digests(String file, GradeStore.Reader reader, Function<String, String> emailOf, Predicate<String> optedIn) {
+        this.file = file;
+        this.reader = reader;
+        this.emailOf = emailOf;
+        this.optedIn = optedIn;
+        load();
+    }
+
+    /** The user's grades changed (a save, or another instance's edit): they are due a digest. */
+    void changed(String user) {
+        forgotten.remove(user);
+        pending.add(user);
+        if (marked.add(user)) scheduleSave();
+    }
+
+    /** The user is gone (deleted or renamed away). */
+    void remove(String user) {
+        marked.remove(user);
+        forgotten.add(user);
+        pending.remove(user);
+        baselines.remove(user);
+        scheduleSave();
+    }
+
+    private void scheduleSave() {
+        if (timer != null && saveScheduled.compareAndSet(false, true)) {
+            timer.schedule(this::save, 10, TimeUnit.SECONDS); // one write for a burst of changes
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    /** Checks hourly and runs once a week has passed since the last run. */
+    Digests start() {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "digests");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            if (System.currentTimeMillis() - lastRun < WEEK_MILLIS) return; // runIfDue re-checks against the file
+            try {
+                Report r = runIfDue();
+                if (r == null) return;
+                System.out.printf("Digests: %d sent, %d failed (%d pending)%n", r.sent(), r.failed(), r.pending());
+            } catch (RuntimeException e) {
+                System.err.println("Digest run failed: " + e.getMessage());
+            }
+        }, 5, 60, TimeUnit.MINUTES);
+        return this;
+    }
+
+    void stop() {
+        if (timer != null) timer.shutdown();
+    }
+
+    /** Renders and sends a digest to every pending, opted-in user whose grades moved. */
+    Report runNow() {
+        return run(false);
+    }
+
+    /** runNow() if a week has passed since the last run of any instance sharing the state file; else null. */
+    Report runIfDue() {
+        return run(true);
+    }
+
+    // a user leaves pending only once handled (digest sent, nothing to tell, opted out, no data), so
+    // one whose render or send failed is tried next run
+    private Report run(boolean ifDue) {
+        synchronized (running) {
+            // under the file's lock: claim the pending users, and on the weekly run any that an earlier
+            // run claimed and never finished (a manual run could be racing one still sending)
+            Map<String, Baseline> before = new HashMap<>();
+            List<String> due = shared(() -> {
+                if (ifDue && System.currentTimeMillis() - lastRun < WEEK_MILLIS) return null;
+                lastRun = System.currentTimeMillis();
+                List<String> users = new ArrayList<>(pending);
+                if (ifDue) for (String u : claimed) if (!pending.contains(u)) users.add(u);
+                marked.removeAll(users); // this run covers them; changes from here on mark them again
+                pending.removeAll(users);
+                claimed.addAll(users);
+                for (String u : users) {
+                    Baseline b = baselines.get(u);
+                    if (b != null) before.put(u, b);
+                }
+                return users;
+            });
+            if (due == null) return null;
+            int claimedCount = due.size();
+
+            Set<String> handled = ConcurrentHashMap.newKeySet();
+            Map<String, Baseline> next = new ConcurrentHashMap<>(); // null-free: a removed baseline is in optedOut
+            Set<String> optedOut = new HashSet<>();
+            due.removeIf(u -> {
+                if (optedIn.test(u)) return false;
+                optedOut.add(u); // a later opt-in starts afresh
+                handled.add(u);
+                return true;
+            });
+
+            AtomicInteger sent = new AtomicInteger(), failed = new AtomicInteger(), opened = new AtomicInteger();
+            long t0 = System.nanoTime();
+            List<Rendered> out = due.parallelStream().map(u -> {
+                try {
+                    Rendered r = render(u, before.get(u));
+                    if (r == null) handled.add(u); // no grade data
+                    return r;
+                } catch (RuntimeException e) {
+                    System.err.println("Digest for " + u + " not rendered: " + e);
+                    failed.incrementAndGet();
+                    return null;
+                }
+            }).filter(r -> r != null).toList();
+            long t1 = System.nanoTime();
+
+            ConcurrentLinkedQueue<Rendered> queue = new ConcurrentLinkedQueue<>();
+            for (Rendered r : out) {
+                if (r.mail == null) { // nothing to tell, but keep the numbers current
+                    next.put(r.user, r.next);
+                    handled.add(r.user);
+                } else {
+                    queue.add(r);
+                }
+            }
+            int rendered = queue.size();
+            Thread[] senders = new Thread[Math.max(1, Math.min(connections, queue.size()))];
+            for (int i = 0; i < senders.length; i++) {
+                senders[i] = new Thread(() -> {
+                    try (MailSender.Batch batch = new MailSender.Batch(perConnection)) {
+                        for (Rendered r; (r = queue.poll()) != null; ) {
+                            try {
+                                batch.send(r.mail.to, r.mail.subject, r.mail.body);
+                                next.put(r.mail.user, r.next);
+                                handled.add(r.mail.user);
+                                sent.incrementAndGet();
+                            } catch (MessagingException e) {
+                                failed.incrementAndGet(); // stays pending
+                            }
+                        }
+                        opened.addAndGet(batch.connections());
+                    }
+                }, "digest-send-" + i);
+                senders[i].start();
+            }
+            for (Thread s : senders) {
+                try {
+                    s.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            long t2 = System.nanoTime();
+
+            // under the file's lock again: the new baselines, and whoever wasn't handled back to pending
+            List<String> all = new ArrayList<>(due);
+            all.addAll(optedOut);
+            shared(() -> {
+                for (String u : optedOut) baselines.remove(u);
+                baselines.putAll(next);
+                for (String u : all) {
+                    if (claimed.remove(u) && !handled.contains(u)) pending.add(u);
+                }
+                return null;
+            });
+            return new Report(claimedCount, rendered, sent.get(), failed.get(),
+                    (t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000, opened.get());
+        }
+    }
+
+    // the user's digest and the baseline it leaves behind; mail is null when nothing moved (or no email)
+    private Rendered render(String user, Baseline last) {
+        String to = emailOf.apply(user);
+        return reader.read(user, terms -> {
+            Baseline next = new Baseline();
+            next.sentAt = System.currentTimeMillis();
+            double gpa = Cohort.entryOf(terms).gpa();
+            next.gpa = Double.isNaN(gpa) ? null : gpa;
+
+            StringBuilder added = new StringBuilder(), down = new StringBuilder(), standing = new StringBuilder();
+            int newCount = 0;
+            for (int sem = 1; sem <= 4; sem++) {
+                Map<String, CollegeGPATracker.ClassData> classes = terms.get(sem);
+                if (classes == null) continue;
+                for (Map.Entry<String, CollegeGPATracker.ClassData> c : classes.entrySet()) {
+                    CollegeGPATracker.ClassData cd = c.getValue();
+                    String key = sem + "\t" + c.getKey();
+                    String where = "Semester " + sem + ", " + c.getKey();
+                    double percent = cd.percent();
+                    next.classes.put(key, new double[]{percent, cd.nextId});
+                    double[] before = last == null ? null : last.classes.get(key);
+
+                    int firstNew = before == null ? (last == null ? cd.nextId : 1) : (int) before[1];
+                    List<String> names = new ArrayList<>();
+                    int fresh = 0;
+                    for (CollegeGPATracker.Category cat : cd.categories) {
+                        for (CollegeGPATracker.Assignment a : cat.items) {
+                            if (a.id < firstNew) continue;
+                            if (fresh++ < NAMES_PER_CLASS) names.add(a.name + " (" + fmt(a.score) + "%)");
+                        }
+                    }
+                    if (fresh > 0) {
+                        newCount += fresh;
+                        added.append("  ").append(where).append(": ").append(String.join(", ", names));
+                        if (fresh > names.size()) added.append(" and ").append(fresh - names.size()).append(" more");
+                        added.append('\n');
+                    }
+
+                    double was = before != null ? before[0] : Double.NaN;
+                    if (trendingDown(cd.historyPercent, percent, was)) {
+                        down.append("  ").append(where).append(": ").append(fmt(percent)).append('%');
+                        if (!Double.isNaN(was)) down.append(" (").append(signed(percent - was)).append(" since last digest)");
+                        down.append('\n');
+                    }
+                    if (!Double.isNaN(percent) && cd.categories.stream().anyMatch(cat -> cat.size() > 0)) {
+                        standing.append("  ").append(where).append(": ").append(fmt(percent)).append('%');
+                        if (!Double.isNaN(was) && Math.abs(percent - was) >= 0.05) standing.append(" (").append(signed(percent - was)).append(')');
+                        standing.append('\n');
+                    }
+                }
+            }
+
+            boolean gpaMoved = last != null && last.gpa != null && next.gpa != null && Math.abs(next.gpa - last.gpa) >= 0.005;
+            boolean moved = last == null || gpaMoved || newCount > 0 || down.length() > 0
+                    || !sameClasses(last.classes, next.classes);
+            if (!moved || to == null || to.isBlank()) return new Rendered(user, null, next);
+
+            String gpaText = next.gpa == null ? "no graded classes yet" : String.format(Locale.ROOT, "%.2f", next.gpa);
+            String change = gpaMoved ? " (" + (next.gpa > last.gpa ? "up " : "down ")
+                    + String.format(Locale.ROOT, "%.2f", Math.abs(next.gpa - last.gpa)) + " since your last digest)" : "";
+            StringBuilder body = new StringBuilder();
+            body.append("Hi ").append(user).append(",\n\n");
+            body.append(last == null ? "Here is where you stand, the first of your weekly digests.\n\n" : "Here is your week.\n\n");
+            body.append("Overall GPA: ").append(gpaText).append(change).append("\n\n");
+            if (newCount > 0) body.append("New assignments (").append(newCount).append("):\n").append(added).append('\n');
+            if (down.length() > 0) body.append("Trending down:\n").append(down).append('\n');
+            if (standing.length() > 0) body.append("Class percents:\n").append(standing).append('\n');
+            body.append("You get this email because weekly digests are on in your profile; turn them off there.\n");
+            String subject = "GPA Tracker weekly digest: GPA " + gpaText
+                    + (gpaMoved ? " (" + signed(next.gpa - last.gpa, "%.2f") + ")" : "");
+            return new Rendered(user, new Mail(user, to, subject, body.toString()), next);
+        });
+    }
+
+    // down a point or more since the last digest; for a class with no baseline yet, its last three
+    // history points falling
+    static boolean trendingDown(List<Double> history, double now, double atLastDigest) {
+        if (!Double.isNaN(atLastDigest)) return atLastDigest - now >= 1;
+        int n = history.size();
+        return n >= 3 && history.get(n - 3) > history.get(n - 2) && history.get(n - 2) > history.get(n - 1);
+    }
+
+    private static boolean sameClasses(Map<String, double[]> a, Map<String, double[]> b) {
+        if (!a.keySet().equals(b.keySet())) return false;
+        for (Map.Entry<String, double[]> e : a.entrySet()) {
+            double[] o = b.get(e.getKey());
+            double p = e.getValue()[0], q = o[0];
+            if (e.getValue()[1] != o[1]) return false;
+            if (!(Double.isNaN(p) && Double.isNaN(q)) && !(Math.abs(p - q) < 0.05)) return false;
+        }
+        return true;
+    }
+
+    private static String fmt(double v) {
+        return String.format(Locale.ROOT, "%.1f", v);
+    }
+
+    private static String signed(double v) {
+        return signed(v, "%.1f");
+    }
+
+    private static String signed(double v, String format) {
+        return (v >= 0 ? "+" : "") + String.format(Locale.ROOT, format, v);
+    }
+
+    // action under the state file's lock, between a re-read of the file and a write of the merged state
+    private synchronized <T> T shared(Supplier<T> action) {
+        if (file == null) return action.get();
+        try {
+            return AtomicFiles.locked(file, () -> {
+                load();
+                try {
+                    return action.get();
+                } finally {
+                    write();
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the file's state, with what this instance has marked or forgotten since its last write on top
+    private void load() {
+        if (file == null) return;
+        State s;
+        try {
+            String json = AtomicFiles.readIfExists(file);
+            s = json == null ? null : gson.fromJson(json, State.class);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+        if (s == null) return;
+        lastRun = Math.max(lastRun, s.lastRun);
+        baselines.clear();
+        if (s.baselines != null) baselines.putAll(s.baselines);
+        pending.clear();
+        if (s.pending != null) pending.addAll(s.pending);
+        pending.addAll(marked);
+        claimed.clear();
+        if (s.claimed != null) claimed.addAll(s.claimed);
+        for (String u : forgotten) {
+            pending.remove(u);
+            claimed.remove(u);
+            baselines.remove(u);
+        }
+    }
+
+    private void write() throws IOException {
+        Set<String> markedNow = new HashSet<>(marked), forgottenNow = new HashSet<>(forgotten);
+        State s = new State();
+        s.lastRun = lastRun;
+        s.baselines = new HashMap<>(baselines);
+        s.pending = new ArrayList<>(pending);
+        s.claimed = new ArrayList<>(claimed);
+        AtomicFiles.write(file, gson.toJson(s));
+        marked.removeAll(markedNow);
+        forgotten.removeAll(forgottenNow);
+    }
+
+    void save() {
+        saveScheduled.set(false);
+        try {
+            shared(() -> null);
+        } catch (UncheckedIOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -3,16 +3,20 @@ import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInsta
 import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
+import com.google.api.client.googleapis.auth.oauth2.GoogleOAuthConstants;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.store.DataStore;
 import com.google.api.client.util.store.FileDataStoreFactory;
-import com.google.api.services.oauth2.Oauth2;
 import com.google.api.services.oauth2.model.Userinfo;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
@@ -27,12 +31,113 @@ public class GoogleSignIn {
     private static final String CLIENT_SECRET_FILE = "client_secret.json";
     private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
     private static final String TOKENS_DIR = "tokens";
+    private static final String USERINFO_URL = "https://www.googleapis.com/oauth2/v2/userinfo";
 
     private static final java.util.List<String> SCOPES =
             Collections.singletonList("https://www.googleapis.com/auth/userinfo.email");
 
-    public static String[] authenticate() throws Exception {
-        NetHttpTransport httpTransport = GoogleNetHttpTransport.newTrustedTransport();
+    // Endpoints and client can be overridden (e.g. -Dgpa.oauth.authUrl=http://localhost:9099/auth)
+    // so the whole flow runs against a local stand-in; see OAuthStandIn.
+    private static final String AUTH_URL = System.getProperty("gpa.oauth.authUrl", GoogleOAuthConstants.AUTHORIZATION_SERVER_URL);
+    private static final String TOKEN_URL = System.getProperty("gpa.oauth.tokenUrl", GoogleOAuthConstants.TOKEN_SERVER_URL);
+    private static final String INFO_URL = System.getProperty("gpa.oauth.userinfoUrl", USERINFO_URL);
+    private static final int RECEIVER_PORT = Integer.getInteger("gpa.oauth.port", 8888);
+
+    // opens the consent page; replaceable so tests can drive the page without a desktop browser
+    static AuthorizationCodeInstalledApp.Browser browser = new AuthorizationCodeInstalledApp.DefaultBrowser();
+
+    // built once per process: transport, client secrets, token store and flow
+    private static NetHttpTransport httpTransport;
+    private static GoogleAuthorizationCodeFlow flow;
+    private static DataStore<String> account; // subject/email of the stored credential
+
+    /**
+     * Signs in and returns [email, suggestedUsername, subject]. A stored credential is reused first:
+     * still-valid tokens need no network at all and expired ones are refreshed silently, so only a
+     * first sign-in (or a revoked token) opens the browser.
+     */
+    public static synchronized String[] authenticate() throws Exception {
+        init();
+        String[] silent = silentSignIn();
+        if (silent != null) return silent;
+        flow.getCredentialDataStore().delete("user"); // otherwise authorize() would hand back the dead token
+
+        // Desktop receiver http://localhost:8888
+        LocalServerReceiver receiver = new LocalServerReceiver.Builder()
+                .setHost("localhost")
+                .setPort(RECEIVER_PORT)
+                .build();
+
+        Credential credential = new AuthorizationCodeInstalledApp(flow, receiver, browser).authorize("user");
+        Userinfo userInfo = fetchUserinfo(credential);
+        account.set("subject", userInfo.getId());
+        account.set("email", userInfo.getEmail());
+        return result(userInfo.getEmail(), userInfo.getId());
+    }
+
+    // stored credential -> [email, suggested, subject] without a browser; null if a full sign-in is needed
+    private static String[] silentSignIn() throws IOException {
+        Credential stored = flow.loadCredential("user");
+        String subject = account.get("subject");
+        if (stored == null || subject == null) return null;
+        Long left = stored.getExpiresInSeconds();
+        if (stored.getAccessToken() == null || left == null || left < 60) {
+            try {
+                if (stored.getRefreshToken() == null || !stored.refreshToken()) return null;
+            } catch (IOException e) {
+                return null; // revoked or offline: fall back to the interactive flow
+            }
+        }
+        return result(account.get("email"), subject);
+    }
+
+    private static String[] result(String email, String subject) {
+        // Return email + suggested username + stable Google account id
+        String suggested = (email != null && email.contains("@")) ? email.split("@")[0] : "user";
+        return new String[]{email, suggested, subject};
+    }
+
+    private static Userinfo fetchUserinfo(Credential credential) throws IOException {
+        try {
+            return httpTransport.createRequestFactory(credential)
+                    .buildGetRequest(new GenericUrl(INFO_URL))
+                    .setParser(JSON_FACTORY.createJsonObjectParser())
+                    .execute()
+                    .parseAs(Userinfo.class);
+        } catch (HttpResponseException e) {
+            throw new IOException("userinfo request failed: " + e.getStatusCode(), e);
+        }
+    }
+
+    private static void init() throws Exception {
+        if (flow != null) return;
+        boolean standIn = System.getProperty("gpa.oauth.tokenUrl") != null;
+        // the stand-in is plain http on localhost, so it doesn't need Google's trust store
+        httpTransport = standIn ? new NetHttpTransport() : GoogleNetHttpTransport.newTrustedTransport();
+        GoogleClientSecrets clientSecrets = loadClientSecrets();
+
+        // Determine tokens directory near the application so installed apps store tokens next to app
+        File tokenStoreDir = tokenStoreDir();
+        if (!tokenStoreDir.exists()) tokenStoreDir.mkdirs();
+        FileDataStoreFactory store = new FileDataStoreFactory(Objects.requireNonNull(tokenStoreDir));
+
+        // Flow
+        flow = new GoogleAuthorizationCodeFlow.Builder(httpTransport, JSON_FACTORY, clientSecrets, SCOPES)
+                .setDataStoreFactory(store)
+                .setAccessType("offline") // needed for a refresh token, i.e. for silent sign-in
+                .setAuthorizationServerEncodedUrl(AUTH_URL)
+                .setTokenServerUrl(new GenericUrl(TOKEN_URL))
+                .build();
+        account = store.getDataStore("account");
+    }
+
+    private static GoogleClientSecrets loadClientSecrets() throws IOException {
+        String id = System.getProperty("gpa.oauth.clientId");
+        if (id != null) {
+            GoogleClientSecrets.Details d = new GoogleClientSecrets.Details()
+                    .setClientId(id).setClientSecret(System.getProperty("gpa.oauth.clientSecret", ""));
+            return new GoogleClientSecrets().setInstalled(d);
+        }
                 // Load client secrets. Try multiple locations so packaging (jar/exe) works.
                 InputStream in = null;
                 // 1) try working directory
@@ -62,52 +167,37 @@ public class GoogleSignIn {
                         throw new RuntimeException("Missing " + CLIENT_SECRET_FILE + ". Place it next to the jar/exe or in the working directory.");
                 }
 
-                GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(
-                                JSON_FACTORY, new InputStreamReader(in, StandardCharsets.UTF_8));
+        try (InputStreamReader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return GoogleClientSecrets.load(JSON_FACTORY, r);
+        }
+    }
 
-        // Determine tokens directory near the application so installed apps store tokens next to app
-        File tokenStoreDir = new File(TOKENS_DIR);
+    private static File tokenStoreDir() {
+        String override = System.getProperty("gpa.oauth.tokensDir");
+        if (override != null) return new File(override);
+        File dir = new File(TOKENS_DIR);
         try {
             URI codeUri = GoogleSignIn.class.getProtectionDomain().getCodeSource().getLocation().toURI();
             Path codePath = Paths.get(codeUri).getParent();
-            if (codePath != null) tokenStoreDir = codePath.resolve(TOKENS_DIR).toFile();
+            if (codePath != null) dir = codePath.resolve(TOKENS_DIR).toFile();
         } catch (Exception ignored) {}
-        if (!tokenStoreDir.exists()) tokenStoreDir.mkdirs();
-
-        // Flow
-        GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-                httpTransport, JSON_FACTORY, clientSecrets, SCOPES)
-                .setDataStoreFactory(new FileDataStoreFactory(Objects.requireNonNull(tokenStoreDir)))
-                .setAccessType("offline")
-                .build();
-
-        // Desktop receiver http://localhost:8888
-        LocalServerReceiver receiver = new LocalServerReceiver.Builder()
-                .setHost("localhost")
-                .setPort(8888)
-                .build();
-
-        Credential credential = new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
-
-        Oauth2 oauth2 = new Oauth2.Builder(httpTransport, JSON_FACTORY, credential)
-                .setApplicationName("College GPA Tracker")
-                .build();
-
-        Userinfo userInfo = oauth2.userinfo().get().execute();
-
-        // Return email + suggested username
-        String email = userInfo.getEmail();
-        String suggested = (email != null && email.contains("@")) ? email.split("@")[0] : "user";
-        return new String[]{email, suggested};
+        return dir;
     }
 
         /**
          * Delete stored tokens so next authenticate() call prompts the user to choose an account.
          */
-        public static void clearStoredCredentials() {
-                File dir = new File(TOKENS_DIR);
+        public static synchronized void clearStoredCredentials() {
+                try {
+                        if (flow != null) {
+                                flow.getCredentialDataStore().clear();
+                                account.clear();
+                        }
+                } catch (IOException ignored) {}
+                File dir = tokenStoreDir();
                 if (!dir.exists()) return;
                 deleteRecursive(dir);
+                flow = null; // the file store is gone; rebuild it on next use
         }
 
         private static void deleteRecursive(File f) {
@@ -0,0 +1,273 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo projection of final class grades and cumulative GPA. The remaining planned work of
+ * every class is simulated many times with scores drawn from that class's own history. The grade
+ * data is flattened into primitive arrays once; trials run in parallel chunks, each with its own
+ * split of a SplittableRandom and its own scratch buffers, so the inner loop never allocates.
+ */
+public class GpaProjection {
+    static final int PERCENT_BINS = 101;  // whole percents 0..100
+    static final int GPA_BINS = 501;      // hundredths 0.00..5.00
+    private static final int CHUNK = 256; // trials per task
+    private static final double MIN_SD = 4.0; // keep some spread for classes with one or two scores
+
+    // ===== flattened snapshot of the grade data =====
+    static final class Model {
+        final String[] classNames;     // simulated (open) classes
+        final double fixedPoints;      // grade points of classes with nothing left to simulate
+        final int totalCredits;
+        // per open class
+        final int[] credits;
+        final GradingScale[] scales;
+        final int[] catStart;          // range into the per-category arrays
+        final int[] catEnd;
+        final double[] mean;           // score distribution
+        final double[] sd;
+        // per category of open classes
+        final double[] weight;         // fraction
+        final double[] sum;
+        final int[] count;
+        final int[] remaining;
+        final int[] drop;
+        final double[][] sortedScores; // only where a drop rule applies
+        final int maxDrop;
+
+        private Model(String[] classNames, double fixedPoints, int totalCredits, int[] credits, GradingScale[] scales,
+                      int[] catStart, int[] catEnd, double[] mean, double[] sd, double[] weight, double[] sum,
+                      int[] count, int[] remaining, int[] drop, double[][] sortedScores) {
+            this.classNames = classNames; this.fixedPoints = fixedPoints; this.totalCredits = totalCredits;
+            this.credits = credits; this.scales = scales; this.catStart = catStart; this.catEnd = catEnd;
+            this.mean = mean; this.sd = sd; this.weight = weight; this.sum = sum; this.count = count;
+            this.remaining = remaining; this.drop = drop; this.sortedScores = sortedScores;
+            int md = 0;
+            for (int d : drop) md = Math.max(md, d);
+            this.maxDrop = md;
+        }
+
+        int openClasses() { return classNames.length; }
+    }
+
+    // build a model from one user's semesters; classes without planned remaining work are fixed
+    static Model build(Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        double fixedPoints = 0;
+        int totalCredits = 0;
+        List<String> names = new ArrayList<>();
+        List<CollegeGPATracker.ClassData> open = new ArrayList<>();
+        for (Map<String, CollegeGPATracker.ClassData> term : terms.values()) {
+            for (Map.Entry<String, CollegeGPATracker.ClassData> e : term.entrySet()) {
+                CollegeGPATracker.ClassData cd = e.getValue();
+                if (cd.passFail) continue;
+                totalCredits += cd.credits;
+                boolean hasPlan = false;
+                for (CollegeGPATracker.Category c : cd.categories) if (c.remaining() > 0) hasPlan = true;
+                if (hasPlan) { names.add(e.getKey()); open.add(cd); }
+                else fixedPoints += cd.gpa() * cd.credits;
+            }
+        }
+        int m = open.size();
+        int cats = 0;
+        for (CollegeGPATracker.ClassData cd : open) cats += cd.categories.size();
+        int[] credits = new int[m], catStart = new int[m], catEnd = new int[m];
+        GradingScale[] scales = new GradingScale[m];
+        double[] mean = new double[m], sd = new double[m];
+        double[] weight = new double[cats], sum = new double[cats];
+        int[] count = new int[cats], remaining = new int[cats], drop = new int[cats];
+        double[][] sorted = new double[cats][];
+        int k = 0;
+        for (int i = 0; i < m; i++) {
+            CollegeGPATracker.ClassData cd = open.get(i);
+            credits[i] = cd.credits;
+            scales[i] = cd.scale();
+            catStart[i] = k;
+            double s = 0, s2 = 0;
+            int n = 0;
+            for (CollegeGPATracker.Category c : cd.categories) {
+                weight[k] = c.weight / 100.0;
+                sum[k] = c.sum();
+                count[k] = c.size();
+                remaining[k] = c.remaining();
+                drop[k] = c.dropLowest;
+                if (c.dropLowest > 0) {
+                    double[] sc = new double[c.size()];
+                    for (int j = 0; j < sc.length; j++) sc[j] = c.items.get(j).score;
+                    Arrays.sort(sc);
+                    sorted[k] = sc;
+                }
+                for (CollegeGPATracker.Assignment a : c.items) { s += a.score; s2 += a.score * a.score; n++; }
+                k++;
+            }
+            catEnd[i] = k;
+            mean[i] = n > 0 ? s / n : 85; // no scores yet: assume a typical B
+            double var = n > 1 ? Math.max(0, (s2 - s * s / n) / (n - 1)) : 0;
+            sd[i] = Math.max(MIN_SD, Math.sqrt(var + historyVariance(cd.historyPercent)));
+        }
+        return new Model(names.toArray(new String[0]), fixedPoints, totalCredits, credits, scales,
+                catStart, catEnd, mean, sd, weight, sum, count, remaining, drop, sorted);
+    }
+
+    // variance of step-to-step changes of the class percent (how jumpy the class has been)
+    private static double historyVariance(List<Double> h) {
+        int n = h.size();
+        if (n < 3) return 0;
+        double s = 0, s2 = 0;
+        for (int i = 1; i < n; i++) {
+            double d = h.get(i) - h.get(i - 1);
+            s += d; s2 += d * d;
+        }
+        int m = n - 1;
+        return Math.max(0, (s2 - s * s / m) / (m - 1));
+    }
+
+    // ===== results =====
+    static final class Result {
+        final String[] classNames;
+        final long[][] classHist; // per open class: final percent histogram
+        final long[] gpaHist;     // cumulative GPA histogram (hundredths)
+        final int trials;
+        final long elapsedNanos;
+
+        Result(String[] classNames, long[][] classHist, long[] gpaHist, int trials, long elapsedNanos) {
+            this.classNames = classNames; this.classHist = classHist; this.gpaHist = gpaHist;
+            this.trials = trials; this.elapsedNanos = elapsedNanos;
+        }
+
+        double classPercentile(int cls, double q) { return quantile(classHist[cls], q); }
+
+        double gpaPercentile(double q) { return quantile(gpaHist, q) / 100.0; }
+
+        // probability the cumulative GPA ends at or above `gpa`
+        double probabilityAtLeast(double gpa) {
+            int from = Math.max(0, Math.min(GPA_BINS - 1, (int) Math.round(gpa * 100)));
+            long c = 0;
+            for (int i = from; i < GPA_BINS; i++) c += gpaHist[i];
+            return trials > 0 ? (double) c / trials : 0;
+        }
+
+        double meanGpa() {
+            double s = 0;
+            for (int i = 0; i < GPA_BINS; i++) s += gpaHist[i] * (i / 100.0);
+            return trials > 0 ? s / trials : 0;
+        }
+
+        private double quantile(long[] hist, double q) {
+            long target = (long) Math.ceil(q * trials);
+            long c = 0;
+            for (int i = 0; i < hist.length; i++) {
+                c += hist[i];
+                if (c >= target && c > 0) return i;
+            }
+            return hist.length - 1;
+        }
+    }
+
+    // ===== simulation =====
+    static Result run(Model model, int trials, long seed) {
+        return run(model, trials, seed, ForkJoinPool.commonPool());
+    }
+
+    static Result run(Model model, int trials, long seed, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        int chunks = (trials + CHUNK - 1) / CHUNK;
+        Partial p = pool.invoke(new Chunks(model, new SplittableRandom(seed), 0, chunks, trials));
+        return new Result(model.classNames, p.classHist, p.gpaHist, trials, System.nanoTime() - start);
+    }
+
+    // per-task accumulators, merged pairwise on the way up
+    private static final class Partial {
+        final long[][] classHist;
+        final long[] gpaHist = new long[GPA_BINS];
+        Partial(int classes) { classHist = new long[classes][PERCENT_BINS]; }
+        Partial merge(Partial o) {
+            for (int i = 0; i < classHist.length; i++) {
+                for (int b = 0; b < PERCENT_BINS; b++) classHist[i][b] += o.classHist[i][b];
+            }
+            for (int b = 0; b < GPA_BINS; b++) gpaHist[b] += o.gpaHist[b];
+            return this;
+        }
+    }
+
+    private static final class Chunks extends RecursiveTask<Partial> {
+        private final Model m;
+        private final SplittableRandom rng;
+        private final int from, to, trials;
+
+        Chunks(Model m, SplittableRandom rng, int from, int to, int trials) {
+            this.m = m; this.rng = rng; this.from = from; this.to = to; this.trials = trials;
+        }
+
+        @Override protected Partial compute() {
+            if (to - from == 1) return simulate(m, rng, from * CHUNK, Math.min(trials, (from + 1) * CHUNK));
+            int mid = (from + to) >>> 1;
+            Chunks left = new Chunks(m, rng.split(), from, mid, trials);
+            Chunks right = new Chunks(m, rng.split(), mid, to, trials);
+            left.fork();
+            Partial r = right.compute();
+            return left.join().merge(r);
+        }
+    }
+
+    private static Partial simulate(Model m, SplittableRandom rng, int fromTrial, int toTrial) {
+        int classes = m.openClasses();
+        Partial out = new Partial(classes);
+        double[] lowest = new double[Math.max(1, m.maxDrop)]; // scratch: smallest simulated scores
+        for (int t = fromTrial; t < toTrial; t++) {
+            double points = m.fixedPoints;
+            for (int c = 0; c < classes; c++) {
+                double percent = 0;
+                double weightSum = 0;
+                for (int k = m.catStart[c]; k < m.catEnd[c]; k++) {
+                    weightSum += m.weight[k];
+                    int r = m.remaining[k];
+                    int total = m.count[k] + r;
+                    if (total == 0) continue;
+                    double s = m.sum[k];
+                    int d = Math.min(m.drop[k], total - 1);
+                    int kept = 0;
+                    for (int j = 0; j < r; j++) {
+                        double x = m.mean[c] + m.sd[c] * rng.nextGaussian();
+                        x = x < 0 ? 0 : (x > 100 ? 100 : x);
+                        s += x;
+                        if (d > 0) kept = insertLowest(lowest, kept, d, x);
+                    }
+                    if (d > 0) s -= smallestSum(m.sortedScores[k], lowest, kept, d);
+                    percent += m.weight[k] * (s / (total - d));
+                }
+                if (weightSum == 0) percent = 0;
+                int bin = (int) Math.round(percent);
+                out.classHist[c][bin < 0 ? 0 : (bin > 100 ? 100 : bin)]++;
+                points += m.scales[c].toPoints(percent) * m.credits[c];
+            }
+            double gpa = m.totalCredits > 0 ? points / m.totalCredits : 0;
+            int g = (int) Math.round(gpa * 100);
+            out.gpaHist[g < 0 ? 0 : (g >= GPA_BINS ? GPA_BINS - 1 : g)]++;
+        }
+        return out;
+    }
+
+    // keep the `cap` smallest values seen so far in ascending order; returns the new size
+    private static int insertLowest(double[] low, int size, int cap, double x) {
+        if (size == cap && x >= low[size - 1]) return size;
+        int i = (size < cap) ? size++ : size - 1;
+        while (i > 0 && low[i - 1] > x) { low[i] = low[i - 1]; i--; }
+        low[i] = x;
+        return size;
+    }
+
+    // sum of the d smallest of two ascending runs
+    private static double smallestSum(double[] a, double[] b, int bn, int d) {
+        double s = 0;
+        int i = 0, j = 0;
+        for (int t = 0; t < d; t++) {
+            if (j < bn && (i >= a.length || b[j] <= a[i])) s += b[j++];
+            else s += a[i++];
+        }
+        return s;
+    }
+}
@@ -0,0 +1,77 @@
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Typed change events for one user's grade data. Handlers mutate the data and publish what they
+ * changed; widgets subscribe and redraw. Publishing only queues the event: everything published
+ * before the EDT gets back to its queue is delivered as one batch, so a widget recomputes once per
+ * turn of the event loop however many mutations happened. publish() may be called from any thread.
+ */
+public class GradeEvents {
+    /** Something changed in one class; semester 0 / className null means "every class". */
+    sealed interface Event permits ClassAdded, ClassRemoved, AssignmentAdded, AssignmentEdited,
+            AssignmentRemoved, WeightsChanged, CreditsChanged, ScaleChanged, Restored, Reloaded {
+        int semester();
+        String className();
+
+        default boolean affects(int sem, String cls) {
+            return (semester() == 0 || semester() == sem) && (className() == null || className().equals(cls));
+        }
+    }
+
+    record ClassAdded(int semester, String className) implements Event {}
+    record ClassRemoved(int semester, String className) implements Event {}
+    record AssignmentAdded(int semester, String className, int assignmentId) implements Event {}
+    record AssignmentEdited(int semester, String className, int assignmentId) implements Event {}
+    record AssignmentRemoved(int semester, String className, int assignmentId) implements Event {}
+    record WeightsChanged(int semester, String className) implements Event {}
+    record CreditsChanged(int semester, String className) implements Event {}
+    record ScaleChanged(int semester, String className) implements Event {}
+    record Restored(int semester, String className) implements Event {} // undo / redo
+    record Reloaded(int semester, String className) implements Event {} // changed by another instance
+
+    /** Receives every batch (in publish order) on the EDT. */
+    interface Listener {
+        void onChanges(List<Event> batch);
+    }
+
+    // a listener tied to a component stops receiving once that component is gone (tab rebuilt, frame closed)
+    private record Subscription(JComponent owner, Listener listener) {}
+
+    private final List<Subscription> subs = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<Event> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    void subscribe(JComponent owner, Listener l) {
+        subs.add(new Subscription(owner, l));
+    }
+
+    void subscribe(Listener l) {
+        subscribe(null, l);
+    }
+
+    void publish(Event e) {
+        pending.add(e);
+        if (scheduled.compareAndSet(false, true)) SwingUtilities.invokeLater(this::flush);
+    }
+
+    // runs on the EDT
+    private void flush() {
+        scheduled.set(false);
+        List<Event> batch = new ArrayList<>();
+        for (Event e; (e = pending.poll()) != null; ) batch.add(e);
+        if (batch.isEmpty()) return;
+        for (Subscription s : subs) {
+            if (s.owner != null && !s.owner.isDisplayable()) {
+                subs.remove(s);
+                continue;
+            }
+            s.listener.onChanges(batch);
+        }
+    }
+}
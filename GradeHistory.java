@@ -0,0 +1,407 @@
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Versioned history of one user's grade data for undo/redo and "GPA as of date X".
+ * Every version is the root of a persistent (immutable, path-copying) map of
+ * semester -> class name -> immutable class snapshot. An edit copies only the changed
+ * class plus O(log n) map nodes; everything else is shared with the previous version.
+ * The edit log is appended to data/history/<user>.jsonl (the name URL-encoded, as shards are) so
+ * the timeline survives restarts. Past days only need to answer "as of date X", so once the log is
+ * long, opening it keeps just the last change of each class on each day and rewrites the file:
+ * replay then grows with the days and classes a user has edited, not with every edit ever made.
+ */
+public class GradeHistory {
+    private static final Gson gson = new Gson();
+    private static final int COMPACT_AT = 500; // log lines worth compacting on open
+
+    // ===== persistent sorted map (treap with path copying) =====
+    static final class PMap<K extends Comparable<K>, V> {
+        private static final PMap<?, ?> EMPTY = new PMap<>(null, 0);
+        private final Node<K, V> root;
+        private final int size;
+
+        private PMap(Node<K, V> root, int size) { this.root = root; this.size = size; }
+
+        @SuppressWarnings("unchecked")
+        static <K extends Comparable<K>, V> PMap<K, V> empty() { return (PMap<K, V>) EMPTY; }
+
+        private static final class Node<K, V> {
+            final K key; final V val; final int prio; final Node<K, V> left, right;
+            Node(K key, V val, int prio, Node<K, V> left, Node<K, V> right) {
+                this.key = key; this.val = val; this.prio = prio; this.left = left; this.right = right;
+            }
+        }
+
+        int size() { return size; }
+
+        V get(K key) {
+            Node<K, V> n = root;
+            while (n != null) {
+                int c = key.compareTo(n.key);
+                if (c == 0) return n.val;
+                n = c < 0 ? n.left : n.right;
+            }
+            return null;
+        }
+
+        PMap<K, V> put(K key, V val) {
+            boolean[] added = new boolean[1];
+            Node<K, V> r = insert(root, key, val, Objects.hashCode(key) * 0x9E3779B9, added);
+            return new PMap<>(r, added[0] ? size + 1 : size);
+        }
+
+        PMap<K, V> remove(K key) {
+            if (get(key) == null) return this;
+            return new PMap<>(delete(root, key), size - 1);
+        }
+
+        void forEach(BiConsumer<K, V> f) { walk(root, f); }
+
+        private static <K, V> void walk(Node<K, V> n, BiConsumer<K, V> f) {
+            if (n == null) return;
+            walk(n.left, f);
+            f.accept(n.key, n.val);
+            walk(n.right, f);
+        }
+
+        private static <K extends Comparable<K>, V> Node<K, V> insert(Node<K, V> n, K key, V val, int prio, boolean[] added) {
+            if (n == null) { added[0] = true; return new Node<>(key, val, prio, null, null); }
+            int c = key.compareTo(n.key);
+            if (c == 0) return new Node<>(key, val, n.prio, n.left, n.right);
+            if (c < 0) {
+                Node<K, V> l = insert(n.left, key, val, prio, added);
+                if (l.prio > n.prio) return new Node<>(l.key, l.val, l.prio, l.left, new Node<>(n.key, n.val, n.prio, l.right, n.right));
+                return new Node<>(n.key, n.val, n.prio, l, n.right);
+            }
+            Node<K, V> r = insert(n.right, key, val, prio, added);
+            if (r.prio > n.prio) return new Node<>(r.key, r.val, r.prio, new Node<>(n.key, n.val, n.prio, n.left, r.left), r.right);
+            return new Node<>(n.key, n.val, n.prio, n.left, r);
+        }
+
+        private static <K extends Comparable<K>, V> Node<K, V> delete(Node<K, V> n, K key) {
+            int c = key.compareTo(n.key);
+            if (c == 0) return merge(n.left, n.right);
+            if (c < 0) return new Node<>(n.key, n.val, n.prio, delete(n.left, key), n.right);
+            return new Node<>(n.key, n.val, n.prio, n.left, delete(n.right, key));
+        }
+
+        private static <K, V> Node<K, V> merge(Node<K, V> a, Node<K, V> b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            if (a.prio > b.prio) return new Node<>(a.key, a.val, a.prio, a.left, merge(a.right, b));
+            return new Node<>(b.key, b.val, b.prio, merge(a, b.left), b.right);
+        }
+    }
+
+    // ===== immutable snapshots =====
+    static final class CategorySnapshot {
+        final String name; final int weight; final int dropLowest; final int expected;
+        final int[] ids; final String[] names; final double[] scores;
+
+        CategorySnapshot(CollegeGPATracker.Category c) {
+            name = c.name; weight = c.weight; dropLowest = c.dropLowest; expected = c.expected;
+            int n = c.items.size();
+            ids = new int[n];
+            names = new String[n];
+            scores = new double[n];
+            for (int i = 0; i < n; i++) {
+                CollegeGPATracker.Assignment a = c.items.get(i);
+                ids[i] = a.id;
+                names[i] = a.name;
+                scores[i] = a.score;
+            }
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof CategorySnapshot)) return false;
+            CategorySnapshot s = (CategorySnapshot) o;
+            return weight == s.weight && dropLowest == s.dropLowest && expected == s.expected
+                    && Objects.equals(name, s.name) && Arrays.equals(ids, s.ids) && Arrays.equals(names, s.names)
+                    && Arrays.equals(scores, s.scores);
+        }
+
+        @Override public int hashCode() { return Objects.hash(name, weight, Arrays.hashCode(scores)); }
+    }
+
+    static final class ClassSnapshot {
+        final int credits; final String scale; final boolean passFail; final int nextId;
+        final double percent; // class percent at capture time
+        final CategorySnapshot[] categories;
+        final double[] history;
+
+        ClassSnapshot(CollegeGPATracker.ClassData cd) {
+            credits = cd.credits; scale = cd.scale; passFail = cd.passFail; nextId = cd.nextId;
+            percent = cd.percent();
+            categories = new CategorySnapshot[cd.categories.size()];
+            for (int i = 0; i < categories.length; i++) categories[i] = new CategorySnapshot(cd.category(i));
+            history = new double[cd.historyPercent.size()];
+            for (int i = 0; i < history.length; i++) history[i] = cd.historyPercent.get(i);
+        }
+
+        CollegeGPATracker.ClassData toClassData() {
+            CollegeGPATracker.ClassData cd = new CollegeGPATracker.ClassData();
+            cd.categories.clear();
+            cd.credits = credits; cd.scale = scale; cd.passFail = passFail; cd.nextId = Math.max(1, nextId);
+            for (CategorySnapshot s : categories) {
+                CollegeGPATracker.Category c = new CollegeGPATracker.Category(s.name, s.weight);
+                c.dropLowest = s.dropLowest;
+                c.expected = s.expected;
+                for (int i = 0; i < s.scores.length; i++) {
+                    CollegeGPATracker.Assignment a = new CollegeGPATracker.Assignment(s.names[i], s.scores[i], s.name);
+                    if (s.ids != null) a.id = s.ids[i]; // older log lines have no ids; invalidate() assigns fresh ones
+                    c.items.add(a);
+                }
+                cd.categories.add(c);
+            }
+            for (double h : history) cd.historyPercent.add(h);
+            cd.invalidate();
+            return cd;
+        }
+
+        // content equality, ignoring the cached percent and the trend history
+        boolean sameGrades(ClassSnapshot o) {
+            return o != null && credits == o.credits && passFail == o.passFail && Objects.equals(scale, o.scale)
+                    && Arrays.equals(categories, o.categories);
+        }
+    }
+
+    // ===== versions =====
+    static final class Version {
+        final long time;
+        final PMap<Integer, PMap<String, ClassSnapshot>> root;
+        final int semester;    // the class this version changed
+        final String className;
+        final String label;
+        Version(long time, PMap<Integer, PMap<String, ClassSnapshot>> root, int semester, String className, String label) {
+            this.time = time; this.root = root; this.semester = semester; this.className = className; this.label = label;
+        }
+    }
+
+    // one line of the on-disk log
+    private static final class Entry {
+        long t; int sem; String cls; ClassSnapshot snap; String label;
+    }
+
+    private final List<Version> timeline = new ArrayList<>();
+    private final Deque<Integer> undo = new ArrayDeque<>(); // timeline indices of undoable edits
+    private final Deque<Integer> redo = new ArrayDeque<>();
+    private final File logFile;
+
+    private GradeHistory(File logFile) { this.logFile = logFile; }
+
+    /**
+     * Replays the user's log (if any) and appends versions for anything the live data has that
+     * the log doesn't, so the latest version always matches `terms`.
+     */
+    static GradeHistory open(String dir, String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        File d = new File(dir);
+        if (!d.exists()) d.mkdirs();
+        File f = fileFor(dir, user);
+        File legacy = new File(d, user + ".jsonl"); // named before encoding; only if it is really in dir
+        if (!f.exists() && legacy.exists() && d.equals(legacy.getParentFile()) && !legacy.renameTo(f)) {
+            System.err.println("Could not rename " + legacy);
+        }
+        GradeHistory h = new GradeHistory(f);
+        h.replay();
+        h.reconcile(terms);
+        return h;
+    }
+
+    static File fileFor(String dir, String user) {
+        return new File(dir, URLEncoder.encode(user, StandardCharsets.UTF_8) + ".jsonl");
+    }
+
+    private void replay() {
+        if (!logFile.exists()) return;
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(logFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    entries.add(gson.fromJson(line, Entry.class));
+                } catch (RuntimeException bad) { /* skip a torn line */ }
+            }
+        } catch (IOException e) { e.printStackTrace(); }
+        if (entries.size() >= COMPACT_AT) entries = compact(entries);
+        PMap<Integer, PMap<String, ClassSnapshot>> root = PMap.empty();
+        for (Entry e : entries) {
+            root = apply(root, e.sem, e.cls, e.snap);
+            timeline.add(new Version(e.t, root, e.sem, e.cls, e.label));
+        }
+    }
+
+    // the last entry of each class on each (local) day, in log order, and the log rewritten to them.
+    // The state at the end of every day is unchanged; undo only reaches back to edits of this session.
+    private List<Entry> compact(List<Entry> entries) {
+        ZoneId zone = ZoneId.systemDefault();
+        Set<String> seen = new HashSet<>();
+        List<Entry> kept = new ArrayList<>();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry e = entries.get(i);
+            String key = Instant.ofEpochMilli(e.t).atZone(zone).toLocalDate() + "\u0000" + e.sem + "\u0000" + e.cls;
+            if (seen.add(key)) kept.add(e);
+        }
+        if (kept.size() == entries.size()) return entries;
+        Collections.reverse(kept);
+        StringBuilder sb = new StringBuilder();
+        for (Entry e : kept) sb.append(gson.toJson(e)).append('\n');
+        try {
+            AtomicFiles.write(logFile.getPath(), sb.toString());
+        } catch (IOException e) {
+            e.printStackTrace(); // the full log stays; this session uses the compacted timeline anyway
+        }
+        return kept;
+    }
+
+    private void reconcile(Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        PMap<Integer, PMap<String, ClassSnapshot>> latest = head();
+        for (Map.Entry<Integer, Map<String, CollegeGPATracker.ClassData>> term : terms.entrySet()) {
+            PMap<String, ClassSnapshot> known = latest.get(term.getKey());
+            for (Map.Entry<String, CollegeGPATracker.ClassData> e : term.getValue().entrySet()) {
+                ClassSnapshot snap = new ClassSnapshot(e.getValue());
+                ClassSnapshot prev = known != null ? known.get(e.getKey()) : null;
+                if (!snap.sameGrades(prev)) append(term.getKey(), e.getKey(), snap, "Imported");
+            }
+        }
+        head().forEach((sem, classes) -> {
+            Map<String, CollegeGPATracker.ClassData> live = terms.get(sem);
+            List<String> gone = new ArrayList<>();
+            classes.forEach((name, snap) -> { if (live == null || !live.containsKey(name)) gone.add(name); });
+            for (String name : gone) append(sem, name, null, "Imported");
+        });
+    }
+
+    private PMap<Integer, PMap<String, ClassSnapshot>> head() {
+        return timeline.isEmpty() ? PMap.empty() : timeline.get(timeline.size() - 1).root;
+    }
+
+    private static PMap<Integer, PMap<String, ClassSnapshot>> apply(PMap<Integer, PMap<String, ClassSnapshot>> root,
+                                                                    int sem, String cls, ClassSnapshot snap) {
+        PMap<String, ClassSnapshot> term = root.get(sem);
+        if (term == null) term = PMap.empty();
+        term = (snap == null) ? term.remove(cls) : term.put(cls, snap);
+        return root.put(sem, term);
+    }
+
+    private Version append(int sem, String cls, ClassSnapshot snap, String label) {
+        Version v = new Version(System.currentTimeMillis(), apply(head(), sem, cls, snap), sem, cls, label);
+        timeline.add(v);
+        Entry e = new Entry();
+        e.t = v.time; e.sem = sem; e.cls = cls; e.snap = snap; e.label = label;
+        try (FileWriter fw = new FileWriter(logFile, true)) {
+            fw.write(gson.toJson(e));
+            fw.write('\n');
+        } catch (IOException ex) { ex.printStackTrace(); }
+        return v;
+    }
+
+    // ===== editing API =====
+
+    // record the new state of one class (null = class deleted) after an edit
+    void record(int sem, String cls, CollegeGPATracker.ClassData cd, String label) {
+        append(sem, cls, cd != null ? new ClassSnapshot(cd) : null, label);
+        undo.push(timeline.size() - 1);
+        redo.clear();
+    }
+
+    boolean canUndo() { return !undo.isEmpty(); }
+    boolean canRedo() { return !redo.isEmpty(); }
+    String undoLabel() { return canUndo() ? timeline.get(undo.peek()).label : null; }
+    String redoLabel() { return canRedo() ? timeline.get(redo.peek()).label : null; }
+
+    /**
+     * Reverts the most recent edit by writing the class's previous snapshot back into `terms`.
+     * Returns the version that was undone, or null.
+     */
+    Version undo(Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        if (undo.isEmpty()) return null;
+        int idx = undo.pop();
+        Version edit = timeline.get(idx);
+        PMap<String, ClassSnapshot> before = (idx > 0) ? timeline.get(idx - 1).root.get(edit.semester) : null;
+        ClassSnapshot prev = (before != null) ? before.get(edit.className) : null;
+        restore(terms, edit.semester, edit.className, prev);
+        append(edit.semester, edit.className, prev, "Undo " + edit.label);
+        redo.push(idx);
+        return edit;
+    }
+
+    Version redo(Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        if (redo.isEmpty()) return null;
+        int idx = redo.pop();
+        Version edit = timeline.get(idx);
+        PMap<String, ClassSnapshot> term = edit.root.get(edit.semester);
+        ClassSnapshot snap = (term != null) ? term.get(edit.className) : null;
+        restore(terms, edit.semester, edit.className, snap);
+        append(edit.semester, edit.className, snap, "Redo " + edit.label);
+        undo.push(idx);
+        return edit;
+    }
+
+    private static void restore(Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, int sem, String cls, ClassSnapshot snap) {
+        Map<String, CollegeGPATracker.ClassData> term = terms.computeIfAbsent(sem, _ -> new HashMap<>());
+        if (snap == null) term.remove(cls);
+        else term.put(cls, snap.toClassData());
+    }
+
+    // ===== time travel =====
+
+    // latest version at or before `time`, or null if the timeline starts later
+    Version asOf(long time) {
+        int lo = 0, hi = timeline.size() - 1, found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timeline.get(mid).time <= time) { found = mid; lo = mid + 1; } else hi = mid - 1;
+        }
+        return found < 0 ? null : timeline.get(found);
+    }
+
+    long firstTime() { return timeline.isEmpty() ? System.currentTimeMillis() : timeline.get(0).time; }
+
+    // cumulative GPA of a version (pass/fail excluded), using today's grading scales
+    static double gpa(Version v) {
+        double[] acc = new double[2];
+        v.root.forEach((sem, classes) -> classes.forEach((name, s) -> {
+            if (s.passFail) return;
+            acc[0] += GradingScale.get(s.scale).toPoints(s.percent) * s.credits;
+            acc[1] += s.credits;
+        }));
+        return acc[1] > 0 ? acc[0] / acc[1] : 0.0;
+    }
+
+    // class name -> percent for one semester of a version
+    static Map<String, Double> percents(Version v, int sem) {
+        Map<String, Double> out = new java.util.TreeMap<>();
+        PMap<String, ClassSnapshot> term = v.root.get(sem);
+        if (term != null) term.forEach((name, s) -> out.put(name, s.percent));
+        return out;
+    }
+
+    // move the log when a user is renamed
+    void renameTo(String dir, String newUser) {
+        File target = fileFor(dir, newUser);
+        if (logFile.exists() && !logFile.renameTo(target)) System.err.println("Could not rename " + logFile);
+    }
+}
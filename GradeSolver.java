@@ -0,0 +1,261 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * "What do I need?" solver. A probe captures the per-category aggregates of one class once
+ * (sums, counts, sorted scores only where a drop-lowest rule applies) and then answers
+ * hypothetical questions without touching the live ClassData. Every query is a few
+ * arithmetic operations per category and allocation-free, so it can run on every slider tick.
+ */
+public class GradeSolver {
+    static final double MAX_SCORE = 150; // upper bound for searches (extra credit included)
+
+    // ===== single class =====
+    static final class ClassProbe {
+        final String[] names;
+        private final double[] w;        // weight as a fraction
+        private final double[] sum;      // sum of current scores
+        private final int[] n;           // current count
+        private final int[] drop;        // drop-lowest rule
+        private final int[] plan;        // remaining planned assignments
+        private final double[][] sorted; // ascending scores, only for categories with a drop rule
+        private final double[] baseAvg;  // current category averages
+        private final boolean weighted;
+        private final double basePercent;
+
+        ClassProbe(CollegeGPATracker.ClassData cd) {
+            int k = cd.categories.size();
+            names = cd.categoryNames();
+            w = new double[k]; sum = new double[k]; n = new int[k]; drop = new int[k]; plan = new int[k];
+            sorted = new double[k][];
+            baseAvg = new double[k];
+            int weightSum = 0;
+            for (int i = 0; i < k; i++) {
+                CollegeGPATracker.Category c = cd.category(i);
+                w[i] = c.weight / 100.0;
+                weightSum += c.weight;
+                sum[i] = c.sum();
+                n[i] = c.size();
+                drop[i] = c.dropLowest;
+                plan[i] = c.remaining();
+                if (c.dropLowest > 0) {
+                    double[] s = new double[c.size()];
+                    for (int j = 0; j < s.length; j++) s[j] = c.items.get(j).score;
+                    Arrays.sort(s);
+                    sorted[i] = s;
+                }
+            }
+            weighted = weightSum > 0;
+            double p = 0;
+            for (int i = 0; i < k; i++) {
+                baseAvg[i] = averageWith(i, 0, 0);
+                p += w[i] * baseAvg[i];
+            }
+            basePercent = weighted ? p : 0;
+        }
+
+        double currentPercent() { return basePercent; }
+
+        boolean hasPlan() {
+            for (int r : plan) if (r > 0) return true;
+            return false;
+        }
+
+        int planned(int cat) { return plan[cat]; }
+
+        // category average if `extra` more assignments all scored `x`
+        double averageWith(int cat, int extra, double x) {
+            int total = n[cat] + extra;
+            if (total == 0) return 0;
+            double all = sum[cat] + extra * x;
+            int d = Math.min(drop[cat], Math.max(0, total - 1)); // always keep at least one score
+            if (d == 0) return all / total;
+            // drop the d smallest of (sorted scores ∪ extra × x) with a two-pointer merge
+            double[] s = sorted[cat];
+            double dropped = 0;
+            int i = 0, j = 0;
+            for (int t = 0; t < d; t++) {
+                if (j < extra && (i >= s.length || x <= s[i])) { dropped += x; j++; }
+                else dropped += s[i++];
+            }
+            return (all - dropped) / (total - d);
+        }
+
+        // class percent if `extra` more assignments in one category all scored `x`
+        double percentWith(int cat, int extra, double x) {
+            if (!weighted) return 0;
+            return basePercent - w[cat] * baseAvg[cat] + w[cat] * averageWith(cat, extra, x);
+        }
+
+        // class percent if every remaining planned assignment scored `x`
+        double percentWithPlan(double x) {
+            if (!weighted) return 0;
+            double p = 0;
+            for (int i = 0; i < w.length; i++) {
+                p += w[i] * (plan[i] > 0 ? averageWith(i, plan[i], x) : baseAvg[i]);
+            }
+            return p;
+        }
+
+        /**
+         * Score needed on each of `extra` more assignments in `cat` to reach `target` percent.
+         * 0 means the target is already secured, +Infinity means it can't be reached.
+         */
+        double requiredScore(int cat, int extra, double target) {
+            if (extra <= 0 || w[cat] == 0) return basePercent >= target ? 0 : Double.POSITIVE_INFINITY;
+            if (drop[cat] == 0) {
+                // linear in x: solve directly
+                double needAvg = (target - (basePercent - w[cat] * baseAvg[cat])) / w[cat];
+                double x = (needAvg * (n[cat] + extra) - sum[cat]) / extra;
+                return clamp(x);
+            }
+            if (percentWith(cat, extra, 0) >= target) return 0;
+            if (percentWith(cat, extra, MAX_SCORE) < target) return Double.POSITIVE_INFINITY;
+            double lo = 0, hi = MAX_SCORE;
+            for (int it = 0; it < 40; it++) {
+                double mid = (lo + hi) / 2;
+                if (percentWith(cat, extra, mid) >= target) hi = mid; else lo = mid;
+            }
+            return hi;
+        }
+
+        // uniform score needed on all remaining planned work to reach `target` percent (NaN without a plan)
+        double requiredOnPlan(double target) {
+            if (!hasPlan()) return Double.NaN;
+            boolean linear = true;
+            for (int i = 0; i < plan.length; i++) if (plan[i] > 0 && drop[i] > 0) linear = false;
+            if (linear) {
+                double a = percentWithPlan(0);
+                double b = percentWithPlan(1) - a;
+                if (b <= 0) return a >= target ? 0 : Double.POSITIVE_INFINITY;
+                return clamp((target - a) / b);
+            }
+            if (percentWithPlan(0) >= target) return 0;
+            if (percentWithPlan(MAX_SCORE) < target) return Double.POSITIVE_INFINITY;
+            double lo = 0, hi = MAX_SCORE;
+            for (int it = 0; it < 40; it++) {
+                double mid = (lo + hi) / 2;
+                if (percentWithPlan(mid) >= target) hi = mid; else lo = mid;
+            }
+            return hi;
+        }
+
+        private static double clamp(double x) {
+            if (x <= 0) return 0;
+            return x > MAX_SCORE ? Double.POSITIVE_INFINITY : x;
+        }
+    }
+
+    // ===== semester / cumulative GPA =====
+    static final class ClassNeed {
+        final String className;
+        final int credits;
+        final double requiredPercent; // class percent needed
+        final double requiredScore;   // uniform score needed on remaining planned work
+        ClassNeed(String className, int credits, double requiredPercent, double requiredScore) {
+            this.className = className; this.credits = credits;
+            this.requiredPercent = requiredPercent; this.requiredScore = requiredScore;
+        }
+    }
+
+    static final class SemesterPlan {
+        final double gradePoints;      // grade points each open class must reach (NaN if unreachable)
+        final double projectedGpa;     // cumulative GPA if every open class lands exactly there
+        final List<ClassNeed> needs;
+        SemesterPlan(double gradePoints, double projectedGpa, List<ClassNeed> needs) {
+            this.gradePoints = gradePoints; this.projectedGpa = projectedGpa; this.needs = needs;
+        }
+        boolean reachable() { return !Double.isNaN(gradePoints); }
+    }
+
+    /**
+     * Plans one semester against a cumulative GPA target. Classes of that semester with remaining
+     * planned work are "open"; everything else counts at its current GPA. Probes and grade levels are
+     * captured once so plan() can be re-run for every target value.
+     */
+    static final class SemesterPlanner {
+        private final double fixedPoints;
+        private final int totalCredits;
+        private final String[] openNames;
+        private final int[] openCredits;
+        private final GradingScale[] openScales;
+        private final ClassProbe[] openProbes;
+        private final double[] levels; // candidate grade-point levels, ascending
+
+        SemesterPlanner(Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, int semester) {
+            double pts = 0;
+            int credits = 0;
+            List<String> names = new ArrayList<>();
+            List<CollegeGPATracker.ClassData> open = new ArrayList<>();
+            List<ClassProbe> probes = new ArrayList<>();
+            for (Map.Entry<Integer, Map<String, CollegeGPATracker.ClassData>> term : terms.entrySet()) {
+                for (Map.Entry<String, CollegeGPATracker.ClassData> e : term.getValue().entrySet()) {
+                    CollegeGPATracker.ClassData cd = e.getValue();
+                    if (cd.passFail) continue;
+                    credits += cd.credits;
+                    ClassProbe probe = new ClassProbe(cd);
+                    if (term.getKey() == semester && probe.hasPlan()) {
+                        names.add(e.getKey());
+                        open.add(cd);
+                        probes.add(probe);
+                    } else {
+                        pts += cd.gpa() * cd.credits;
+                    }
+                }
+            }
+            fixedPoints = pts;
+            totalCredits = credits;
+            int m = open.size();
+            openNames = names.toArray(new String[0]);
+            openCredits = new int[m];
+            openScales = new GradingScale[m];
+            openProbes = new ClassProbe[m];
+            TreeSet<Double> lv = new TreeSet<>();
+            for (int i = 0; i < m; i++) {
+                CollegeGPATracker.ClassData cd = open.get(i);
+                openCredits[i] = cd.credits;
+                openScales[i] = cd.scale();
+                openProbes[i] = probes.get(i);
+                for (double p : openScales[i].pointLevels()) lv.add(p);
+            }
+            levels = new double[lv.size()];
+            int i = 0;
+            for (double p : lv) levels[i++] = p;
+        }
+
+        int openClasses() { return openNames.length; }
+
+        SemesterPlan plan(double targetGpa) {
+            if (totalCredits == 0 || openNames.length == 0) {
+                double gpa = totalCredits > 0 ? fixedPoints / totalCredits : 0;
+                return new SemesterPlan(gpa >= targetGpa ? 0 : Double.NaN, gpa, new ArrayList<>());
+            }
+            // lowest uniform grade-point level whose cumulative GPA meets the target
+            for (double g : levels) {
+                double pts = fixedPoints;
+                boolean feasible = true;
+                for (int i = 0; i < openNames.length; i++) {
+                    double pct = openScales[i].minPercentFor(g);
+                    if (Double.isNaN(pct) || Double.isInfinite(openProbes[i].requiredOnPlan(pct))) { feasible = false; break; }
+                    pts += openScales[i].toPoints(pct) * openCredits[i];
+                }
+                if (!feasible) break;
+                double gpa = pts / totalCredits;
+                if (gpa + 1e-9 >= targetGpa) return planAt(g, gpa);
+            }
+            return new SemesterPlan(Double.NaN, Double.NaN, new ArrayList<>());
+        }
+
+        private SemesterPlan planAt(double g, double gpa) {
+            List<ClassNeed> needs = new ArrayList<>(openNames.length);
+            for (int i = 0; i < openNames.length; i++) {
+                double pct = openScales[i].minPercentFor(g);
+                needs.add(new ClassNeed(openNames[i], openCredits[i], pct, openProbes[i].requiredOnPlan(pct)));
+            }
+            return new SemesterPlan(g, gpa, needs);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Thread-safe access to every user's grade data, so any number of sessions can work in one JVM.
+ * The user map is concurrent; one user's semesters, classes and their cached aggregates are guarded
+ * by that user's lock stripe. Different users almost never share a stripe, so sessions of different
+ * users run in parallel with no global lock, and every operation of one user is atomic: a GPA read
+ * always sees the state after some whole sequence of that user's edits.
+ *
+ * With a resident limit, at most that many users' data stay in memory: after each access the least
+ * recently used users beyond the limit are dropped, their unsaved session edits written back first,
+ * and the loader brings them back on their next access. Pinned users (the one signed in to the
+ * window, whose classes the Swing code holds on to) are never dropped. Eviction only tryLocks the
+ * victim's stripe, so it never waits on, or deadlocks with, a user that is in use.
+ */
+public class GradeStore {
+    private static final int STRIPES = 64; // power of two
+
+    private final ConcurrentMap<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> data;
+    private final Function<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> loader;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final AtomicLong sessionIds = new AtomicLong();
+
+    private final int maxResident; // 0 = unbounded
+    private final WriteBack writeBack;
+    private final LinkedHashMap<String, Boolean> recency = new LinkedHashMap<>(16, 0.75f, true); // LRU first; guarded by itself
+    private final Set<String> pinned = ConcurrentHashMap.newKeySet();
+    // user -> "sem\0class" keys changed through a Session and not yet saved
+    private final ConcurrentMap<String, Set<String>> dirty = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong(), writeBacks = new AtomicLong();
+    private volatile ChangeListener listener = (_, _, _) -> {};
+
+    /** Told about every change made through a Session, under the user's lock, with the data as of just after it. */
+    interface ChangeListener {
+        void changed(String user, GradeEvents.Event e, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms);
+    }
+
+    /** Saves an evicted user's unsaved edits; classes are the "sem\0class" keys they touched. */
+    interface WriteBack {
+        void save(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Set<String> classes);
+    }
+
+    /** Runs f on a user's grade data under the user's lock, whether or not it is resident; null if the user has none. */
+    interface Reader {
+        <R> R read(String user, Function<Map<Integer, Map<String, CollegeGPATracker.ClassData>>, R> f);
+    }
+
+    /**
+     * @param data        user -> semester -> class -> data, shared with whoever else reads it
+     * @param loader      loads a user's semesters on first use (called under that user's lock; may return null)
+     * @param maxResident how many users' data to keep in memory (0 = no limit)
+     * @param writeBack   saves an evicted user's unsaved edits (called under that user's lock)
+     */
+    GradeStore(ConcurrentMap<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> data,
+               Function<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> loader,
+               int maxResident, WriteBack writeBack) {
+        this.data = data;
+        this.loader = loader;
+        this.maxResident = maxResident;
+        this.writeBack = writeBack;
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    GradeStore(ConcurrentMap<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> data,
+               Function<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> loader) {
+        this(data, loader, 0, (_, _, _) -> {});
+    }
+
+    GradeStore() {
+        this(new ConcurrentHashMap<>(), _ -> null);
+    }
+
+    /** Cache counters since start; resident is the current number of users in memory. */
+    record Stats(long hits, long misses, long evictions, long writeBacks, int resident) {
+        double hitRate() {
+            return hits + misses == 0 ? Double.NaN : (double) hits / (hits + misses);
+        }
+    }
+
+    Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), writeBacks.get(), data.size());
+    }
+
+    ReentrantLock lockFor(String user) {
+        return locks[stripe(user)];
+    }
+
+    private static int stripe(String user) {
+        int h = user.hashCode();
+        h ^= (h >>> 16);
+        return h & (STRIPES - 1);
+    }
+
+    /** Runs fn on the user's semesters while holding the user's lock. */
+    <T> T withUser(String user, Function<Map<Integer, Map<String, CollegeGPATracker.ClassData>>, T> fn) {
+        ReentrantLock lock = lockFor(user);
+        lock.lock();
+        try {
+            return fn.apply(terms(user));
+        } finally {
+            lock.unlock();
+            trim(user);
+        }
+    }
+
+    // like withUser, for changes to one class that are not saved yet: the user is written back if
+    // evicted before the save, with that class among the ones to write over another instance's copy
+    private <T> T change(String user, int semester, String className, Function<Map<Integer, Map<String, CollegeGPATracker.ClassData>>, T> fn) {
+        return withUser(user, t -> {
+            T result = fn.apply(t);
+            dirty.computeIfAbsent(user, _ -> ConcurrentHashMap.newKeySet()).add(semester + "\u0000" + className);
+            return result;
+        });
+    }
+
+    // caller holds the user's lock
+    private Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms(String user) {
+        Map<Integer, Map<String, CollegeGPATracker.ClassData>> t = data.get(user);
+        if (t == null) {
+            misses.incrementAndGet();
+            t = loader.apply(user);
+            if (t == null) t = new HashMap<>();
+            data.put(user, t);
+        } else {
+            hits.incrementAndGet();
+        }
+        if (maxResident > 0) {
+            synchronized (recency) {
+                recency.put(user, Boolean.TRUE);
+            }
+        }
+        for (int i = 1; i <= 4; i++) t.putIfAbsent(i, new HashMap<>());
+        return t;
+    }
+
+    /**
+     * Gives a user's data a new name, holding both users' locks (taken in stripe order, so two renames
+     * can't deadlock). save writes the data under the new name first; only if it returns normally is
+     * the data moved here, pin included. If it throws, nothing has changed and the exception propagates.
+     */
+    void rename(String from, String to, java.util.function.BiConsumer<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> save) {
+        ReentrantLock first = locks[Math.min(stripe(from), stripe(to))], second = locks[Math.max(stripe(from), stripe(to))];
+        first.lock();
+        second.lock(); // the same lock twice when both names share a stripe: it is reentrant
+        try {
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> t = terms(from);
+            save.accept(to, t);
+            data.put(to, t);
+            data.remove(from);
+            dirty.remove(from); // all of it was just written
+            if (pinned.remove(from)) pinned.add(to);
+            synchronized (recency) {
+                recency.remove(from);
+                if (maxResident > 0) recency.put(to, Boolean.TRUE);
+            }
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+    }
+
+    void listen(ChangeListener l) {
+        listener = l;
+    }
+
+    /** The user's data has been saved (called under the user's lock, after the write). */
+    void markClean(String user) {
+        dirty.remove(user);
+    }
+
+    /** Keeps the user in memory until unpin, e.g. while their dashboard is open. */
+    void pin(String user) {
+        pinned.add(user);
+    }
+
+    void unpin(String user) {
+        pinned.remove(user);
+        trim(null);
+    }
+
+    // drops least recently used users until at most maxResident remain; skips pinned users, the
+    // user just accessed, and anyone whose stripe is busy (they are retried after the next access)
+    private void trim(String justUsed) {
+        if (maxResident <= 0 || data.size() <= maxResident) return;
+        List<String> oldestFirst;
+        synchronized (recency) {
+            oldestFirst = new ArrayList<>(recency.keySet());
+        }
+        for (String user : oldestFirst) {
+            if (data.size() <= maxResident) return;
+            if (user.equals(justUsed) || pinned.contains(user)) continue;
+            ReentrantLock lock = lockFor(user);
+            if (lock.isHeldByCurrentThread() || !lock.tryLock()) continue; // held here = in use further up this stack
+            try {
+                Map<Integer, Map<String, CollegeGPATracker.ClassData>> t = data.get(user);
+                Set<String> classes = dirty.get(user);
+                if (t != null && classes != null) {
+                    writeBack.save(user, t, classes);
+                    dirty.remove(user);
+                    writeBacks.incrementAndGet();
+                }
+                if (t != null) {
+                    data.remove(user);
+                    evictions.incrementAndGet();
+                }
+                synchronized (recency) {
+                    recency.remove(user);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // couldn't save it: keep it in memory rather than lose the edits
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    Session open(String user) {
+        return new Session(sessionIds.incrementAndGet(), user);
+    }
+
+    /** One signed-in user's view of the store; sessions are cheap and may be used from any thread. */
+    final class Session {
+        final long id;
+        final String user;
+        final long openedAt = System.currentTimeMillis();
+
+        private Session(long id, String user) {
+            this.id = id;
+            this.user = user;
+        }
+
+        <T> T read(Function<Map<Integer, Map<String, CollegeGPATracker.ClassData>>, T> fn) {
+            return withUser(user, fn);
+        }
+
+        // adds a class with the default categories; false if the name is already used that semester
+        boolean addClass(int semester, String name, int credits) {
+            return change(user, semester, name, t -> {
+                Map<String, CollegeGPATracker.ClassData> classes = semester(t, semester);
+                if (classes.containsKey(name)) return false;
+                CollegeGPATracker.ClassData cd = new CollegeGPATracker.ClassData();
+                cd.credits = credits;
+                classes.put(name, cd);
+                listener.changed(user, new GradeEvents.ClassAdded(semester, name), t);
+                return true;
+            });
+        }
+
+        boolean removeClass(int semester, String name) {
+            return change(user, semester, name, t -> {
+                if (semester(t, semester).remove(name) == null) return false;
+                listener.changed(user, new GradeEvents.ClassRemoved(semester, name), t);
+                return true;
+            });
+        }
+
+        // returns the new assignment's id
+        int addAssignment(int semester, String className, String category, String name, double score) {
+            return change(user, semester, className, t -> {
+                CollegeGPATracker.ClassData cd = find(t, semester, className);
+                int idx = cd.indexOf(category);
+                if (idx < 0) throw new IllegalArgumentException("No category " + category + " in " + className);
+                CollegeGPATracker.Assignment a = new CollegeGPATracker.Assignment(name, score, category);
+                cd.add(idx, a);
+                listener.changed(user, new GradeEvents.AssignmentAdded(semester, className, a.id), t);
+                return a.id;
+            });
+        }
+
+        boolean updateAssignment(int semester, String className, int id, String name, double score) {
+            return change(user, semester, className, t -> {
+                if (!find(t, semester, className).update(id, name, score)) return false;
+                listener.changed(user, new GradeEvents.AssignmentEdited(semester, className, id), t);
+                return true;
+            });
+        }
+
+        boolean removeAssignment(int semester, String className, int id) {
+            return change(user, semester, className, t -> {
+                if (find(t, semester, className).removeById(id) == null) return false;
+                listener.changed(user, new GradeEvents.AssignmentRemoved(semester, className, id), t);
+                return true;
+            });
+        }
+
+        double classPercent(int semester, String className) {
+            return withUser(user, t -> find(t, semester, className).percent());
+        }
+
+        double overallGpa() {
+            return withUser(user, CollegeGPATracker::overallGpa);
+        }
+    }
+
+    private static Map<String, CollegeGPATracker.ClassData> semester(
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> t, int semester) {
+        Map<String, CollegeGPATracker.ClassData> classes = t.get(semester);
+        if (classes == null) throw new IllegalArgumentException("No semester " + semester);
+        return classes;
+    }
+
+    private static CollegeGPATracker.ClassData find(
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> t, int semester, String className) {
+        CollegeGPATracker.ClassData cd = semester(t, semester).get(className);
+        if (cd == null) throw new IllegalArgumentException("No class " + className + " in semester " + semester);
+        return cd;
+    }
+}
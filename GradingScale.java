@@ -0,0 +1,226 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A percent -> letter / grade-point ladder. Scales are loaded from data/grading_scales.json
+ * and compiled into a lookup table indexed by tenths of a percent, so conversion is a
+ * single array read.
+ */
+public class GradingScale {
+    private static final int SLOTS = 1001; // 0.0% .. 100.0% in tenths
+
+    // ===== config format (Gson) =====
+    static class Step {
+        String letter; double min; double points;
+        Step() {}
+        Step(String letter, double min, double points) { this.letter = letter; this.min = min; this.points = points; }
+    }
+
+    static class Config {
+        String defaultScale = "standard";
+        List<ScaleDef> scales = new ArrayList<>();
+    }
+
+    static class ScaleDef {
+        String id; String name; List<Step> steps = new ArrayList<>();
+        ScaleDef() {}
+        ScaleDef(String id, String name, Step... steps) { this.id = id; this.name = name; this.steps.addAll(Arrays.asList(steps)); }
+    }
+
+    // ===== registry =====
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Map<String, GradingScale> scales = new LinkedHashMap<>();
+    private static String defaultId = "standard";
+    // bumped whenever any scale or the default changes; ClassData compares it to drop cached GPAs
+    private static volatile int version = 0;
+
+    static {
+        for (ScaleDef d : builtins()) register(compile(d));
+    }
+
+    // ===== compiled scale =====
+    final String id;
+    final String name;
+    final double maxPoints;
+    private final String[] letters;  // per step, highest first
+    private final double[] points;   // per step
+    private final double[] mins;     // per step
+    private final byte[] table;      // tenth-of-percent -> step index
+
+    private GradingScale(String id, String name, String[] letters, double[] points, double[] mins) {
+        this.id = id;
+        this.name = name;
+        this.letters = letters;
+        this.points = points;
+        this.mins = mins;
+        double max = 0;
+        for (double p : points) max = Math.max(max, p);
+        this.maxPoints = max;
+        this.table = new byte[SLOTS];
+        int step = letters.length - 1;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            // walk up the ladder as the percent crosses each cutoff
+            while (step > 0 && slot >= Math.round(mins[step - 1] * 10)) step--;
+            table[slot] = (byte) step;
+        }
+    }
+
+    private int stepFor(double percent) {
+        if (Double.isNaN(percent) || percent <= 0) return table[0];
+        if (percent >= 100) return table[SLOTS - 1];
+        return table[(int) (percent * 10 + 1e-9)];
+    }
+
+    double toPoints(double percent) { return points[stepFor(percent)]; }
+
+    String toLetter(double percent) { return letters[stepFor(percent)]; }
+
+    // lowest percent that earns any grade points (pass mark for pass/fail classes)
+    double passingPercent() {
+        for (int i = points.length - 1; i >= 0; i--) {
+            if (points[i] > 0) return mins[i];
+        }
+        return 0;
+    }
+
+    // lowest percent that earns at least `pts` grade points, or NaN if no step does
+    double minPercentFor(double pts) {
+        for (int i = points.length - 1; i >= 0; i--) {
+            if (points[i] >= pts - 1e-9) return mins[i];
+        }
+        return Double.NaN;
+    }
+
+    // grade points of a letter on this scale (case-insensitive), or NaN if the scale has no such letter
+    double pointsFor(String letter) {
+        for (int i = 0; i < letters.length; i++) {
+            if (letters[i].equalsIgnoreCase(letter)) return points[i];
+        }
+        return Double.NaN;
+    }
+
+    // distinct grade-point levels of this scale, lowest first
+    double[] pointLevels() {
+        double[] out = new double[points.length];
+        for (int i = 0; i < out.length; i++) out[i] = points[points.length - 1 - i];
+        return out;
+    }
+
+    // bulk conversion for batch recompute paths
+    void toPoints(double[] percents, double[] out) {
+        for (int i = 0; i < percents.length; i++) out[i] = points[stepFor(percents[i])];
+    }
+
+    @Override public String toString() { return name; }
+
+    // ===== static API =====
+    static GradingScale compile(ScaleDef d) {
+        if (d == null || d.id == null || d.steps == null || d.steps.isEmpty()) {
+            throw new IllegalArgumentException("Grading scale needs an id and at least one step");
+        }
+        if (d.steps.size() > Byte.MAX_VALUE) throw new IllegalArgumentException("Too many steps in scale " + d.id);
+        List<Step> steps = new ArrayList<>(d.steps);
+        steps.sort((a, b) -> Double.compare(b.min, a.min));
+        int n = steps.size();
+        String[] letters = new String[n];
+        double[] points = new double[n];
+        double[] mins = new double[n];
+        for (int i = 0; i < n; i++) {
+            Step s = steps.get(i);
+            letters[i] = s.letter;
+            points[i] = s.points;
+            mins[i] = Math.max(0, Math.min(100, s.min));
+        }
+        return new GradingScale(d.id, d.name != null ? d.name : d.id, letters, points, mins);
+    }
+
+    static synchronized void register(GradingScale s) {
+        scales.put(s.id, s);
+        version++;
+    }
+
+    static GradingScale get(String id) {
+        GradingScale s = (id != null) ? scales.get(id) : null;
+        return (s != null) ? s : defaultScale();
+    }
+
+    static GradingScale defaultScale() {
+        GradingScale s = scales.get(defaultId);
+        return (s != null) ? s : scales.values().iterator().next();
+    }
+
+    static Collection<GradingScale> all() { return Collections.unmodifiableCollection(scales.values()); }
+
+    static synchronized void setDefault(String id) {
+        if (!scales.containsKey(id) || id.equals(defaultId)) return;
+        defaultId = id;
+        version++;
+    }
+
+    static int version() { return version; }
+
+    // load (or create) the scale config; unknown or malformed scales are skipped
+    static synchronized void init(String filePath) {
+        File f = new File(filePath);
+        if (!f.exists()) {
+            save(filePath);
+            return;
+        }
+        try (FileReader fr = new FileReader(f)) {
+            Config cfg = GSON.fromJson(fr, Config.class);
+            if (cfg == null) return;
+            if (cfg.scales != null) {
+                for (ScaleDef d : cfg.scales) {
+                    try { register(compile(d)); } catch (IllegalArgumentException e) { System.err.println(e.getMessage()); }
+                }
+            }
+            if (cfg.defaultScale != null) setDefault(cfg.defaultScale);
+        } catch (Exception e) { e.printStackTrace(); }
+    }
+
+    static synchronized void save(String filePath) {
+        Config cfg = new Config();
+        cfg.defaultScale = defaultId;
+        for (GradingScale s : scales.values()) {
+            ScaleDef d = new ScaleDef();
+            d.id = s.id;
+            d.name = s.name;
+            for (int i = 0; i < s.letters.length; i++) d.steps.add(new Step(s.letters[i], s.mins[i], s.points[i]));
+            cfg.scales.add(d);
+        }
+        try {
+            AtomicFiles.write(filePath, GSON.toJson(cfg));
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    private static List<ScaleDef> builtins() {
+        return Arrays.asList(
+                new ScaleDef("standard", "Standard 4.0 (A–F)",
+                        new Step("A", 90, 4.0), new Step("B", 80, 3.0), new Step("C", 70, 2.0),
+                        new Step("D", 60, 1.0), new Step("F", 0, 0.0)),
+                new ScaleDef("plusminus", "Plus/minus 4.0",
+                        new Step("A", 93, 4.0), new Step("A-", 90, 3.7),
+                        new Step("B+", 87, 3.3), new Step("B", 83, 3.0), new Step("B-", 80, 2.7),
+                        new Step("C+", 77, 2.3), new Step("C", 73, 2.0), new Step("C-", 70, 1.7),
+                        new Step("D+", 67, 1.3), new Step("D", 63, 1.0), new Step("D-", 60, 0.7),
+                        new Step("F", 0, 0.0)),
+                new ScaleDef("plusminus43", "Plus/minus 4.3",
+                        new Step("A+", 97, 4.3), new Step("A", 93, 4.0), new Step("A-", 90, 3.7),
+                        new Step("B+", 87, 3.3), new Step("B", 83, 3.0), new Step("B-", 80, 2.7),
+                        new Step("C+", 77, 2.3), new Step("C", 73, 2.0), new Step("C-", 70, 1.7),
+                        new Step("D+", 67, 1.3), new Step("D", 63, 1.0), new Step("D-", 60, 0.7),
+                        new Step("F", 0, 0.0))
+        );
+    }
+}
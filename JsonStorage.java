@@ -0,0 +1,275 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * The original file layout: users.json + username_changes.json, one JSON shard per user under
+ * user_data/, and reset_tokens.json. Whole files are rewritten on every change (atomically, see
+ * AtomicFiles). Shards can be shared by several instances: writes hold a sidecar lock file, and a
+ * shard another instance changed since we last saw it is merged rather than overwritten.
+ */
+public class JsonStorage implements Storage {
+    private static final Gson gson = new Gson();
+
+    private final String usersFile;
+    private final String usernameChangesFile;
+    private final String tokensFile;
+    private final File shardDir;
+
+    private final Map<String, String[]> users = new ConcurrentHashMap<>();
+    private final Map<String, Long> usernameChanges = new ConcurrentHashMap<>();
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+    private final Map<String, Long> shardChecksum = new ConcurrentHashMap<>(); // user -> CRC of the shard as last read/written
+
+    private final Accounts accounts = new JsonAccounts();
+    private final Grades grades = new JsonGrades();
+    private final Tokens tokenStore = new JsonTokens();
+
+    JsonStorage(String usersFile, String usernameChangesFile, String tokensFile, String shardDir) {
+        this.usersFile = usersFile;
+        this.usernameChangesFile = usernameChangesFile;
+        this.tokensFile = tokensFile;
+        this.shardDir = new File(shardDir);
+        Map<String, String[]> u = readMap(usersFile, new TypeToken<Map<String, String[]>>(){});
+        if (u != null) users.putAll(u);
+        Map<String, Long> c = readMap(usernameChangesFile, new TypeToken<Map<String, Long>>(){});
+        if (c != null) usernameChanges.putAll(c);
+        Map<String, String> t = readMap(tokensFile, new TypeToken<Map<String, String>>(){});
+        if (t != null) tokens.putAll(t);
+    }
+
+    @Override public Accounts accounts() { return accounts; }
+    @Override public Grades grades() { return grades; }
+    @Override public Tokens tokens() { return tokenStore; }
+
+    /** The shard directory, for DataWatcher. */
+    File shardDir() {
+        return shardDir;
+    }
+
+    /** The user a shard file belongs to, or null if it isn't one. */
+    static String userOf(File shard) {
+        String name = shard.getName();
+        if (!name.endsWith(".json")) return null;
+        return URLDecoder.decode(name.substring(0, name.length() - 5), StandardCharsets.UTF_8);
+    }
+
+    private static <T> T readMap(String path, TypeToken<T> type) {
+        File f = new File(path);
+        if (!f.exists()) return null;
+        try (FileReader fr = new FileReader(f)) {
+            return gson.fromJson(fr, type.getType());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + path, e);
+        }
+    }
+
+    private class JsonAccounts implements Accounts {
+        @Override public Map<String, String[]> load() {
+            return new HashMap<>(users);
+        }
+
+        @Override public Map<String, Long> usernameChanges() {
+            return new HashMap<>(usernameChanges);
+        }
+
+        @Override public synchronized void save(String user, String[] account, Long usernameChangedAt) {
+            if (account == null) users.remove(user); else users.put(user, account);
+            if (account == null || usernameChangedAt == null) usernameChanges.remove(user);
+            else usernameChanges.put(user, usernameChangedAt);
+            try {
+                AtomicFiles.write(usersFile, gson.toJson(users));
+                AtomicFiles.write(usernameChangesFile, gson.toJson(usernameChanges));
+            } catch (IOException e) { e.printStackTrace(); }
+        }
+    }
+
+    private class JsonTokens implements Tokens {
+        @Override public void put(String token, String user) {
+            tokens.put(token, user);
+            persist();
+        }
+
+        @Override public String consume(String token) {
+            String u = tokens.remove(token);
+            persist();
+            return u;
+        }
+
+        private synchronized void persist() {
+            try {
+                AtomicFiles.write(tokensFile, gson.toJson(tokens));
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private class JsonGrades implements Grades {
+        @Override public Map<Integer, Map<String, CollegeGPATracker.ClassData>> load(String user) {
+            byte[] bytes = readShard(user);
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = bytes == null ? null : parseShard(bytes);
+            if (terms != null) shardChecksum.put(user, crc(bytes));
+            return terms;
+        }
+
+        /**
+         * Writes the user's shard while holding its lock file, so two instances sharing data/ never
+         * interleave writes. If another instance changed the shard since we last read or wrote it, its
+         * version of every class we did not touch is merged in first instead of being overwritten.
+         */
+        @Override public List<GradeEvents.Event> save(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms,
+                                                      Set<String> dirty) {
+            List<GradeEvents.Event> merged = new ArrayList<>();
+            shardDir.mkdirs();
+            File f = shardFile(user);
+            try (FileChannel ch = lockChannel(f)) {
+                FileLock lock = ch.lock();
+                try {
+                    Long known = shardChecksum.get(user);
+                    if (dirty != null && known != null && f.exists()) {
+                        byte[] onDisk = Files.readAllBytes(f.toPath());
+                        if (crc(onDisk) != known) {
+                            Map<Integer, Map<String, CollegeGPATracker.ClassData>> theirs = parseShard(onDisk);
+                            if (theirs != null) merged = merge(terms, theirs, dirty);
+                        }
+                    }
+                    byte[] json = gson.toJson(terms).getBytes(StandardCharsets.UTF_8);
+                    AtomicFiles.write(f.toPath(), json);
+                    shardChecksum.put(user, crc(json));
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return merged;
+        }
+
+        @Override public List<GradeEvents.Event> refresh(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+            byte[] bytes = readShard(user);
+            if (bytes == null) return List.of();
+            long sum = crc(bytes);
+            Long known = shardChecksum.get(user);
+            if (known != null && known == sum) return List.of(); // our own write
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> theirs = parseShard(bytes);
+            if (theirs == null) return List.of();
+            shardChecksum.put(user, sum);
+            return merge(terms, theirs, Collections.emptySet());
+        }
+
+        @Override public void delete(String user) {
+            shardFile(user).delete();
+            shardChecksum.remove(user);
+        }
+
+        // JSON has no index: every shard in scope is read and parsed
+        @Override public List<ClassRef> classesBelow(String user, double percent) {
+            List<ClassRef> out = new ArrayList<>();
+            List<String> scope = new ArrayList<>();
+            if (user != null) {
+                scope.add(user);
+            } else {
+                File[] files = shardDir.listFiles((_, n) -> n.endsWith(".json"));
+                if (files != null) for (File f : files) scope.add(userOf(f));
+            }
+            for (String u : scope) {
+                byte[] bytes = readShard(u);
+                Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = bytes == null ? null : parseShard(bytes);
+                if (terms == null) continue;
+                for (Map.Entry<Integer, Map<String, CollegeGPATracker.ClassData>> sem : terms.entrySet()) {
+                    for (Map.Entry<String, CollegeGPATracker.ClassData> c : sem.getValue().entrySet()) {
+                        double p = c.getValue().percent();
+                        if (p < percent) out.add(new ClassRef(u, sem.getKey(), c.getKey(), p));
+                    }
+                }
+            }
+            out.sort((a, b) -> Double.compare(a.percent(), b.percent()));
+            return out;
+        }
+    }
+
+    private File shardFile(String user) {
+        return new File(shardDir, URLEncoder.encode(user, StandardCharsets.UTF_8) + ".json");
+    }
+
+    // the shard's bytes, read under a shared lock so a half-written file is never seen; null if missing
+    private byte[] readShard(String user) {
+        File f = shardFile(user);
+        if (!f.exists()) return null;
+        try (FileChannel ch = lockChannel(f)) {
+            FileLock lock = ch.lock(0, Long.MAX_VALUE, true);
+            try {
+                return f.exists() ? Files.readAllBytes(f.toPath()) : null;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the shard of " + user, e);
+        }
+    }
+
+    private static Map<Integer, Map<String, CollegeGPATracker.ClassData>> parseShard(byte[] bytes) {
+        try {
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = gson.fromJson(new String(bytes, StandardCharsets.UTF_8),
+                    new TypeToken<Map<Integer, Map<String, CollegeGPATracker.ClassData>>>(){}.getType());
+            if (terms == null) return null;
+            for (Map<String, CollegeGPATracker.ClassData> classes : terms.values()) {
+                for (CollegeGPATracker.ClassData cd : classes.values()) cd.normalize();
+            }
+            return terms;
+        } catch (JsonParseException e) {
+            return null; // mid-write copy from a writer that doesn't lock; the next change event retries
+        }
+    }
+
+    // sidecar "<shard>.lock" (the shard itself may be replaced, so the lock can't live on it)
+    private static FileChannel lockChannel(File shard) throws IOException {
+        return FileChannel.open(new File(shard.getPath() + ".lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 c = new CRC32();
+        c.update(bytes);
+        return c.getValue();
+    }
+
+    // take their version of every class not in `keep`; returns a Reloaded event per class that changed
+    private static List<GradeEvents.Event> merge(Map<Integer, Map<String, CollegeGPATracker.ClassData>> mine,
+                                                Map<Integer, Map<String, CollegeGPATracker.ClassData>> theirs, Set<String> keep) {
+        List<GradeEvents.Event> changed = new ArrayList<>();
+        for (int sem = 1; sem <= 4; sem++) {
+            Map<String, CollegeGPATracker.ClassData> m = mine.computeIfAbsent(sem, _ -> new HashMap<>());
+            Map<String, CollegeGPATracker.ClassData> t = theirs.getOrDefault(sem, Collections.emptyMap());
+            Set<String> names = new TreeSet<>(m.keySet());
+            names.addAll(t.keySet());
+            for (String name : names) {
+                if (keep.contains(sem + "\u0000" + name)) continue;
+                CollegeGPATracker.ClassData a = m.get(name), b = t.get(name);
+                if (a != null && b != null && gson.toJson(a).equals(gson.toJson(b))) continue;
+                if (b == null) m.remove(name); else m.put(name, b);
+                changed.add(new GradeEvents.Reloaded(sem, name));
+            }
+        }
+        return changed;
+    }
+}
@@ -7,29 +7,101 @@ public class MailSender {
     private static final String FROM_EMAIL = "malik.g.jones0415@gmail.com";
     private static final String APP_PASSWORD = "pbsb dsuy hcja ysqi";
 
+    private static volatile Session session;
+
     public static void sendEmail(String to, String subject, String body) throws Exception {
-        Properties props = new Properties();
-        props.put("mail.smtp.auth", "true");
-        props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.smtp.ssl.trust", "smtp.gmail.com");
-        props.put("mail.smtp.ssl.protocols", "TLSv1.2");
-        props.put("mail.transport.protocol", "smtp");
-        props.put("mail.smtp.host", "smtp.gmail.com");
-        props.put("mail.smtp.port", "587");
-
-        Session session = Session.getInstance(props, new Authenticator() {
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(FROM_EMAIL, APP_PASSWORD);
+        Transport.send(message(to, subject, body));
+        System.out.println("✅ Email sent to " + to);
+    }
+
+    /**
+     * One SMTP connection for many messages, so a run of digests pays the handshake, STARTTLS and
+     * login once rather than per message. Reconnects after maxPerConnection messages (providers cap
+     * a connection) or when the server has dropped it. Not thread-safe: one per sending thread.
+     */
+    static final class Batch implements AutoCloseable {
+        private final int maxPerConnection;
+        private Transport transport;
+        private int onConnection;
+        private int connections;
+
+        Batch(int maxPerConnection) {
+            this.maxPerConnection = maxPerConnection;
+        }
+
+        /** Sends one message; a rejected recipient throws SendFailedException and leaves the connection open. */
+        void send(String to, String subject, String body) throws MessagingException {
+            Message m = message(to, subject, body);
+            m.saveChanges();
+            if (transport != null && (onConnection >= maxPerConnection || !transport.isConnected())) close();
+            if (transport == null) {
+                transport = session().getTransport("smtp");
+                transport.connect();
+                connections++;
+                onConnection = 0;
             }
-        });
+            try {
+                transport.sendMessage(m, m.getAllRecipients());
+                onConnection++;
+            } catch (SendFailedException e) {
+                throw e;
+            } catch (MessagingException e) {
+                close(); // the connection is in an unknown state; the next message opens a new one
+                throw e;
+            }
+        }
+
+        int connections() {
+            return connections;
+        }
 
-        Message message = new MimeMessage(session);
-        message.setFrom(new InternetAddress(FROM_EMAIL));
+        @Override public void close() {
+            if (transport == null) return;
+            try {
+                transport.close();
+            } catch (MessagingException ignored) {
+                // already gone
+            }
+            transport = null;
+        }
+    }
+
+    private static Message message(String to, String subject, String body) throws MessagingException {
+        Message message = new MimeMessage(session());
+        message.setFrom(new InternetAddress(System.getProperty("gpa.smtp.from", FROM_EMAIL)));
         message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
         message.setSubject(subject);
-        message.setText(body);
+        ((MimeMessage) message).setText(body, "UTF-8");
+        return message;
+    }
 
-        Transport.send(message);
-        System.out.println("✅ Email sent to " + to);
+    // Gmail by default; -Dgpa.smtp.host/port/user/password/starttls point it elsewhere (e.g. a local stand-in)
+    private static Session session() {
+        Session s = session;
+        if (s != null) return s;
+        synchronized (MailSender.class) {
+            if (session != null) return session;
+            String host = System.getProperty("gpa.smtp.host", "smtp.gmail.com");
+            String user = System.getProperty("gpa.smtp.user", host.equals("smtp.gmail.com") ? FROM_EMAIL : "");
+            String password = System.getProperty("gpa.smtp.password", host.equals("smtp.gmail.com") ? APP_PASSWORD : "");
+            boolean tls = Boolean.parseBoolean(System.getProperty("gpa.smtp.starttls", "true"));
+
+            Properties props = new Properties();
+            props.put("mail.smtp.auth", String.valueOf(!user.isEmpty()));
+            props.put("mail.smtp.starttls.enable", String.valueOf(tls));
+            props.put("mail.smtp.ssl.trust", host);
+            props.put("mail.smtp.ssl.protocols", "TLSv1.2");
+            props.put("mail.transport.protocol", "smtp");
+            props.put("mail.smtp.host", host);
+            props.put("mail.smtp.port", System.getProperty("gpa.smtp.port", "587"));
+            if (!user.isEmpty()) props.put("mail.smtp.user", user);
+
+            session = Session.getInstance(props, new Authenticator() {
+                protected PasswordAuthentication getPasswordAuthentication() {
+                    return new PasswordAuthentication(user, password);
+                }
+            });
+            return session;
+        }
     }
 }
@@ -0,0 +1,114 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs GoogleSignIn against a local OAuth stand-in: first sign-in (browser flow), silent refresh,
+// then a revoked refresh token falling back to the browser flow. No Google account needed.
+// usage: java OAuthStandIn [port]
+public class OAuthStandIn {
+    static final AtomicInteger authHits = new AtomicInteger(), tokenHits = new AtomicInteger(), infoHits = new AtomicInteger();
+    static volatile boolean revoked = false;
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9099;
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/auth", OAuthStandIn::auth);
+        server.createContext("/token", OAuthStandIn::token);
+        server.createContext("/userinfo", OAuthStandIn::userinfo);
+        server.start();
+
+        String base = "http://localhost:" + port;
+        System.setProperty("gpa.oauth.authUrl", base + "/auth");
+        System.setProperty("gpa.oauth.tokenUrl", base + "/token");
+        System.setProperty("gpa.oauth.userinfoUrl", base + "/userinfo");
+        System.setProperty("gpa.oauth.clientId", "stand-in-client");
+        System.setProperty("gpa.oauth.clientSecret", "stand-in-secret");
+        System.setProperty("gpa.oauth.port", String.valueOf(port + 1));
+        System.setProperty("gpa.oauth.tokensDir", Files.createTempDirectory("gpa-tokens").toString());
+        // "browser": load the consent page and follow its redirect back to the local receiver
+        GoogleSignIn.browser = url -> {
+            HttpURLConnection c = (HttpURLConnection) URI.create(url).toURL().openConnection();
+            c.setInstanceFollowRedirects(true);
+            c.getResponseCode();
+            c.disconnect();
+        };
+
+        try {
+            step("first sign-in");
+            step("relaunch (token refresh, no browser)");
+            revoked = true;
+            step("refresh token revoked");
+        } finally {
+            GoogleSignIn.clearStoredCredentials();
+            server.stop(0);
+        }
+    }
+
+    private static void step(String label) throws Exception {
+        int a = authHits.get(), t = tokenHits.get(), i = infoHits.get();
+        long start = System.nanoTime();
+        String[] r = GoogleSignIn.authenticate();
+        System.out.printf("%-38s %7.1f ms  email=%s subject=%s  browser=%d token=%d userinfo=%d%n", label,
+                (System.nanoTime() - start) / 1e6, r[0], r[2],
+                authHits.get() - a, tokenHits.get() - t, infoHits.get() - i);
+    }
+
+    private static void auth(HttpExchange ex) throws IOException {
+        authHits.incrementAndGet();
+        Map<String, String> q = params(ex.getRequestURI().getRawQuery());
+        String location = q.get("redirect_uri") + "?code=stand-in-code&state=" + q.getOrDefault("state", "");
+        ex.getResponseHeaders().add("Location", location);
+        ex.sendResponseHeaders(302, -1);
+        ex.close();
+    }
+
+    private static void token(HttpExchange ex) throws IOException {
+        tokenHits.incrementAndGet();
+        Map<String, String> form = params(new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        if ("refresh_token".equals(form.get("grant_type")) && revoked) {
+            send(ex, 400, "{\"error\":\"invalid_grant\"}");
+            return;
+        }
+        // short lifetime so the next sign-in has to refresh
+        send(ex, 200, "{\"access_token\":\"at-" + System.nanoTime() + "\",\"token_type\":\"Bearer\","
+                + "\"expires_in\":30,\"refresh_token\":\"rt-stand-in\"}");
+        if (!"refresh_token".equals(form.get("grant_type"))) revoked = false;
+    }
+
+    private static void userinfo(HttpExchange ex) throws IOException {
+        infoHits.incrementAndGet();
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.startsWith("Bearer at-")) { send(ex, 401, "{}"); return; }
+        send(ex, 200, "{\"id\":\"1234567890\",\"email\":\"student@example.edu\",\"verified_email\":true}");
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) { out.write(body); }
+    }
+
+    private static Map<String, String> params(String raw) {
+        Map<String, String> out = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return out;
+        for (String kv : raw.split("&")) {
+            int eq = kv.indexOf('=');
+            if (eq < 0) continue;
+            out.put(URLDecoder.decode(kv.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Benchmark for GpaProjection on a synthetic full course load.
+// usage: java ProjectionBench [trials] [classesPerSemester]
+public class ProjectionBench {
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int perSemester = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+
+        Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = syntheticTerms(perSemester, new Random(42));
+        GpaProjection.Model model = GpaProjection.build(terms);
+        System.out.println("Open classes: " + model.openClasses() + ", total credits: " + model.totalCredits
+                + ", trials: " + trials + ", cores: " + Runtime.getRuntime().availableProcessors());
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        for (int i = 0; i < 5; i++) { // warm up
+            GpaProjection.run(model, trials, i);
+            GpaProjection.run(model, trials, i, single);
+        }
+        report("sequential (1 thread)", best(model, trials, single));
+        report("parallel (common pool)", best(model, trials, ForkJoinPool.commonPool()));
+        single.shutdown();
+
+        GpaProjection.Result r = GpaProjection.run(model, trials, 7);
+        System.out.printf("GPA p5/p50/p95: %.2f / %.2f / %.2f, mean %.3f%n",
+                r.gpaPercentile(0.05), r.gpaPercentile(0.5), r.gpaPercentile(0.95), r.meanGpa());
+    }
+
+    private static GpaProjection.Result best(GpaProjection.Model model, int trials, ForkJoinPool pool) {
+        GpaProjection.Result best = null;
+        for (int i = 0; i < 10; i++) {
+            GpaProjection.Result r = GpaProjection.run(model, trials, 100 + i, pool);
+            if (best == null || r.elapsedNanos < best.elapsedNanos) best = r;
+        }
+        return best;
+    }
+
+    private static void report(String label, GpaProjection.Result r) {
+        double ms = r.elapsedNanos / 1e6;
+        System.out.printf("%-24s %8.2f ms  %,12.0f trials/s%n", label, ms, r.trials / (ms / 1000));
+    }
+
+    // three finished semesters plus a current one with half the work still planned
+    static Map<Integer, Map<String, CollegeGPATracker.ClassData>> syntheticTerms(int perSemester, Random rnd) {
+        Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = new HashMap<>();
+        for (int sem = 1; sem <= 4; sem++) {
+            Map<String, CollegeGPATracker.ClassData> classes = new HashMap<>();
+            for (int c = 0; c < perSemester; c++) {
+                CollegeGPATracker.ClassData cd = new CollegeGPATracker.ClassData();
+                cd.credits = 1 + rnd.nextInt(4);
+                double skill = 65 + rnd.nextDouble() * 30;
+                int[] planned = {12, 3, 2};
+                for (int k = 0; k < cd.categories.size(); k++) {
+                    int done = sem < 4 ? planned[k] : planned[k] / 2;
+                    cd.category(k).expected = planned[k];
+                    for (int a = 0; a < done; a++) {
+                        double score = Math.max(0, Math.min(100, skill + rnd.nextGaussian() * 8));
+                        cd.add(k, new CollegeGPATracker.Assignment("A" + a, score, null));
+                    }
+                }
+                cd.category(0).dropLowest = 2;
+                classes.put("CLASS " + sem + "0" + c, cd);
+            }
+            terms.put(sem, classes);
+        }
+        return terms;
+    }
+}
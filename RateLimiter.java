@@ -0,0 +1,176 @@
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Attempts per key (an account, an email, a source address) in a sliding window, without locks.
+ *
+ * Each key has a few counter cells, and a thread counts on the cell its id hashes to, so a flood on
+ * one key spreads its compare-and-sets over several cache lines instead of all retrying on one.
+ * A cell is one long: [window index:32][previous window's count:16][this window's count:16], so
+ * rolling the window over and counting are a single CAS. The sliding count is the usual two-window
+ * estimate, previous * (share of the previous window still inside the slide) + current, summed over
+ * the cells; concurrent attempts can overshoot the limit by at most one per racing thread.
+ *
+ * Memory is bounded: a key whose last attempt is two windows old counts zero and is dropped by the
+ * next sweep, which runs when the table reaches maxKeys. If a flood of distinct keys keeps it full,
+ * keys with a single attempt go next, then arbitrary ones, down to three quarters of maxKeys. Each
+ * of those keys is itself an attempt that the per-source limit counts.
+ */
+public class RateLimiter {
+    private static final int CELL_COUNT = Math.min(8, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    private static final long MAX_COUNT = 0xFFFF;
+
+    private final int limit;
+    private final long windowMillis;
+    private final int maxKeys;
+    private final LongSupplier clock;
+    private final long epoch;
+    private final Map<String, AtomicLongArray> cells = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /** Thrown when a key is over its limit; retryAfterMillis is when the window will have room again. */
+    static final class Limited extends RuntimeException {
+        final long retryAfterMillis;
+
+        Limited(long retryAfterMillis) {
+            super("Too many attempts; try again in " + Math.max(1, (retryAfterMillis + 999) / 1000) + " s", null, false, false);
+            this.retryAfterMillis = retryAfterMillis;
+        }
+    }
+
+    RateLimiter(int limit, long windowMillis, int maxKeys, LongSupplier clock) {
+        if (limit < 1 || limit >= MAX_COUNT) throw new IllegalArgumentException("limit must be 1.." + (MAX_COUNT - 1));
+        this.limit = limit;
+        this.windowMillis = windowMillis;
+        this.maxKeys = maxKeys;
+        this.clock = clock;
+        this.epoch = clock.getAsLong();
+    }
+
+    RateLimiter(int limit, long windowMillis, int maxKeys) {
+        this(limit, windowMillis, maxKeys, System::currentTimeMillis);
+    }
+
+    /** Counts an attempt for key; false (and not counted) if the key already used its limit. */
+    boolean tryAcquire(String key) {
+        long now = clock.getAsLong() - epoch;
+        int window = (int) (now / windowMillis);
+        AtomicLongArray c = cells.get(key);
+        if (c == null) {
+            if (cells.size() >= maxKeys) sweep(window);
+            c = cells.computeIfAbsent(key, _ -> new AtomicLongArray(CELL_COUNT));
+        }
+        if (estimate(c, window, now) >= limit) return false;
+        int i = (int) (Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L >>> 59) & (CELL_COUNT - 1);
+        while (true) {
+            long s = c.get(i);
+            long next = roll(s, window);
+            next = (next & ~MAX_COUNT) | Math.min(MAX_COUNT, (next & MAX_COUNT) + 1);
+            if (c.compareAndSet(i, s, next)) return true;
+        }
+    }
+
+    /** tryAcquire for every key (account, source, ...); throws Limited if any of them is over. */
+    void acquire(String... keys) {
+        for (String k : keys) {
+            if (k != null && !tryAcquire(k)) throw new Limited(retryAfterMillis(k));
+        }
+    }
+
+    /** Forgets key's attempts, e.g. after a successful login. */
+    void reset(String key) {
+        cells.remove(key);
+    }
+
+    /** The key's sliding count right now. */
+    double count(String key) {
+        AtomicLongArray c = cells.get(key);
+        long now = clock.getAsLong() - epoch;
+        return c == null ? 0 : estimate(c, (int) (now / windowMillis), now);
+    }
+
+    int keys() {
+        return cells.size();
+    }
+
+    // how long until the estimate drops below the limit (the previous window's share decays linearly)
+    long retryAfterMillis(String key) {
+        AtomicLongArray c = cells.get(key);
+        if (c == null) return 0;
+        long now = clock.getAsLong() - epoch;
+        int window = (int) (now / windowMillis);
+        long prev = 0, cur = 0;
+        for (int i = 0; i < c.length(); i++) {
+            long s = roll(c.get(i), window);
+            prev += (s >>> 16) & MAX_COUNT;
+            cur += s & MAX_COUNT;
+        }
+        long intoWindow = now - (long) window * windowMillis;
+        // this window's attempts alone fill the limit: wait for it to end and for them to decay as the previous one
+        if (cur >= limit) {
+            return windowMillis - intoWindow + (long) Math.ceil(windowMillis * (1 - (double) limit / cur)) + 1;
+        }
+        if (prev == 0) return 0;
+        // prev * (1 - t/W) + cur < limit  =>  t > W * (1 - (limit - cur) / prev)
+        long t = (long) Math.ceil(windowMillis * (1 - (double) (limit - cur) / prev));
+        return Math.max(0, t - intoWindow) + 1;
+    }
+
+    // the cell as of window: unchanged, shifted by one window, or emptied
+    private static long roll(long s, int window) {
+        int at = (int) (s >>> 32);
+        if (at == window) return s;
+        long cur = at == window - 1 ? s & MAX_COUNT : 0;
+        return ((long) window << 32) | (cur << 16);
+    }
+
+    private double estimate(AtomicLongArray c, int window, long now) {
+        long prev = 0, cur = 0;
+        for (int i = 0; i < c.length(); i++) {
+            long s = roll(c.get(i), window);
+            prev += (s >>> 16) & MAX_COUNT;
+            cur += s & MAX_COUNT;
+        }
+        double stillIn = 1 - (double) (now - (long) window * windowMillis) / windowMillis;
+        return prev * stillIn + cur;
+    }
+
+    // one sweeper at a time; everyone else carries on
+    private void sweep(int window) {
+        if (!sweeping.compareAndSet(false, true)) return;
+        try {
+            cells.values().removeIf(c -> idle(c, window));
+            int target = maxKeys * 3 / 4; // leave room so the next sweep is far away
+            for (Iterator<AtomicLongArray> it = cells.values().iterator(); it.hasNext() && cells.size() > target; ) {
+                if (total(it.next(), window) <= 1) it.remove();
+            }
+            // still full: a flood of distinct keys; drop arbitrary ones rather than sweep on every insert
+            for (Iterator<AtomicLongArray> it = cells.values().iterator(); it.hasNext() && cells.size() > target; ) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static boolean idle(AtomicLongArray c, int window) {
+        for (int i = 0; i < c.length(); i++) {
+            if ((int) (c.get(i) >>> 32) >= window - 1 && c.get(i) != 0) return false;
+        }
+        return true;
+    }
+
+    private static long total(AtomicLongArray c, int window) {
+        long n = 0;
+        for (int i = 0; i < c.length(); i++) {
+            long s = roll(c.get(i), window);
+            n += ((s >>> 16) & MAX_COUNT) + (s & MAX_COUNT);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// RateLimiter against the obvious alternative, a synchronized map of per-key timestamp logs: attempts
+// per second at 1..N threads, all on one hot key (a password-spraying run at one account) and spread
+// over many keys (ordinary sign-ins). Then checks that a key never gets past its limit under
+// contention, that the window slides on an injected clock, and that a flood of distinct keys stays
+// within maxKeys.
+// usage: java RateLimiterBench [millisPerRun] [maxThreads]
+public class RateLimiterBench {
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        System.out.printf("cores: %d%n", Runtime.getRuntime().availableProcessors());
+
+        System.out.printf("%8s %6s %16s %16s%n", "threads", "keys", "limiter ops/s", "sync log ops/s");
+        for (int keys : new int[]{1, 10_000}) {
+            for (int threads = 1; threads <= maxThreads; threads *= 4) {
+                // a limit that is never reached, so both sides do the full counting work every time
+                RateLimiter limiter = new RateLimiter(60_000, 1000, 100_000);
+                SyncLog log = new SyncLog(60_000, 1000);
+                double a = run(threads, keys, millis, limiter::tryAcquire);
+                double b = run(threads, keys, millis, log::tryAcquire);
+                System.out.printf("%8d %6d %,16.0f %,16.0f%n", threads, keys, a, b);
+            }
+        }
+
+        // the limit holds under contention: 16 threads hammer one key, only `limit` get through
+        RateLimiter strict = new RateLimiter(10, 60_000, 1000);
+        LongAdder admitted = new LongAdder();
+        run(16, 1, 200, k -> {
+            boolean ok = strict.tryAcquire(k);
+            if (ok) admitted.increment();
+            return ok;
+        });
+        System.out.printf("hot key, limit 10, 16 threads: %d admitted%n", admitted.sum());
+
+        // the window slides: 10 attempts fill it, half of them have decayed halfway through the next one
+        AtomicLong now = new AtomicLong(1_000_000);
+        RateLimiter sliding = new RateLimiter(10, 60_000, 1000, now::get);
+        for (int i = 0; i < 10; i++) sliding.tryAcquire("alice");
+        boolean full = !sliding.tryAcquire("alice");
+        long retry = sliding.retryAfterMillis("alice");
+        now.addAndGet(90_000);
+        int later = 0;
+        while (sliding.tryAcquire("alice")) later++;
+        System.out.printf("sliding window: full=%b, retry after %d s, 90 s later %d more admitted (expect 5)%n",
+                full, retry / 1000, later);
+
+        // a flood of distinct keys (an attacker cycling usernames) stays within maxKeys
+        RateLimiter bounded = new RateLimiter(5, 60_000, 10_000);
+        long t0 = System.nanoTime();
+        int peak = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            bounded.tryAcquire("user" + i);
+            if ((i & 1023) == 0) peak = Math.max(peak, bounded.keys());
+        }
+        System.out.printf("1,000,000 distinct keys, maxKeys 10,000: peak %d keys, %.0f ns per attempt%n",
+                peak, (System.nanoTime() - t0) / 1e6);
+    }
+
+    private static double run(int threads, int keys, long millis, Predicate<String> acquire) throws InterruptedException {
+        String[] names = new String[keys];
+        for (int i = 0; i < keys; i++) names[i] = "user" + i;
+        LongAdder ops = new LongAdder();
+        CountDownLatch go = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long n = 0;
+                while ((n & 255) != 0 || System.nanoTime() < deadline[0]) {
+                    acquire.test(names[keys == 1 ? 0 : rnd.nextInt(keys)]);
+                    n++;
+                }
+                ops.add(n);
+            });
+            workers[t].start();
+        }
+        long start = System.nanoTime();
+        deadline[0] = start + millis * 1_000_000;
+        go.countDown();
+        for (Thread w : workers) w.join();
+        return ops.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    // the straightforward limiter: every attempt's timestamp, per key, under one lock
+    private static final class SyncLog {
+        private final int limit;
+        private final long windowMillis;
+        private final Map<String, ArrayDeque<Long>> log = new HashMap<>();
+
+        SyncLog(int limit, long windowMillis) {
+            this.limit = limit;
+            this.windowMillis = windowMillis;
+        }
+
+        synchronized boolean tryAcquire(String key) {
+            long now = System.currentTimeMillis();
+            ArrayDeque<Long> times = log.computeIfAbsent(key, _ -> new ArrayDeque<>());
+            while (!times.isEmpty() && times.peekFirst() <= now - windowMillis) times.pollFirst();
+            if (times.size() >= limit) return false;
+            times.addLast(now);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// An all-day churn of sign-ins against a GradeStore over real JSON shards, unbounded vs with a
+// resident limit: heap after GC as the day goes on, cache counters, and a check that no edit was
+// lost. Every session adds one assignment; only every other session saves it, so the rest reach
+// disk only through write-back on eviction (or the final save at "shutdown").
+// usage: java ResidentChurn [users] [signIns] [maxResident]
+public class ResidentChurn {
+    public static void main(String[] args) throws IOException {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int signIns = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int limit = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        for (int maxResident : new int[]{0, limit}) {
+            Path dir = Files.createTempDirectory("churn");
+            try {
+                run(dir, userCount, signIns, maxResident);
+            } finally {
+                try (Stream<Path> s = Files.walk(dir)) {
+                    s.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+                }
+            }
+        }
+    }
+
+    private static void run(Path dir, int userCount, int signIns, int maxResident) {
+        JsonStorage storage = open(dir);
+        Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> seed = SnapshotBench.synthetic(userCount, new Random(7));
+        String[] users = seed.keySet().toArray(String[]::new);
+        seed.forEach((u, t) -> storage.grades().save(u, t, null));
+        seed = null;
+
+        ConcurrentHashMap<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> resident = new ConcurrentHashMap<>();
+        GradeStore store = new GradeStore(resident, u -> storage.grades().load(u), maxResident,
+                (u, t, classes) -> storage.grades().save(u, t, classes));
+        Map<String, Integer> added = new HashMap<>();
+        Random rnd = new Random(11);
+        System.out.printf("%s (%d users, %d sign-ins)%n", maxResident == 0 ? "unbounded" : "maxResident " + maxResident, userCount, signIns);
+        long start = System.nanoTime();
+        for (int i = 1; i <= signIns; i++) {
+            // a few regulars sign in all day, everyone else now and then
+            String user = users[rnd.nextInt(4) == 0 ? rnd.nextInt(Math.max(1, userCount / 50)) : rnd.nextInt(userCount)];
+            GradeStore.Session s = store.open(user);
+            s.overallGpa();
+            String[] where = s.read(t -> {
+                Map.Entry<String, CollegeGPATracker.ClassData> c = t.get(1).entrySet().iterator().next();
+                return new String[]{c.getKey(), c.getValue().categories.get(0).name};
+            });
+            s.addAssignment(1, where[0], where[1], "churn " + i, 80);
+            added.merge(user, 1, Integer::sum);
+            if (i % 2 == 0) store.withUser(user, t -> {
+                storage.grades().save(user, t, null);
+                store.markClean(user);
+                return null;
+            });
+            if (i % (signIns / 5) == 0) {
+                GradeStore.Stats st = store.stats();
+                System.out.printf("  %6d sign-ins: heap %4d MB, resident %5d, hit rate %.2f, evictions %d, write-backs %d%n",
+                        i, usedMb(), st.resident(), st.hitRate(), st.evictions(), st.writeBacks());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        // shutdown: whatever is still resident is saved
+        for (String u : resident.keySet()) store.withUser(u, t -> storage.grades().save(u, t, null));
+
+        JsonStorage reopened = open(dir);
+        int lost = 0;
+        for (Map.Entry<String, Integer> e : added.entrySet()) {
+            long found = reopened.grades().load(e.getKey()).get(1).values().stream()
+                    .flatMap(cd -> cd.categories.stream()).flatMap(c -> c.items.stream())
+                    .filter(a -> a.name.startsWith("churn ")).count();
+            if (found != e.getValue()) lost++;
+        }
+        System.out.printf("  %.1f s (%.0f sign-ins/s), users with a lost edit: %d of %d%n",
+                seconds, signIns / seconds, lost, added.size());
+    }
+
+    private static JsonStorage open(Path dir) {
+        return new JsonStorage(dir.resolve("users.json").toString(), dir.resolve("changes.json").toString(),
+                dir.resolve("tokens.json").toString(), dir.resolve("user_data").toString());
+    }
+
+    private static long usedMb() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 2; i++) System.gc();
+        return (rt.totalMemory() - rt.freeMemory()) >> 20;
+    }
+}
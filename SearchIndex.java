@@ -0,0 +1,240 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory inverted index over one user's class names and assignment names/categories.
+ * Every token and every prefix of it (up to MAX_PREFIX chars) maps to a sorted posting list of
+ * int document ids, so a search-as-you-type query is a hash lookup per query token, a walk of the
+ * shortest list and binary-search membership checks in the others, stopping at the result limit.
+ *
+ * Class names are indexed once per class rather than once per assignment; an assignment matches a
+ * token if its own name/category does or its class's name does. Mutations re-index only the class
+ * they touched: its old documents are tombstoned and new ids appended, and the whole index is
+ * compacted once tombstones outnumber live documents.
+ */
+public class SearchIndex {
+    private static final int MAX_PREFIX = 12; // longer tokens are matched on their first 12 chars
+
+    // one searchable thing: a class (assignmentId == 0) or an assignment in it
+    static final class Hit {
+        final int semester;
+        final String className;
+        final int assignmentId;
+        final String label;     // assignment name or class name
+        final String category;  // null for class hits
+        final double score;
+
+        Hit(int semester, String className, int assignmentId, String label, String category, double score) {
+            this.semester = semester; this.className = className; this.assignmentId = assignmentId;
+            this.label = label; this.category = category; this.score = score;
+        }
+
+        boolean isClass() { return assignmentId == 0; }
+
+        @Override public String toString() {
+            if (isClass()) return className + "  ·  Semester " + semester;
+            return label + "  ·  " + className + " / " + category + "  ·  " + String.format("%.1f%%", score)
+                    + "  ·  Semester " + semester;
+        }
+    }
+
+    // growable int list (posting lists are appended in increasing id order, so they stay sorted)
+    private static final class Ints {
+        int[] a = new int[4];
+        int n;
+        void add(int v) {
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n++] = v;
+        }
+        // append to a posting list, skipping a repeat of the last id (same doc, same key twice)
+        void post(int v) {
+            if (n == 0 || a[n - 1] != v) add(v);
+        }
+        boolean contains(int v) { return Arrays.binarySearch(a, 0, n, v) >= 0; }
+    }
+
+    // documents (assignments)
+    private final List<Hit> docs = new ArrayList<>();
+    private final Ints docClass = new Ints();           // doc id -> class ordinal
+    private boolean[] dead = new boolean[64];
+    private int live;
+    private final Map<String, Ints> postings = new HashMap<>();
+
+    // classes
+    private final List<Hit> classes = new ArrayList<>();       // class ordinal -> class hit (null = deleted)
+    private final List<Ints> classDocs = new ArrayList<>();    // class ordinal -> its doc ids
+    private final Map<String, Integer> classOrdinal = new HashMap<>(); // "sem\u0000class" -> ordinal
+    private final Map<String, Ints> classPostings = new HashMap<>();   // token/prefix -> class ordinals
+
+    // build from scratch for one user
+    static SearchIndex build(Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+        SearchIndex idx = new SearchIndex();
+        for (Map.Entry<Integer, Map<String, CollegeGPATracker.ClassData>> term : terms.entrySet()) {
+            for (Map.Entry<String, CollegeGPATracker.ClassData> e : term.getValue().entrySet()) {
+                idx.update(term.getKey(), e.getKey(), e.getValue());
+            }
+        }
+        return idx;
+    }
+
+    /** Re-index one class after a mutation (cd == null means the class was deleted). */
+    synchronized void update(int semester, String className, CollegeGPATracker.ClassData cd) {
+        String key = semester + "\u0000" + className;
+        Integer ord = classOrdinal.get(key);
+        if (ord != null) {
+            Ints old = classDocs.get(ord);
+            for (int i = 0; i < old.n; i++) { dead[old.a[i]] = true; live--; }
+            old.n = 0;
+        }
+        if (cd == null) {
+            if (ord != null) classes.set(ord, null);
+            return;
+        }
+        if (ord == null) {
+            ord = classes.size();
+            classOrdinal.put(key, ord);
+            classes.add(null);
+            classDocs.add(new Ints());
+            for (String k : keys(className)) classPostings.computeIfAbsent(k, _ -> new Ints()).post(ord);
+        }
+        classes.set(ord, new Hit(semester, className, 0, className, null, cd.percent()));
+        Ints mine = classDocs.get(ord);
+        for (CollegeGPATracker.Category c : cd.categories) {
+            List<String> catKeys = keys(c.name);
+            for (CollegeGPATracker.Assignment a : c.items) {
+                int id = docs.size();
+                docs.add(new Hit(semester, className, a.id, a.name, c.name, a.score));
+                docClass.add(ord);
+                if (id >= dead.length) dead = Arrays.copyOf(dead, dead.length * 2);
+                live++;
+                mine.add(id);
+                for (String k : keys(a.name)) postings.computeIfAbsent(k, _ -> new Ints()).post(id);
+                for (String k : catKeys) postings.computeIfAbsent(k, _ -> new Ints()).post(id);
+            }
+        }
+        if (docs.size() - live > Math.max(1024, live)) compact();
+    }
+
+    /**
+     * Hits matching every token of the query; the last token may be a prefix (search-as-you-type).
+     * Matching classes come first, then assignments in index order.
+     */
+    synchronized List<Hit> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) return Collections.emptyList();
+        int t = tokens.size();
+        Ints[] lists = new Ints[t];
+        boolean[][] classMatch = new boolean[t][];
+        int driver = -1;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < t; i++) {
+            String k = tokens.get(i);
+            if (k.length() > MAX_PREFIX) k = k.substring(0, MAX_PREFIX);
+            lists[i] = postings.get(k);
+            Ints cls = classPostings.get(k);
+            long cost = lists[i] != null ? lists[i].n : 0;
+            if (cls != null) {
+                classMatch[i] = new boolean[classes.size()];
+                for (int j = 0; j < cls.n; j++) {
+                    classMatch[i][cls.a[j]] = true;
+                    cost += classDocs.get(cls.a[j]).n;
+                }
+            }
+            if (lists[i] == null && cls == null) return Collections.emptyList();
+            if (cost < best) { best = cost; driver = i; }
+        }
+
+        List<Hit> out = new ArrayList<>();
+        // classes whose name matches every token
+        for (int c = 0; c < classes.size() && out.size() < limit; c++) {
+            if (classes.get(c) == null) continue;
+            boolean all = true;
+            for (int i = 0; i < t && all; i++) all = classMatch[i] != null && classMatch[i][c];
+            if (all) out.add(classes.get(c));
+        }
+        // assignments: walk the cheapest token's candidates, check the rest
+        if (lists[driver] != null) {
+            Ints l = lists[driver];
+            for (int j = 0; j < l.n && out.size() < limit; j++) {
+                int d = l.a[j];
+                if (classMatch[driver] != null && classMatch[driver][docClass.a[d]]) continue; // visited below
+                if (!dead[d] && matchesAll(d, lists, classMatch, driver)) out.add(docs.get(d));
+            }
+        }
+        if (classMatch[driver] != null) {
+            for (int c = 0; c < classes.size() && out.size() < limit; c++) {
+                if (!classMatch[driver][c]) continue;
+                Ints l = classDocs.get(c);
+                for (int j = 0; j < l.n && out.size() < limit; j++) {
+                    if (matchesAll(l.a[j], lists, classMatch, driver)) out.add(docs.get(l.a[j]));
+                }
+            }
+        }
+        return out;
+    }
+
+    private boolean matchesAll(int d, Ints[] lists, boolean[][] classMatch, int skip) {
+        int c = docClass.a[d];
+        for (int i = 0; i < lists.length; i++) {
+            if (i == skip) continue;
+            if (classMatch[i] != null && classMatch[i][c]) continue;
+            if (lists[i] == null || !lists[i].contains(d)) return false;
+        }
+        return true;
+    }
+
+    synchronized int size() { return live; }
+
+    // drop tombstones by re-posting the live documents under fresh, dense ids
+    private void compact() {
+        List<Hit> oldDocs = new ArrayList<>(docs);
+        int[] oldClass = Arrays.copyOf(docClass.a, docClass.n);
+        boolean[] oldDead = dead;
+        docs.clear();
+        docClass.n = 0;
+        dead = new boolean[Math.max(64, live * 2)];
+        postings.clear();
+        for (Ints l : classDocs) l.n = 0;
+        live = 0;
+        for (int d = 0; d < oldDocs.size(); d++) {
+            if (oldDead[d]) continue;
+            Hit h = oldDocs.get(d);
+            int id = docs.size();
+            docs.add(h);
+            docClass.add(oldClass[d]);
+            classDocs.get(oldClass[d]).add(id);
+            live++;
+            for (String k : keys(h.label)) postings.computeIfAbsent(k, _ -> new Ints()).post(id);
+            for (String k : keys(h.category)) postings.computeIfAbsent(k, _ -> new Ints()).post(id);
+        }
+    }
+
+    // every token of the text and its prefixes up to MAX_PREFIX chars
+    private static List<String> keys(String text) {
+        List<String> out = new ArrayList<>();
+        for (String t : tokenize(text)) {
+            int max = Math.min(t.length(), MAX_PREFIX);
+            for (int i = 1; i <= max; i++) out.add(t.substring(0, i));
+        }
+        return out;
+    }
+
+    // lower-cased alphanumeric runs
+    static List<String> tokenize(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null) return out;
+        String s = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean word = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+            if (word && start < 0) start = i;
+            else if (!word && start >= 0) { out.add(s.substring(start, i)); start = -1; }
+        }
+        return out;
+    }
+}
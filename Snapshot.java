@@ -0,0 +1,208 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of userData (user -> semester -> class -> ClassData), read through a memory
+ * mapping so loading is a single pass over the file with no parser or intermediate tree.
+ *
+ * Layout (big-endian): magic, version, a string table (every distinct user, class, category,
+ * assignment and scale name once, each as length + UTF-8 bytes), then one length-prefixed record per
+ * user, and a CRC32 of everything before it. Records refer to strings by table index, so a name used
+ * in a thousand classes is stored, and decoded, once. JSON stays the format for shards and for
+ * import/export (see main).
+ *
+ * usage: java Snapshot import <all-users.json> <out.snap> | export <in.snap> <out.json>
+ */
+public class Snapshot {
+    private static final int MAGIC = 0x47504153; // "GPAS"
+    private static final int VERSION = 1;
+
+    static void write(Path file, Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> data) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (var user : data.entrySet()) {
+            intern(strings, user.getKey());
+            for (Map<String, CollegeGPATracker.ClassData> classes : user.getValue().values()) {
+                for (var cls : classes.entrySet()) {
+                    intern(strings, cls.getKey());
+                    if (cls.getValue().scale != null) intern(strings, cls.getValue().scale);
+                    for (CollegeGPATracker.Category c : cls.getValue().categories) {
+                        intern(strings, c.name);
+                        for (CollegeGPATracker.Assignment a : c.items) intern(strings, a.name);
+                    }
+                }
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strings.size());
+        for (String s : strings.keySet()) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+        out.writeInt(data.size());
+        ByteArrayOutputStream rec = new ByteArrayOutputStream(4096);
+        DataOutputStream r = new DataOutputStream(rec);
+        for (var user : data.entrySet()) {
+            rec.reset();
+            r.writeInt(strings.get(user.getKey()));
+            r.writeInt(user.getValue().size());
+            for (var sem : user.getValue().entrySet()) {
+                r.writeInt(sem.getKey());
+                r.writeInt(sem.getValue().size());
+                for (var cls : sem.getValue().entrySet()) {
+                    CollegeGPATracker.ClassData cd = cls.getValue();
+                    r.writeInt(strings.get(cls.getKey()));
+                    r.writeInt(cd.credits);
+                    r.writeInt(cd.scale == null ? -1 : strings.get(cd.scale));
+                    r.writeBoolean(cd.passFail);
+                    r.writeInt(cd.nextId);
+                    r.writeInt(cd.historyPercent.size());
+                    for (Double h : cd.historyPercent) r.writeDouble(h);
+                    r.writeInt(cd.categories.size());
+                    for (CollegeGPATracker.Category c : cd.categories) {
+                        r.writeInt(strings.get(c.name));
+                        r.writeInt(c.weight);
+                        r.writeInt(c.dropLowest);
+                        r.writeInt(c.expected);
+                        r.writeInt(c.items.size());
+                        for (CollegeGPATracker.Assignment a : c.items) {
+                            r.writeInt(a.id);
+                            r.writeInt(strings.get(a.name));
+                            r.writeDouble(a.score);
+                        }
+                    }
+                }
+            }
+            out.writeInt(rec.size());
+            rec.writeTo(out);
+        }
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        AtomicFiles.write(file, bytes.toByteArray());
+    }
+
+    static Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < 20 || size > Integer.MAX_VALUE) throw new IOException("Not a snapshot: " + file);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, (int) size - 8));
+            if (crc.getValue() != buf.getLong((int) size - 8)) throw new IOException("Snapshot checksum mismatch: " + file);
+            buf.limit((int) size - 8);
+            try {
+                return decode(buf);
+            } catch (RuntimeException e) { // BufferUnderflow / IndexOutOfBounds on a malformed file
+                throw new IOException("Corrupt snapshot: " + file, e);
+            }
+        }
+    }
+
+    private static Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> decode(ByteBuffer buf) throws IOException {
+        if (buf.getInt() != MAGIC) throw new IOException("Not a snapshot");
+        int version = buf.getInt();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+
+        String[] strings = new String[buf.getInt()];
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int len = buf.getInt();
+            if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+            buf.get(scratch, 0, len);
+            strings[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+
+        int users = buf.getInt();
+        Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> data = new HashMap<>(users * 2);
+        for (int u = 0; u < users; u++) {
+            int end = buf.getInt();
+            end += buf.position();
+            String user = strings[buf.getInt()];
+            int sems = buf.getInt();
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = new HashMap<>();
+            for (int s = 0; s < sems; s++) {
+                int sem = buf.getInt();
+                int classes = buf.getInt();
+                Map<String, CollegeGPATracker.ClassData> byName = new HashMap<>(Math.max(4, classes * 2));
+                for (int k = 0; k < classes; k++) {
+                    String name = strings[buf.getInt()];
+                    CollegeGPATracker.ClassData cd = new CollegeGPATracker.ClassData();
+                    cd.credits = buf.getInt();
+                    int scale = buf.getInt();
+                    cd.scale = scale < 0 ? null : strings[scale];
+                    cd.passFail = buf.get() != 0;
+                    cd.nextId = buf.getInt();
+                    int hist = buf.getInt();
+                    cd.historyPercent = new ArrayList<>(hist);
+                    for (int h = 0; h < hist; h++) cd.historyPercent.add(buf.getDouble());
+                    int cats = buf.getInt();
+                    cd.categories = new ArrayList<>(cats);
+                    for (int c = 0; c < cats; c++) {
+                        CollegeGPATracker.Category cat = new CollegeGPATracker.Category(strings[buf.getInt()], buf.getInt());
+                        cat.dropLowest = buf.getInt();
+                        cat.expected = buf.getInt();
+                        int n = buf.getInt();
+                        List<CollegeGPATracker.Assignment> items = new ArrayList<>(n);
+                        for (int i = 0; i < n; i++) {
+                            int id = buf.getInt();
+                            CollegeGPATracker.Assignment a = new CollegeGPATracker.Assignment(strings[buf.getInt()], buf.getDouble(), cat.name);
+                            a.id = id;
+                            items.add(a);
+                        }
+                        cat.items = items;
+                        cd.categories.add(cat);
+                    }
+                    cd.normalize(); // rebuilds the id index and cached aggregates
+                    byName.put(name, cd);
+                }
+                terms.put(sem, byName);
+            }
+            if (buf.position() != end) throw new IOException("Snapshot record length mismatch for " + user);
+            data.put(user, terms);
+        }
+        return data;
+    }
+
+    private static void intern(Map<String, Integer> strings, String s) {
+        strings.putIfAbsent(s, strings.size());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: java Snapshot import <all-users.json> <out.snap> | export <in.snap> <out.json>");
+            return;
+        }
+        long start = System.nanoTime();
+        if (args[0].equals("import")) {
+            var data = CollegeGPATracker.readAllUserData(Paths.get(args[1]).toFile());
+            write(Paths.get(args[2]), data);
+            System.out.printf("Wrote %d users to %s in %.0f ms%n", data.size(), args[2], (System.nanoTime() - start) / 1e6);
+        } else if (args[0].equals("export")) {
+            var data = read(Paths.get(args[1]));
+            AtomicFiles.write(args[2], new com.google.gson.Gson().toJson(data));
+            System.out.printf("Exported %d users to %s in %.0f ms%n", data.size(), args[2], (System.nanoTime() - start) / 1e6);
+        } else {
+            System.err.println("unknown mode: " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// Load time and retained heap of the all-users data as Gson JSON (the loadAllUserData path) vs the
+// memory-mapped binary Snapshot, on synthetic datasets of increasing size. Checks the round trip too.
+// usage: java SnapshotBench [users...]   (default 100 1000 5000)
+public class SnapshotBench {
+    private static final String[] COURSES = {"CS", "MATH", "PHYS", "CHEM", "BIO", "ENG", "HIST", "ECON", "PSY", "ART"};
+    private static final String[] WORK = {"Homework", "Quiz", "Lab", "Midterm", "Final", "Essay", "Problem Set", "Reading"};
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length > 0 ? java.util.Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[]{100, 1000, 5000};
+        Path dir = Files.createTempDirectory("snapbench");
+        Gson gson = new Gson();
+        System.out.printf("%8s %10s %10s %10s %10s %10s %10s%n", "users", "json MB", "snap MB", "json ms", "snap ms", "json heap", "snap heap");
+        for (int users : sizes) {
+            Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> data = synthetic(users, new Random(users));
+            File json = dir.resolve("user_data.json").toFile();
+            Path snap = dir.resolve("user_data.snap");
+            AtomicFiles.write(json.getPath(), gson.toJson(data));
+            Snapshot.write(snap, data);
+            data = null;
+
+            // round trip: both loaders must produce the same tree
+            var fromJson = CollegeGPATracker.readAllUserData(json);
+            var fromSnap = Snapshot.read(snap);
+            if (!fromJson.keySet().equals(fromSnap.keySet())) throw new AssertionError("user sets differ at " + users + " users");
+            for (String u : fromJson.keySet()) {
+                if (!gson.toJsonTree(fromJson.get(u)).equals(gson.toJsonTree(fromSnap.get(u)))) throw new AssertionError("round trip differs for " + u);
+            }
+            fromJson = fromSnap = null;
+
+            double jsonMs = best(() -> CollegeGPATracker.readAllUserData(json));
+            double snapMs = best(() -> Snapshot.read(snap));
+            long jsonHeap = retained(() -> CollegeGPATracker.readAllUserData(json));
+            long snapHeap = retained(() -> Snapshot.read(snap));
+            System.out.printf("%8d %10.1f %10.1f %10.1f %10.1f %9.1fM %9.1fM%n", users,
+                    json.length() / 1e6, Files.size(snap) / 1e6, jsonMs, snapMs, jsonHeap / 1e6, snapHeap / 1e6);
+        }
+        for (File f : dir.toFile().listFiles()) f.delete();
+        dir.toFile().delete();
+    }
+
+    interface Load {
+        Object run() throws IOException;
+    }
+
+    private static double best(Load load) throws IOException {
+        for (int i = 0; i < 3; i++) load.run(); // warm up
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long t0 = System.nanoTime();
+            load.run();
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        return best / 1e6;
+    }
+
+    // heap still in use while the loaded data is reachable, minus the baseline
+    private static long retained(Load load) throws IOException {
+        long before = used();
+        Object keep = load.run();
+        long after = used();
+        if (keep.hashCode() == 42) System.out.print(""); // keep it reachable across the measurement
+        return after - before;
+    }
+
+    private static long used() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    // 4 semesters of 4-6 classes, 3-4 categories of 3-12 assignments each, with realistic name reuse
+    static Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> synthetic(int users, Random rnd) {
+        Map<String, Map<Integer, Map<String, CollegeGPATracker.ClassData>>> data = new HashMap<>();
+        for (int u = 0; u < users; u++) {
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = new HashMap<>();
+            for (int sem = 1; sem <= 4; sem++) {
+                Map<String, CollegeGPATracker.ClassData> classes = new HashMap<>();
+                int n = 4 + rnd.nextInt(3);
+                for (int c = 0; c < n; c++) {
+                    String name = COURSES[rnd.nextInt(COURSES.length)] + " " + (100 + 10 * rnd.nextInt(30));
+                    CollegeGPATracker.ClassData cd = new CollegeGPATracker.ClassData();
+                    cd.credits = 1 + rnd.nextInt(4);
+                    if (rnd.nextInt(4) == 0) cd.categories.add(new CollegeGPATracker.Category("Quiz", 0));
+                    for (int k = 0; k < cd.categories.size(); k++) {
+                        cd.categories.get(k).expected = rnd.nextInt(3) == 0 ? 12 : 0;
+                        int items = 3 + rnd.nextInt(10);
+                        for (int i = 0; i < items; i++) {
+                            String w = WORK[rnd.nextInt(WORK.length)] + " " + (1 + rnd.nextInt(12));
+                            cd.add(k, new CollegeGPATracker.Assignment(w, Math.round((55 + rnd.nextDouble() * 45) * 10) / 10.0, null));
+                        }
+                    }
+                    for (int h = rnd.nextInt(6); h > 0; h--) cd.historyPercent.add(60 + rnd.nextDouble() * 40);
+                    classes.put(name, cd);
+                }
+                terms.put(sem, classes);
+            }
+            data.put("student" + u, terms);
+        }
+        return data;
+    }
+}
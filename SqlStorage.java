@@ -0,0 +1,373 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Accounts, grades and reset codes in an embedded SQL database, e.g. -Dgpa.storage=jdbc:h2:./data/gpa
+ * or jdbc:sqlite:data/gpa.db with the driver jar in libs/. Only plain SQL that both engines accept is
+ * used (no upserts, no engine-specific types).
+ *
+ * Grades are stored one row per class, category and assignment. Saving a class compares it with its
+ * stored rows and writes only the differences, so a score edit updates that assignment's row (plus
+ * the class row, whose cached percent changed). The cached percent is indexed, so "every class under
+ * 70%" is an index range scan instead of loading every user.
+ */
+public class SqlStorage implements Storage {
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS accounts (username VARCHAR(200) PRIMARY KEY, password VARCHAR(500), email VARCHAR(320), renamed_at BIGINT)",
+        "CREATE INDEX IF NOT EXISTS accounts_email ON accounts (email)",
+        "CREATE TABLE IF NOT EXISTS reset_tokens (token VARCHAR(64) PRIMARY KEY, username VARCHAR(200) NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS classes (username VARCHAR(200) NOT NULL, sem INT NOT NULL, cls VARCHAR(200) NOT NULL,"
+                + " credits INT NOT NULL, scale VARCHAR(200), pass_fail INT NOT NULL, next_id INT NOT NULL, history VARCHAR(10000),"
+                + " percent DOUBLE NOT NULL, PRIMARY KEY (username, sem, cls))",
+        "CREATE INDEX IF NOT EXISTS classes_percent ON classes (percent)",
+        "CREATE TABLE IF NOT EXISTS categories (username VARCHAR(200) NOT NULL, sem INT NOT NULL, cls VARCHAR(200) NOT NULL,"
+                + " pos INT NOT NULL, name VARCHAR(200) NOT NULL, weight INT NOT NULL, drop_lowest INT NOT NULL, expected INT NOT NULL,"
+                + " PRIMARY KEY (username, sem, cls, pos))",
+        "CREATE TABLE IF NOT EXISTS assignments (username VARCHAR(200) NOT NULL, sem INT NOT NULL, cls VARCHAR(200) NOT NULL,"
+                + " id INT NOT NULL, cat INT NOT NULL, pos INT NOT NULL, name VARCHAR(500), score DOUBLE NOT NULL,"
+                + " PRIMARY KEY (username, sem, cls, id))",
+    };
+
+    private final Connection conn;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private long rowsWritten;
+
+    private final Accounts accounts = new SqlAccounts();
+    private final Grades grades = new SqlGrades();
+    private final Tokens tokens = new SqlTokens();
+
+    SqlStorage(String url) throws SQLException {
+        conn = DriverManager.getConnection(url);
+        try (Statement st = conn.createStatement()) {
+            for (String ddl : SCHEMA) st.execute(ddl);
+        }
+        conn.setAutoCommit(false);
+        conn.commit();
+    }
+
+    @Override public Accounts accounts() { return accounts; }
+    @Override public Grades grades() { return grades; }
+    @Override public Tokens tokens() { return tokens; }
+
+    @Override public synchronized void close() {
+        try {
+            conn.close();
+        } catch (SQLException e) { e.printStackTrace(); }
+    }
+
+    /** Rows inserted, updated or deleted since startup. */
+    synchronized long rowsWritten() {
+        return rowsWritten;
+    }
+
+    // one connection, so statements are prepared once and every caller takes the storage's monitor
+    private PreparedStatement ps(String sql) throws SQLException {
+        PreparedStatement p = statements.get(sql);
+        if (p == null) statements.put(sql, p = conn.prepareStatement(sql));
+        return p;
+    }
+
+    private int update(String sql, Object... args) throws SQLException {
+        PreparedStatement p = ps(sql);
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null) p.setNull(i + 1, Types.VARCHAR);
+            else p.setObject(i + 1, args[i]);
+        }
+        int n = p.executeUpdate();
+        rowsWritten += n;
+        return n;
+    }
+
+    private ResultSet query(String sql, Object... args) throws SQLException {
+        PreparedStatement p = ps(sql);
+        for (int i = 0; i < args.length; i++) p.setObject(i + 1, args[i]);
+        return p.executeQuery();
+    }
+
+    private void rollback(SQLException e) {
+        e.printStackTrace();
+        try {
+            conn.rollback();
+        } catch (SQLException ignored) {}
+    }
+
+    private class SqlAccounts implements Accounts {
+        @Override public Map<String, String[]> load() {
+            synchronized (SqlStorage.this) {
+                Map<String, String[]> out = new HashMap<>();
+                try (ResultSet rs = query("SELECT username, password, email FROM accounts")) {
+                    while (rs.next()) out.put(rs.getString(1), new String[]{rs.getString(2), rs.getString(3)});
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Could not read accounts", e);
+                }
+                return out;
+            }
+        }
+
+        @Override public Map<String, Long> usernameChanges() {
+            synchronized (SqlStorage.this) {
+                Map<String, Long> out = new HashMap<>();
+                try (ResultSet rs = query("SELECT username, renamed_at FROM accounts WHERE renamed_at IS NOT NULL")) {
+                    while (rs.next()) out.put(rs.getString(1), rs.getLong(2));
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Could not read accounts", e);
+                }
+                return out;
+            }
+        }
+
+        @Override public void save(String user, String[] account, Long usernameChangedAt) {
+            synchronized (SqlStorage.this) {
+                try {
+                    if (account == null) {
+                        update("DELETE FROM accounts WHERE username = ?", user);
+                    } else if (update("UPDATE accounts SET password = ?, email = ?, renamed_at = ? WHERE username = ?",
+                            account[0], account[1], usernameChangedAt, user) == 0) {
+                        update("INSERT INTO accounts (username, password, email, renamed_at) VALUES (?, ?, ?, ?)",
+                                user, account[0], account[1], usernameChangedAt);
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    rollback(e);
+                }
+            }
+        }
+    }
+
+    private class SqlTokens implements Tokens {
+        @Override public void put(String token, String user) {
+            synchronized (SqlStorage.this) {
+                try {
+                    if (update("UPDATE reset_tokens SET username = ? WHERE token = ?", user, token) == 0) {
+                        update("INSERT INTO reset_tokens (token, username) VALUES (?, ?)", token, user);
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    rollback(e);
+                }
+            }
+        }
+
+        @Override public String consume(String token) {
+            synchronized (SqlStorage.this) {
+                try {
+                    String user = null;
+                    try (ResultSet rs = query("SELECT username FROM reset_tokens WHERE token = ?", token)) {
+                        if (rs.next()) user = rs.getString(1);
+                    }
+                    if (user != null) update("DELETE FROM reset_tokens WHERE token = ?", token);
+                    conn.commit();
+                    return user;
+                } catch (SQLException e) {
+                    rollback(e);
+                    return null;
+                }
+            }
+        }
+    }
+
+    private class SqlGrades implements Grades {
+        @Override public Map<Integer, Map<String, CollegeGPATracker.ClassData>> load(String user) {
+            synchronized (SqlStorage.this) {
+                try {
+                    return read(user);
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Could not read the grades of " + user, e);
+                }
+            }
+        }
+
+        private Map<Integer, Map<String, CollegeGPATracker.ClassData>> read(String user) throws SQLException {
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = new HashMap<>();
+            try (ResultSet rs = query("SELECT sem, cls, credits, scale, pass_fail, next_id, history FROM classes WHERE username = ?", user)) {
+                while (rs.next()) {
+                    CollegeGPATracker.ClassData cd = new CollegeGPATracker.ClassData();
+                    cd.categories = new ArrayList<>();
+                    cd.credits = rs.getInt(3);
+                    cd.scale = rs.getString(4);
+                    cd.passFail = rs.getInt(5) != 0;
+                    cd.nextId = rs.getInt(6);
+                    cd.historyPercent = parseHistory(rs.getString(7));
+                    terms.computeIfAbsent(rs.getInt(1), _ -> new HashMap<>()).put(rs.getString(2), cd);
+                }
+            }
+            if (terms.isEmpty()) return null;
+            try (ResultSet rs = query("SELECT sem, cls, name, weight, drop_lowest, expected FROM categories WHERE username = ?"
+                    + " ORDER BY sem, cls, pos", user)) {
+                while (rs.next()) {
+                    CollegeGPATracker.ClassData cd = terms.get(rs.getInt(1)).get(rs.getString(2));
+                    CollegeGPATracker.Category c = new CollegeGPATracker.Category(rs.getString(3), rs.getInt(4));
+                    c.dropLowest = rs.getInt(5);
+                    c.expected = rs.getInt(6);
+                    cd.categories.add(c);
+                }
+            }
+            try (ResultSet rs = query("SELECT sem, cls, cat, id, name, score FROM assignments WHERE username = ?"
+                    + " ORDER BY sem, cls, cat, pos", user)) {
+                while (rs.next()) {
+                    CollegeGPATracker.ClassData cd = terms.get(rs.getInt(1)).get(rs.getString(2));
+                    CollegeGPATracker.Category c = cd.categories.get(rs.getInt(3));
+                    CollegeGPATracker.Assignment a = new CollegeGPATracker.Assignment(rs.getString(5), rs.getDouble(6), c.name);
+                    a.id = rs.getInt(4);
+                    c.items.add(a);
+                }
+            }
+            for (Map<String, CollegeGPATracker.ClassData> classes : terms.values()) {
+                for (CollegeGPATracker.ClassData cd : classes.values()) cd.normalize();
+            }
+            return terms;
+        }
+
+        @Override public List<GradeEvents.Event> save(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms,
+                                                      Set<String> dirty) {
+            synchronized (SqlStorage.this) {
+                try {
+                    Set<String> keys = dirty;
+                    if (keys == null) {
+                        keys = new HashSet<>();
+                        for (Map.Entry<Integer, Map<String, CollegeGPATracker.ClassData>> sem : terms.entrySet()) {
+                            for (String cls : sem.getValue().keySet()) keys.add(sem.getKey() + "\u0000" + cls);
+                        }
+                        try (ResultSet rs = query("SELECT sem, cls FROM classes WHERE username = ?", user)) {
+                            while (rs.next()) keys.add(rs.getInt(1) + "\u0000" + rs.getString(2));
+                        }
+                    }
+                    for (String key : keys) {
+                        int cut = key.indexOf('\u0000');
+                        int sem = Integer.parseInt(key.substring(0, cut));
+                        String cls = key.substring(cut + 1);
+                        Map<String, CollegeGPATracker.ClassData> classes = terms.get(sem);
+                        CollegeGPATracker.ClassData cd = classes == null ? null : classes.get(cls);
+                        if (cd == null) deleteClass(user, sem, cls);
+                        else writeClass(user, sem, cls, cd);
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    rollback(e);
+                }
+                return List.of();
+            }
+        }
+
+        // the class row, then only the category and assignment rows that differ from what is stored
+        private void writeClass(String user, int sem, String cls, CollegeGPATracker.ClassData cd) throws SQLException {
+            Object[] row = {cd.credits, cd.scale, cd.passFail ? 1 : 0, cd.nextId, formatHistory(cd.historyPercent), cd.percent()};
+            Object[] stored = null;
+            try (ResultSet rs = query("SELECT credits, scale, pass_fail, next_id, history, percent FROM classes"
+                    + " WHERE username = ? AND sem = ? AND cls = ?", user, sem, cls)) {
+                if (rs.next()) stored = new Object[]{rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getInt(4), rs.getString(5), rs.getDouble(6)};
+            }
+            if (stored == null) {
+                update("INSERT INTO classes (username, sem, cls, credits, scale, pass_fail, next_id, history, percent)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", user, sem, cls, row[0], row[1], row[2], row[3], row[4], row[5]);
+            } else if (!Arrays.equals(row, stored)) {
+                update("UPDATE classes SET credits = ?, scale = ?, pass_fail = ?, next_id = ?, history = ?, percent = ?"
+                        + " WHERE username = ? AND sem = ? AND cls = ?", row[0], row[1], row[2], row[3], row[4], row[5], user, sem, cls);
+            }
+
+            Map<Integer, Object[]> cats = new HashMap<>();
+            try (ResultSet rs = query("SELECT pos, name, weight, drop_lowest, expected FROM categories"
+                    + " WHERE username = ? AND sem = ? AND cls = ?", user, sem, cls)) {
+                while (rs.next()) cats.put(rs.getInt(1), new Object[]{rs.getString(2), rs.getInt(3), rs.getInt(4), rs.getInt(5)});
+            }
+            for (int i = 0; i < cd.categories.size(); i++) {
+                CollegeGPATracker.Category c = cd.categories.get(i);
+                Object[] want = {c.name, c.weight, c.dropLowest, c.expected};
+                Object[] have = cats.remove(i);
+                if (have == null) {
+                    update("INSERT INTO categories (username, sem, cls, pos, name, weight, drop_lowest, expected)"
+                            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)", user, sem, cls, i, want[0], want[1], want[2], want[3]);
+                } else if (!Arrays.equals(want, have)) {
+                    update("UPDATE categories SET name = ?, weight = ?, drop_lowest = ?, expected = ?"
+                            + " WHERE username = ? AND sem = ? AND cls = ? AND pos = ?", want[0], want[1], want[2], want[3], user, sem, cls, i);
+                }
+            }
+            for (int pos : cats.keySet()) {
+                update("DELETE FROM categories WHERE username = ? AND sem = ? AND cls = ? AND pos = ?", user, sem, cls, pos);
+            }
+
+            Map<Integer, Object[]> items = new HashMap<>();
+            try (ResultSet rs = query("SELECT id, cat, pos, name, score FROM assignments"
+                    + " WHERE username = ? AND sem = ? AND cls = ?", user, sem, cls)) {
+                while (rs.next()) items.put(rs.getInt(1), new Object[]{rs.getInt(2), rs.getInt(3), rs.getString(4), rs.getDouble(5)});
+            }
+            for (int i = 0; i < cd.categories.size(); i++) {
+                List<CollegeGPATracker.Assignment> list = cd.categories.get(i).items;
+                for (int j = 0; j < list.size(); j++) {
+                    CollegeGPATracker.Assignment a = list.get(j);
+                    Object[] want = {i, j, a.name, a.score};
+                    Object[] have = items.remove(a.id);
+                    if (have == null) {
+                        update("INSERT INTO assignments (username, sem, cls, id, cat, pos, name, score) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                                user, sem, cls, a.id, want[0], want[1], want[2], want[3]);
+                    } else if (!Arrays.equals(want, have)) {
+                        update("UPDATE assignments SET cat = ?, pos = ?, name = ?, score = ? WHERE username = ? AND sem = ? AND cls = ? AND id = ?",
+                                want[0], want[1], want[2], want[3], user, sem, cls, a.id);
+                    }
+                }
+            }
+            for (int id : items.keySet()) {
+                update("DELETE FROM assignments WHERE username = ? AND sem = ? AND cls = ? AND id = ?", user, sem, cls, id);
+            }
+        }
+
+        private void deleteClass(String user, int sem, String cls) throws SQLException {
+            update("DELETE FROM assignments WHERE username = ? AND sem = ? AND cls = ?", user, sem, cls);
+            update("DELETE FROM categories WHERE username = ? AND sem = ? AND cls = ?", user, sem, cls);
+            update("DELETE FROM classes WHERE username = ? AND sem = ? AND cls = ?", user, sem, cls);
+        }
+
+        @Override public void delete(String user) {
+            synchronized (SqlStorage.this) {
+                try {
+                    update("DELETE FROM assignments WHERE username = ?", user);
+                    update("DELETE FROM categories WHERE username = ?", user);
+                    update("DELETE FROM classes WHERE username = ?", user);
+                    conn.commit();
+                } catch (SQLException e) {
+                    rollback(e);
+                }
+            }
+        }
+
+        @Override public List<ClassRef> classesBelow(String user, double percent) {
+            synchronized (SqlStorage.this) {
+                List<ClassRef> out = new ArrayList<>();
+                String sql = "SELECT username, sem, cls, percent FROM classes WHERE percent < ?"
+                        + (user == null ? "" : " AND username = ?") + " ORDER BY percent";
+                try (ResultSet rs = user == null ? query(sql, percent) : query(sql, percent, user)) {
+                    while (rs.next()) out.add(new ClassRef(rs.getString(1), rs.getInt(2), rs.getString(3), rs.getDouble(4)));
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Could not query classes", e);
+                }
+                return out;
+            }
+        }
+    }
+
+    private static String formatHistory(List<Double> history) {
+        StringJoiner j = new StringJoiner(",");
+        for (Double d : history) j.add(Double.toString(d));
+        return j.toString();
+    }
+
+    private static List<Double> parseHistory(String s) {
+        List<Double> out = new ArrayList<>();
+        if (s == null || s.isEmpty()) return out;
+        for (String part : s.split(",")) out.add(Double.parseDouble(part));
+        return out;
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Where accounts, grades and password-reset codes are kept. JsonStorage is the original layout under
+ * data/ (users.json, one shard per user, reset_tokens.json); SqlStorage keeps the same data in indexed
+ * tables of any embedded JDBC database (H2, SQLite) and writes only the rows that changed.
+ *
+ * Reads that fail throw IllegalStateException rather than returning "no data", so a broken store is
+ * never mistaken for an empty one and overwritten. Failed writes are reported and skipped, as the
+ * JSON writers always did.
+ */
+public interface Storage extends AutoCloseable {
+    Accounts accounts();
+    Grades grades();
+    Tokens tokens();
+
+    @Override
+    default void close() {}
+
+    interface Accounts {
+        /** username -> [password, email] */
+        Map<String, String[]> load();
+
+        /** username -> time of the last username change */
+        Map<String, Long> usernameChanges();
+
+        /** Writes one account; a null account deletes the user. */
+        void save(String user, String[] account, Long usernameChangedAt);
+    }
+
+    interface Grades {
+        /** The user's semesters, or null if nothing is stored for them. Called under the user's GradeStore lock. */
+        Map<Integer, Map<String, CollegeGPATracker.ClassData>> load(String user);
+
+        /**
+         * Stores the classes named in dirty ("sem\0class"; null = every class, including removing ones
+         * no longer in terms). Called under the user's GradeStore lock. Returns what another process
+         * changed in the meantime and was merged into terms (JSON only; SQL rows are written per class).
+         */
+        List<GradeEvents.Event> save(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms, Set<String> dirty);
+
+        /** Merges another process's changes into terms (see DataWatcher); a no-op where rows are shared directly. */
+        default List<GradeEvents.Event> refresh(String user, Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms) {
+            return List.of();
+        }
+
+        void delete(String user);
+
+        /** Classes whose weighted percent is below the given value; user null = every user. */
+        List<ClassRef> classesBelow(String user, double percent);
+    }
+
+    interface Tokens {
+        void put(String token, String user);
+
+        /** The user the token was issued to, or null; the token is gone afterwards. */
+        String consume(String token);
+    }
+
+    record ClassRef(String user, int semester, String className, double percent) {}
+
+    /** Copies every account and its grades (reset codes are short-lived and not copied). */
+    static void copy(Storage from, Storage to) {
+        Map<String, Long> changes = from.accounts().usernameChanges();
+        for (Map.Entry<String, String[]> e : from.accounts().load().entrySet()) {
+            to.accounts().save(e.getKey(), e.getValue(), changes.get(e.getKey()));
+            Map<Integer, Map<String, CollegeGPATracker.ClassData>> terms = from.grades().load(e.getKey());
+            if (terms != null) to.grades().save(e.getKey(), terms, null);
+        }
+    }
+}
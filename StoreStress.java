@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Stress test for GradeStore: many threads drive sessions of a shared set of users with random
+// edits and GPA reads. Each operation records its per-user order from inside the user's lock;
+// afterwards every user's log is replayed serially and every id and every GPA/percent read
+// must match exactly, i.e. the concurrent history is equivalent to that serial one.
+// usage: java StoreStress [threads] [opsPerThread] [users]
+public class StoreStress {
+    private static final String[] CATEGORIES = {"Homework", "Exam", "Project"};
+
+    // one logged operation; kind: 0 add, 1 update, 2 remove, 3 class percent, 4 overall GPA
+    private record Op(int kind, int semester, String cls, String category, int id, double score, double result) {}
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        int userCount = args.length > 2 ? Integer.parseInt(args[2]) : 24;
+
+        for (int t : new int[]{1, threads}) {
+            GradeStore store = new GradeStore();
+            String[] users = new String[userCount];
+            List<List<Op>> logs = new ArrayList<>();
+            List<List<Integer>> ids = new ArrayList<>(); // live ids per user (guarded by the user's lock)
+            for (int u = 0; u < userCount; u++) {
+                users[u] = "user" + u;
+                GradeStore.Session s = store.open(users[u]);
+                for (int sem = 1; sem <= 2; sem++) {
+                    s.addClass(sem, "CS" + sem + "01", 3);
+                    s.addClass(sem, "MATH" + sem + "10", 4);
+                }
+                logs.add(new ArrayList<>());
+                ids.add(new ArrayList<>());
+            }
+            int perThread = opsPerThread * threads / t; // same total work for both runs
+            ExecutorService pool = Executors.newFixedThreadPool(t);
+            List<Future<?>> done = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int w = 0; w < t; w++) {
+                long seed = 1000 + w;
+                done.add(pool.submit(() -> drive(store, users, logs, ids, perThread, new SplittableRandom(seed))));
+            }
+            for (Future<?> f : done) f.get();
+            long elapsed = System.nanoTime() - start;
+            pool.shutdown();
+
+            int checked = verify(users, logs);
+            System.out.printf("%2d thread(s): %,d ops in %.0f ms (%,.0f ops/s), %,d reads verified against serial replay%n",
+                    t, (long) perThread * t, elapsed / 1e6, perThread * (double) t / (elapsed / 1e9), checked);
+        }
+    }
+
+    private static void drive(GradeStore store, String[] users, List<List<Op>> logs, List<List<Integer>> ids,
+                              int ops, SplittableRandom rnd) {
+        for (int i = 0; i < ops; i++) {
+            int u = rnd.nextInt(users.length);
+            GradeStore.Session s = store.open(users[u]);
+            int semester = 1 + rnd.nextInt(2);
+            String cls = rnd.nextBoolean() ? "CS" + semester + "01" : "MATH" + semester + "10";
+            int roll = rnd.nextInt(100);
+            // the session methods take the same (reentrant) lock, so choosing, applying and logging is one step
+            store.withUser(users[u], _ -> {
+                List<Integer> live = ids.get(u);
+                Op op;
+                if (roll < 40 || live.isEmpty()) {
+                    String cat = CATEGORIES[rnd.nextInt(CATEGORIES.length)];
+                    double score = Math.round(rnd.nextDouble() * 1000) / 10.0;
+                    int id = s.addAssignment(semester, cls, cat, "hw", score);
+                    live.add(semester * 1_000_000 + (cls.startsWith("CS") ? 0 : 500_000) + id);
+                    op = new Op(0, semester, cls, cat, id, score, id);
+                } else if (roll < 70) {
+                    int key = live.get(rnd.nextInt(live.size()));
+                    double score = Math.round(rnd.nextDouble() * 1000) / 10.0;
+                    boolean ok = s.updateAssignment(key / 1_000_000, clsOf(key), key % 500_000, "hw", score);
+                    op = new Op(1, key / 1_000_000, clsOf(key), null, key % 500_000, score, ok ? 1 : 0);
+                } else if (roll < 80) {
+                    int key = live.remove(rnd.nextInt(live.size()));
+                    boolean ok = s.removeAssignment(key / 1_000_000, clsOf(key), key % 500_000);
+                    op = new Op(2, key / 1_000_000, clsOf(key), null, key % 500_000, 0, ok ? 1 : 0);
+                } else if (roll < 90) {
+                    op = new Op(3, semester, cls, null, 0, 0, s.classPercent(semester, cls));
+                } else {
+                    op = new Op(4, 0, null, null, 0, 0, s.overallGpa());
+                }
+                logs.get(u).add(op);
+                return null;
+            });
+        }
+    }
+
+    private static String clsOf(int key) {
+        int sem = key / 1_000_000;
+        return (key % 1_000_000) >= 500_000 ? "MATH" + sem + "10" : "CS" + sem + "01";
+    }
+
+    // replay each user's log on a fresh single-threaded store; returns the number of reads compared
+    private static int verify(String[] users, List<List<Op>> logs) {
+        int reads = 0;
+        for (int u = 0; u < users.length; u++) {
+            GradeStore.Session s = new GradeStore().open(users[u]);
+            for (int sem = 1; sem <= 2; sem++) {
+                s.addClass(sem, "CS" + sem + "01", 3);
+                s.addClass(sem, "MATH" + sem + "10", 4);
+            }
+            for (Op op : logs.get(u)) {
+                double got = switch (op.kind) {
+                    case 0 -> s.addAssignment(op.semester, op.cls, op.category, "hw", op.score);
+                    case 1 -> s.updateAssignment(op.semester, op.cls, op.id, "hw", op.score) ? 1 : 0;
+                    case 2 -> s.removeAssignment(op.semester, op.cls, op.id) ? 1 : 0;
+                    case 3 -> s.classPercent(op.semester, op.cls);
+                    default -> s.overallGpa();
+                };
+                if (Double.compare(got, op.result) != 0) {
+                    throw new IllegalStateException("Not linearizable: " + users[u] + " " + op + " replayed as " + got);
+                }
+                if (op.kind >= 3) reads++;
+            }
+        }
+        return reads;
+    }
+}
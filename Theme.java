@@ -0,0 +1,112 @@
+import javax.swing.JComponent;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JViewport;
+import javax.swing.border.TitledBorder;
+import javax.swing.plaf.UIResource;
+import javax.swing.text.JTextComponent;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Container;
+import java.util.function.Function;
+
+/**
+ * Light and dark palettes for the dashboard. Components are given Theme's role colors once, when
+ * they are built (install); a role color is a Color whose value is looked up in the active palette
+ * every time something is painted with it. Switching themes is use(palette) and one repaint: no UI
+ * delegate is reinstalled and no component is visited.
+ */
+public final class Theme {
+    /** Every color the dashboard paints with, for one theme. */
+    record Palette(String id, Color background, Color surface, Color field, Color text, Color muted, Color faint,
+                   Color grid, Color selection, Color button, Color buttonHover, Color accent,
+                   Color good, Color warn, Color bad, Color[] series) {}
+
+    private static final Color[] SERIES = {
+            new Color(52, 152, 219), new Color(231, 76, 60), new Color(241, 196, 15),
+            new Color(46, 204, 113), new Color(155, 89, 182), new Color(230, 126, 34)
+    };
+
+    // the light palette is what the dashboard always looked like under the default (Metal) look and feel
+    static final Palette LIGHT = new Palette("light", Color.WHITE, new Color(238, 238, 238), Color.WHITE,
+            Color.BLACK, new Color(120, 120, 120), new Color(150, 150, 150), new Color(200, 200, 200),
+            new Color(232, 244, 255), new Color(240, 240, 240), new Color(220, 235, 255), new Color(52, 152, 219),
+            new Color(46, 204, 113), new Color(243, 156, 18), new Color(231, 76, 60), SERIES);
+
+    static final Palette DARK = new Palette("dark", new Color(35, 35, 35), new Color(43, 45, 48), new Color(30, 32, 34),
+            new Color(230, 230, 230), new Color(160, 160, 160), new Color(125, 125, 125), new Color(80, 84, 88),
+            new Color(47, 74, 107), new Color(60, 63, 66), new Color(70, 96, 130), new Color(90, 170, 230),
+            new Color(46, 204, 113), new Color(243, 156, 18), new Color(231, 76, 60), SERIES);
+
+    private static volatile Palette active = LIGHT;
+
+    private Theme() {}
+
+    static Palette palette() {
+        return active;
+    }
+
+    /** Makes p the active palette; the caller repaints (once) whatever is showing. */
+    static void use(Palette p) {
+        active = p;
+    }
+
+    static Palette of(boolean dark) {
+        return dark ? DARK : LIGHT;
+    }
+
+    // a color that is whatever the active palette says for one role; Color's getters all go through getRGB
+    private static final class Role extends Color {
+        private final Function<Palette, Color> pick;
+
+        Role(Function<Palette, Color> pick) {
+            super(0, true);
+            this.pick = pick;
+        }
+
+        @Override public int getRGB() {
+            return pick.apply(active).getRGB();
+        }
+    }
+
+    static final Color BACKGROUND = new Role(Palette::background);
+    static final Color SURFACE = new Role(Palette::surface);
+    static final Color FIELD = new Role(Palette::field);
+    static final Color TEXT = new Role(Palette::text);
+    static final Color MUTED = new Role(Palette::muted);
+    static final Color GRID = new Role(Palette::grid);
+    static final Color SELECTION = new Role(Palette::selection);
+    static final Color BUTTON = new Role(Palette::button);
+    static final Color BUTTON_HOVER = new Role(Palette::buttonHover);
+
+    /**
+     * Gives c and everything under it role colors, once, when it is built. Only colors still at the
+     * look and feel's defaults (UIResource) are replaced, so anything a component set on purpose stays.
+     */
+    static void install(Component c) {
+        if (c instanceof JTable t) {
+            t.setBackground(FIELD);
+            t.setForeground(TEXT);
+            t.setGridColor(GRID);
+            t.setSelectionBackground(SELECTION);
+            t.setSelectionForeground(TEXT);
+            if (t.getTableHeader() != null) {
+                t.getTableHeader().setBackground(SURFACE);
+                t.getTableHeader().setForeground(TEXT);
+            }
+        } else if (c instanceof JList<?> || c instanceof JTextComponent || c instanceof JViewport) {
+            if (c.getBackground() == null || c.getBackground() instanceof UIResource) c.setBackground(FIELD);
+            if (c.getForeground() == null || c.getForeground() instanceof UIResource) c.setForeground(TEXT);
+            if (c instanceof JTextComponent tc) tc.setCaretColor(TEXT);
+        } else if (c instanceof JComponent) {
+            if (c.getBackground() == null || c.getBackground() instanceof UIResource) c.setBackground(SURFACE);
+            if (c.getForeground() == null || c.getForeground() instanceof UIResource) c.setForeground(TEXT);
+        }
+        if (c instanceof JComponent jc && jc.getBorder() instanceof TitledBorder tb) tb.setTitleColor(TEXT);
+        if (c instanceof JScrollPane sp) sp.getViewport().setBackground(FIELD);
+        if (c instanceof Container parent) {
+            for (Component child : parent.getComponents()) install(child);
+        }
+    }
+}